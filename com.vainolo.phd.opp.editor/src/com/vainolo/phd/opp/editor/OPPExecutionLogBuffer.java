@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.editor;
+
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * <p>
+ * Bounded buffer of the last lines of the execution log, shared between the thread that writes the log and the UI
+ * thread that shows it.
+ * </p>
+ *
+ * <p>
+ * Lines are kept in a ring buffer, so when more lines than the capacity of the buffer are appended, the oldest lines
+ * are overwritten. Every line gets a sequence number, and the buffer remembers up to which line it was drained, so the
+ * view can take only the lines that were appended since the last time it was refreshed, or all the lines in the buffer
+ * when it has to be redrawn (for example, when the filter changes).
+ * </p>
+ *
+ * <p>
+ * The buffer also tells the writer when a flush of the view must be scheduled: only the first append after a drain
+ * requests it, so the view receives at most one flush request per frame, regardless of the number of lines.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+final class OPPExecutionLogBuffer {
+  /** Level of lines whose level cannot be parsed, which are shown with every filter. */
+  static final int UNKNOWN_LEVEL = Integer.MAX_VALUE;
+
+  private final int capacity;
+  private final String[] lines;
+  private final int[] levels;
+  /** Sequence number of the oldest line in the buffer. */
+  private long first = 0;
+  /** Sequence number of the next line. */
+  private long next = 0;
+  /** Sequence number of the first line that was not drained. */
+  private long drained = 0;
+  private boolean cleared = false;
+  private boolean flushRequested = false;
+
+  OPPExecutionLogBuffer(int capacity) {
+    this.capacity = capacity;
+    this.lines = new String[capacity];
+    this.levels = new int[capacity];
+  }
+
+  /**
+   * Append lines to the buffer. Can be called from any thread.
+   *
+   * @return <code>true</code> if the caller must schedule a flush of the view.
+   */
+  boolean append(List<String> newLines) {
+    int[] newLevels = new int[newLines.size()];
+    for (int i = 0; i < newLevels.length; i++) {
+      newLevels[i] = parseLevel(newLines.get(i));
+    }
+    synchronized (this) {
+      for (int i = 0; i < newLevels.length; i++) {
+        int position = (int) (next % capacity);
+        lines[position] = newLines.get(i);
+        levels[position] = newLevels[i];
+        next++;
+      }
+      first = Math.max(first, next - capacity);
+      return requestFlush();
+    }
+  }
+
+  /**
+   * Remove all the lines from the buffer. Can be called from any thread.
+   *
+   * @return <code>true</code> if the caller must schedule a flush of the view.
+   */
+  synchronized boolean clear() {
+    for (long i = first; i < next; i++) {
+      lines[(int) (i % capacity)] = null;
+    }
+    first = next;
+    drained = next;
+    cleared = true;
+    return requestFlush();
+  }
+
+  private boolean requestFlush() {
+    if (flushRequested) {
+      return false;
+    }
+    flushRequested = true;
+    return true;
+  }
+
+  /**
+   * Take the lines that must be shown by the view.
+   *
+   * @param all
+   *          if <code>true</code>, return all the lines in the buffer, and the view should replace its contents with
+   *          them. Otherwise return only the lines appended since the last drain.
+   */
+  synchronized OPPExecutionLogBatch drain(boolean all) {
+    long from = all || cleared ? first : Math.max(drained, first);
+    long skipped = all || cleared ? 0 : from - drained;
+    int size = (int) (next - from);
+    String[] batchLines = new String[size];
+    int[] batchLevels = new int[size];
+    for (int i = 0; i < size; i++) {
+      int position = (int) ((from + i) % capacity);
+      batchLines[i] = lines[position];
+      batchLevels[i] = levels[position];
+    }
+    OPPExecutionLogBatch batch = new OPPExecutionLogBatch(all || cleared, skipped, batchLines, batchLevels);
+    drained = next;
+    cleared = false;
+    flushRequested = false;
+    return batch;
+  }
+
+  /**
+   * Parse the level of a line written by the {@link com.vainolo.phd.opp.utilities.OPPLogger}, which has the format
+   * <code>[timestamp] [LEVEL] [source] message</code>.
+   */
+  static int parseLevel(String line) {
+    int start = line.indexOf("] [");
+    if (start < 0) {
+      return UNKNOWN_LEVEL;
+    }
+    start += 3;
+    int end = line.indexOf(']', start);
+    if (end < 0) {
+      return UNKNOWN_LEVEL;
+    }
+    switch (line.substring(start, end)) {
+    case "SEVERE":
+      return Level.SEVERE.intValue();
+    case "WARNING":
+      return Level.WARNING.intValue();
+    case "INFO":
+      return Level.INFO.intValue();
+    case "CONFIG":
+      return Level.CONFIG.intValue();
+    case "FINE":
+      return Level.FINE.intValue();
+    case "FINER":
+      return Level.FINER.intValue();
+    case "FINEST":
+      return Level.FINEST.intValue();
+    default:
+      return UNKNOWN_LEVEL;
+    }
+  }
+
+  /**
+   * Lines drained from the buffer.
+   */
+  static final class OPPExecutionLogBatch {
+    private final boolean reset;
+    private final long skipped;
+    private final String[] lines;
+    private final int[] levels;
+
+    OPPExecutionLogBatch(boolean reset, long skipped, String[] lines, int[] levels) {
+      this.reset = reset;
+      this.skipped = skipped;
+      this.lines = lines;
+      this.levels = levels;
+    }
+
+    /**
+     * @return <code>true</code> if the view must replace its contents with the lines of the batch, <code>false</code>
+     *         if the lines must be appended.
+     */
+    boolean isReset() {
+      return reset;
+    }
+
+    /**
+     * @return the number of lines that were overwritten before they were drained.
+     */
+    long getSkipped() {
+      return skipped;
+    }
+
+    int size() {
+      return lines.length;
+    }
+
+    String getLine(int i) {
+      return lines[i];
+    }
+
+    int getLevel(int i) {
+      return levels[i];
+    }
+  }
+}
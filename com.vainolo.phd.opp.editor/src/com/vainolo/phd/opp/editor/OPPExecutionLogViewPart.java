@@ -6,19 +6,58 @@
  *******************************************************************************/
 package com.vainolo.phd.opp.editor;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.part.ViewPart;
 
+import com.vainolo.phd.opp.editor.OPPExecutionLogBuffer.OPPExecutionLogBatch;
 import com.vainolo.phd.opp.interpreter.OPPInterpreter;
 import com.vainolo.phd.opp.utilities.OPPLogTarget;
 import com.vainolo.phd.opp.utilities.OPPLogger;
 
+/**
+ * <p>
+ * View that shows the log of the execution.
+ * </p>
+ *
+ * <p>
+ * Lines are written to an {@link OPPExecutionLogBuffer} by the log writer thread, and the view takes them from the
+ * buffer at most once per frame, appending all the new lines to the text in a single operation. The buffer and the
+ * view keep only the last {@link #CAPACITY} lines, so long executions use bounded memory and the text never grows too
+ * big. Lines can be filtered by their minimum level and by a text they must contain, like the name of a process.
+ * </p>
+ */
 public class OPPExecutionLogViewPart extends ViewPart implements OPPLogTarget {
+  /** Number of lines kept by the view. */
+  private static final int CAPACITY = 100000;
+  /** Lines removed at once from the start of the text when it has more than {@link #CAPACITY} lines. */
+  private static final int TRIM_SIZE = CAPACITY / 10;
+  private static final int FRAME_MILLIS = 33;
+  private static final String[] LEVELS = { "ALL", "FINEST", "FINER", "FINE", "CONFIG", "INFO", "WARNING", "SEVERE" };
+
+  private final OPPExecutionLogBuffer buffer = new OPPExecutionLogBuffer(CAPACITY);
+  private final Runnable flushTask = this::flush;
+  private final Runnable scheduleFlushTask = () -> Display.getCurrent().timerExec(FRAME_MILLIS, flushTask);
+  private final StringBuilder text = new StringBuilder();
   private StyledText label;
+  private Combo levelCombo;
+  private Text processText;
+  private int minimumLevel = Level.ALL.intValue();
+  private String processFilter = "";
 
   public OPPExecutionLogViewPart() {
     OPPLogger.setOPPLogTarget(this);
@@ -27,9 +66,31 @@ public class OPPExecutionLogViewPart extends ViewPart implements OPPLogTarget {
 
   @Override
   public void createPartControl(Composite parent) {
-    label = new StyledText(parent, SWT.V_SCROLL | SWT.H_SCROLL);
+    Composite composite = new Composite(parent, SWT.NONE);
+    composite.setLayout(new GridLayout(3, false));
+
+    new Label(composite, SWT.NONE).setText("Level:");
+    levelCombo = new Combo(composite, SWT.READ_ONLY);
+    levelCombo.setItems(LEVELS);
+    levelCombo.select(0);
+    levelCombo.addSelectionListener(new SelectionAdapter() {
+      @Override
+      public void widgetSelected(SelectionEvent e) {
+        updateFilter();
+      }
+    });
+
+    processText = new Text(composite, SWT.BORDER | SWT.SEARCH);
+    processText.setMessage("Process");
+    processText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+    processText.addModifyListener(e -> updateFilter());
+
+    label = new StyledText(composite, SWT.V_SCROLL | SWT.H_SCROLL);
+    label.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 3, 1));
     label.setBackground(new Color(null, 255, 255, 255));
     label.setEditable(false);
+
+    show(buffer.drain(true));
   }
 
   @Override
@@ -38,29 +99,92 @@ public class OPPExecutionLogViewPart extends ViewPart implements OPPLogTarget {
   }
 
   @Override
-  public void clear() {
-    Display.getDefault().asyncExec(new Runnable() {
+  public void dispose() {
+    OPPLogger.setOPPLogTarget(null);
+    super.dispose();
+  }
 
-      @Override
-      public void run() {
-        label.setText("");
-      }
-    });
+  @Override
+  public void clear() {
+    if (buffer.clear()) {
+      scheduleFlush();
+    }
   }
 
   @Override
   public void appendLine(String line) {
-    Display.getDefault().asyncExec(new Runnable() {
+    appendLines(Collections.singletonList(line));
+  }
 
-      @Override
-      public void run() {
-        try {
-          label.setText(label.getText() + line);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
+  @Override
+  public void appendLines(List<String> lines) {
+    if (buffer.append(lines)) {
+      scheduleFlush();
+    }
+  }
+
+  private void scheduleFlush() {
+    Display.getDefault().asyncExec(scheduleFlushTask);
+  }
+
+  private void flush() {
+    if (label == null || label.isDisposed()) {
+      return;
+    }
+    show(buffer.drain(false));
+  }
+
+  private void updateFilter() {
+    minimumLevel = Level.parse(levelCombo.getText()).intValue();
+    processFilter = processText.getText();
+    show(buffer.drain(true));
+  }
+
+  private void show(OPPExecutionLogBatch batch) {
+    text.setLength(0);
+    if (batch.getSkipped() > 0) {
+      text.append("[... ").append(batch.getSkipped()).append(" lines not shown ...]\n");
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      if (batch.getLevel(i) >= minimumLevel && (processFilter.isEmpty() || batch.getLine(i).contains(processFilter))) {
+        text.append(batch.getLine(i));
       }
-    });
+    }
+    if (!batch.isReset() && text.length() == 0) {
+      return;
+    }
+
+    boolean scrollToEnd = batch.isReset() || isShowingEnd();
+    label.setRedraw(false);
+    try {
+      if (batch.isReset()) {
+        label.setText(text.toString());
+      } else {
+        label.append(text.toString());
+        trim();
+      }
+      if (scrollToEnd) {
+        label.setTopIndex(label.getLineCount() - 1);
+      }
+    } finally {
+      label.setRedraw(true);
+    }
+    text.setLength(0);
+  }
+
+  /**
+   * Remove the oldest lines of the text when it has too many lines. Lines are removed in chunks so the text is not
+   * changed at the start on every frame.
+   */
+  private void trim() {
+    int excess = label.getLineCount() - 1 - CAPACITY;
+    if (excess >= TRIM_SIZE) {
+      label.replaceTextRange(0, label.getOffsetAtLine(excess), "");
+    }
   }
 
+  private boolean isShowingEnd() {
+    int visibleLines = Math.max(1, label.getClientArea().height / label.getLineHeight());
+    return label.getTopIndex() + visibleLines >= label.getLineCount() - 1;
+  }
 }
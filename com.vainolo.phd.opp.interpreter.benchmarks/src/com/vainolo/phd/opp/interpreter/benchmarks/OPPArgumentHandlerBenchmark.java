@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstanceFactory;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessArgumentHandler;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlan;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlanCache;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessInstanceHeap;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPObject;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPProcess;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * Measures loading the arguments of the <code>+</code> process of the <code>Calculate Fibonachi</code> example from the
+ * heap of its in-zoomed instance, and extracting its result back to the heap.
+ *
+ * Loading arguments may consume the variables they are read from, so every invocation prepares a new heap with values
+ * for all the objects of the diagram. The cost of preparing the heap and creating the instance is measured by
+ * {@link #prepare()}, and should be subtracted from the other benchmarks.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OPPArgumentHandlerBenchmark {
+
+  private final OPPObjectInstance value = OPPObjectInstance.createFromValue(42);
+  private OPPInZoomedProcessExecutionPlan plan;
+  private List<OPPObject> objects;
+  private OPPProcess process;
+
+  @Setup
+  public void setUp() {
+    OPPLogger.setLevel(Level.SEVERE);
+    OPPObjectProcessDiagram opd = OPPExamples.load("fib/Calculate Fibonachi");
+    plan = OPPInZoomedProcessExecutionPlanCache.get(opd);
+    objects = OPPExamples.findElements(opd, OPPObject.class);
+    process = OPPExamples.findElement(opd, OPPProcess.class, "+");
+  }
+
+  private OPPInZoomedProcessInstanceHeap createHeap() {
+    OPPInZoomedProcessInstanceHeap heap = new OPPInZoomedProcessInstanceHeap(plan);
+    for (OPPObject object : objects) {
+      heap.setVariable(object, value);
+    }
+    return heap;
+  }
+
+  @Benchmark
+  public OPPProcessInstance prepare() {
+    createHeap();
+    return OPPProcessInstanceFactory.createExecutableInstance(process);
+  }
+
+  @Benchmark
+  public OPPProcessInstance loadArguments() {
+    OPPInZoomedProcessArgumentHandler argumentHandler = new OPPInZoomedProcessArgumentHandler(createHeap(), plan);
+    OPPProcessInstance instance = OPPProcessInstanceFactory.createExecutableInstance(process);
+    argumentHandler.loadInstanceArguments(process, instance);
+    return instance;
+  }
+
+  @Benchmark
+  public OPPProcessInstance loadArgumentsAndExtractResults() throws Exception {
+    OPPInZoomedProcessArgumentHandler argumentHandler = new OPPInZoomedProcessArgumentHandler(createHeap(), plan);
+    OPPProcessInstance instance = OPPProcessInstanceFactory.createExecutableInstance(process);
+    argumentHandler.loadInstanceArguments(process, instance);
+    instance.call();
+    argumentHandler.extractResultsToVariables(process, instance);
+    return instance;
+  }
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the interpreter benchmarks and writes the results as JSON.
+ *
+ * Accepts the standard JMH command line options, so a subset of the benchmarks can be run by passing a regular
+ * expression, for example <code>OPPBlockingProcessBenchmark</code>. Results are written to
+ * <code>target/opp-benchmarks.json</code> unless another file is given using <code>-rff</code>.
+ *
+ * The benchmarks are generated by the JMH annotation processor. The Maven build of this fragment copies JMH to
+ * <code>target/dependency</code> and runs the processor. In the IDE, run <i>Maven &gt; Update Project</i> once so the
+ * jars are copied, and the factory path of the project runs the processor into <code>.apt_generated</code>. Without
+ * the generated classes the runner finds no benchmarks.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPBenchmarks {
+  public static final String DEFAULT_RESULT_FILE = "target/opp-benchmarks.json";
+
+  /**
+   * Convenience method so you can run it in your IDE.
+   */
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(commandLineOptions);
+    if (commandLineOptions.getIncludes().isEmpty()) {
+      builder.include(OPPBenchmarks.class.getPackage().getName() + ".*");
+    }
+    if (!commandLineOptions.getResultFormat().hasValue()) {
+      builder.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLineOptions.getResult().hasValue()) {
+      builder.result(DEFAULT_RESULT_FILE);
+    }
+    Options options = builder.build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vainolo.phd.opp.interpreter.OPPProcessExecutionResult;
+import com.vainolo.phd.opp.interpreter.OPPScheduler;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPBlockingExecution;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPSchedulerKind;
+import com.vainolo.phd.opp.interpreter.builtin.OPPSleepProcessInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * Executes many {@link OPPSleepProcessInstance}s at the same time, comparing the cached thread pool used for blocking
+ * processes until now with virtual threads. In JVMs without virtual threads both modes use a cached thread pool.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class OPPBlockingProcessBenchmark {
+
+  @Param({ "CACHED_THREADS", "VIRTUAL_THREADS" })
+  public OPPBlockingExecution blockingExecution;
+
+  @Param({ "100", "1000", "5000" })
+  public int instances;
+
+  private OPPScheduler scheduler;
+
+  @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+  public void setUp() {
+    OPPLogger.setLevel(Level.SEVERE);
+    scheduler = new OPPScheduler(OPPSchedulerKind.FORK_JOIN, Runtime.getRuntime().availableProcessors(), blockingExecution);
+  }
+
+  @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+  public void tearDown() throws InterruptedException {
+    scheduler.shutdownNow();
+    scheduler.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  @Benchmark
+  public int sleepInParallel() throws Exception {
+    ExecutorCompletionService<OPPProcessExecutionResult> completionService = new ExecutorCompletionService<>(scheduler.getBlockingExecutor());
+    for (int i = 0; i < instances; i++) {
+      OPPSleepProcessInstance instance = new OPPSleepProcessInstance();
+      instance.setArgument("time", OPPObjectInstance.createFromValue(BigDecimal.ONE));
+      completionService.submit(instance);
+    }
+    for (int i = 0; i < instances; i++) {
+      completionService.take().get();
+    }
+    return scheduler.getPoolSize();
+  }
+}
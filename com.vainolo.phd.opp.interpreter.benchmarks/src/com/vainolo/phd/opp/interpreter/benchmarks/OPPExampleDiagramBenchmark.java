@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vainolo.phd.opp.interpreter.OPPExecutionContext;
+import com.vainolo.phd.opp.interpreter.OPPInterpreter;
+import com.vainolo.phd.opp.interpreter.OPPProcessExecutionResult;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstanceFactory;
+import com.vainolo.phd.opp.interpreter.OPPScheduler;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * Executes complete diagrams from the <code>OPP Examples</code> directory, from loading the arguments of the main
+ * process to extracting its results. Diagrams are loaded once, as the interpreter does using the OPD cache.
+ *
+ * The benchmark runs in a headless JVM, where the dialog processes read from the console and write to it. The console
+ * input is reset before every execution to the value read by diagrams that ask for a number, and the output is
+ * discarded.
+ *
+ * Every diagram is executed submitting its nested compound processes to the scheduler, and executing them inline up to
+ * the depth given by <code>inlineFrames</code>.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class OPPExampleDiagramBenchmark {
+  private static final byte[] INPUT = "20\n20\n20\n".getBytes(StandardCharsets.UTF_8);
+
+  @Param({ "fib/Run Fib", "Count From N to 0", "Parallel Output", "composite/Add, Get, and Remove First", "composite/Has Parts",
+      "composite/Playing with parts", "examples/Initializers" })
+  public String diagram;
+
+  @Param({ "0", "64" })
+  public int inlineFrames;
+
+  private OPPObjectProcessDiagram opd;
+  private OPPExecutionContext context;
+  private InputStream originalIn;
+  private PrintStream originalOut;
+
+  @Setup
+  public void setUp() {
+    OPPLogger.setLevel(Level.SEVERE);
+    originalIn = System.in;
+    originalOut = System.out;
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+      }
+    }));
+    opd = OPPExamples.load(diagram);
+    context = OPPInterpreter.INSTANCE.createContext(OPPExamples.getContainer(diagram));
+    context.setMaxInlineFrames(inlineFrames);
+  }
+
+  @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+  public void resetInput() {
+    System.setIn(new ByteArrayInputStream(INPUT));
+  }
+
+  @TearDown
+  public void tearDown() {
+    System.setIn(originalIn);
+    System.setOut(originalOut);
+    context.close();
+  }
+
+  @Benchmark
+  public OPPProcessExecutionResult execute() throws Exception {
+    OPPProcessInstance instance = OPPProcessInstanceFactory.createExecutableInstance(opd, context);
+    return OPPScheduler.await(context.getScheduler().executeAsync(instance));
+  }
+}
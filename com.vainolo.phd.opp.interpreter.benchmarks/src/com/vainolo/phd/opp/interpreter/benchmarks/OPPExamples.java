@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+
+import com.google.common.collect.Lists;
+import com.vainolo.phd.opp.interpreter.OPPDirectoryContainer;
+import com.vainolo.phd.opp.model.OPPNamedElement;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPPackage;
+
+/**
+ * Access to the diagrams in the <code>OPP Examples</code> directory of the repository, which is found using the
+ * <code>opp.examples</code> system property, or in the parent of the working directory if it is not set.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+final class OPPExamples {
+  static final File DIRECTORY = new File(System.getProperty("opp.examples", "../OPP Examples"));
+
+  private OPPExamples() {
+  }
+
+  /**
+   * Load a diagram.
+   *
+   * @param name
+   *          of the diagram, relative to the examples directory and without extension.
+   */
+  static OPPObjectProcessDiagram load(String name) {
+    OPPPackage.eINSTANCE.eClass();
+    OPPObjectProcessDiagram opd = getContainer(name).getOPD(new File(name).getName());
+    if (opd == null) {
+      throw new IllegalArgumentException("Could not load example " + new File(DIRECTORY, name + ".opp").getAbsolutePath() + ".");
+    }
+    return opd;
+  }
+
+  /**
+   * Get the directory where a diagram is stored, where the diagrams it calls are found.
+   */
+  static OPPDirectoryContainer getContainer(String name) {
+    return new OPPDirectoryContainer(new File(DIRECTORY, name).getParentFile().toPath());
+  }
+
+  /**
+   * Find an element of a diagram by its name, including elements nested in other elements.
+   */
+  static <T extends OPPNamedElement> T findElement(OPPObjectProcessDiagram opd, Class<T> type, String name) {
+    for (Iterator<EObject> it = opd.eAllContents(); it.hasNext();) {
+      EObject element = it.next();
+      if (type.isInstance(element) && name.equals(type.cast(element).getName())) {
+        return type.cast(element);
+      }
+    }
+    throw new IllegalArgumentException("Diagram " + opd.getName() + " has no node named " + name + ".");
+  }
+
+  /**
+   * Find all the elements of a diagram of a given type, including elements nested in other elements.
+   */
+  static <T> List<T> findElements(OPPObjectProcessDiagram opd, Class<T> type) {
+    List<T> elements = Lists.newArrayList();
+    for (Iterator<EObject> it = opd.eAllContents(); it.hasNext();) {
+      EObject element = it.next();
+      if (type.isInstance(element)) {
+        elements.add(type.cast(element));
+      }
+    }
+    return elements;
+  }
+}
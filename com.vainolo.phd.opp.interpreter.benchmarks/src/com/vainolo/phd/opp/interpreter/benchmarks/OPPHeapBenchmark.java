@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.vainolo.phd.opp.interpreter.OPPGlobalHeap;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstanceHeap;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlan;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlanCache;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessInstanceHeap;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPObject;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * Measures setting and getting values in the heaps of the interpreter: the arguments of a process instance, the
+ * variables of an in-zoomed instance, and the global variables.
+ *
+ * The heap of an in-zoomed instance records every change until the instance drains it at the end of the step, so the
+ * in-zoomed benchmark creates a new heap and sets and gets all the objects of the <code>Calculate Fibonachi</code>
+ * example once, like a step that touches all the variables of the diagram.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OPPHeapBenchmark {
+  private static final String[] NAMES = { "a", "b", "c", "d", "e", "f", "g", "h" };
+
+  private final OPPObjectInstance value = OPPObjectInstance.createFromValue(42);
+  private OPPProcessInstanceHeap argumentHeap;
+  private OPPGlobalHeap globalHeap;
+  private OPPInZoomedProcessExecutionPlan plan;
+  private List<OPPObject> objects;
+
+  @Setup
+  public void setUp() {
+    OPPLogger.setLevel(Level.SEVERE);
+    argumentHeap = new OPPProcessInstanceHeap();
+    globalHeap = new OPPGlobalHeap();
+    for (String name : NAMES) {
+      globalHeap.setVariable(name, value);
+    }
+    OPPObjectProcessDiagram opd = OPPExamples.load("fib/Calculate Fibonachi");
+    plan = OPPInZoomedProcessExecutionPlanCache.get(opd);
+    objects = OPPExamples.findElements(opd, OPPObject.class);
+  }
+
+  @Benchmark
+  public void setAndGetArguments(Blackhole blackhole) {
+    for (String name : NAMES) {
+      argumentHeap.setArgument(name, value);
+      blackhole.consume(argumentHeap.getArgument(name));
+    }
+  }
+
+  @Benchmark
+  public void setAndGetInZoomedVariables(Blackhole blackhole) {
+    OPPInZoomedProcessInstanceHeap heap = new OPPInZoomedProcessInstanceHeap(plan);
+    for (OPPObject object : objects) {
+      heap.setVariable(object, value);
+      blackhole.consume(heap.getVariable(object));
+    }
+  }
+
+  @Benchmark
+  public void getGlobalVariables(Blackhole blackhole) {
+    for (String name : NAMES) {
+      blackhole.consume(globalHeap.getVariable(name));
+    }
+  }
+
+  @Benchmark
+  public void setGlobalVariables() {
+    for (String name : NAMES) {
+      globalHeap.setVariable(name, value);
+    }
+  }
+
+  @Benchmark
+  public void updateGlobalVariables() {
+    for (String name : NAMES) {
+      globalHeap.updateVariable(name, v -> value);
+    }
+  }
+}
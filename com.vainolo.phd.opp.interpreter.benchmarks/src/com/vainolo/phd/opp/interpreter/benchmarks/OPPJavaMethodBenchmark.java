@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vainolo.phd.opp.interpreter.OPPJavaMethod;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * Compares calling the Java method of a <code>JAVA</code> process through its cached {@link OPPJavaMethod} handle,
+ * through a cached {@link Method} using reflection, and looking up the method on every call as the interpreter used to,
+ * for a static method and an instance method.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OPPJavaMethodBenchmark {
+  private static final String STATIC_SIGNATURE = "java.lang.Math.max(long, long)";
+  private static final String INSTANCE_SIGNATURE = "java.lang.String.substring(int, int)";
+  private static final Pattern SIGNATURE_PATTERN = Pattern.compile("(.*)\\.([^\\.]*)\\((.*)\\)");
+
+  private OPPObjectInstance first;
+  private OPPObjectInstance second;
+  private OPPObjectInstance text;
+  private OPPJavaMethod staticHandle;
+  private OPPJavaMethod instanceHandle;
+  private Method staticMethod;
+  private Method instanceMethod;
+
+  @Setup
+  public void setUp() throws Exception {
+    OPPLogger.setLevel(Level.SEVERE);
+    first = OPPObjectInstance.createFromValue(3);
+    second = OPPObjectInstance.createFromValue(9);
+    text = OPPObjectInstance.createFromValue("Hello World");
+    staticHandle = OPPJavaMethod.forSignature(STATIC_SIGNATURE);
+    instanceHandle = OPPJavaMethod.forSignature(INSTANCE_SIGNATURE);
+    staticMethod = Math.class.getMethod("max", long.class, long.class);
+    instanceMethod = String.class.getMethod("substring", int.class, int.class);
+  }
+
+  @Benchmark
+  public OPPObjectInstance staticHandle() {
+    return staticHandle.invoke(null, first, second);
+  }
+
+  @Benchmark
+  public OPPObjectInstance staticReflection() throws Exception {
+    return OPPObjectInstance.createFromValue((Long) staticMethod.invoke(null, first.getNumericalValue().longValueExact(),
+        second.getNumericalValue().longValueExact()));
+  }
+
+  @Benchmark
+  public OPPObjectInstance staticReflectionLookup() throws Exception {
+    Matcher matcher = SIGNATURE_PATTERN.matcher(STATIC_SIGNATURE);
+    matcher.find();
+    Method method = Class.forName(matcher.group(1)).getMethod(matcher.group(2), long.class, long.class);
+    return OPPObjectInstance.createFromValue((Long) method.invoke(null, first.getNumericalValue().longValueExact(),
+        second.getNumericalValue().longValueExact()));
+  }
+
+  @Benchmark
+  public OPPObjectInstance instanceHandle() {
+    return instanceHandle.invoke(text, first, second);
+  }
+
+  @Benchmark
+  public OPPObjectInstance instanceReflection() throws Exception {
+    return OPPObjectInstance.createFromValue((String) instanceMethod.invoke(text.getStringValue(), first.getNumericalValue().intValueExact(),
+        second.getNumericalValue().intValueExact()));
+  }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.vainolo.phd.opp.interpreter.json.OPPJsonReader;
+import com.vainolo.phd.opp.interpreter.json.OPPJsonWriter;
+import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * Measures converting JSON documents to object instances and back, from text to text. The documents are composites
+ * with <code>parts</code> records, each with a string, a number and a nested composite.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OPPJsonBenchmark {
+
+  @Param({ "10", "1000" })
+  public int parts;
+
+  private final OPPJsonReader reader = new OPPJsonReader();
+  private final OPPJsonWriter writer = new OPPJsonWriter();
+  private String json;
+  private OPPComplexObjectInstance instance;
+
+  @Setup
+  public void setUp() {
+    OPPLogger.setLevel(Level.SEVERE);
+    JsonObject document = new JsonObject();
+    for (int i = 0; i < parts; i++) {
+      document.add("record " + i, new JsonObject().add("name", "Record " + i).add("value", i)
+          .add("details", new JsonObject().add("created", "2015-01-01").add("valid", true)));
+    }
+    json = document.toString();
+    instance = (OPPComplexObjectInstance) reader.read(Json.parse(json));
+  }
+
+  @Benchmark
+  public OPPObjectInstance read() {
+    return reader.read(Json.parse(json));
+  }
+
+  @Benchmark
+  public String write() {
+    return writer.write(instance).toString();
+  }
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.vainolo.phd.opp.interpreter.OPPGlobalHeap;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstanceHeap;
+import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * Measures the interpreter operations that log at the fine levels on every call, passing arguments between processes
+ * and updating global variables, and calls to the logger with disabled levels. Running it with the logger at
+ * <code>INFO</code> and <code>OFF</code> should give the same results, showing that disabled levels don't slow down
+ * the interpreter.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OPPLoggingBenchmark {
+
+  @Param({ "INFO", "OFF" })
+  public String level;
+
+  private OPPProcessInstanceHeap heap;
+  private OPPGlobalHeap globalHeap;
+  private OPPObjectInstance number;
+  private OPPComplexObjectInstance composite;
+
+  @Setup
+  public void setUp() {
+    OPPLogger.setLevel(Level.parse(level));
+    heap = new OPPProcessInstanceHeap();
+    globalHeap = new OPPGlobalHeap();
+    number = OPPObjectInstance.createFromValue(123456);
+    composite = OPPObjectInstance.createCompositeInstance();
+    for (int i = 0; i < 10; i++) {
+      composite.setPart("part" + i, OPPObjectInstance.createFromValue(i));
+    }
+  }
+
+  @Benchmark
+  public OPPObjectInstance argumentRoundTrip() {
+    heap.setArgument("Argument", composite);
+    return heap.getArgument("Argument");
+  }
+
+  @Benchmark
+  public OPPObjectInstance globalVariableUpdate() {
+    globalHeap.setVariable("global", number);
+    return globalHeap.getVariable("global");
+  }
+
+  @Benchmark
+  public void disabledLogWithParameters(Blackhole blackhole) {
+    OPPLogger.logFinest("Setting variable {0} with value {1}.", "name", composite);
+    blackhole.consume(composite);
+  }
+
+  @Benchmark
+  public void disabledLogWithSupplier(Blackhole blackhole) {
+    OPPLogger.logFinest(() -> "Setting variable name with value " + composite);
+    blackhole.consume(composite);
+  }
+}
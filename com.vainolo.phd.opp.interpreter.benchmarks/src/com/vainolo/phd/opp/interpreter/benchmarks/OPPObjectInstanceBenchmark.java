@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPListObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+
+/**
+ * Measures creating values, composites and lists, and copying them as the interpreter does when passing arguments.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OPPObjectInstanceBenchmark {
+
+  @Param({ "10", "1000" })
+  public int parts;
+
+  private OPPComplexObjectInstance composite;
+  private OPPListObjectInstance list;
+  private String[] partNames;
+
+  @Setup
+  public void setUp() {
+    partNames = new String[parts];
+    for (int i = 0; i < parts; i++) {
+      partNames[i] = "part " + i;
+    }
+    composite = createComposite();
+    list = createList();
+  }
+
+  @Benchmark
+  public OPPObjectInstance createNumber() {
+    return OPPObjectInstance.createFromValue(123456);
+  }
+
+  @Benchmark
+  public OPPObjectInstance createString() {
+    return OPPObjectInstance.createFromValue("Hello World");
+  }
+
+  @Benchmark
+  public OPPComplexObjectInstance createComposite() {
+    OPPComplexObjectInstance newComposite = OPPObjectInstance.createCompositeInstance();
+    for (int i = 0; i < parts; i++) {
+      newComposite.setPart(partNames[i], OPPObjectInstance.createFromValue(i));
+    }
+    return newComposite;
+  }
+
+  @Benchmark
+  public OPPListObjectInstance createList() {
+    OPPListObjectInstance newList = OPPObjectInstance.createListInstance();
+    for (int i = 0; i < parts; i++) {
+      newList.addLast(OPPObjectInstance.createFromValue(i));
+    }
+    return newList;
+  }
+
+  @Benchmark
+  public OPPObjectInstance copyComposite() {
+    return OPPObjectInstance.createFromExistingInstance(composite);
+  }
+
+  @Benchmark
+  public OPPObjectInstance copyAndChangeComposite() {
+    OPPComplexObjectInstance copy = (OPPComplexObjectInstance) OPPObjectInstance.createFromExistingInstance(composite);
+    copy.setPart(partNames[0], OPPObjectInstance.createFromValue(-1));
+    return copy;
+  }
+
+  @Benchmark
+  public OPPObjectInstance copyList() {
+    return OPPObjectInstance.createFromExistingInstance(list);
+  }
+
+  @Benchmark
+  public OPPObjectInstance copyAndChangeList() {
+    OPPListObjectInstance copy = (OPPListObjectInstance) OPPObjectInstance.createFromExistingInstance(list);
+    copy.addLast(OPPObjectInstance.createFromValue(-1));
+    return copy;
+  }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+
+/**
+ * Measures the throughput of creating instances that need an identity, using a random {@link UUID} per instance as it
+ * was done until now, and using the lazily created ids of {@link OPPObjectInstance}. Numbers are measured too, since
+ * they needed a {@link UUID} until now but don't have an identity anymore.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OPPObjectInstanceIdBenchmark {
+
+  private static void createWithUUID(Blackhole blackhole) {
+    OPPComplexObjectInstance instance = OPPObjectInstance.createCompositeInstance();
+    blackhole.consume(UUID.randomUUID());
+    blackhole.consume(instance);
+  }
+
+  private static void createWithId(Blackhole blackhole) {
+    OPPComplexObjectInstance instance = OPPObjectInstance.createCompositeInstance();
+    blackhole.consume(instance.getId());
+  }
+
+  private static void createNumberWithUUID(Blackhole blackhole) {
+    blackhole.consume(UUID.randomUUID());
+    blackhole.consume(OPPObjectInstance.createFromValue(100000));
+  }
+
+  private static void createNumber(Blackhole blackhole) {
+    blackhole.consume(OPPObjectInstance.createFromValue(100000));
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void compositeUUID_1Thread(Blackhole blackhole) {
+    createWithUUID(blackhole);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void compositeUUID_4Threads(Blackhole blackhole) {
+    createWithUUID(blackhole);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void compositeUUID_16Threads(Blackhole blackhole) {
+    createWithUUID(blackhole);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void compositeId_1Thread(Blackhole blackhole) {
+    createWithId(blackhole);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void compositeId_4Threads(Blackhole blackhole) {
+    createWithId(blackhole);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void compositeId_16Threads(Blackhole blackhole) {
+    createWithId(blackhole);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void numberUUID_1Thread(Blackhole blackhole) {
+    createNumberWithUUID(blackhole);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void numberUUID_4Threads(Blackhole blackhole) {
+    createNumberWithUUID(blackhole);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void numberUUID_16Threads(Blackhole blackhole) {
+    createNumberWithUUID(blackhole);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void number_1Thread(Blackhole blackhole) {
+    createNumber(blackhole);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void number_4Threads(Blackhole blackhole) {
+    createNumber(blackhole);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void number_16Threads(Blackhole blackhole) {
+    createNumber(blackhole);
+  }
+}
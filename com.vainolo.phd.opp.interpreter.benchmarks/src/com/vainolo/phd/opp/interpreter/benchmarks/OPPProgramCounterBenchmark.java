@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlan;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlanCache;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessIntanceProgramCounter;
+import com.vainolo.phd.opp.model.OPPFactory;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPProcess;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * Walks the program counter over synthetic in-zoomed diagrams from the first sub-process to the last one. Sub-processes
+ * have random positions and heights, so some of them overlap and block the next ones until they finish. Every step
+ * starts the processes at the PC, and the oldest active process finishes whenever the next ones are blocked.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OPPProgramCounterBenchmark {
+
+  @Param({ "10", "100", "1000", "10000" })
+  public int subprocesses;
+
+  private OPPInZoomedProcessExecutionPlan plan;
+
+  @Setup
+  public void setUp() {
+    OPPLogger.setLevel(Level.SEVERE);
+    plan = OPPInZoomedProcessExecutionPlanCache.get(createInZoomedDiagram(subprocesses, new Random(42)));
+  }
+
+  static OPPObjectProcessDiagram createInZoomedDiagram(int subprocesses, Random random) {
+    OPPObjectProcessDiagram opd = OPPFactory.eINSTANCE.createOPPObjectProcessDiagram();
+    opd.setName("Synthetic " + subprocesses);
+    OPPProcess mainProcess = OPPFactory.eINSTANCE.createOPPProcess();
+    mainProcess.setName("Main");
+    opd.getNodes().add(mainProcess);
+    for (int i = 0; i < subprocesses; i++) {
+      OPPProcess process = OPPFactory.eINSTANCE.createOPPProcess();
+      process.setName("P" + i);
+      process.setY(random.nextInt(subprocesses * 20));
+      process.setHeight(20 + random.nextInt(60));
+      mainProcess.getNodes().add(process);
+    }
+    return opd;
+  }
+
+  @Benchmark
+  public int walkDiagram() {
+    OPPInZoomedProcessIntanceProgramCounter pc = new OPPInZoomedProcessIntanceProgramCounter(plan);
+    Deque<OPPProcess> active = new ArrayDeque<>();
+    int steps = 0;
+    pc.setPC(pc.getNextPC());
+    while (true) {
+      List<OPPProcess> next = pc.getNextProcesses();
+      if (!next.isEmpty()) {
+        for (OPPProcess process : next) {
+          pc.addActiveProcess(process);
+          active.add(process);
+        }
+        pc.setPC(pc.getNextPC());
+      } else if (!active.isEmpty()) {
+        pc.removeActiveProcess(active.poll());
+      } else {
+        break;
+      }
+      steps++;
+    }
+    return steps;
+  }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vainolo.phd.opp.interpreter.OPPObjectInstanceValueAnalyzer;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPFactory;
+import com.vainolo.phd.opp.model.OPPPackage;
+import com.vainolo.phd.opp.model.OPPState;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * Measures calculating the values of literals, and checking if values are in the states used by event and condition
+ * links.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OPPValueAnalyzerBenchmark {
+
+  private final OPPObjectInstanceValueAnalyzer analyzer = new OPPObjectInstanceValueAnalyzer();
+  private final OPPObjectInstance number = OPPObjectInstance.createFromValue(7);
+  private final OPPObjectInstance string = OPPObjectInstance.createFromValue("yes");
+  private OPPState numberState;
+  private OPPState inequalityState;
+  private OPPState stringState;
+
+  @Setup
+  public void setUp() {
+    OPPLogger.setLevel(Level.SEVERE);
+    OPPPackage.eINSTANCE.eClass();
+    numberState = createState("7");
+    inequalityState = createState("<=1");
+    stringState = createState("\"yes\"");
+  }
+
+  private static OPPState createState(String name) {
+    OPPState state = OPPFactory.eINSTANCE.createOPPState();
+    state.setName(name);
+    return state;
+  }
+
+  @Benchmark
+  public OPPObjectInstance numberLiteral() {
+    return analyzer.calculateOPMObjectValue("12345.678");
+  }
+
+  @Benchmark
+  public OPPObjectInstance stringLiteral() {
+    return analyzer.calculateOPMObjectValue("\"Hello World\"");
+  }
+
+  @Benchmark
+  public OPPObjectInstance listLiteral() {
+    return analyzer.calculateOPMObjectValue("[1, 2, 3, 4, 5, 6, 7, 8, 9, 10]");
+  }
+
+  @Benchmark
+  public OPPObjectInstance rangeLiteral() {
+    return analyzer.calculateOPMObjectValue("[1..100]");
+  }
+
+  @Benchmark
+  public OPPObjectInstance jsonLiteral() {
+    return analyzer.calculateOPMObjectValue("{\"name\": \"OPP\", \"version\": 1, \"tags\": [\"a\", \"b\"]}");
+  }
+
+  @Benchmark
+  public boolean numberState() {
+    return analyzer.isObjectInstanceInState(number, numberState);
+  }
+
+  @Benchmark
+  public boolean inequalityState() {
+    return analyzer.isObjectInstanceInState(number, inequalityState);
+  }
+
+  @Benchmark
+  public boolean stringState() {
+    return analyzer.isObjectInstanceInState(string, stringState);
+  }
+}
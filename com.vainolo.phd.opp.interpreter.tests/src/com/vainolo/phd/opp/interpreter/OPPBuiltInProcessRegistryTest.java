@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.vainolo.phd.opp.interpreter.builtin.OPPSleepProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.general.OPPRandomProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.math.OPPBinaryMathOpProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.math.OPPUnaryMathOpProcessInstance;
+
+public class OPPBuiltInProcessRegistryTest {
+
+  @Test
+  public void get_DefaultProcessesIgnoringCase() {
+    OPPBuiltInProcessRegistry registry = OPPBuiltInProcessRegistry.getInstance();
+    assertTrue(registry.get("Adding").get() instanceof OPPBinaryMathOpProcessInstance);
+    assertTrue(registry.get("SLEEP").get() instanceof OPPSleepProcessInstance);
+    assertTrue(registry.get("-").get() instanceof OPPBinaryMathOpProcessInstance);
+    assertTrue(registry.get("-a").get() instanceof OPPUnaryMathOpProcessInstance);
+    assertNull(registry.get("Not A Built-In Process"));
+  }
+
+  @Test
+  public void get_NewInstanceEveryCall() {
+    OPPBuiltInProcessRegistry registry = OPPBuiltInProcessRegistry.getInstance();
+    assertNotSame(registry.get("random").get(), registry.get("random").get());
+  }
+
+  @Test
+  public void register_ReplacesExistingProcess() {
+    OPPBuiltInProcessRegistry registry = new OPPBuiltInProcessRegistry();
+    registry.register(OPPSleepProcessInstance::new, "Wait", "pause");
+    registry.register(OPPRandomProcessInstance::new, "wait");
+
+    assertTrue(registry.get("WAIT").get() instanceof OPPRandomProcessInstance);
+    assertTrue(registry.get("Pause").get() instanceof OPPSleepProcessInstance);
+    assertEquals(2, registry.getNames().size());
+  }
+
+  @Test
+  public void isPure_UntilReplacedByImpureProcess() {
+    OPPBuiltInProcessRegistry registry = new OPPBuiltInProcessRegistry();
+    registry.registerPure(OPPRandomProcessInstance::new, "Choose");
+    assertTrue(registry.isPure("choose"));
+
+    registry.register(OPPSleepProcessInstance::new, "choose");
+    assertFalse(registry.isPure("Choose"));
+    assertFalse(registry.isPure("Not A Built-In Process"));
+    assertTrue(OPPBuiltInProcessRegistry.getInstance().isPure("Adding"));
+    assertFalse(OPPBuiltInProcessRegistry.getInstance().isPure("Console Writing"));
+  }
+}
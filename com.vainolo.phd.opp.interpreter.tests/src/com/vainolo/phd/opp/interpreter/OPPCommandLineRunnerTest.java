@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.eclipsesource.json.JsonObject;
+import com.google.common.collect.Lists;
+import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPListObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance.InstanceKind;
+
+public class OPPCommandLineRunnerTest {
+
+  @Test
+  public void parseValue_LiteralsAndPlainText() {
+    assertEquals(new BigDecimal(4), OPPCommandLineRunner.parseValue("4").getNumericalValue());
+    assertEquals("hello", OPPCommandLineRunner.parseValue("\"hello\"").getStringValue());
+    assertEquals("hello", OPPCommandLineRunner.parseValue("hello").getStringValue());
+    assertEquals(InstanceKind.LIST, OPPCommandLineRunner.parseValue("[1..3]").kind);
+  }
+
+  @Test
+  public void readArguments_MembersOfJsonObject() throws Exception {
+    Path file = Files.createTempFile("opp-arguments", ".json");
+    try {
+      Files.write(file, "{\"n\": 5, \"name\": \"x\", \"values\": [1, 2]}".getBytes(StandardCharsets.UTF_8));
+      Map<String, OPPObjectInstance> arguments = OPPCommandLineRunner.readArguments(file.toString());
+      assertEquals(Lists.newArrayList("n", "name", "values"), Lists.newArrayList(arguments.keySet()));
+      assertEquals(5, arguments.get("n").getNumericalValue().intValue());
+      assertEquals("x", arguments.get("name").getStringValue());
+      assertEquals(2, ((OPPListObjectInstance) arguments.get("values")).count());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void createResults_OutgoingParametersAsJson() {
+    OPPProcessInstance instance = mock(OPPProcessInstance.class);
+    when(instance.getOutgoingParameters()).thenReturn(Lists.newArrayList(new OPPParameter("a"), new OPPParameter("b"), new OPPParameter("c")));
+    OPPListObjectInstance list = OPPObjectInstance.createListInstance();
+    list.addLast(OPPObjectInstance.createFromValue("one"));
+    OPPComplexObjectInstance complex = OPPObjectInstance.createCompositeInstance();
+    complex.setPart("list", list);
+    when(instance.getArgument("a")).thenReturn(OPPObjectInstance.createFromValue(new BigDecimal(3)));
+    when(instance.getArgument("b")).thenReturn(complex);
+
+    JsonObject results = OPPCommandLineRunner.createResults(instance);
+    assertEquals(3, results.get("a").asInt());
+    assertEquals("one", results.get("b").asObject().get("list").asArray().get(0).asString());
+    assertTrue(results.get("c").isNull());
+  }
+
+  @Test
+  public void run_InvalidCommandLine() {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    int status = new OPPCommandLineRunner().run(new String[] { "--parallelism" }, System.out, new PrintStream(err));
+    assertEquals(OPPCommandLineRunner.EXIT_USAGE, status);
+    assertTrue(err.toString().contains("Usage"));
+  }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPBlockingExecution;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPSchedulerKind;
+import com.vainolo.phd.opp.interpreter.builtin.global.OPPGlobalAddingProcessInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+
+public class OPPExecutionContextTest {
+
+  private OPPExecutionContext first;
+  private OPPExecutionContext second;
+
+  @Before
+  public void setUp() {
+    first = createContext();
+    second = createContext();
+  }
+
+  @After
+  public void tearDown() {
+    first.close();
+    second.close();
+  }
+
+  private OPPExecutionContext createContext() {
+    return new OPPExecutionContext(null, new OPPScheduler(OPPSchedulerKind.FORK_JOIN, 1, OPPBlockingExecution.SHARED), null, null);
+  }
+
+  private OPPObjectInstance add(OPPExecutionContext context, int amount) throws Exception {
+    OPPGlobalAddingProcessInstance instance = new OPPGlobalAddingProcessInstance();
+    instance.setContext(context);
+    instance.setArgument("name", OPPObjectInstance.createFromValue("counter"));
+    instance.setArgument("amount", OPPObjectInstance.createFromValue(new BigDecimal(amount)));
+    OPPScheduler.await(context.getScheduler().executeAsync(instance));
+    return instance.getArgument("value");
+  }
+
+  @Test
+  public void setMaxInlineFrames_DisabledByDefault() {
+    assertEquals(0, first.getMaxInlineFrames());
+    first.setMaxInlineFrames(64);
+    assertEquals(64, first.getMaxInlineFrames());
+    try {
+      first.setMaxInlineFrames(-1);
+      fail("Negative inline frames should not be allowed.");
+    } catch (IllegalArgumentException e) {
+      assertEquals(64, first.getMaxInlineFrames());
+    }
+  }
+
+  @Test
+  public void globalHeap_NotSharedBetweenContexts() throws Exception {
+    assertEquals(2, add(first, 2).getNumericalValue().intValue());
+    assertEquals(5, add(first, 3).getNumericalValue().intValue());
+    assertEquals(7, add(second, 7).getNumericalValue().intValue());
+    assertEquals(5, first.getGlobalHeap().getVariable("counter").getNumericalValue().intValue());
+  }
+
+  @Test
+  public void stop_OnlyStopsItsContext() throws Exception {
+    first.stop();
+    assertTrue(first.isStopped());
+    assertTrue(first.getScheduler().isTerminated());
+    assertFalse(second.isStopped());
+    assertEquals(1, add(second, 1).getNumericalValue().intValue());
+  }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.vainolo.phd.opp.interpreter.OPPGlobalHeap.OPPVersionedValue;
+import com.vainolo.phd.opp.interpreter.types.OPPNumberObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+
+public class OPPGlobalHeapTest {
+
+  private OPPGlobalHeap heap;
+
+  @Before
+  public void setUp() {
+    heap = new OPPGlobalHeap();
+  }
+
+  @Test
+  public void setAndClear_IncrementVersion() {
+    assertNull(heap.getVariable("a"));
+    assertEquals(0, heap.getVersionedVariable("a").getVersion());
+
+    heap.setVariable("a", OPPObjectInstance.createFromValue(1));
+    assertEquals(1, heap.getVersionedVariable("a").getVersion());
+    assertEquals(OPPObjectInstance.createFromValue(1), heap.getVariable("a"));
+
+    heap.clearVariable("a");
+    assertNull(heap.getVariable("a"));
+    assertEquals(2, heap.getVersionedVariable("a").getVersion());
+  }
+
+  @Test
+  public void compareAndSet_FailsWhenVersionChanged() {
+    heap.setVariable("a", OPPObjectInstance.createFromValue(1));
+    OPPVersionedValue read = heap.getVersionedVariable("a");
+
+    heap.setVariable("a", OPPObjectInstance.createFromValue(2));
+    assertFalse(heap.compareAndSetVariable("a", read.getVersion(), OPPObjectInstance.createFromValue(3)));
+    assertEquals(OPPObjectInstance.createFromValue(2), heap.getVariable("a"));
+
+    read = heap.getVersionedVariable("a");
+    assertTrue(heap.compareAndSetVariable("a", read.getVersion(), OPPObjectInstance.createFromValue(3)));
+    assertEquals(OPPObjectInstance.createFromValue(3), heap.getVariable("a"));
+  }
+
+  @Test
+  public void updateVariable_ConcurrentUpdatesAreNotLost() throws Exception {
+    int threads = 8;
+    int updates = 10000;
+    OPPNumberObjectInstance one = OPPNumberObjectInstance.toNumber(OPPObjectInstance.createFromValue(1));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Callable<Void>> tasks = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        tasks.add(() -> {
+          for (int j = 0; j < updates; j++) {
+            heap.updateVariable("counter", v -> v == null ? one : OPPNumberObjectInstance.toNumber(v).add(one));
+          }
+          return null;
+        });
+      }
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(OPPObjectInstance.createFromValue(threads * updates), heap.getVariable("counter"));
+    assertEquals(threads * updates, heap.getVersionedVariable("counter").getVersion());
+  }
+}
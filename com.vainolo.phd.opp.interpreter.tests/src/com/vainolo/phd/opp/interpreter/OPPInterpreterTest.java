@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class OPPInterpreterTest {
+
+  @After
+  public void tearDown() {
+    OPPInterpreter.INSTANCE.resetContext(null);
+  }
+
+  @Test
+  public void getContext_ReturnsTheStoppedContext() {
+    OPPExecutionContext context = OPPInterpreter.INSTANCE.resetContext(null);
+    OPPInterpreter.INSTANCE.stopExecution();
+    assertSame(context, OPPInterpreter.INSTANCE.getContext());
+    assertTrue(OPPInterpreter.INSTANCE.isStopped());
+    assertTrue(OPPInterpreter.INSTANCE.getScheduler().isShutdown());
+  }
+
+  @Test
+  public void resetContext_ClosesThePreviousContext() {
+    OPPExecutionContext previous = OPPInterpreter.INSTANCE.resetContext(null);
+    OPPExecutionContext context = OPPInterpreter.INSTANCE.resetContext(null);
+    assertNotSame(previous, context);
+    assertSame(context, OPPInterpreter.INSTANCE.getContext());
+    assertTrue(previous.getScheduler().isShutdown());
+    assertFalse(context.getScheduler().isShutdown());
+    assertFalse(OPPInterpreter.INSTANCE.isStopped());
+  }
+}
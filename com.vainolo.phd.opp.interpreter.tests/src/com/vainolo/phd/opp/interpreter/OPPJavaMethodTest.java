@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.vainolo.phd.opp.interpreter.types.OPPListObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+
+public class OPPJavaMethodTest {
+
+  @Test
+  public void forSignature_ParsedOnce() {
+    assertSame(OPPJavaMethod.forSignature("java.lang.Math.max(long, long)"), OPPJavaMethod.forSignature("java.lang.Math.max(long, long)"));
+  }
+
+  @Test
+  public void invoke_StaticMethod() {
+    OPPJavaMethod method = OPPJavaMethod.parse("java.lang.Math.max(long, long)");
+    assertTrue(method.isStatic());
+    assertEquals(OPPObjectInstance.createFromValue(9), method.invoke(null, OPPObjectInstance.createFromValue(3), OPPObjectInstance.createFromValue(9)));
+  }
+
+  @Test
+  public void invoke_InstanceMethodOnTarget() {
+    OPPJavaMethod method = OPPJavaMethod.parse("java.lang.String.substring(int,int)");
+    OPPObjectInstance result = method.invoke(OPPObjectInstance.createFromValue("hello"), OPPObjectInstance.createFromValue(1),
+        OPPObjectInstance.createFromValue(3));
+    assertEquals("el", result.getStringValue());
+  }
+
+  @Test
+  public void invoke_InstanceMethodOnNewTarget() {
+    assertEquals(OPPObjectInstance.createFromValue(0), OPPJavaMethod.parse("java.util.ArrayList.size()").invoke(null));
+  }
+
+  @Test
+  public void invoke_VoidMethodHasNoResult() {
+    OPPJavaMethod method = OPPJavaMethod.parse("java.lang.Thread.yield()");
+    assertFalse(method.hasResult());
+    assertNull(method.invoke(null));
+  }
+
+  @Test
+  public void invoke_ConvertsBooleansAndLists() {
+    assertEquals("yes", OPPJavaMethod.parse("java.lang.Boolean.logicalAnd(boolean, boolean)")
+        .invoke(null, OPPObjectInstance.createFromValue("yes"), OPPObjectInstance.createFromValue("true")).getStringValue());
+
+    OPPListObjectInstance list = OPPObjectInstance.createListInstance();
+    list.addLast(OPPObjectInstance.createFromValue(1));
+    list.addLast(OPPObjectInstance.createFromValue("two"));
+    OPPListObjectInstance copy = (OPPListObjectInstance) OPPJavaMethod.parse("java.util.Collections.unmodifiableList(java.util.List)").invoke(null,
+        list);
+    assertEquals(2, copy.count());
+    assertEquals(OPPObjectInstance.createFromValue(1), copy.get(1));
+    assertEquals("two", copy.get(2).getStringValue());
+  }
+
+  @Test(expected = OPPRuntimeException.class)
+  public void parse_UnknownMethod() {
+    OPPJavaMethod.parse("java.lang.Math.nothing(long)");
+  }
+
+  @Test(expected = OPPRuntimeException.class)
+  public void invoke_MissingArgument() {
+    OPPJavaMethod.parse("java.lang.Math.abs(long)").invoke(null, (OPPObjectInstance) null);
+  }
+}
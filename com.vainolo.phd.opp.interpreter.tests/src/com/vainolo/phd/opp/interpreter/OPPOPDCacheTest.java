@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlan;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlanCache;
+import com.vainolo.phd.opp.model.OPPFactory;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+
+public class OPPOPDCacheTest {
+
+  private Map<String, Integer> loads;
+  private OPPOPDCache cache;
+
+  @Before
+  public void setUp() {
+    loads = Maps.newHashMap();
+    cache = new OPPOPDCache(2, path -> {
+      loads.merge(path, 1, Integer::sum);
+      if (path.startsWith("missing")) {
+        return null;
+      }
+      OPPObjectProcessDiagram opd = OPPFactory.eINSTANCE.createOPPObjectProcessDiagram();
+      opd.setName(path);
+      return opd;
+    });
+  }
+
+  @Test
+  public void get_SameFileLoadedOnce() {
+    OPPObjectProcessDiagram opd = cache.get("a.opp", 1);
+    assertSame(opd, cache.get("a.opp", 1));
+    assertEquals(1, loads.get("a.opp").intValue());
+    assertEquals(2, cache.getRequestCount());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void get_ModifiedFileIsReloaded() {
+    OPPObjectProcessDiagram opd = cache.get("a.opp", 1);
+    OPPObjectProcessDiagram reloaded = cache.get("a.opp", 2);
+    assertNotSame(opd, reloaded);
+    assertSame(reloaded, cache.get("a.opp", 2));
+    assertEquals(2, loads.get("a.opp").intValue());
+  }
+
+  @Test
+  public void get_LeastRecentlyUsedIsEvicted() {
+    cache.get("a.opp", 1);
+    cache.get("b.opp", 1);
+    cache.get("a.opp", 1);
+    cache.get("c.opp", 1);
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    cache.get("a.opp", 1);
+    assertEquals(1, loads.get("a.opp").intValue());
+    cache.get("b.opp", 1);
+    assertEquals(2, loads.get("b.opp").intValue());
+  }
+
+  @Test
+  public void get_FailedLoadIsNotCached() {
+    assertNull(cache.get("missing.opp", 1));
+    assertNull(cache.get("missing.opp", 1));
+    assertEquals(2, loads.get("missing.opp").intValue());
+    assertEquals(2, cache.getLoadFailureCount());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void get_PlanOfAReplacedDiagramIsDiscarded() {
+    OPPInZoomedProcessExecutionPlan plan = OPPInZoomedProcessExecutionPlanCache.get(cache.get("a.opp", 1));
+    assertFalse(plan.isDiscarded());
+    cache.get("a.opp", 2);
+    assertTrue(plan.isDiscarded());
+  }
+
+  @Test
+  public void invalidate_FileIsReloaded() {
+    cache.get("a.opp", 1);
+    cache.invalidate("a.opp");
+    cache.get("a.opp", 1);
+    assertEquals(2, loads.get("a.opp").intValue());
+  }
+}
@@ -12,6 +12,7 @@ import java.util.Random;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.vainolo.phd.opp.interpreter.types.OPPNumberObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance.InstanceKind;
 
@@ -61,6 +62,40 @@ public class OPPObjectInstanceTest {
     assertEquals(number1.toString(), instance1.getStringValue());
   }
 
+  @Test
+  public void test_LongArithmeticOverflowIsPromoted() {
+    OPPNumberObjectInstance max = OPPObjectInstance.createFromValue(Long.MAX_VALUE);
+    OPPNumberObjectInstance sum = max.add(OPPObjectInstance.createFromValue(1));
+    assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.ONE), sum.getNumericalValue());
+    assertFalse(sum.isLong());
+    assertEquals(max, sum.subtract(OPPObjectInstance.createFromValue(1)));
+    assertTrue(sum.subtract(OPPObjectInstance.createFromValue(1)).isLong());
+  }
+
+  @Test
+  public void test_PowMatchesBigDecimal() {
+    long[] bases = { 0, 1, -1, 2, -3, 7, 10, 3037000499L, Long.MAX_VALUE, Long.MIN_VALUE };
+    int[] exponents = { 0, 1, 2, 3, 10, 31, 62, 63, 64, 100, 1000000 };
+    for (long base : bases) {
+      for (int exponent : exponents) {
+        if (Math.abs(base) > 1 && exponent > 1000) {
+          continue;
+        }
+        OPPNumberObjectInstance result = OPPObjectInstance.createFromValue(base).pow(exponent);
+        assertEquals(base + "^" + exponent, 0, BigDecimal.valueOf(base).pow(exponent).compareTo(result.getNumericalValue()));
+      }
+    }
+  }
+
+  @Test
+  public void test_NumericalEqualityIgnoresScale() {
+    instance1 = OPPObjectInstance.createFromValue(new BigDecimal("2.0"));
+    instance2 = OPPObjectInstance.createFromValue(2);
+    assertEquals(instance1, instance2);
+    assertEquals(instance1.hashCode(), instance2.hashCode());
+    assertEquals("2.0", instance1.getStringValue());
+  }
+
   @Before
   public void setUp() {
     Random r = new Random();
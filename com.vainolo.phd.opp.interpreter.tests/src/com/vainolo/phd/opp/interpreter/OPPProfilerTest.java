@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vainolo.phd.opp.interpreter.OPPProfiler.OPPProcessStatistics;
+
+public class OPPProfilerTest {
+
+  private OPPProfiler profiler;
+
+  @Before
+  public void setUp() {
+    profiler = new OPPProfiler();
+  }
+
+  private OPPProcessProfile execute(String name, OPPProcessProfile parent, boolean async) {
+    OPPProcessProfile profile = profiler.createProfile(name, parent);
+    profile.argumentsLoaded(System.nanoTime());
+    profile.submitted();
+    profile.started(async);
+    profile.finished();
+    profile.resultsExtracted(System.nanoTime());
+    profiler.record(profile);
+    return profile;
+  }
+
+  @Test
+  public void getStatistics_AggregatesByName() {
+    OPPProcessProfile root = profiler.createProfile("root", null);
+    for (int i = 0; i < 100; i++) {
+      execute("a", root, false);
+    }
+    execute("b", root, false);
+
+    List<OPPProcessStatistics> statistics = profiler.getStatistics();
+    assertEquals(2, statistics.size());
+    OPPProcessStatistics a = statistics.stream().filter(s -> s.getName().equals("a")).findFirst().get();
+    assertEquals(100, a.getCount());
+    assertTrue(a.getP50ExecutionTime() <= a.getP99ExecutionTime());
+    assertTrue(a.getP99ExecutionTime() <= a.getMaxExecutionTime());
+    assertTrue(a.getMaxExecutionTime() <= a.getTotalExecutionTime());
+  }
+
+  @Test
+  public void createProfile_RecordsParentAndThread() {
+    OPPProcessProfile root = profiler.createProfile("root", null);
+    OPPProcessProfile child = execute("child", root, false);
+
+    assertSame(root, child.getParent());
+    assertEquals(Thread.currentThread().getName(), child.getThread());
+    assertEquals(Thread.currentThread().getName(), child.getArgumentLoadingThread());
+    assertTrue(child.getQueueWaitTime() >= 0);
+    assertNotEquals(root.getId(), child.getId());
+  }
+
+  @Test
+  public void createProfile_StagesAreNotRecordedUntilTheyHappen() {
+    OPPProcessProfile profile = profiler.createProfile("stopped", null);
+    assertFalse(profile.isStarted());
+    assertFalse(profile.isFinished());
+
+    profile.submitted();
+    profile.started(true);
+    assertTrue(profile.isStarted());
+    assertFalse(profile.isFinished());
+    assertTrue(profile.getQueueWaitTime() >= 0);
+    assertEquals(0, profile.getExecutionTime());
+
+    profile.finished();
+    assertTrue(profile.isFinished());
+    assertTrue(profile.getExecutionTime() >= 0);
+  }
+}
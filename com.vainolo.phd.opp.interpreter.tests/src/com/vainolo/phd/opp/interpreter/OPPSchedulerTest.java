@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPBlockingExecution;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPSchedulerKind;
+
+public class OPPSchedulerTest {
+  private static final int PARALLELISM = 2;
+
+  private OPPScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    scheduler = new OPPScheduler(OPPSchedulerKind.FORK_JOIN, PARALLELISM, OPPBlockingExecution.SHARED);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Execute a task that blocks its thread until the task of the next level finishes.
+   */
+  private CompletableFuture<Integer> recurse(int depth) {
+    CompletableFuture<Integer> result = new CompletableFuture<>();
+    scheduler.execute(() -> {
+      try {
+        result.complete(depth == 0 ? 0 : OPPScheduler.await(recurse(depth - 1)) + 1);
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+
+  @Test
+  public void await_BlockingRecursionDeeperThanTheCompensatedWorkers() throws Exception {
+    int depth = OPPScheduler.MAX_COMPENSATED_WORKERS * 2 + PARALLELISM;
+    assertEquals(Integer.valueOf(depth), recurse(depth).get(60, TimeUnit.SECONDS));
+    assertEquals(0, scheduler.getBlockedWorkerCount());
+    assertTrue(scheduler.getPoolSize() <= PARALLELISM + OPPScheduler.MAX_COMPENSATED_WORKERS + 1);
+  }
+
+  @Test
+  public void await_ExecutesNewTasksInTheSchedulerAgainAfterTheRecursionEnds() throws Exception {
+    recurse(OPPScheduler.MAX_COMPENSATED_WORKERS + 10).get(60, TimeUnit.SECONDS);
+    CompletableFuture<Boolean> inPool = new CompletableFuture<>();
+    scheduler.execute(() -> inPool.complete(Thread.currentThread().getName().startsWith("OPP Worker")));
+    assertTrue(inPool.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void await_ThrowsTheExceptionOfTheStage() throws Exception {
+    CompletableFuture<Void> failed = new CompletableFuture<>();
+    scheduler.execute(() -> failed.completeExceptionally(new IllegalStateException()));
+    OPPScheduler.await(failed);
+  }
+}
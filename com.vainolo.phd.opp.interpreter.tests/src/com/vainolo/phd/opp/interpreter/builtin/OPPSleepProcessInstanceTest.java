@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.builtin;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vainolo.phd.opp.interpreter.OPPExecutionContext;
+import com.vainolo.phd.opp.interpreter.OPPScheduler;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPBlockingExecution;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPSchedulerKind;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+
+/**
+ * 
+ * @author Arieh 'Vainolo' Bibliowicz
+ * 
+ */
+public class OPPSleepProcessInstanceTest {
+
+  private OPPExecutionContext context;
+
+  @Before
+  public void setUp() {
+    context = new OPPExecutionContext(null, new OPPScheduler(OPPSchedulerKind.FORK_JOIN, 1, OPPBlockingExecution.SHARED), null, null);
+  }
+
+  @After
+  public void tearDown() {
+    context.close();
+  }
+
+  @Test
+  public void test_executeAsync_fractionOfASecond() throws Exception {
+    OPPSleepProcessInstance instance = new OPPSleepProcessInstance();
+    instance.setContext(context);
+    instance.setArgument("time", OPPObjectInstance.createFromValue(new BigDecimal("0.3")));
+
+    long start = System.nanoTime();
+    CompletableFuture<Boolean> continuedInScheduler = instance.executeAsync().toCompletableFuture()
+        .thenApply(result -> OPPScheduler.isSchedulerThread());
+    assertTrue(continuedInScheduler.get(10, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+  }
+}
@@ -9,12 +9,23 @@ package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
 import static org.junit.Assert.*;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Maps;
+import com.vainolo.phd.opp.interpreter.OPPExecutionContext;
+import com.vainolo.phd.opp.interpreter.OPPFileContainer;
 import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPProcessInstanceFactory;
+import com.vainolo.phd.opp.interpreter.OPPRuntimeException;
+import com.vainolo.phd.opp.interpreter.OPPScheduler;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPBlockingExecution;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPSchedulerKind;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 import com.vainolo.phd.opp.model.OPPFactory;
 import com.vainolo.phd.opp.model.OPPNode;
@@ -25,6 +36,7 @@ import com.vainolo.phd.opp.model.OPPProceduralLink;
 import com.vainolo.phd.opp.model.OPPProceduralLinkKind;
 import com.vainolo.phd.opp.model.OPPProcess;
 import com.vainolo.phd.opp.model.OPPProcessKind;
+import com.vainolo.phd.opp.utilities.OPPConstants;
 
 /**
  * 
@@ -63,6 +75,124 @@ public class OPPInZoomedProcessExecutableInstanceTest {
     return link;
   }
 
+  /**
+   * Create a diagram that calls a process with arguments <code>a</code> and <code>b</code> and stores its result in
+   * <code>c</code>.
+   */
+  private OPPObjectProcessDiagram createCallingOPD(String name, String calledProcessName, OPPProcessKind calledProcessKind) {
+    OPPObjectProcessDiagram opd = createInZoomedOPD(name);
+    OPPProcess inZoomedProcess = createProcess(name, OPPProcessKind.COMPOUND);
+    opd.getNodes().add(inZoomedProcess);
+
+    OPPProcess innerProcess = createProcess(calledProcessName, calledProcessKind);
+    inZoomedProcess.getNodes().add(innerProcess);
+    OPPObject object = createObject("a");
+    opd.getNodes().add(object);
+    opd.getLinks().add(createProceduralLink("a", OPPProceduralLinkKind.INSTRUMENT, object, innerProcess));
+    object = createObject("b");
+    opd.getNodes().add(object);
+    opd.getLinks().add(createProceduralLink("b", OPPProceduralLinkKind.INSTRUMENT, object, innerProcess));
+    object = createObject("c");
+    opd.getNodes().add(object);
+    opd.getLinks().add(createProceduralLink("c", OPPProceduralLinkKind.CONS_RES, innerProcess, object));
+    return opd;
+  }
+
+  /**
+   * Create the diagrams "Calling Twice", which calls "Calling", which calls "Calculating", which applies the given
+   * operator.
+   */
+  private Map<String, OPPObjectProcessDiagram> createNestedOPDs(String operator) {
+    Map<String, OPPObjectProcessDiagram> opds = Maps.newHashMap();
+    opds.put("Calling Twice", createCallingOPD("Calling Twice", "Calling", OPPProcessKind.COMPOUND));
+    opds.put("Calling", createCallingOPD("Calling", "Calculating", OPPProcessKind.COMPOUND));
+    opds.put("Calculating", createCallingOPD("Calculating", operator, OPPProcessKind.BUILT_IN));
+    return opds;
+  }
+
+  /**
+   * Create a context that executes inline the diagrams created by {@link #createNestedOPDs(String)}.
+   */
+  private OPPExecutionContext createNestedContext(String operator) {
+    return createContext(createNestedOPDs(operator));
+  }
+
+  private OPPExecutionContext createContext(Map<String, OPPObjectProcessDiagram> opds) {
+    OPPFileContainer container = new OPPFileContainer() {
+      @Override
+      public OPPObjectProcessDiagram getOPD(String opdName) {
+        return opds.get(opdName);
+      }
+
+      @Override
+      public Path getLocation(String path) {
+        return null;
+      }
+    };
+    OPPExecutionContext context = new OPPExecutionContext(container, new OPPScheduler(OPPSchedulerKind.FORK_JOIN, 2, OPPBlockingExecution.SHARED),
+        null, null);
+    context.setMaxInlineFrames(1);
+    return context;
+  }
+
+  @Test
+  public void test_execute_nestedDiagramsInline() throws Exception {
+    OPPExecutionContext context = createNestedContext("+");
+    try {
+      OPPProcessInstance instance = OPPProcessInstanceFactory.createExecutableInstance("Calling Twice", context);
+      instance.setArgument("a", OPPObjectInstance.createFromValue(3));
+      instance.setArgument("b", OPPObjectInstance.createFromValue(4));
+      context.getScheduler().executeAsync(instance).toCompletableFuture().get(10, TimeUnit.SECONDS);
+      assertEquals(7, instance.getArgument("c").getNumericalValue().intValue());
+    } finally {
+      context.close();
+    }
+  }
+
+  @Test
+  public void test_execute_nestedDiagramFailureCompletesTheCaller() throws Exception {
+    OPPExecutionContext context = createNestedContext("/");
+    try {
+      OPPProcessInstance instance = OPPProcessInstanceFactory.createExecutableInstance("Calling Twice", context);
+      instance.setArgument("a", OPPObjectInstance.createFromValue(1));
+      instance.setArgument("b", OPPObjectInstance.createFromValue(0));
+      context.getScheduler().executeAsync(instance).toCompletableFuture().get(10, TimeUnit.SECONDS);
+      fail("Dividing by zero should fail the execution.");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof OPPRuntimeException);
+    } finally {
+      context.close();
+    }
+  }
+
+  private int execute(OPPExecutionContext context, String opdName, int a, int b) throws Exception {
+    OPPProcessInstance instance = OPPProcessInstanceFactory.createExecutableInstance(opdName, context);
+    instance.setArgument("a", OPPObjectInstance.createFromValue(a));
+    instance.setArgument("b", OPPObjectInstance.createFromValue(b));
+    context.getScheduler().executeAsync(instance).toCompletableFuture().get(10, TimeUnit.SECONDS);
+    return instance.getArgument("c").getNumericalValue().intValue();
+  }
+
+  @Test
+  public void test_execute_memoizedResultsDependOnTheCalledDiagrams() throws Exception {
+    Map<String, OPPObjectProcessDiagram> opds = createNestedOPDs("+");
+    OPPInZoomedProcessExecutionPlanCache.get(opds.get("Calling Twice")).getMainProcess().setDescription(OPPConstants.OPP_PURE_PROCESS_MARKER);
+    OPPExecutionContext context = createContext(opds);
+    try {
+      OPPInZoomedProcessResultCache results = OPPInZoomedProcessResultCache.getInstance();
+      assertEquals(1043, execute(context, "Calling Twice", 1021, 22));
+      long hits = results.getStats().hitCount();
+      assertEquals(1043, execute(context, "Calling Twice", 1021, 22));
+      assertEquals(hits + 1, results.getStats().hitCount());
+
+      OPPProcess operator = OPPInZoomedProcessExecutionPlanCache.get(opds.get("Calculating")).getSortedProcesses().get(0);
+      operator.setName("*");
+      assertEquals(22462, execute(context, "Calling Twice", 1021, 22));
+    } finally {
+      context.close();
+    }
+  }
+
   @Test
   public void test_execute_addTwoNumbers() throws Exception {
     OPPObjectProcessDiagram opd = createInZoomedOPD("Adding Two Numbers");
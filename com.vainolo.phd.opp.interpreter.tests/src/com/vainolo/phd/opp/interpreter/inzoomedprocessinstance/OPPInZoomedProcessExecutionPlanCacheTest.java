@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlanCache.OPPPlanAdapter;
+import com.vainolo.phd.opp.model.OPPFactory;
+import com.vainolo.phd.opp.model.OPPObject;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagramKind;
+import com.vainolo.phd.opp.model.OPPProcess;
+import com.vainolo.phd.opp.model.OPPProcessKind;
+
+public class OPPInZoomedProcessExecutionPlanCacheTest {
+
+  private OPPObjectProcessDiagram opd;
+  private OPPProcess inZoomedProcess;
+
+  private OPPProcess createProcess(String name) {
+    OPPProcess process = OPPFactory.eINSTANCE.createOPPProcess();
+    process.setKind(OPPProcessKind.BUILT_IN);
+    process.setName(name);
+    return process;
+  }
+
+  @Before
+  public void setUp() {
+    opd = OPPFactory.eINSTANCE.createOPPObjectProcessDiagram();
+    opd.setKind(OPPObjectProcessDiagramKind.COMPOUND);
+    opd.setName("Main");
+    inZoomedProcess = createProcess("Main");
+    inZoomedProcess.setKind(OPPProcessKind.COMPOUND);
+    opd.getNodes().add(inZoomedProcess);
+    inZoomedProcess.getNodes().add(createProcess("+"));
+  }
+
+  @Test
+  public void get_SamePlanUntilTheDiagramChanges() {
+    OPPInZoomedProcessExecutionPlan plan = OPPInZoomedProcessExecutionPlanCache.get(opd);
+    assertSame(plan, OPPInZoomedProcessExecutionPlanCache.get(opd));
+    assertEquals(1, plan.getSortedProcesses().size());
+
+    inZoomedProcess.getNodes().add(createProcess("-"));
+    OPPInZoomedProcessExecutionPlan changedPlan = OPPInZoomedProcessExecutionPlanCache.get(opd);
+    assertNotSame(plan, changedPlan);
+    assertEquals(2, changedPlan.getSortedProcesses().size());
+
+    OPPInZoomedProcessExecutionPlanCache.invalidate(opd);
+    assertNotSame(changedPlan, OPPInZoomedProcessExecutionPlanCache.get(opd));
+  }
+
+  @Test
+  public void get_ConcurrentCallsInstallOneAdapter() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<OPPInZoomedProcessExecutionPlan>> plans = Lists.newArrayList();
+      for (int i = 0; i < 64; i++) {
+        plans.add(executor.submit(() -> OPPInZoomedProcessExecutionPlanCache.get(opd)));
+      }
+      for (Future<OPPInZoomedProcessExecutionPlan> plan : plans) {
+        assertNotNull(plan.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    int planAdapters = 0;
+    for (Adapter adapter : opd.eAdapters()) {
+      if (adapter instanceof OPPPlanAdapter) {
+        planAdapters++;
+      }
+    }
+    assertEquals(1, planAdapters);
+    assertSame(OPPInZoomedProcessExecutionPlanCache.get(opd), OPPInZoomedProcessExecutionPlanCache.get(opd));
+  }
+
+  @Test
+  public void getProcessPlanAndGetObjectPlan_ElementsOutsideTheDiagramAreAnalyzedOnce() {
+    OPPInZoomedProcessExecutionPlan plan = OPPInZoomedProcessExecutionPlanCache.get(opd);
+    OPPProcess process = createProcess("*");
+    OPPObject object = OPPFactory.eINSTANCE.createOPPObject();
+    object.setName("a");
+
+    assertSame(plan.getProcessPlan(process), plan.getProcessPlan(process));
+    assertSame(plan.getObjectPlan(object), plan.getObjectPlan(object));
+    assertEquals(-1, plan.getObjectPlan(object).getIndex());
+  }
+}
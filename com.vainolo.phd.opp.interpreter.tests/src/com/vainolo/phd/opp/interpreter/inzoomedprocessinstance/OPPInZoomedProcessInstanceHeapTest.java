@@ -8,8 +8,6 @@ package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
 
 import java.math.BigDecimal;
 import java.util.List;
-import java.util.Observable;
-import java.util.Observer;
 
 import static org.junit.Assert.*;
 
@@ -18,13 +16,13 @@ import org.junit.Test;
 
 import com.google.common.collect.Lists;
 import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessInstanceHeap;
-import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessInstanceHeap.OPMHeapChange;
 import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessInstanceHeap.OPMHeapChangeType;
 import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance.InstanceKind;
 import com.vainolo.phd.opp.model.OPPFactory;
 import com.vainolo.phd.opp.model.OPPObject;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
 import com.vainolo.phd.opp.model.OPPStructuralLinkAggregator;
 import com.vainolo.phd.opp.model.OPPStructuralLinkAggregatorKind;
 import com.vainolo.phd.opp.model.OPPStructuralLinkPart;
@@ -34,7 +32,7 @@ public class OPPInZoomedProcessInstanceHeapTest {
   private OPPInZoomedProcessInstanceHeap heap;
   private OPPObject obj1, obj2, obj3, part1, part2, part11, objPart12;
   private OPPObjectInstance inst1, inst2, inst3;
-  private MyObserver observer;
+  private OPPInZoomedProcessHeapJournal journal;
   private OPPObjectInstance compInst1;
   private OPPObjectInstance compInst2;
 
@@ -47,15 +45,43 @@ public class OPPInZoomedProcessInstanceHeapTest {
 
   @Test
   public void createVariable_ReceiveNotification() {
-    heap.addObserver(observer);
     heap.setVariable(obj1, inst1);
-    assertEquals(inst1.getNumericalValue(), observer.changes.get(0).objectInstance.getNumericalValue());
+    assertEquals(inst1.getNumericalValue(), journal.getInstance(journal.size() - 1).getNumericalValue());
     heap.setVariable(obj1, inst2);
-    assertEquals(inst2.getNumericalValue(), observer.changes.get(0).objectInstance.getNumericalValue());
+    assertEquals(inst2.getNumericalValue(), journal.getInstance(journal.size() - 1).getNumericalValue());
     heap.setVariable(obj2, inst2);
-    assertEquals(inst2.getNumericalValue(), observer.changes.get(0).objectInstance.getNumericalValue());
+    assertEquals(inst2.getNumericalValue(), journal.getInstance(journal.size() - 1).getNumericalValue());
     heap.setVariable(obj1, inst3);
-    assertEquals(inst3.getNumericalValue(), observer.changes.get(0).objectInstance.getNumericalValue());
+    assertEquals(inst3.getNumericalValue(), journal.getInstance(journal.size() - 1).getNumericalValue());
+    assertEquals(4, journal.size());
+  }
+
+  @Test
+  public void drainJournal_ReportsEveryChangedObjectOnce() {
+    createAggregationRelation(obj1, part1);
+    OPPObjectProcessDiagram opd = OPPFactory.eINSTANCE.createOPPObjectProcessDiagram();
+    opd.getNodes().addAll(Lists.newArrayList(obj1, obj2, obj3, part1));
+    heap = new OPPInZoomedProcessInstanceHeap(OPPInZoomedProcessExecutionPlan.compile(opd));
+    journal = heap.getJournal();
+
+    heap.setVariable(obj2, inst1);
+    heap.setVariable(part1, inst2);
+    heap.setVariable(obj2, inst3);
+
+    List<OPPObject> changed = Lists.newArrayList();
+    journal.drain(changed::add);
+
+    assertEquals(0, journal.size());
+    assertEquals(3, changed.size());
+    assertTrue(changed.containsAll(Lists.newArrayList(obj1, obj2, part1)));
+
+    for (int i = 0; i < 100; i++) {
+      heap.setVariable(obj3, inst1);
+    }
+    assertEquals(100, journal.size());
+    changed.clear();
+    journal.drain(changed::add);
+    assertEquals(1, changed.size());
   }
 
   @Test
@@ -74,19 +100,17 @@ public class OPPInZoomedProcessInstanceHeapTest {
   @Test
   public void createVariablePart_ValidateNotificationOfParentAndPart() {
     createAggregationRelation(obj1, part1);
-    MyObserver observer = new MyObserver();
-    heap.addObserver(observer);
 
     heap.setVariable(part1, inst1);
 
-    assertEquals(2, observer.changes.size());
-    assertEquals(OPMHeapChangeType.PART_ADDED, observer.changes.get(0).changeType);
-    assertEquals(obj1, observer.changes.get(0).object);
-    assertEquals(part1, observer.changes.get(0).child);
-    assertEquals(inst1.getNumericalValue(), observer.changes.get(0).childInstance.getNumericalValue());
-    assertEquals(OPMHeapChangeType.VARIABLE_SET, observer.changes.get(1).changeType);
-    assertTrue(observer.changes.get(1).objectInstance.kind == InstanceKind.COMPOSITE);
-    assertEquals(inst1.getNumericalValue(), ((OPPComplexObjectInstance) observer.changes.get(0).objectInstance).getPart(part1.getName()).getNumericalValue());
+    assertEquals(2, journal.size());
+    assertEquals(OPMHeapChangeType.PART_ADDED, journal.getType(1));
+    assertEquals(obj1, journal.getObject(1));
+    assertEquals(part1, journal.getChild(1));
+    assertEquals(inst1.getNumericalValue(), heap.getVariable(journal.getChild(1)).getNumericalValue());
+    assertEquals(OPMHeapChangeType.VARIABLE_SET, journal.getType(0));
+    assertTrue(journal.getInstance(0).kind == InstanceKind.COMPOSITE);
+    assertEquals(inst1.getNumericalValue(), ((OPPComplexObjectInstance) journal.getInstance(1)).getPart(part1.getName()).getNumericalValue());
   }
 
   @Test
@@ -124,7 +148,6 @@ public class OPPInZoomedProcessInstanceHeapTest {
   @Before
   public void setup() {
     heap = new OPPInZoomedProcessInstanceHeap();
-    observer = new MyObserver();
 
     obj1 = OPPFactory.eINSTANCE.createOPPObject();
     obj1.setName("Obj1");
@@ -147,6 +170,7 @@ public class OPPInZoomedProcessInstanceHeapTest {
     compInst1 = OPPObjectInstance.createCompositeInstance();
     compInst2 = OPPObjectInstance.createCompositeInstance();
 
+    journal = heap.getJournal();
   }
 
   private void createAggregationRelation(OPPObject parent, OPPObject child) {
@@ -159,13 +183,4 @@ public class OPPInZoomedProcessInstanceHeapTest {
     link.setSource(agg);
     link.setTarget(child);
   }
-
-  class MyObserver implements Observer {
-    public List<OPMHeapChange> changes = Lists.newArrayList();
-
-    @Override
-    public void update(Observable o, Object arg) {
-      changes.add(0, OPMHeapChange.class.cast(arg));
-    }
-  }
 }
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.vainolo.phd.opp.model.OPPFactory;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagramKind;
+import com.vainolo.phd.opp.model.OPPProcess;
+import com.vainolo.phd.opp.model.OPPProcessKind;
+
+public class OPPInZoomedProcessIntervalIndexTest {
+
+  private OPPObjectProcessDiagram opd;
+  private OPPProcess inZoomedProcess;
+  private OPPInZoomedProcessExecutionPlan plan;
+  private List<OPPProcess> sortedProcesses;
+
+  private OPPProcess createProcess(String name, int y, int height) {
+    OPPProcess process = OPPFactory.eINSTANCE.createOPPProcess();
+    process.setKind(OPPProcessKind.BUILT_IN);
+    process.setName(name);
+    process.setY(y);
+    process.setHeight(height);
+    inZoomedProcess.getNodes().add(process);
+    return process;
+  }
+
+  /**
+   * The search that the index replaced: go over the sorted processes until one starts after the position.
+   */
+  private int findNextStartByScanning(int position) {
+    for (OPPProcess process : sortedProcesses) {
+      if (process.getY() > position) {
+        return process.getY();
+      }
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  private List<OPPProcess> findProcessesStartingAtByScanning(int position) {
+    List<OPPProcess> processesAtPosition = Lists.newArrayList();
+    for (OPPProcess process : sortedProcesses) {
+      if (process.getY() == position)
+        processesAtPosition.add(process);
+      if (process.getY() > position)
+        break;
+    }
+    return processesAtPosition;
+  }
+
+  private List<OPPProcess> findNextProcessesByScanning(int position, List<OPPProcess> active) {
+    List<OPPProcess> processesAtPosition = findProcessesStartingAtByScanning(position);
+    if (processesAtPosition.isEmpty()) {
+      return Collections.emptyList();
+    }
+    for (OPPProcess activeProcess : active) {
+      if (processesAtPosition.get(0).getY() > activeProcess.getY() + activeProcess.getHeight()) {
+        return Collections.emptyList();
+      }
+    }
+    return processesAtPosition;
+  }
+
+  @Before
+  public void setUp() {
+    opd = OPPFactory.eINSTANCE.createOPPObjectProcessDiagram();
+    opd.setKind(OPPObjectProcessDiagramKind.COMPOUND);
+    opd.setName("Main");
+    inZoomedProcess = OPPFactory.eINSTANCE.createOPPProcess();
+    inZoomedProcess.setKind(OPPProcessKind.COMPOUND);
+    inZoomedProcess.setName("Main");
+    opd.getNodes().add(inZoomedProcess);
+
+    // Processes that start together, empty spans, overlapping spans and a span inside another
+    createProcess("Last", 100, 10);
+    createProcess("Long", 10, 60);
+    createProcess("Empty", 10, 0);
+    createProcess("Overlapping", 25, 30);
+    createProcess("Inside", 40, 5);
+    createProcess("Empty Inside", 40, 0);
+    createProcess("Touching", 70, 0);
+    plan = OPPInZoomedProcessExecutionPlan.compile(opd);
+    sortedProcesses = plan.getSortedProcesses();
+  }
+
+  @Test
+  public void getNextStartAndProcessesStartingAt_SameAsScanningTheProcesses() {
+    OPPInZoomedProcessIntervalIndex index = plan.getIntervalIndex();
+    for (int position = -5; position <= 120; position++) {
+      assertEquals("Position " + position, findNextStartByScanning(position), index.getNextStart(position));
+      assertEquals("Position " + position, findProcessesStartingAtByScanning(position), index.getProcessesStartingAt(position));
+    }
+    assertEquals(ImmutableList.of(sortedProcesses.get(0), sortedProcesses.get(1)), index.getProcessesStartingAt(10));
+  }
+
+  @Test
+  public void getNextStart_NoProcesses() {
+    OPPInZoomedProcessIntervalIndex index = new OPPInZoomedProcessIntervalIndex(ImmutableList.of());
+    assertEquals(Integer.MAX_VALUE, index.getNextStart(0));
+    assertEquals(Integer.MAX_VALUE, index.getNextStart(-1));
+    assertTrue(index.getProcessesStartingAt(0).isEmpty());
+  }
+
+  @Test
+  public void getNextProcesses_SameAsScanningTheActiveProcesses() {
+    // Every subset of active processes at every start
+    for (int subset = 0; subset < 1 << sortedProcesses.size(); subset++) {
+      OPPInZoomedProcessIntanceProgramCounter pc = new OPPInZoomedProcessIntanceProgramCounter(plan);
+      List<OPPProcess> active = Lists.newArrayList();
+      for (int i = 0; i < sortedProcesses.size(); i++) {
+        if ((subset & (1 << i)) != 0) {
+          active.add(sortedProcesses.get(i));
+          pc.addActiveProcess(sortedProcesses.get(i));
+        }
+      }
+      for (int position = 0; position != Integer.MAX_VALUE; position = plan.getIntervalIndex().getNextStart(position)) {
+        pc.setPC(position);
+        assertEquals("Active " + active + " at " + position, findNextProcessesByScanning(position, active), pc.getNextProcesses());
+      }
+      if (!active.isEmpty()) {
+        pc.removeActiveProcess(active.get(0));
+        active.remove(0);
+        pc.setPC(100);
+        assertEquals(findNextProcessesByScanning(100, active), pc.getNextProcesses());
+      }
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlan.OPPProcessPlan;
+import com.vainolo.phd.opp.model.OPPFactory;
+import com.vainolo.phd.opp.model.OPPNode;
+import com.vainolo.phd.opp.model.OPPObject;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagramKind;
+import com.vainolo.phd.opp.model.OPPProceduralLink;
+import com.vainolo.phd.opp.model.OPPProceduralLinkKind;
+import com.vainolo.phd.opp.model.OPPProcess;
+import com.vainolo.phd.opp.model.OPPProcessKind;
+import com.vainolo.phd.opp.model.OPPStructuralLinkAggregator;
+import com.vainolo.phd.opp.model.OPPStructuralLinkAggregatorKind;
+import com.vainolo.phd.opp.model.OPPStructuralLinkPart;
+import com.vainolo.phd.opp.utilities.analysis.OPPLinkExtensions;
+
+public class OPPInZoomedProcessReadinessIndexTest {
+
+  private OPPObjectProcessDiagram opd;
+  private OPPProcess inZoomedProcess;
+  private OPPObject a, b, whole, part, global;
+  private List<OPPObject> objects;
+  private List<OPPProcess> processes;
+  private OPPInZoomedProcessExecutionPlan plan;
+  private Set<OPPObject> readyObjects;
+  private OPPInZoomedProcessReadinessIndex index;
+
+  private OPPObject createObject(String name) {
+    OPPObject object = OPPFactory.eINSTANCE.createOPPObject();
+    object.setName(name);
+    inZoomedProcess.getNodes().add(object);
+    return object;
+  }
+
+  private OPPProcess createProcess(String name) {
+    OPPProcess process = OPPFactory.eINSTANCE.createOPPProcess();
+    process.setKind(OPPProcessKind.BUILT_IN);
+    process.setName(name);
+    inZoomedProcess.getNodes().add(process);
+    processes.add(process);
+    return process;
+  }
+
+  private void createProceduralLink(OPPProceduralLinkKind kind, OPPNode source, OPPNode target) {
+    OPPProceduralLink link = OPPFactory.eINSTANCE.createOPPProceduralLink();
+    link.setKind(kind);
+    link.setSource(source);
+    link.setTarget(target);
+    opd.getLinks().add(link);
+  }
+
+  private void createAggregationRelation(OPPObject parent, OPPObject child) {
+    OPPStructuralLinkPart link = OPPFactory.eINSTANCE.createOPPStructuralLinkPart();
+    OPPStructuralLinkAggregator agg = OPPFactory.eINSTANCE.createOPPStructuralLinkAggregator();
+    agg.setKind(OPPStructuralLinkAggregatorKind.AGGREGATION);
+    link.setSource(parent);
+    link.setTarget(agg);
+    link = OPPFactory.eINSTANCE.createOPPStructuralLinkPart();
+    link.setSource(agg);
+    link.setTarget(child);
+  }
+
+  /**
+   * The check that the index replaced: go over all the links of every waiting process.
+   */
+  private Set<OPPProcess> findReadyByScanning(Set<OPPProcess> waiting) {
+    Set<OPPProcess> ready = Sets.newHashSet();
+    for (OPPProcess process : waiting) {
+      OPPProcessPlan processPlan = plan.getProcessPlan(process);
+      if (processPlan.getIncomingDataLinks().stream().allMatch(this::isLinkSourceReady)
+          && processPlan.getIncomingNonEventAgentLinks().stream().allMatch(this::isLinkSourceReady)) {
+        ready.add(process);
+      }
+    }
+    return ready;
+  }
+
+  private boolean isLinkSourceReady(OPPProceduralLink link) {
+    return readyObjects.contains(OPPLinkExtensions.getSourceObject(link));
+  }
+
+  private void setReady(OPPObject object, boolean ready) {
+    if (ready) {
+      readyObjects.add(object);
+    } else {
+      readyObjects.remove(object);
+    }
+    index.objectChanged(object);
+  }
+
+  @Before
+  public void setUp() {
+    opd = OPPFactory.eINSTANCE.createOPPObjectProcessDiagram();
+    opd.setKind(OPPObjectProcessDiagramKind.COMPOUND);
+    opd.setName("Main");
+    inZoomedProcess = OPPFactory.eINSTANCE.createOPPProcess();
+    inZoomedProcess.setKind(OPPProcessKind.COMPOUND);
+    inZoomedProcess.setName("Main");
+    opd.getNodes().add(inZoomedProcess);
+    processes = Lists.newArrayList();
+
+    a = createObject("a");
+    b = createObject("b");
+    whole = createObject("whole");
+    part = createObject("part");
+    createAggregationRelation(whole, part);
+    global = createObject("global");
+    global.setGlobal(true);
+    objects = Lists.newArrayList(a, b, whole, part, global);
+
+    OPPProcess usesA = createProcess("Uses A");
+    createProceduralLink(OPPProceduralLinkKind.INSTRUMENT, a, usesA);
+    OPPProcess usesAAndB = createProcess("Uses A And B");
+    createProceduralLink(OPPProceduralLinkKind.INSTRUMENT, a, usesAAndB);
+    createProceduralLink(OPPProceduralLinkKind.CONS_RES, b, usesAAndB);
+    OPPProcess usesPart = createProcess("Uses Part");
+    createProceduralLink(OPPProceduralLinkKind.INSTRUMENT, part, usesPart);
+    OPPProcess handledByWhole = createProcess("Handled By Whole");
+    createProceduralLink(OPPProceduralLinkKind.AGENT, whole, handledByWhole);
+    OPPProcess usesGlobal = createProcess("Uses Global");
+    createProceduralLink(OPPProceduralLinkKind.INSTRUMENT, global, usesGlobal);
+    createProceduralLink(OPPProceduralLinkKind.INSTRUMENT, b, usesGlobal);
+    createProcess("Uses Nothing");
+
+    plan = OPPInZoomedProcessExecutionPlan.compile(opd);
+    readyObjects = Sets.newHashSet();
+    index = new OPPInZoomedProcessReadinessIndex(plan, this::isLinkSourceReady);
+  }
+
+  @Test
+  public void collectReady_EmptyIndex() {
+    index.objectChanged(a);
+    assertTrue(index.collectReady().isEmpty());
+  }
+
+  @Test
+  public void collectReady_ProcessesThatBecomeReadyTogether() {
+    processes.forEach(index::track);
+    assertEquals(Sets.newHashSet(processes.get(5)), index.collectReady());
+    assertTrue(index.collectReady().isEmpty());
+
+    setReady(b, true);
+    setReady(a, true);
+    assertEquals(Sets.newHashSet(processes.get(0), processes.get(1)), index.collectReady());
+    assertFalse(index.isTracked(processes.get(0)));
+    assertTrue(index.isTracked(processes.get(2)));
+  }
+
+  @Test
+  public void collectReady_PartsAndGlobalObjects() {
+    processes.forEach(index::track);
+    index.collectReady();
+
+    setReady(whole, true);
+    assertEquals(Sets.newHashSet(processes.get(3)), index.collectReady());
+    setReady(part, true);
+    assertEquals(Sets.newHashSet(processes.get(2)), index.collectReady());
+
+    setReady(b, true);
+    assertTrue(index.collectReady().isEmpty());
+    // Changes to global objects are not reported, they are checked every time
+    readyObjects.add(global);
+    assertEquals(Sets.newHashSet(processes.get(4)), index.collectReady());
+  }
+
+  @Test
+  public void collectReady_SameAsScanningAllWaitingProcesses() {
+    Random random = new Random(42);
+    Set<OPPProcess> waiting = Sets.newHashSet();
+    for (int step = 0; step < 2000; step++) {
+      OPPProcess process = processes.get(random.nextInt(processes.size()));
+      if (random.nextBoolean()) {
+        index.track(process);
+        waiting.add(process);
+      } else if (random.nextInt(4) == 0) {
+        index.untrack(process);
+        waiting.remove(process);
+      }
+      OPPObject object = objects.get(random.nextInt(objects.size()));
+      if (object.isGlobal()) {
+        if (!readyObjects.remove(object)) {
+          readyObjects.add(object);
+        }
+      } else {
+        setReady(object, !readyObjects.contains(object));
+      }
+
+      Set<OPPProcess> expected = findReadyByScanning(waiting);
+      assertEquals("Step " + step, expected, index.collectReady());
+      waiting.removeAll(expected);
+      for (OPPProcess waitingProcess : processes) {
+        assertEquals(waiting.contains(waitingProcess), index.isTracked(waitingProcess));
+      }
+    }
+  }
+}
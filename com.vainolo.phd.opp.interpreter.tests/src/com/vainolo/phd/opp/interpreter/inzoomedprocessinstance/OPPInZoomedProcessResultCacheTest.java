@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPListObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPFactory;
+import com.vainolo.phd.opp.model.OPPObject;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagramKind;
+import com.vainolo.phd.opp.model.OPPProcess;
+import com.vainolo.phd.opp.model.OPPProcessKind;
+import com.vainolo.phd.opp.utilities.OPPConstants;
+
+public class OPPInZoomedProcessResultCacheTest {
+
+  private OPPObjectProcessDiagram createOPD(String description, String subprocessName, boolean globalObject) {
+    OPPObjectProcessDiagram opd = OPPFactory.eINSTANCE.createOPPObjectProcessDiagram();
+    opd.setKind(OPPObjectProcessDiagramKind.COMPOUND);
+    opd.setName("Calculating");
+    OPPProcess inZoomedProcess = OPPFactory.eINSTANCE.createOPPProcess();
+    inZoomedProcess.setKind(OPPProcessKind.COMPOUND);
+    inZoomedProcess.setName("Calculating");
+    inZoomedProcess.setDescription(description);
+    opd.getNodes().add(inZoomedProcess);
+    OPPProcess subprocess = OPPFactory.eINSTANCE.createOPPProcess();
+    subprocess.setKind(OPPProcessKind.BUILT_IN);
+    subprocess.setName(subprocessName);
+    inZoomedProcess.getNodes().add(subprocess);
+    OPPObject object = OPPFactory.eINSTANCE.createOPPObject();
+    object.setName("a");
+    object.setGlobal(globalObject);
+    opd.getNodes().add(object);
+    return opd;
+  }
+
+  private OPPListObjectInstance createList(OPPObjectInstance... elements) {
+    OPPListObjectInstance list = OPPObjectInstance.createListInstance();
+    for (OPPObjectInstance element : elements) {
+      list.addLast(element);
+    }
+    return list;
+  }
+
+  @Test
+  public void structurallyEqual_ComparesValuesAndElements() {
+    OPPListObjectInstance list = createList(OPPObjectInstance.createFromValue(1), OPPObjectInstance.createFromValue("a"));
+    OPPListObjectInstance equalList = createList(OPPObjectInstance.createFromValue(new BigDecimal("1")), OPPObjectInstance.createFromValue("a"));
+    OPPListObjectInstance otherList = createList(OPPObjectInstance.createFromValue("a"), OPPObjectInstance.createFromValue(1));
+
+    assertTrue(OPPInZoomedProcessResultCache.structurallyEqual(list, equalList));
+    assertEquals(OPPInZoomedProcessResultCache.structuralHashCode(list), OPPInZoomedProcessResultCache.structuralHashCode(equalList));
+    assertFalse(OPPInZoomedProcessResultCache.structurallyEqual(list, otherList));
+
+    OPPComplexObjectInstance composite = OPPObjectInstance.createCompositeInstance();
+    composite.setPart("list", list);
+    composite.setPart("name", OPPObjectInstance.createFromValue("b"));
+    OPPComplexObjectInstance equalComposite = OPPObjectInstance.createCompositeInstance();
+    equalComposite.setPart("name", OPPObjectInstance.createFromValue("b"));
+    equalComposite.setPart("list", equalList);
+
+    assertTrue(OPPInZoomedProcessResultCache.structurallyEqual(composite, equalComposite));
+    assertEquals(OPPInZoomedProcessResultCache.structuralHashCode(composite), OPPInZoomedProcessResultCache.structuralHashCode(equalComposite));
+    equalComposite.setPart("name", OPPObjectInstance.createFromValue("c"));
+    assertFalse(OPPInZoomedProcessResultCache.structurallyEqual(composite, equalComposite));
+  }
+
+  @Test
+  public void get_ResultsOfStructurallyEqualArguments() {
+    OPPInZoomedProcessResultCache cache = new OPPInZoomedProcessResultCache(OPPInZoomedProcessResultCache.DEFAULT_MAXIMUM_WEIGHT);
+    OPPInZoomedProcessExecutionPlan plan = OPPInZoomedProcessExecutionPlan.EMPTY;
+    cache.put(plan, new OPPObjectInstance[] { createList(OPPObjectInstance.createFromValue(3)) },
+        new OPPObjectInstance[] { OPPObjectInstance.createFromValue(2) });
+
+    assertEquals(OPPObjectInstance.createFromValue(2), cache.get(plan, new OPPObjectInstance[] { createList(OPPObjectInstance.createFromValue(3)) }).getValue(0));
+    assertNull(cache.get(plan, new OPPObjectInstance[] { createList(OPPObjectInstance.createFromValue(4)) }));
+    assertEquals(1, cache.getStats().hitCount());
+    assertEquals(0.5, cache.getHitRate(), 0.0);
+  }
+
+  @Test
+  public void get_NumbersWithDifferentScaleAreDifferentArguments() {
+    OPPObjectInstance two = OPPObjectInstance.createFromValue(new BigDecimal("2"));
+    OPPObjectInstance twoPointZero = OPPObjectInstance.createFromValue(new BigDecimal("2.0"));
+    assertFalse(OPPInZoomedProcessResultCache.structurallyEqual(two, twoPointZero));
+    assertFalse(OPPInZoomedProcessResultCache.structurallyEqual(createList(two), createList(twoPointZero)));
+
+    OPPInZoomedProcessResultCache cache = new OPPInZoomedProcessResultCache(OPPInZoomedProcessResultCache.DEFAULT_MAXIMUM_WEIGHT);
+    OPPInZoomedProcessExecutionPlan plan = OPPInZoomedProcessExecutionPlan.EMPTY;
+    cache.put(plan, new OPPObjectInstance[] { two }, new OPPObjectInstance[] { OPPObjectInstance.createFromValue("2") });
+
+    assertNull(cache.get(plan, new OPPObjectInstance[] { twoPointZero }));
+    assertEquals("2", cache.get(plan, new OPPObjectInstance[] { OPPObjectInstance.createFromValue(new BigDecimal("2")) }).getValue(0).getStringValue());
+  }
+
+  @Test
+  public void put_EvictsWhenMaximumWeightIsExceeded() {
+    OPPInZoomedProcessResultCache cache = new OPPInZoomedProcessResultCache(20);
+    for (int i = 0; i < 100; i++) {
+      cache.put(OPPInZoomedProcessExecutionPlan.EMPTY, new OPPObjectInstance[] { OPPObjectInstance.createFromValue(i) },
+          new OPPObjectInstance[] { OPPObjectInstance.createFromValue(i) });
+    }
+    assertTrue(cache.size() <= 20 / 3);
+    assertTrue(cache.getStats().evictionCount() > 0);
+  }
+
+  @Test
+  public void isMemoizable_OnlyPureProcessesMarkedAsPure() {
+    OPPInZoomedProcessResultCache cache = new OPPInZoomedProcessResultCache(OPPInZoomedProcessResultCache.DEFAULT_MAXIMUM_WEIGHT);
+
+    assertFalse(cache.isMemoizable(OPPInZoomedProcessExecutionPlan.compile(createOPD(null, "+", false)), false, null));
+    assertTrue(cache.isMemoizable(OPPInZoomedProcessExecutionPlan.compile(createOPD(null, "+", false)), true, null));
+    assertTrue(cache.isMemoizable(OPPInZoomedProcessExecutionPlan.compile(createOPD(OPPConstants.OPP_PURE_PROCESS_MARKER, "+", false)), false, null));
+    assertEquals(0, cache.getBypassCount());
+
+    assertFalse(cache.isMemoizable(OPPInZoomedProcessExecutionPlan.compile(createOPD(OPPConstants.OPP_PURE_PROCESS_MARKER, "+", true)), false, null));
+    assertFalse(cache.isMemoizable(OPPInZoomedProcessExecutionPlan.compile(createOPD(OPPConstants.OPP_PURE_PROCESS_MARKER, "Console Writing", false)), false, null));
+    assertFalse(cache.isMemoizable(OPPInZoomedProcessExecutionPlan.compile(createOPD(OPPConstants.OPP_PURE_PROCESS_MARKER, "Fetch Global", false)), false, null));
+    assertEquals(3, cache.getBypassCount());
+  }
+}
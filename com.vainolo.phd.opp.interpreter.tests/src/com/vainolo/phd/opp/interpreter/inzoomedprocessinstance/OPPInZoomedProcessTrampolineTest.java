@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+import com.vainolo.phd.opp.interpreter.OPPAbstractAsyncProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPProcessExecutionResult;
+
+public class OPPInZoomedProcessTrampolineTest {
+
+  /**
+   * Calls itself inline until it reaches zero, and finishes after the instance it called.
+   */
+  private static class OPPRecursiveProcessInstance extends OPPAbstractAsyncProcessInstance {
+    private final int depth;
+
+    OPPRecursiveProcessInstance(int depth) {
+      this.depth = depth;
+    }
+
+    @Override
+    protected CompletionStage<Void> executingAsync() {
+      CompletableFuture<Void> execution = new CompletableFuture<>();
+      if (depth == 0) {
+        execution.complete(null);
+      } else {
+        OPPInZoomedProcessTrampoline.execute(new OPPRecursiveProcessInstance(depth - 1))
+            .whenComplete((result, failure) -> OPPInZoomedProcessTrampoline.run(() -> execution.complete(null)));
+      }
+      return execution;
+    }
+
+    @Override
+    protected void preExecution() {
+    }
+
+    @Override
+    protected void postExecution() {
+    }
+  }
+
+  @Test
+  public void execute_DeepRecursionInConstantStack() throws Exception {
+    CompletableFuture<OPPProcessExecutionResult> execution = OPPInZoomedProcessTrampoline.execute(new OPPRecursiveProcessInstance(100000))
+        .toCompletableFuture();
+    assertTrue(execution.isDone());
+    assertNotNull(execution.get());
+  }
+
+  @Test
+  public void execute_FailureToStartCompletesTheExecution() throws Exception {
+    CompletableFuture<OPPProcessExecutionResult> execution = OPPInZoomedProcessTrampoline.execute(new OPPRecursiveProcessInstance(0) {
+      @Override
+      public CompletionStage<OPPProcessExecutionResult> executeAsync() {
+        throw new IllegalStateException("Cannot start.");
+      }
+    }).toCompletableFuture();
+    assertTrue(execution.isCompletedExceptionally());
+    try {
+      execution.get();
+      fail("The execution should have failed.");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  @Test
+  public void run_FramesPushedWhileRunningAreRunLastPushedFirst() {
+    StringBuilder order = new StringBuilder();
+    OPPInZoomedProcessTrampoline.run(() -> {
+      OPPInZoomedProcessTrampoline.run(() -> order.append("c"));
+      OPPInZoomedProcessTrampoline.run(() -> {
+        throw new IllegalStateException();
+      });
+      OPPInZoomedProcessTrampoline.run(() -> order.append("b"));
+      order.append("a");
+    });
+    assertEquals("abc", order.toString());
+  }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.server;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.eclipsesource.json.JsonObject;
+import com.vainolo.phd.opp.interpreter.OPPScheduler;
+import com.vainolo.phd.opp.interpreter.server.OPPServerStatistics.OPPRequestOutcome;
+
+public class OPPServerStatisticsTest {
+
+  @Test
+  public void admit_RejectsWhenMaxExecutionsInFlight() {
+    OPPServerStatistics statistics = new OPPServerStatistics(2);
+    assertTrue(statistics.admit());
+    assertTrue(statistics.admit());
+    assertFalse(statistics.admit());
+    statistics.finished(System.nanoTime(), OPPRequestOutcome.COMPLETED);
+    statistics.released();
+    assertTrue(statistics.admit());
+
+    assertEquals(4, statistics.getReceived());
+    assertEquals(1, statistics.getRejected());
+    assertEquals(2, statistics.getInFlight());
+  }
+
+  @Test
+  public void finished_CountsOutcomes() {
+    OPPServerStatistics statistics = new OPPServerStatistics(10);
+    for (OPPRequestOutcome outcome : OPPRequestOutcome.values()) {
+      statistics.admit();
+      statistics.finished(System.nanoTime(), outcome);
+      statistics.released();
+    }
+    assertEquals(1, statistics.getCompleted());
+    assertEquals(1, statistics.getFailed());
+    assertEquals(1, statistics.getTimedOut());
+    assertEquals(0, statistics.getInFlight());
+  }
+
+  @Test
+  public void finished_TimedOutRequestKeepsItsPlaceUntilReleased() {
+    OPPServerStatistics statistics = new OPPServerStatistics(1);
+    assertTrue(statistics.admit());
+    statistics.finished(System.nanoTime(), OPPRequestOutcome.TIMED_OUT);
+    assertFalse(statistics.admit());
+    assertEquals(1, statistics.getInFlight());
+
+    statistics.released();
+    assertTrue(statistics.admit());
+    assertEquals(1, statistics.getTimedOut());
+  }
+
+  @Test
+  public void toJson_LatencyOfRecentRequests() {
+    OPPServerStatistics statistics = new OPPServerStatistics(OPPServerStatistics.SAMPLES * 2);
+    for (int i = 0; i < OPPServerStatistics.SAMPLES + 10; i++) {
+      statistics.admit();
+      statistics.finished(System.nanoTime() - 1000000, OPPRequestOutcome.COMPLETED);
+      statistics.released();
+    }
+    OPPScheduler scheduler = new OPPScheduler();
+    try {
+      JsonObject json = statistics.toJson(scheduler);
+      assertEquals(OPPServerStatistics.SAMPLES + 10, json.get("requests").asObject().get("completed").asLong());
+      assertTrue(json.get("latency").asObject().get("p50").asDouble() >= 1);
+      assertTrue(json.get("throughput").asObject().get("recent").asDouble() > 0);
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.types;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class OPPInstanceIdGeneratorTest {
+  private static final int THREADS = 16;
+  private static final int IDS_PER_THREAD = 20000;
+
+  @Test
+  public void nextId_UniqueUnderConcurrentAllocation() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<long[]>> allocations = Lists.newArrayList();
+      for (int i = 0; i < THREADS; i++) {
+        allocations.add(executor.submit(() -> {
+          long[] ids = new long[IDS_PER_THREAD];
+          start.await();
+          for (int j = 0; j < ids.length; j++) {
+            ids[j] = OPPInstanceIdGenerator.nextId();
+          }
+          return ids;
+        }));
+      }
+      start.countDown();
+
+      Set<Long> ids = Sets.newHashSetWithExpectedSize(THREADS * IDS_PER_THREAD);
+      for (Future<long[]> allocation : allocations) {
+        for (long id : allocation.get()) {
+          assertTrue(id > 0);
+          assertTrue("Id " + id + " allocated twice", ids.add(id));
+        }
+      }
+      assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
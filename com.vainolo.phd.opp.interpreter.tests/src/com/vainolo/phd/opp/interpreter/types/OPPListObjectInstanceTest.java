@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.types;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class OPPListObjectInstanceTest {
+
+  private OPPListObjectInstance createList(String... elements) {
+    OPPListObjectInstance list = OPPObjectInstance.createListInstance();
+    for (String element : elements) {
+      list.addLast(OPPObjectInstance.createFromValue(element));
+    }
+    return list;
+  }
+
+  @Test
+  public void add_ElementIsFoundInTheOneBasedLocation() {
+    OPPListObjectInstance list = createList("a", "b", "c");
+    assertTrue(list.add(1, OPPObjectInstance.createFromValue("first")));
+    assertTrue(list.add(3, OPPObjectInstance.createFromValue("middle")));
+    assertTrue(list.add(list.count() + 1, OPPObjectInstance.createFromValue("last")));
+    assertEquals("[\"first\",\"a\",\"middle\",\"b\",\"c\",\"last\"]", list.toString());
+
+    assertFalse(list.add(0, OPPObjectInstance.createFromValue("x")));
+    assertFalse(list.add(list.count() + 2, OPPObjectInstance.createFromValue("x")));
+    assertEquals(6, list.count());
+  }
+
+  @Test
+  public void getAndRemove_OneBasedLocations() {
+    OPPListObjectInstance list = createList("a", "b", "c");
+    assertEquals("a", list.get(1).getStringValue());
+    assertEquals("c", list.get(3).getStringValue());
+    assertNull(list.get(0));
+    assertNull(list.get(4));
+    assertEquals("b", list.remove(2).getStringValue());
+    assertEquals("[\"a\",\"c\"]", list.toString());
+  }
+
+  @Test
+  public void copy_ChangesDoNotAffectTheOriginal() {
+    OPPListObjectInstance list = createList("a", "b");
+    OPPListObjectInstance copy = list.copy();
+    copy.insert(2, OPPObjectInstance.createFromValue("x"));
+    copy.removeFirst();
+    assertEquals("[\"a\",\"b\"]", list.toString());
+    assertEquals("[\"x\",\"b\"]", copy.toString());
+  }
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.types;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class OPPPersistentListTest {
+  private static final int SIZE = OPPPersistentList.CHUNK_SIZE * 10;
+
+  private OPPPersistentList<Integer> createList(int size) {
+    OPPPersistentList<Integer> list = OPPPersistentList.empty();
+    for (int i = 0; i < size; i++) {
+      list = list.addLast(i);
+    }
+    return list;
+  }
+
+  private List<Integer> createExpected(int size) {
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      expected.add(i);
+    }
+    return expected;
+  }
+
+  private void assertContents(List<Integer> expected, OPPPersistentList<Integer> list) {
+    assertEquals(expected.size(), list.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), list.get(i));
+    }
+    assertEquals(expected, Lists.newArrayList(list));
+  }
+
+  @Test
+  public void insert_AtHeadMiddleAndTail() {
+    for (int size : new int[] { 0, 1, OPPPersistentList.CHUNK_SIZE, SIZE }) {
+      for (int index : new int[] { 0, size / 2, size }) {
+        List<Integer> expected = createExpected(size);
+        expected.add(index, -1);
+        assertContents(expected, createList(size).insert(index, -1));
+      }
+    }
+  }
+
+  @Test
+  public void remove_AtHeadMiddleAndTail() {
+    for (int size : new int[] { 1, OPPPersistentList.CHUNK_SIZE, SIZE }) {
+      for (int index : new int[] { 0, size / 2, size - 1 }) {
+        List<Integer> expected = createExpected(size);
+        expected.remove(index);
+        assertContents(expected, createList(size).remove(index));
+      }
+      List<Integer> expected = createExpected(size);
+      expected.remove(0);
+      assertContents(expected, createList(size).removeFirst());
+      expected = createExpected(size);
+      expected.remove(size - 1);
+      assertContents(expected, createList(size).removeLast());
+    }
+  }
+
+  @Test
+  public void removeFirstAndRemoveLast_EmptyTheList() {
+    OPPPersistentList<Integer> list = createList(SIZE).insert(SIZE / 2, -1);
+    List<Integer> expected = createExpected(SIZE);
+    expected.add(SIZE / 2, -1);
+    while (!expected.isEmpty()) {
+      list = list.removeFirst();
+      expected.remove(0);
+      assertContents(expected, list);
+      if (!expected.isEmpty()) {
+        list = list.removeLast();
+        expected.remove(expected.size() - 1);
+        assertContents(expected, list);
+      }
+    }
+    assertTrue(list.isEmpty());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void insert_IndexAfterSize() {
+    createList(3).insert(4, -1);
+  }
+
+  @Test
+  public void updates_DoNotChangeOlderSnapshots() {
+    OPPPersistentList<Integer> original = createList(SIZE);
+    OPPPersistentList<Integer> updated = original.set(0, -1).set(SIZE / 2, -1).set(SIZE - 1, -1).insert(SIZE / 3, -2).remove(SIZE / 4).addFirst(-3)
+        .addLast(-4).removeFirst().removeLast();
+
+    assertContents(createExpected(SIZE), original);
+    assertEquals(Integer.valueOf(-1), updated.get(0));
+    assertEquals(Integer.valueOf(-1), updated.get(SIZE - 1));
+  }
+
+  @Test
+  public void insert_SequentialInsertsKeepTheTreeBalanced() {
+    int size = OPPPersistentList.CHUNK_SIZE * 1000;
+    OPPPersistentList<Integer> appended = OPPPersistentList.empty();
+    OPPPersistentList<Integer> prepended = OPPPersistentList.empty();
+    OPPPersistentList<Integer> middle = OPPPersistentList.empty();
+    List<Integer> expectedMiddle = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      appended = appended.insert(i, i);
+      prepended = prepended.insert(0, size - 1 - i);
+      middle = middle.insert(i / 2, i);
+      expectedMiddle.add(i / 2, i);
+    }
+    // An AVL tree with n nodes is never higher than 1.44 * log2(n + 2)
+    double maximumHeight = 1.45 * Math.log(size + 2) / Math.log(2);
+    for (OPPPersistentList<Integer> list : Arrays.asList(appended, prepended, middle)) {
+      assertTrue("Height " + list.height() + " of a list of size " + size, list.height() <= maximumHeight);
+    }
+    assertContents(createExpected(size), appended);
+    assertContents(createExpected(size), prepended);
+    assertContents(expectedMiddle, middle);
+  }
+
+  @Test
+  public void randomUpdates_SameAsArrayList() {
+    Random random = new Random(42);
+    OPPPersistentList<Integer> list = OPPPersistentList.empty();
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      int operation = random.nextInt(6);
+      if (expected.isEmpty() || operation < 2) {
+        int index = random.nextInt(expected.size() + 1);
+        list = list.insert(index, i);
+        expected.add(index, i);
+      } else if (operation == 2) {
+        int index = random.nextInt(expected.size());
+        list = list.remove(index);
+        expected.remove(index);
+      } else if (operation == 3) {
+        int index = random.nextInt(expected.size());
+        list = list.set(index, i);
+        expected.set(index, i);
+      } else if (operation == 4) {
+        list = list.addFirst(i);
+        expected.add(0, i);
+      } else {
+        list = list.removeLast();
+        expected.remove(expected.size() - 1);
+      }
+    }
+    assertContents(expected, list);
+  }
+}
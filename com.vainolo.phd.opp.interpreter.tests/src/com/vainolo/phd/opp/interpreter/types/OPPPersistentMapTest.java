@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.types;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OPPPersistentMapTest {
+
+  /**
+   * Key with a given hash code, used to create collisions.
+   */
+  private static final class OPPKey {
+    private final String name;
+    private final int hash;
+
+    OPPKey(String name, int hash) {
+      this.name = name;
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof OPPKey && name.equals(((OPPKey) obj).name);
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private <K, V> Map<K, V> toMap(OPPPersistentMap<K, V> map) {
+    Map<K, V> result = new HashMap<>();
+    for (Map.Entry<K, V> entry : map) {
+      assertNull("Key " + entry.getKey() + " iterated twice", result.put(entry.getKey(), entry.getValue()));
+    }
+    assertEquals(map.size(), result.size());
+    return result;
+  }
+
+  @Test
+  public void putAndRemove_SameAsHashMap() {
+    Random random = new Random(42);
+    OPPPersistentMap<Integer, Integer> map = OPPPersistentMap.empty();
+    Map<Integer, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 20000; i++) {
+      // Few keys, so they are often replaced and removed, with hashes that use every level of the trie
+      int key = random.nextInt(2000) * 0x01010101;
+      if (random.nextInt(3) == 0) {
+        map = map.remove(key);
+        expected.remove(key);
+      } else {
+        map = map.put(key, i);
+        expected.put(key, i);
+      }
+    }
+    assertEquals(expected, toMap(map));
+    for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), map.get(entry.getKey()));
+    }
+  }
+
+  @Test
+  public void updates_DoNotChangeOlderSnapshots() {
+    OPPPersistentMap<String, Integer> original = OPPPersistentMap.<String, Integer> empty().put("a", 1).put("b", 2);
+    OPPPersistentMap<String, Integer> updated = original.put("a", 3).put("c", 4).remove("b");
+
+    assertEquals(2, original.size());
+    assertEquals(Integer.valueOf(1), original.get("a"));
+    assertEquals(Integer.valueOf(2), original.get("b"));
+    assertFalse(original.containsKey("c"));
+    assertEquals(2, updated.size());
+    assertEquals(Integer.valueOf(3), updated.get("a"));
+    assertFalse(updated.containsKey("b"));
+  }
+
+  @Test
+  public void putAndRemove_UnchangedMapIsReturned() {
+    Integer value = 1;
+    OPPPersistentMap<String, Integer> map = OPPPersistentMap.<String, Integer> empty().put("a", value);
+    assertSame(map, map.put("a", value));
+    assertSame(map, map.remove("b"));
+  }
+
+  @Test
+  public void put_KeysWithEqualHashes() {
+    OPPKey a = new OPPKey("a", 7);
+    OPPKey b = new OPPKey("b", 7);
+    OPPKey c = new OPPKey("c", 7);
+    OPPKey d = new OPPKey("d", 7 + (1 << 5));
+    OPPPersistentMap<OPPKey, String> map = OPPPersistentMap.<OPPKey, String> empty().put(a, "a").put(b, "b").put(c, "c").put(d, "d");
+
+    assertEquals(4, map.size());
+    assertEquals("a", map.get(a));
+    assertEquals("b", map.get(b));
+    assertEquals("c", map.get(c));
+    assertEquals("d", map.get(d));
+    assertNull(map.get(new OPPKey("e", 7)));
+    assertEquals("B", map.put(b, "B").get(b));
+    assertEquals(4, map.put(b, "B").size());
+  }
+
+  @Test
+  public void remove_FromCollisionNode() {
+    OPPKey a = new OPPKey("a", 7);
+    OPPKey b = new OPPKey("b", 7);
+    OPPKey c = new OPPKey("c", 7);
+    OPPKey other = new OPPKey("other", 8);
+    OPPPersistentMap<OPPKey, String> map = OPPPersistentMap.<OPPKey, String> empty().put(a, "a").put(b, "b").put(c, "c").put(other, "other");
+
+    assertSame(map, map.remove(new OPPKey("e", 7)));
+    OPPPersistentMap<OPPKey, String> withoutB = map.remove(b);
+    assertEquals(3, withoutB.size());
+    assertNull(withoutB.get(b));
+    assertEquals("a", withoutB.get(a));
+    assertEquals("c", withoutB.get(c));
+
+    OPPPersistentMap<OPPKey, String> onlyC = withoutB.remove(a);
+    assertEquals(2, onlyC.size());
+    assertEquals("c", onlyC.get(c));
+    assertEquals("other", onlyC.get(other));
+    assertEquals(1, onlyC.remove(c).size());
+    assertEquals(0, onlyC.remove(c).remove(other).size());
+
+    assertEquals(4, map.size());
+    assertEquals("b", map.get(b));
+  }
+
+  @Test
+  public void iterator_OrderedByHashAndIndependentOfInsertionOrder() {
+    List<OPPKey> keys = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      keys.add(new OPPKey(String.valueOf(i), i));
+    }
+    OPPPersistentMap<OPPKey, Integer> ascending = OPPPersistentMap.empty();
+    OPPPersistentMap<OPPKey, Integer> descending = OPPPersistentMap.empty();
+    for (int i = 0; i < keys.size(); i++) {
+      ascending = ascending.put(keys.get(i), i);
+      descending = descending.put(keys.get(keys.size() - 1 - i), keys.size() - 1 - i);
+    }
+
+    List<OPPKey> ascendingOrder = new ArrayList<>();
+    ascending.forEach(entry -> ascendingOrder.add(entry.getKey()));
+    List<OPPKey> descendingOrder = new ArrayList<>();
+    descending.forEach(entry -> descendingOrder.add(entry.getKey()));
+    assertEquals(keys, ascendingOrder);
+    assertEquals(keys, descendingOrder);
+    assertFalse(OPPPersistentMap.empty().iterator().hasNext());
+  }
+}
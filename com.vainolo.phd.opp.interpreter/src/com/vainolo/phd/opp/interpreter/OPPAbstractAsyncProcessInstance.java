@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import com.vainolo.phd.opp.interpreter.OPPProcessExecutionResult.OPMProcessExecutionResultType;
+
+/**
+ * Default implementation of {@link OPPAsyncProcessInstance} to be used by subclasses. Subclasses implement
+ * {@link #executingAsync()} and are executed both synchronously (using {@link #call()}) and asynchronously.
+ * 
+ * @author Arieh "Vainolo" Bibliowicz
+ * 
+ */
+public abstract class OPPAbstractAsyncProcessInstance extends OPPAbstractProcessInstance implements OPPAsyncProcessInstance {
+
+  /**
+   * Start the execution of the instance.
+   * 
+   * @return a stage that is completed when the execution finishes.
+   */
+  abstract protected CompletionStage<Void> executingAsync();
+
+  /**
+   * Execute the instance synchronously, waiting until {@link #executingAsync()} completes.
+   */
+  @Override
+  protected void executing() throws Exception {
+    OPPScheduler.await(executingAsync());
+  }
+
+  @Override
+  public CompletionStage<OPPProcessExecutionResult> executeAsync() {
+    CompletableFuture<OPPProcessExecutionResult> execution = new CompletableFuture<>();
+    if (getProfile() != null) {
+      getProfile().started(true);
+    }
+    try {
+      preExecution();
+      executingAsync().whenComplete((nothing, failure) -> {
+        if (failure != null) {
+          fail(execution, failure);
+          return;
+        }
+        try {
+          postExecution();
+          profileFinished();
+          execution.complete(new OPPProcessExecutionResult(this, OPMProcessExecutionResultType.FINISHED));
+        } catch (Exception e) {
+          fail(execution, e);
+        }
+      });
+    } catch (Exception e) {
+      fail(execution, e);
+    }
+    return execution;
+  }
+
+  private void fail(CompletableFuture<OPPProcessExecutionResult> execution, Throwable failure) {
+    if (failure instanceof CompletionException && failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    logSevere("Exception while executing process {0}.", getName());
+    logSevere("Exception: {0}", failure);
+    profileFinished();
+    execution.completeExceptionally(failure instanceof OPPRuntimeException ? failure : new OPPRuntimeException(failure));
+  }
+
+  /**
+   * Record the end of the execution before the result is published, since the stages that depend on it may record
+   * the profile.
+   */
+  private void profileFinished() {
+    if (getProfile() != null) {
+      getProfile().finished();
+    }
+  }
+}
@@ -10,6 +10,7 @@ import static com.vainolo.phd.opp.utilities.OPPLogger.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -28,6 +29,8 @@ public abstract class OPPAbstractProcessInstance implements OPPProcessInstance {
   protected final OPPProcessInstanceHeap heap = new OPPProcessInstanceHeap();
   private String name;
   private OPPProcessExecutionResult result;
+  private OPPProcessProfile profile;
+  private OPPExecutionContext context;
 
   protected OPPProcessInstanceHeap getHeap() {
     return heap;
@@ -49,6 +52,32 @@ public abstract class OPPAbstractProcessInstance implements OPPProcessInstance {
     this.name = name;
   }
 
+  @Override
+  public void setProfile(OPPProcessProfile profile) {
+    this.profile = profile;
+  }
+
+  /**
+   * @return the profile where the execution of this instance is recorded, or <code>null</code> if profiling is not
+   *         enabled.
+   */
+  public OPPProcessProfile getProfile() {
+    return profile;
+  }
+
+  @Override
+  public void setContext(OPPExecutionContext context) {
+    this.context = context;
+  }
+
+  /**
+   * @return the context of the execution this instance belongs to. Instances that were created outside of an execution
+   *         use the current context of the {@link OPPInterpreter}.
+   */
+  public OPPExecutionContext getContext() {
+    return context != null ? context : OPPInterpreter.INSTANCE.getContext();
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -60,17 +89,9 @@ public abstract class OPPAbstractProcessInstance implements OPPProcessInstance {
    * {@inheritDoc}
    */
   protected void preExecution() {
-    logInfo("Started executing process " + getName());
-    StringBuffer arguments = new StringBuffer("Incoming arguments: ");
-    boolean hasParameters = false;
-    for (OPPParameter parameter : getIncomingParameters()) {
-      arguments.append(parameter.getName() + ":" + getArgument(parameter.getName()) + ", ");
-      hasParameters = true;
-    }
-    if (hasParameters) {
-      logFine(arguments.substring(0, arguments.length() - 2));
-    } else {
-      logFine("No incoming arguments");
+    logInfo("Started executing process {0}", getName());
+    if (isLoggable(Level.FINE)) {
+      logFine(describeArguments("Incoming arguments: ", "No incoming arguments", getIncomingParameters()));
     }
   }
 
@@ -78,18 +99,24 @@ public abstract class OPPAbstractProcessInstance implements OPPProcessInstance {
    * {@inheritDoc}
    */
   protected void postExecution() {
-    logInfo("Finished executing process " + getName());
-    StringBuffer arguments = new StringBuffer("Outgoing arguments: ");
-    boolean hasParameters = false;
-    for (OPPParameter parameter : getOutgoingParameters()) {
-      arguments.append(parameter.getName() + ":" + getArgument(parameter.getName()) + ", ");
-      hasParameters = true;
+    logInfo("Finished executing process {0}", getName());
+    if (isLoggable(Level.FINE)) {
+      logFine(describeArguments("Outgoing arguments: ", "No outgoing arguments", getOutgoingParameters()));
     }
-    if (hasParameters) {
-      logFine(arguments.substring(0, arguments.length() - 2));
-    } else {
-      logFine("No outgoing arguments");
+  }
+
+  private String describeArguments(String prefix, String noArguments, List<OPPParameter> parameters) {
+    if (parameters.isEmpty()) {
+      return noArguments;
     }
+    StringBuilder arguments = new StringBuilder(prefix);
+    for (OPPParameter parameter : parameters) {
+      if (arguments.length() > prefix.length()) {
+        arguments.append(", ");
+      }
+      arguments.append(parameter.getName()).append(':').append(getArgument(parameter.getName()));
+    }
+    return arguments.toString();
   }
 
   @Override
@@ -135,6 +162,9 @@ public abstract class OPPAbstractProcessInstance implements OPPProcessInstance {
   @Override
   public OPPProcessExecutionResult call() throws Exception {
     result = new OPPProcessExecutionResult(this, OPMProcessExecutionResultType.FINISHED);
+    if (profile != null) {
+      profile.started(false);
+    }
     try {
       preExecution();
       executing();
@@ -144,6 +174,10 @@ public abstract class OPPAbstractProcessInstance implements OPPProcessInstance {
       logSevere("Exception: {0}", e);
       e.printStackTrace();
       throw new OPPRuntimeException(e);
+    } finally {
+      if (profile != null) {
+        profile.finished();
+      }
     }
     return result;
   }
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * An {@link OPPProcessInstance} that can be executed without blocking the calling thread until it finishes. The
+ * {@link OPPScheduler} uses {@link #executeAsync()} instead of {@link #call()} to execute these instances, so no thread
+ * is held while the instance waits for I/O or for its subprocesses.
+ * 
+ * @author Arieh 'Vainolo' Bibliowicz
+ * 
+ */
+public interface OPPAsyncProcessInstance extends OPPProcessInstance {
+
+  /**
+   * Start executing the instance.
+   * 
+   * @return a stage that is completed with the execution result when the instance finishes, or exceptionally if the
+   *         execution fails.
+   */
+  CompletionStage<OPPProcessExecutionResult> executeAsync();
+}
@@ -0,0 +1,19 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+/**
+ * Marker for {@link OPPProcessInstance}s that spend most of their execution waiting (sleeping, reading files, calling
+ * web services, waiting for user input). The {@link OPPScheduler} executes them apart from the other instances so they
+ * don't hold one of its threads while they wait.
+ * 
+ * @author Arieh 'Vainolo' Bibliowicz
+ * 
+ */
+public interface OPPBlockingProcessInstance extends OPPProcessInstance {
+
+}
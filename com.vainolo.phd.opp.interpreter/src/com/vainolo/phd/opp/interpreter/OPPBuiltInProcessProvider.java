@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+/**
+ * <p>
+ * Contributes built-in processes to the {@link OPPBuiltInProcessRegistry}.
+ * </p>
+ *
+ * <p>
+ * Providers are discovered using {@link java.util.ServiceLoader}: an implementation is registered by listing its
+ * fully qualified name in a <code>META-INF/services/com.vainolo.phd.opp.interpreter.OPPBuiltInProcessProvider</code>
+ * file visible to the class loader of the interpreter (in the workbench, a fragment of the interpreter bundle). It must
+ * have a public no-argument constructor.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public interface OPPBuiltInProcessProvider {
+
+  /**
+   * Register the built-in processes of this provider. Processes registered with the name of an existing process
+   * replace it.
+   */
+  void registerProcesses(OPPBuiltInProcessRegistry registry);
+}
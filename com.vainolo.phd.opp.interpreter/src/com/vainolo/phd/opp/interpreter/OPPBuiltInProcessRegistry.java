@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.awt.GraphicsEnvironment;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableSet;
+import com.vainolo.phd.opp.interpreter.builtin.OPPCompareProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.OPPCompareProcessInstance.ComparisonType;
+import com.vainolo.phd.opp.interpreter.builtin.OPPGetDateProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.OPPSleepProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.complex.OPPAllPartNamesFetchingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.complex.OPPAllPartsFetchingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.complex.OPPPartAddingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.complex.OPPPartFetchingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.complex.OPPPartRemovingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.general.OPPElementCountingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.list.OPPFirstElementAddingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.list.OPPFirstElementFetchingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.list.OPPFirstElementRemovingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.list.OPPLastElementAddingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.list.OPPLastElementFetchingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.list.OPPLastElementRemovingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.list.OPPLocationElementAddingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.list.OPPLocationElementFetchingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.composite.list.OPPLocationElementRemovingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.general.OPPObjectCopyingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.general.OPPObjectCreatingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.general.OPPRandomProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.global.OPPGlobalAddingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.global.OPPGlobalCompareAndSettingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.global.OPPGlobalFetchingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.io.OPPConsoleReadingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.io.OPPConsoleWritingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.io.OPPDialogTextReadingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.io.OPPDialogTextWritingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.io.OPPTextFileReadingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.io.OPPTextFileWritingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.io.OPPTransformJSONStringToObjectProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.math.OPPBinaryMathOpProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.math.OPPBinaryMathOpProcessInstance.OPPBinaryMathOpType;
+import com.vainolo.phd.opp.interpreter.builtin.math.OPPComparingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.math.OPPUnaryMathOpProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.math.OPPUnaryMathOpProcessInstance.OPPUnaryMathOpType;
+import com.vainolo.phd.opp.interpreter.builtin.string.OPPConcatenatingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.string.OPPStringComparingProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.twitter.OPPInitializeTwitterClientProcessInstance;
+import com.vainolo.phd.opp.interpreter.builtin.twitter.OPPSearchTwitter;
+import com.vainolo.phd.opp.interpreter.builtin.web.OPPCallWebAPIProcessInstance;
+
+/**
+ * <p>
+ * Registry of the built-in processes, which maps the names of the processes to the factories that create their
+ * instances. Names are not case sensitive, and a process can be registered with many names.
+ * </p>
+ *
+ * <p>
+ * The registry contains the processes that come with the interpreter, and the ones contributed by the
+ * {@link OPPBuiltInProcessProvider}s found when the registry is created. Processes are resolved to their factories once,
+ * when the execution plan of the diagram that calls them is compiled, so executing a built-in process only calls its
+ * factory, which is usually a constructor reference.
+ * </p>
+ *
+ * <p>
+ * Processes registered using {@link #registerPure(Supplier, String...)} are pure: their results depend only on their
+ * arguments, and they do not read or change anything else. Compound processes that only call pure processes can be
+ * memoized.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPBuiltInProcessRegistry {
+  private static OPPBuiltInProcessRegistry instance;
+
+  private final Map<String, Supplier<? extends OPPProcessInstance>> factories = new ConcurrentHashMap<>();
+  private final Set<String> pureNames = ConcurrentHashMap.newKeySet();
+
+  /**
+   * @return the registry with the processes of the interpreter and of all the providers.
+   */
+  public static synchronized OPPBuiltInProcessRegistry getInstance() {
+    if (instance == null) {
+      OPPBuiltInProcessRegistry registry = new OPPBuiltInProcessRegistry();
+      registry.registerDefaultProcesses();
+      registry.loadProviders();
+      instance = registry;
+    }
+    return instance;
+  }
+
+  /**
+   * Create an empty registry.
+   */
+  OPPBuiltInProcessRegistry() {
+  }
+
+  /**
+   * Register a built-in process.
+   *
+   * @param factory
+   *          creates a new instance of the process every time it is called.
+   * @param names
+   *          of the process.
+   */
+  public void register(Supplier<? extends OPPProcessInstance> factory, String... names) {
+    for (String name : names) {
+      if (factories.put(normalize(name), factory) != null) {
+        logFine("Built-in process {0} was replaced.", name);
+      }
+      pureNames.remove(normalize(name));
+    }
+  }
+
+  /**
+   * Register a pure built-in process, whose results depend only on its arguments and which does not use globals, I/O
+   * or any other state.
+   *
+   * @see #register(Supplier, String...)
+   */
+  public void registerPure(Supplier<? extends OPPProcessInstance> factory, String... names) {
+    register(factory, names);
+    for (String name : names) {
+      pureNames.add(normalize(name));
+    }
+  }
+
+  /**
+   * @return the factory of the built-in process with the given name, or <code>null</code> if there is no such
+   *         process.
+   */
+  public Supplier<? extends OPPProcessInstance> get(String name) {
+    return name == null ? null : factories.get(normalize(name));
+  }
+
+  /**
+   * @return <code>true</code> if the built-in process with the given name was registered as pure.
+   */
+  public boolean isPure(String name) {
+    return name != null && pureNames.contains(normalize(name));
+  }
+
+  /**
+   * @return the names of all the registered processes, in lower case.
+   */
+  public Set<String> getNames() {
+    return ImmutableSet.copyOf(factories.keySet());
+  }
+
+  private static String normalize(String name) {
+    return name.toLowerCase(Locale.ENGLISH);
+  }
+
+  private void loadProviders() {
+    Iterator<OPPBuiltInProcessProvider> providers = ServiceLoader.load(OPPBuiltInProcessProvider.class, getClass().getClassLoader()).iterator();
+    while (true) {
+      try {
+        if (!providers.hasNext()) {
+          break;
+        }
+        OPPBuiltInProcessProvider provider = providers.next();
+        logInfo("Loading built-in processes from {0}.", provider.getClass().getName());
+        provider.registerProcesses(this);
+      } catch (ServiceConfigurationError e) {
+        logWarning("Built-in process provider could not be loaded: {0}", e.getMessage());
+      }
+    }
+  }
+
+  private void registerDefaultProcesses() {
+    // runtime
+    registerPure(OPPObjectCreatingProcessInstance::new, "object creating", "create object");
+    registerPure(OPPObjectCopyingProcessInstance::new, "object copying", "copy", "copy object");
+
+    // math
+    registerPure(() -> new OPPBinaryMathOpProcessInstance(OPPBinaryMathOpType.ADD), "+", "adding");
+    registerPure(() -> new OPPBinaryMathOpProcessInstance(OPPBinaryMathOpType.SUBS), "-", "subtracting");
+    registerPure(() -> new OPPBinaryMathOpProcessInstance(OPPBinaryMathOpType.MULT), "*", "multiplying");
+    registerPure(() -> new OPPBinaryMathOpProcessInstance(OPPBinaryMathOpType.DIV), "/", "dividing");
+    registerPure(() -> new OPPBinaryMathOpProcessInstance(OPPBinaryMathOpType.POW), "^", "power");
+    registerPure(OPPComparingProcessInstance::new, "number comparing", "number compare");
+    registerPure(() -> new OPPCompareProcessInstance(ComparisonType.LESS_THAN_OR_EQUAL), "a<=b", "<=");
+    registerPure(() -> new OPPCompareProcessInstance(ComparisonType.GREATER_THAN_OR_EQUAL), "a>=b", ">=");
+    registerPure(() -> new OPPCompareProcessInstance(ComparisonType.GREATER_THAN), "a>b", ">");
+    registerPure(() -> new OPPCompareProcessInstance(ComparisonType.LESS_THAN), "a<b", "<");
+    registerPure(() -> new OPPCompareProcessInstance(ComparisonType.EQUAL), "a==b", "==");
+    registerPure(() -> new OPPUnaryMathOpProcessInstance(OPPUnaryMathOpType.LOG), "log(a)", "log");
+    // "-" is subtracting, so negation is only "-a"
+    registerPure(() -> new OPPUnaryMathOpProcessInstance(OPPUnaryMathOpType.NEG), "-a");
+    registerPure(() -> new OPPUnaryMathOpProcessInstance(OPPUnaryMathOpType.SQRT), "sqrt(a)", "sqrt");
+
+    // Strings
+    registerPure(OPPConcatenatingProcessInstance::new, "concatenating", "concatenate");
+    registerPure(OPPStringComparingProcessInstance::new, "string comparing", "string compare");
+
+    // Collections
+    registerPure(OPPElementCountingProcessInstance::new, "element counting", "count");
+
+    // List
+    registerPure(OPPFirstElementAddingProcessInstance::new, "first element adding", "add first");
+    registerPure(OPPFirstElementFetchingProcessInstance::new, "first element fetching", "get first");
+    registerPure(OPPFirstElementRemovingProcessInstance::new, "first element removing", "remove first");
+    registerPure(OPPLocationElementAddingProcessInstance::new, "location element adding", "add element");
+    registerPure(OPPLocationElementFetchingProcessInstance::new, "location element fetching", "fetch element");
+    registerPure(OPPLocationElementRemovingProcessInstance::new, "location element removing", "remove element");
+    registerPure(OPPLastElementAddingProcessInstance::new, "last element adding", "add last");
+    registerPure(OPPLastElementFetchingProcessInstance::new, "last element fetching", "fetch last");
+    registerPure(OPPLastElementRemovingProcessInstance::new, "last element removing", "remove last");
+
+    // Complex Object
+    registerPure(OPPPartAddingProcessInstance::new, "part adding", "add part");
+    registerPure(OPPPartFetchingProcessInstance::new, "part fetching", "fetch part");
+    registerPure(OPPPartRemovingProcessInstance::new, "part removing", "remove part");
+    registerPure(OPPAllPartsFetchingProcessInstance::new, "all parts fetching", "fetch parts");
+    registerPure(OPPAllPartNamesFetchingProcessInstance::new, "all part names fetching", "fetch part names");
+
+    // Global variables
+    register(OPPGlobalFetchingProcessInstance::new, "global fetching", "fetch global");
+    register(OPPGlobalCompareAndSettingProcessInstance::new, "global compare and setting", "compare and set global");
+    register(OPPGlobalAddingProcessInstance::new, "global adding", "add to global");
+
+    // IO
+    register(OPPConsoleReadingProcessInstance::new, "console reading", "console input");
+    register(OPPConsoleWritingProcessInstance::new, "console writing", "console output");
+    // Dialogs cannot be shown in headless JVMs, so the console is used instead
+    boolean headless = GraphicsEnvironment.isHeadless();
+    register(headless ? OPPConsoleReadingProcessInstance::new : OPPDialogTextReadingProcessInstance::new, "dialog text reading", "dialog input");
+    register(headless ? OPPConsoleWritingProcessInstance::new : OPPDialogTextWritingProcessInstance::new, "dialog text writing", "dialog output");
+    register(OPPTextFileReadingProcessInstance::new, "text file reading", "read text file");
+    register(OPPTextFileWritingProcessInstance::new, "text file writing", "write text file");
+    register(OPPTransformJSONStringToObjectProcessInstance::new, "transform json string to object");
+
+    // Misc
+    register(OPPSleepProcessInstance::new, "sleep");
+    register(OPPCallWebAPIProcessInstance::new, "call web api");
+    register(OPPInitializeTwitterClientProcessInstance::new, "initialize twitter client");
+    register(OPPSearchTwitter::new, "search twitter");
+    register(OPPGetDateProcessInstance::new, "get date", "date fetching");
+    register(OPPRandomProcessInstance::new, "random");
+  }
+}
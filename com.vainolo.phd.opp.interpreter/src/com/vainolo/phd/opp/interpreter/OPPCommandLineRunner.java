@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.vainolo.phd.opp.interpreter.json.OPPJsonReader;
+import com.vainolo.phd.opp.interpreter.json.OPPJsonWriter;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPPackage;
+import com.vainolo.phd.opp.utilities.OPPLogger;
+
+/**
+ * <p>
+ * Executes an OPD from the command line, without starting the workbench. The OPD and the OPDs it calls are loaded from
+ * a directory of the file system, which is also where the files used by built-in processes are found.
+ * </p>
+ *
+ * <pre>
+ * OPPCommandLineRunner [options] &lt;directory&gt; &lt;opd name&gt; [name=value ...]
+ * </pre>
+ *
+ * <p>
+ * Arguments are given as <code>name=value</code> pairs, where the value is parsed like the value of an object in a
+ * diagram (<code>"text"</code>, <code>3.5</code>, <code>[1..3]</code> or a JSON object), and taken as a string if it
+ * is not a literal. They can also be read from a JSON object using <code>--args</code>. When the OPD finishes, the
+ * values of its outgoing parameters are written as a JSON object.
+ * </p>
+ *
+ * <p>
+ * Options:
+ * <ul>
+ * <li><code>--args &lt;file&gt;</code>: read arguments from a JSON object stored in a file, or in the standard input
+ * if the file is <code>-</code>. Arguments given on the command line replace the ones in the file.</li>
+ * <li><code>--output &lt;file&gt;</code>: write the results to a file instead of the standard output, which is also
+ * used by console output processes.</li>
+ * <li><code>--log &lt;level&gt;</code>: level of the log, which is written to the standard error. Default is
+ * <code>WARNING</code>.</li>
+ * <li><code>--parallelism &lt;n&gt;</code>: parallelism of the scheduler.</li>
+ * <li><code>--profile</code>: log the execution statistics of every process.</li>
+ * <li><code>--inline &lt;frames&gt;</code>: execute nested compound processes inline, up to the given depth (see
+ * {@link OPPExecutionContext#setMaxInlineFrames(int)}).</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Exits with {@link #EXIT_OK} if the OPD finished, {@link #EXIT_FAILED} if it could not be loaded or its execution
+ * failed, and {@link #EXIT_USAGE} if the command line is not valid.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPCommandLineRunner {
+  public static final int EXIT_OK = 0;
+  public static final int EXIT_FAILED = 1;
+  public static final int EXIT_USAGE = 2;
+
+  private static final String USAGE = "Usage: OPPCommandLineRunner [--args <file>] [--output <file>] [--log <level>] [--parallelism <n>] [--profile]"
+      + " [--inline <frames>] <directory> <opd name> [name=value ...]";
+
+  private String directory;
+  private String opdName;
+  private String argumentsFile;
+  private String outputFile;
+  private Level logLevel = Level.WARNING;
+  private int parallelism = 0;
+  private boolean profiling = false;
+  private int maxInlineFrames = 0;
+  private final Map<String, OPPObjectInstance> arguments = Maps.newLinkedHashMap();
+
+  public static void main(String[] args) {
+    if (System.getProperty("java.awt.headless") == null) {
+      System.setProperty("java.awt.headless", "true");
+    }
+    int status = new OPPCommandLineRunner().run(args, System.out, System.err);
+    OPPLogger.flush();
+    System.exit(status);
+  }
+
+  /**
+   * Parse the command line, execute the OPD and write its results.
+   *
+   * @return the exit status.
+   */
+  public int run(String[] args, PrintStream out, PrintStream err) {
+    try {
+      parseCommandLine(args);
+    } catch (IllegalArgumentException | IOException e) {
+      err.println(e.getMessage());
+      err.println(USAGE);
+      return EXIT_USAGE;
+    }
+
+    OPPLogger.setLevel(logLevel);
+    OPPPackage.eINSTANCE.eClass();
+    OPPInterpreter interpreter = OPPInterpreter.INSTANCE;
+    if (parallelism > 0) {
+      interpreter.setParallelism(parallelism);
+    }
+    interpreter.setProfiling(profiling);
+    interpreter.setMaxInlineFrames(maxInlineFrames);
+
+    OPPExecutionContext context = interpreter.createContext(new OPPDirectoryContainer(Paths.get(directory)));
+    OPPProcessInstance instance;
+    try {
+      instance = context.execute(opdName, arguments);
+    } catch (CancellationException e) {
+      err.println("Execution of " + opdName + " was stopped.");
+      return EXIT_FAILED;
+    } catch (RuntimeException e) {
+      err.println("Execution of " + opdName + " failed: " + (e.getCause() != null ? e.getCause() : e.getMessage()));
+      return EXIT_FAILED;
+    } finally {
+      context.close();
+    }
+    if (instance == null) {
+      err.println(opdName + " is not a compound process.");
+      return EXIT_FAILED;
+    }
+
+    try {
+      writeResults(instance, outputFile == null ? out : null);
+    } catch (IOException e) {
+      err.println("Could not write results: " + e.getMessage());
+      return EXIT_FAILED;
+    }
+    return EXIT_OK;
+  }
+
+  void parseCommandLine(String[] args) throws IOException {
+    Map<String, OPPObjectInstance> commandLineArguments = Maps.newLinkedHashMap();
+    int i = 0;
+    for (; i < args.length && args[i].startsWith("--"); i++) {
+      switch (args[i]) {
+      case "--args":
+        argumentsFile = optionValue(args, ++i);
+        break;
+      case "--output":
+        outputFile = optionValue(args, ++i);
+        break;
+      case "--log":
+        logLevel = Level.parse(optionValue(args, ++i).toUpperCase());
+        break;
+      case "--parallelism":
+        parallelism = Integer.parseInt(optionValue(args, ++i));
+        break;
+      case "--profile":
+        profiling = true;
+        break;
+      case "--inline":
+        maxInlineFrames = Integer.parseInt(optionValue(args, ++i));
+        if (maxInlineFrames < 0) {
+          throw new IllegalArgumentException("Inline frames cannot be negative.");
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+      }
+    }
+    if (args.length - i < 2) {
+      throw new IllegalArgumentException("Missing directory or OPD name.");
+    }
+    directory = args[i++];
+    opdName = args[i++];
+    for (; i < args.length; i++) {
+      int separator = args[i].indexOf('=');
+      if (separator <= 0) {
+        throw new IllegalArgumentException("Argument " + args[i] + " is not of the form name=value.");
+      }
+      try {
+        commandLineArguments.put(args[i].substring(0, separator), parseValue(args[i].substring(separator + 1)));
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("Value of argument " + args[i] + " is not valid: " + e.getMessage());
+      }
+    }
+
+    if (argumentsFile != null) {
+      arguments.putAll(readArguments(argumentsFile));
+    }
+    arguments.putAll(commandLineArguments);
+  }
+
+  private static String optionValue(String[] args, int i) {
+    if (i >= args.length) {
+      throw new IllegalArgumentException("Option " + args[i - 1] + " requires a value.");
+    }
+    return args[i];
+  }
+
+  /**
+   * Parse the value of an argument given on the command line. Values that are not literals are taken as strings, so
+   * quotes are not needed for simple text.
+   */
+  static OPPObjectInstance parseValue(String value) {
+    OPPObjectInstance instance = new OPPObjectInstanceValueAnalyzer().calculateOPMObjectValue(value);
+    return instance != null ? instance : OPPObjectInstance.createFromValue(value);
+  }
+
+  /**
+   * Read arguments from a JSON object, where every member is an argument.
+   */
+  static Map<String, OPPObjectInstance> readArguments(String file) throws IOException {
+    byte[] contents = file.equals("-") ? ByteStreams.toByteArray(System.in) : Files.readAllBytes(Paths.get(file));
+    JsonValue json;
+    try {
+      json = Json.parse(new String(contents, StandardCharsets.UTF_8));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Arguments file " + file + " is not valid JSON: " + e.getMessage());
+    }
+    if (!json.isObject()) {
+      throw new IllegalArgumentException("Arguments file " + file + " must contain a JSON object.");
+    }
+    return new OPPJsonReader().readArguments(json.asObject());
+  }
+
+  /**
+   * Create a JSON object with the values of the outgoing parameters of an executed instance.
+   *
+   * @see OPPJsonWriter#writeResults(OPPProcessInstance)
+   */
+  static JsonObject createResults(OPPProcessInstance instance) {
+    return new OPPJsonWriter().writeResults(instance);
+  }
+
+  private void writeResults(OPPProcessInstance instance, PrintStream out) throws IOException {
+    JsonObject results = createResults(instance);
+    if (out != null) {
+      out.println(results);
+      out.flush();
+    } else {
+      try (Writer writer = new OutputStreamWriter(Files.newOutputStream(Paths.get(outputFile)), StandardCharsets.UTF_8)) {
+        results.writeTo(writer);
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import java.nio.file.Path;
+
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+
+/**
+ * A {@link OPPFileContainer} backed by a directory of the file system, used to execute diagrams outside of the
+ * workbench.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPDirectoryContainer implements OPPFileContainer {
+  private final Path directory;
+
+  public OPPDirectoryContainer(Path directory) {
+    this.directory = directory.toAbsolutePath().normalize();
+  }
+
+  @Override
+  public OPPObjectProcessDiagram getOPD(String opdName) {
+    return OPPOPDCache.getInstance().get(getLocation(opdName + ".opp"));
+  }
+
+  @Override
+  public Path getLocation(String path) {
+    return directory.resolve(path);
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public String toString() {
+    return directory.toString();
+  }
+}
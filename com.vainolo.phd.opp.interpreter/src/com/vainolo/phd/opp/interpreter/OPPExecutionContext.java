@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessResultCache;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagramKind;
+import com.vainolo.phd.opp.utilities.OPPLogTarget;
+
+/**
+ * <p>
+ * The state of a single execution of an OPD: the scheduler where its process instances are executed, the global
+ * variables they share, the container where diagrams and files are found, the target where its log is shown and
+ * whether it was stopped.
+ * </p>
+ *
+ * <p>
+ * Every instance created by the {@link OPPProcessInstanceFactory} receives the context of the instance that created
+ * it, so many contexts can execute at the same time in the same process without sharing any mutable state, and
+ * stopping one of them doesn't affect the others. The {@link OPPInterpreter} keeps the context of the execution
+ * started from the workbench.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPExecutionContext {
+  private final OPPFileContainer container;
+  private final OPPScheduler scheduler;
+  private final boolean ownsScheduler;
+  private final OPPGlobalHeap globalHeap = new OPPGlobalHeap();
+  private final OPPProfiler profiler;
+  private final OPPLogTarget logTarget;
+  private volatile CompletableFuture<OPPProcessExecutionResult> execution;
+  private volatile boolean stopped = false;
+  private volatile int maxInlineFrames = 0;
+
+  /**
+   * Create a new context, which owns the given scheduler and shuts it down when it is stopped.
+   *
+   * @param container
+   *          where diagrams and files are found.
+   * @param scheduler
+   *          where the process instances are executed.
+   * @param profiler
+   *          where the execution of every instance is recorded, or <code>null</code> if the execution is not
+   *          profiled.
+   * @param logTarget
+   *          cleared when an execution starts, or <code>null</code> if the log is not shown.
+   */
+  public OPPExecutionContext(OPPFileContainer container, OPPScheduler scheduler, OPPProfiler profiler, OPPLogTarget logTarget) {
+    this(container, scheduler, true, profiler, logTarget);
+  }
+
+  /**
+   * Create a new context.
+   *
+   * @param ownsScheduler
+   *          <code>true</code> if the scheduler belongs to this context and is shut down when the context is stopped or
+   *          closed, <code>false</code> if it is shared with other contexts, in which case stopping the context only
+   *          cancels its execution.
+   */
+  public OPPExecutionContext(OPPFileContainer container, OPPScheduler scheduler, boolean ownsScheduler, OPPProfiler profiler, OPPLogTarget logTarget) {
+    this.container = container;
+    this.scheduler = scheduler;
+    this.ownsScheduler = ownsScheduler;
+    this.profiler = profiler;
+    this.logTarget = logTarget;
+  }
+
+  /**
+   * Execute an Object Process Diagram (OPD) stored in the container of this context with the given arguments, and wait
+   * until it finishes.
+   * 
+   * @param opdName
+   *          name of the OPD, which is stored in the file <code>opdName.opp</code> of the container.
+   * @param arguments
+   *          values of the incoming parameters of the OPD, by name.
+   * @return the executed instance, from which the values of the outgoing parameters can be read, or <code>null</code>
+   *         if the OPD is not a compound process.
+   * @throws OPPRuntimeException
+   *           if the OPD could not be loaded or its execution failed.
+   * @throws CancellationException
+   *           if the execution was stopped.
+   */
+  public OPPProcessInstance execute(String opdName, Map<String, OPPObjectInstance> arguments) {
+    try {
+      return executeAsync(opdName, arguments).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Interrupted while waiting for " + opdName + " to finish.");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof CancellationException) {
+        throw (CancellationException) e.getCause();
+      }
+      throw e.getCause() instanceof OPPRuntimeException ? (OPPRuntimeException) e.getCause() : new OPPRuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Start the execution of an Object Process Diagram (OPD) without waiting for it to finish. The OPD is loaded and
+   * executed in the scheduler of the context, so the calling thread is never blocked.
+   * 
+   * @return a future completed with the executed instance, or with <code>null</code> if the OPD is not a compound
+   *         process. It is completed exceptionally with an {@link OPPRuntimeException} if the OPD could not be loaded
+   *         or its execution failed, and with a {@link CancellationException} if the execution was stopped.
+   * @see #execute(String, Map)
+   */
+  public CompletableFuture<OPPProcessInstance> executeAsync(String opdName, Map<String, OPPObjectInstance> arguments) {
+    CompletableFuture<OPPProcessInstance> result = new CompletableFuture<>();
+    scheduler.execute(() -> {
+      try {
+        start(opdName, arguments, result);
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+
+  private void start(String opdName, Map<String, OPPObjectInstance> arguments, CompletableFuture<OPPProcessInstance> result) {
+    if (logTarget != null) {
+      logTarget.clear();
+    }
+    logInfo("Interpreting OPD {0}.", opdName);
+    OPPObjectProcessDiagram opd = container.getOPD(opdName);
+    if (opd == null) {
+      throw new OPPRuntimeException("OPD " + opdName + " could not be loaded from " + container + ".");
+    }
+    if (opd.getKind() != OPPObjectProcessDiagramKind.COMPOUND) {
+      logInfo("Process is not compund, returning.");
+      result.complete(null);
+      return;
+    }
+
+    OPPProcessInstance instance = OPPProcessInstanceFactory.createExecutableInstance(opd, this);
+    for (Map.Entry<String, OPPObjectInstance> argument : arguments.entrySet()) {
+      instance.setArgument(argument.getKey(), argument.getValue());
+    }
+    OPPProcessProfile profile = profiler == null ? null : profiler.createProfile(opd.getName(), null);
+    if (profile != null) {
+      instance.setProfile(profile);
+      profile.submitted();
+    }
+
+    CompletableFuture<OPPProcessExecutionResult> currentExecution = scheduler.executeAsync(instance).toCompletableFuture();
+    execution = currentExecution;
+    if (stopped) {
+      currentExecution.cancel(true);
+    }
+    currentExecution.whenComplete((executionResult, failure) -> {
+      finished(opdName, profile);
+      if (failure == null) {
+        result.complete(instance);
+      } else if (failure instanceof CancellationException || failure.getCause() instanceof CancellationException) {
+        result.completeExceptionally(new CancellationException("Execution of " + opdName + " was stopped."));
+      } else {
+        result.completeExceptionally(new OPPRuntimeException(failure instanceof CompletionException ? failure.getCause() : failure));
+      }
+    });
+  }
+
+  private void finished(String opdName, OPPProcessProfile profile) {
+    logInfo("Finished interpreting {0}.", opdName);
+    if (profile != null) {
+      profiler.record(profile);
+      logInfo("Execution profile of {0}:", opdName);
+      for (OPPProfiler.OPPProcessStatistics statistics : profiler.getStatistics()) {
+        logInfo("{0}", statistics);
+      }
+    }
+    logFine("{0}", scheduler);
+    logFine("{0}", OPPOPDCache.getInstance());
+    logFine("{0}", OPPInZoomedProcessResultCache.getInstance());
+  }
+
+  /**
+   * Stop the execution of this context. If the context owns its scheduler, all the executing process instances are
+   * interrupted and the scheduler is shut down, and when called from outside the scheduler, waits until all the
+   * instances have finished. Otherwise, the in-zoomed instances of the execution stop starting new subprocesses.
+   */
+  public void stop() {
+    logInfo("Stopping execution");
+    stopped = true;
+    CompletableFuture<OPPProcessExecutionResult> stoppedExecution = execution;
+    if (stoppedExecution != null) {
+      stoppedExecution.cancel(true);
+    }
+    if (!ownsScheduler) {
+      logInfo("Stopped execution");
+      return;
+    }
+    logFine("{0}", scheduler);
+    scheduler.shutdownNow();
+    if (OPPScheduler.isSchedulerThread()) {
+      logInfo("Execution stopped from a process instance, not waiting for other instances to finish.");
+      return;
+    }
+    while (!scheduler.isTerminated()) {
+      try {
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        logWarning("Interrupted while waiting for all processes to finish.");
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    logInfo("Stopped execution");
+  }
+
+  /**
+   * Release the scheduler of this context if the context owns it, letting the instances that are still executing
+   * finish.
+   */
+  public void close() {
+    if (ownsScheduler) {
+      scheduler.shutdown();
+    }
+  }
+
+  public boolean isStopped() {
+    return stopped;
+  }
+
+  /**
+   * Set how many nested compound processes can be executed inline. A compound process called by an in-zoomed process
+   * is executed inline, as a new frame on the explicit frame stack of the thread that executes its caller, instead of
+   * being submitted to the scheduler, as long as its caller has less than this number of inline ancestors. Calls that
+   * exceed the limit are submitted to the scheduler, where they can be executed inline again.
+   *
+   * @param maxInlineFrames
+   *          maximum depth of nested inline executions, or <code>0</code> to always submit compound processes to the
+   *          scheduler, which is the default.
+   */
+  public void setMaxInlineFrames(int maxInlineFrames) {
+    if (maxInlineFrames < 0) {
+      throw new IllegalArgumentException("Maximum inline frames cannot be negative, got " + maxInlineFrames + ".");
+    }
+    this.maxInlineFrames = maxInlineFrames;
+  }
+
+  public int getMaxInlineFrames() {
+    return maxInlineFrames;
+  }
+
+  public OPPFileContainer getContainer() {
+    return container;
+  }
+
+  public OPPScheduler getScheduler() {
+    return scheduler;
+  }
+
+  public OPPGlobalHeap getGlobalHeap() {
+    return globalHeap;
+  }
+
+  /**
+   * @return the profiler of this context, or <code>null</code> if the execution is not profiled.
+   */
+  public OPPProfiler getProfiler() {
+    return profiler;
+  }
+
+  public OPPLogTarget getLogTarget() {
+    return logTarget;
+  }
+}
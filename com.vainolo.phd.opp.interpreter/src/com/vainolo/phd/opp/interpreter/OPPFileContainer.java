@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import java.nio.file.Path;
+
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+
+/**
+ * <p>
+ * The place where the interpreter finds the diagrams of the compound processes it executes, and the files read and
+ * written by built-in processes, whose names are relative to the container.
+ * </p>
+ *
+ * <p>
+ * Inside the workbench the container is a project or folder of the workspace ({@link OPPWorkspaceContainer}), and
+ * outside of it a directory of the file system ({@link OPPDirectoryContainer}), so diagrams can be executed without
+ * starting the platform.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public interface OPPFileContainer {
+
+  /**
+   * Get the diagram with the given name, which is stored in a file named <code>opdName.opp</code> in the container.
+   *
+   * @return the diagram, or <code>null</code> if it could not be loaded.
+   */
+  OPPObjectProcessDiagram getOPD(String opdName);
+
+  /**
+   * Get the location in the local file system of a file in the container. The file does not need to exist.
+   *
+   * @param path
+   *          of the file, relative to the container.
+   */
+  Path getLocation(String path);
+}
@@ -6,28 +6,144 @@
  *******************************************************************************/
 package com.vainolo.phd.opp.interpreter;
 
-import java.util.Map;
+import static com.google.common.base.Preconditions.*;
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
-import com.google.common.collect.Maps;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 
+/**
+ * <p>
+ * Heap of the global variables, shared by all the process instances of an execution, which may run in different
+ * threads.
+ * </p>
+ *
+ * <p>
+ * Every variable is kept in its own slot, which holds an immutable {@link OPPVersionedValue}. Slots are found in a
+ * {@link ConcurrentHashMap}, whose reads don't lock, and are updated using compare-and-set, so threads updating
+ * different variables never block each other. Every update of a variable, including clearing it, increments its version,
+ * which can be used to implement optimistic read-modify-write cycles with {@link #compareAndSetVariable}, or the update
+ * can be done atomically using {@link #updateVariable}.
+ * </p>
+ *
+ * <p>
+ * Values stored in the heap must not be changed after they are stored. To change a part of a composite global, copy
+ * the value, change the copy and store it.
+ * </p>
+ */
 public class OPPGlobalHeap extends OPPProcessInstanceHeap {
-  private Map<String, OPPObjectInstance> variables;
+  private final ConcurrentMap<String, AtomicReference<OPPVersionedValue>> variables;
 
   public OPPGlobalHeap() {
-    variables = Maps.newHashMap();
+    variables = new ConcurrentHashMap<>();
+  }
+
+  private AtomicReference<OPPVersionedValue> getSlot(String name) {
+    AtomicReference<OPPVersionedValue> slot = variables.get(name);
+    if (slot == null) {
+      slot = variables.computeIfAbsent(name, n -> new AtomicReference<>(OPPVersionedValue.UNSET));
+    }
+    return slot;
   }
 
   public void setVariable(String name, OPPObjectInstance value) {
-    variables.put(name, value);
+    checkArgument(value != null, "Value cannot be null");
+    updateVariable(name, v -> value);
   }
 
   public OPPObjectInstance getVariable(String name) {
-    return variables.get(name);
+    return getVersionedVariable(name).getValue();
   }
 
   public void clearVariable(String name) {
-    variables.remove(name);
+    updateVariable(name, v -> null);
+  }
+
+  /**
+   * Get the value of a global variable together with its version.
+   *
+   * @param name
+   *          of the variable.
+   * @return the current value and version of the variable. Variables that were never set have version <code>0</code>
+   *         and a <code>null</code> value.
+   */
+  public OPPVersionedValue getVersionedVariable(String name) {
+    AtomicReference<OPPVersionedValue> slot = variables.get(name);
+    return slot == null ? OPPVersionedValue.UNSET : slot.get();
+  }
+
+  /**
+   * Set the value of a global variable only if it was not updated since the given version was read.
+   *
+   * @param name
+   *          of the variable.
+   * @param expectedVersion
+   *          the version of the variable read before calculating the new value.
+   * @param value
+   *          the new value, or <code>null</code> to clear the variable.
+   * @return <code>true</code> if the variable was updated, <code>false</code> if its version has changed.
+   */
+  public boolean compareAndSetVariable(String name, long expectedVersion, OPPObjectInstance value) {
+    AtomicReference<OPPVersionedValue> slot = getSlot(name);
+    OPPVersionedValue current = slot.get();
+    if (current.getVersion() != expectedVersion) {
+      return false;
+    }
+    boolean updated = slot.compareAndSet(current, new OPPVersionedValue(value, expectedVersion + 1));
+    logFinest("Compare and set of global variable {0} at version {1}: {2}.", name, expectedVersion, updated);
+    return updated;
   }
 
+  /**
+   * Atomically update the value of a global variable. If other threads update the variable at the same time, the
+   * update function may be called more than once, so it must not have side effects.
+   *
+   * @param name
+   *          of the variable.
+   * @param update
+   *          receives the current value of the variable (<code>null</code> if it has no value) and returns its new
+   *          value, or <code>null</code> to clear the variable.
+   * @return the new value of the variable.
+   */
+  public OPPObjectInstance updateVariable(String name, UnaryOperator<OPPObjectInstance> update) {
+    AtomicReference<OPPVersionedValue> slot = getSlot(name);
+    while (true) {
+      OPPVersionedValue current = slot.get();
+      OPPObjectInstance value = update.apply(current.getValue());
+      if (slot.compareAndSet(current, new OPPVersionedValue(value, current.getVersion() + 1))) {
+        logFinest("Updated global variable {0} to {1}.", name, value);
+        return value;
+      }
+    }
+  }
+
+  /**
+   * The value of a global variable at a given version.
+   */
+  public static final class OPPVersionedValue {
+    static final OPPVersionedValue UNSET = new OPPVersionedValue(null, 0);
+
+    private final OPPObjectInstance value;
+    private final long version;
+
+    OPPVersionedValue(OPPObjectInstance value, long version) {
+      this.value = value;
+      this.version = version;
+    }
+
+    /**
+     * @return the value of the variable, or <code>null</code> if it has no value.
+     */
+    public OPPObjectInstance getValue() {
+      return value;
+    }
+
+    public long getVersion() {
+      return version;
+    }
+  }
 }
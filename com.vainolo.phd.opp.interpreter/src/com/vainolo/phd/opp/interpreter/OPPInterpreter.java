@@ -8,23 +8,27 @@ package com.vainolo.phd.opp.interpreter;
 
 import static com.vainolo.phd.opp.utilities.OPPLogger.*;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import org.eclipse.core.resources.IContainer;
-import org.eclipse.core.runtime.Path;
 
-import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPBlockingExecution;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPSchedulerKind;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 import com.vainolo.phd.opp.model.OPPObjectProcessDiagramKind;
-import com.vainolo.phd.opp.utilities.OPPFileUtils;
 import com.vainolo.phd.opp.utilities.OPPLogTarget;
 import com.vainolo.phd.opp.utilities.OPPLogger;
 
 /**
+ * Entry point of the interpreter in the workbench. Every interpretation is executed in a new
+ * {@link OPPExecutionContext} created with the settings of the interpreter, which replaces and closes the context of the
+ * previous interpretation. A stopped context stays the current context until it is replaced with
+ * {@link #resetContext(OPPFileContainer)}. Independent executions can be created with
+ * {@link #createContext(OPPFileContainer)}.
  * 
  * @author Arieh 'Vainolo' Bibliowicz
  * @created 5 Jul 2012
@@ -33,82 +37,184 @@ import com.vainolo.phd.opp.utilities.OPPLogger;
 public enum OPPInterpreter {
   INSTANCE;
 
-  public static IContainer container = null;
-
-  private OPPProcessInstance instance;
-  private ExecutorService executor;
-  private ExecutorCompletionService<OPPProcessExecutionResult> completionService;
-  private OPPGlobalHeap globalHeap;
+  private OPPExecutionContext context;
+  private OPPSchedulerKind schedulerKind = OPPSchedulerKind.FORK_JOIN;
+  private OPPBlockingExecution blockingExecution = OPPBlockingExecution.VIRTUAL_THREADS;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
   private OPPLogTarget logViewPart;
-  private boolean stopped;
+  private boolean profiling = false;
+  private int maxInlineFrames = 0;
 
   private OPPInterpreter() {
   }
 
   /**
-   * Execute an Object Process Diagram (OPD). An OPD can be of two kinds, {@link OPPObjectProcessDiagramKind#SYSTEM} and
+   * Execute an Object Process Diagram (OPD) stored in the workspace, writing the log of the execution to the log view.
+   * An OPD can be of two kinds, {@link OPPObjectProcessDiagramKind#SYSTEM} and
    * {@link OPPObjectProcessDiagramKind#COMPOUND}, but they can both be executed in the same way.
    * 
    * @param opdName
    * @param container
    */
   public void interpret(String opdName, final IContainer _container) {
-    stopped = false;
-    executor = Executors.newSingleThreadExecutor(); // Executors.newCachedThreadPool();
-    completionService = new ExecutorCompletionService<>(executor);
-    globalHeap = new OPPGlobalHeap();
-
     OPPLogger.setLevel(Level.FINE);
-    try {
-      logViewPart.clear();
-    } catch (NullPointerException e) {
+    if (logViewPart == null) {
       OPPLogger.logWarning("logViewPart is null. probably not initialized. Ignoring.");
     }
+    interpret(opdName, new OPPWorkspaceContainer(_container));
+  }
 
-    container = _container;
-    logInfo("Interpreting OPD {0}.", opdName);
-    OPPObjectProcessDiagram opd = OPPFileUtils.loadOPPFile(OPPInterpreter.container.getFile(new Path(opdName + ".opp")).getFullPath().toString());
-    if (opd.getKind() != OPPObjectProcessDiagramKind.COMPOUND) {
-      logInfo("Process is not compund, returning.");
-      return;
-    }
-
-    instance = OPPProcessInstanceFactory.createExecutableInstance(opd);
-
+  /**
+   * Execute an Object Process Diagram (OPD) stored in a container, logging any failure.
+   */
+  public void interpret(String opdName, OPPFileContainer _container) {
     try {
-      completionService.submit(instance);
-      completionService.take();
+      execute(opdName, _container, Collections.emptyMap());
+    } catch (CancellationException e) {
+      logInfo("Execution of {0} was stopped.", opdName);
     } catch (Exception e) {
       logSevere("Unexpected exception: " + e.getMessage());
     }
-    logInfo("Finished interpreting {0}.", opdName);
+  }
+
+  /**
+   * Execute an Object Process Diagram (OPD) in a new context, which becomes the current context of the interpreter.
+   * The scheduler of the previous context is shut down.
+   * 
+   * @see OPPExecutionContext#execute(String, Map)
+   */
+  public OPPProcessInstance execute(String opdName, OPPFileContainer _container, Map<String, OPPObjectInstance> arguments) {
+    return resetContext(_container).execute(opdName, arguments);
+  }
+
+  /**
+   * Replace the current context of the interpreter with a new context created with the current settings. The scheduler
+   * of the previous context is shut down, letting the instances that are still executing finish.
+   * 
+   * @return the new current context.
+   */
+  public OPPExecutionContext resetContext(OPPFileContainer _container) {
+    OPPExecutionContext newContext = createContext(_container);
+    OPPExecutionContext previousContext;
+    synchronized (this) {
+      previousContext = context;
+      context = newContext;
+    }
+    if (previousContext != null) {
+      previousContext.close();
+    }
+    return newContext;
+  }
+
+  /**
+   * Create a context with the current settings of the interpreter and a new scheduler. The context is independent of
+   * the interpretations started by the interpreter, and must be closed or stopped when it is not needed anymore.
+   */
+  public OPPExecutionContext createContext(OPPFileContainer _container) {
+    OPPExecutionContext newContext = new OPPExecutionContext(_container, new OPPScheduler(schedulerKind, parallelism, blockingExecution),
+        profiling ? new OPPProfiler() : null, logViewPart);
+    newContext.setMaxInlineFrames(maxInlineFrames);
+    return newContext;
+  }
+
+  /**
+   * Get the context of the current interpretation. If no interpretation was started (for example when executing
+   * instances directly), a context is created using the current settings. A stopped context is returned as is, so
+   * callers can see that it was stopped; use {@link #resetContext(OPPFileContainer)} to start a new one.
+   */
+  public synchronized OPPExecutionContext getContext() {
+    if (context == null) {
+      context = createContext(null);
+    }
+    return context;
   }
 
   public Executor getExecutor() {
-    return executor;
+    return getScheduler();
+  }
+
+  /**
+   * Get the scheduler where the process instances of the current interpretation are executed.
+   */
+  public OPPScheduler getScheduler() {
+    return getContext().getScheduler();
   }
 
+  /**
+   * Set the kind of scheduler used by the following interpretations.
+   */
+  public void setSchedulerKind(OPPSchedulerKind schedulerKind) {
+    this.schedulerKind = schedulerKind;
+  }
+
+  /**
+   * Set how the scheduler of the following interpretations executes {@link OPPBlockingProcessInstance}s.
+   */
+  public void setBlockingExecution(OPPBlockingExecution blockingExecution) {
+    this.blockingExecution = blockingExecution;
+  }
+
+  /**
+   * Set the parallelism of the scheduler used by the following interpretations.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive, got " + parallelism + ".");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Enable or disable profiling of the following interpretations. When enabled, the timings of every process instance
+   * are recorded in an {@link OPPProfiler}, and the statistics of every process are logged when the interpretation
+   * finishes.
+   */
+  public void setProfiling(boolean profiling) {
+    this.profiling = profiling;
+  }
+
+  /**
+   * Set how many nested compound processes the following interpretations can execute inline.
+   *
+   * @see OPPExecutionContext#setMaxInlineFrames(int)
+   */
+  public void setMaxInlineFrames(int maxInlineFrames) {
+    if (maxInlineFrames < 0) {
+      throw new IllegalArgumentException("Maximum inline frames cannot be negative, got " + maxInlineFrames + ".");
+    }
+    this.maxInlineFrames = maxInlineFrames;
+  }
+
+  /**
+   * @return the profiler of the current or last interpretation, or <code>null</code> if it was not profiled.
+   */
+  public synchronized OPPProfiler getProfiler() {
+    return context == null ? null : context.getProfiler();
+  }
+
+  /**
+   * Stop the current interpretation.
+   * 
+   * @see OPPExecutionContext#stop()
+   */
   public void stopExecution() {
-    logInfo("Stopping execution");
-    stopped = true;
-    executor.shutdownNow();
-    while (!executor.isTerminated()) {
-      try {
-        executor.awaitTermination(5, TimeUnit.SECONDS);
-      } catch (InterruptedException e) {
-        logWarning("Interrupted while waiting for all processes to finish.");
-        e.printStackTrace();
-      }
+    OPPExecutionContext stoppedContext;
+    synchronized (this) {
+      stoppedContext = context;
+    }
+    if (stoppedContext == null) {
+      logInfo("Stopped execution");
+      return;
     }
-    logInfo("Stopped execution");
+    stoppedContext.stop();
   }
 
-  public boolean isStopped() {
-    return stopped;
+  public synchronized boolean isStopped() {
+    return context != null && context.isStopped();
   }
 
   public OPPGlobalHeap getGlobalHeap() {
-    return globalHeap;
+    return getContext().getGlobalHeap();
   }
 
   public void setLogView(OPPLogTarget oppExecutionLogViewPart) {
@@ -0,0 +1,409 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPListObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance.InstanceKind;
+
+/**
+ * <p>
+ * A Java method called by a process of kind {@link com.vainolo.phd.opp.model.OPPProcessKind#JAVA JAVA}, whose
+ * description is the signature of the method: <code>package.Class.method(parameter types)</code>, for example
+ * <code>java.lang.Math.max(long, long)</code>.
+ * </p>
+ *
+ * <p>
+ * Signatures are parsed once and cached by {@link #forSignature(String)}. Parsing loads the class, finds the method,
+ * binds it to a {@link MethodHandle} and chooses how every argument is converted to the Java type of its parameter, so
+ * calling the method only converts the arguments and invokes the handle.
+ * </p>
+ *
+ * <p>
+ * The arguments of the method are the values of the parameters <code>arg0</code>, <code>arg1</code>, etc. Instance
+ * methods are called on the value of the <code>this</code> parameter converted to the class of the method, or on a new
+ * instance of the class if <code>this</code> has no value and the class has a public constructor without parameters.
+ * The value returned by the method is stored in the <code>result</code> parameter.
+ * </p>
+ *
+ * <p>
+ * Strings, numbers and lists of the interpreter are converted to Java strings, primitive numbers, their wrappers,
+ * {@link BigDecimal}s, {@link BigInteger}s and collections. Booleans are the strings <code>yes</code>/
+ * <code>true</code> and <code>no</code>/<code>false</code>, and complex objects are converted to {@link Map}s.
+ * Parameters of type {@link OPPObjectInstance} receive the instance itself. Returned values are converted back the same
+ * way, and values of other types are stored as their string representation.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public final class OPPJavaMethod {
+  public static final String TARGET = "this";
+  public static final String RESULT = "result";
+
+  private static final Pattern SIGNATURE_PATTERN = Pattern.compile("(.*)\\.([^\\.]*)\\((.*)\\)");
+  private static final ImmutableMap<String, Class<?>> PRIMITIVES = ImmutableMap.<String, Class<?>> builder().put("byte", byte.class)
+      .put("short", short.class).put("int", int.class).put("long", long.class).put("float", float.class).put("double", double.class)
+      .put("boolean", boolean.class).put("char", char.class).build();
+  private static final ConcurrentMap<String, OPPJavaMethod> CACHE = new ConcurrentHashMap<>();
+
+  private final String signature;
+  private final Method method;
+  private final boolean isStatic;
+  /** Takes all the arguments, including the target of instance methods, as an array, and returns an object. */
+  private final MethodHandle handle;
+  /** Creates a target for instance methods, or <code>null</code>. */
+  private final MethodHandle constructor;
+  private final OPPArgumentConverter targetConverter;
+  private final OPPArgumentConverter[] converters;
+  private final ImmutableList<String> parameterNames;
+
+  /**
+   * @return the method with the given signature, which is parsed the first time it is requested.
+   * @throws OPPRuntimeException
+   *           if the signature cannot be parsed or the method cannot be found.
+   */
+  public static OPPJavaMethod forSignature(String signature) {
+    OPPJavaMethod method = CACHE.get(signature);
+    if (method == null) {
+      method = CACHE.computeIfAbsent(signature, OPPJavaMethod::new);
+    }
+    return method;
+  }
+
+  /**
+   * Parse a signature without caching it.
+   *
+   * @see #forSignature(String)
+   */
+  static OPPJavaMethod parse(String signature) {
+    return new OPPJavaMethod(signature);
+  }
+
+  private OPPJavaMethod(String signature) {
+    this.signature = signature;
+    Matcher matcher = SIGNATURE_PATTERN.matcher(signature == null ? "" : signature);
+    if (!matcher.find()) {
+      throw new OPPRuntimeException("Could not parse method definition " + signature + ".");
+    }
+    String className = matcher.group(1).trim();
+    String methodName = matcher.group(2).trim();
+    String methodParameters = matcher.group(3).replaceAll("\\s*", "");
+    String[] parameterTypeNames = methodParameters.isEmpty() ? new String[0] : methodParameters.split(",");
+
+    Class<?> cls = loadClass(className);
+    Class<?>[] parameterTypes = new Class<?>[parameterTypeNames.length];
+    for (int i = 0; i < parameterTypeNames.length; i++) {
+      parameterTypes[i] = loadClass(parameterTypeNames[i]);
+    }
+    try {
+      this.method = cls.getMethod(methodName, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      throw new OPPRuntimeException("Could not find method " + methodName + " in class " + className
+          + ". Please check that you have given the correct parameters and try again.");
+    }
+    this.isStatic = Modifier.isStatic(method.getModifiers());
+
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    try {
+      MethodHandle unreflected = lookup.unreflect(method);
+      int arity = unreflected.type().parameterCount();
+      this.handle = unreflected.asType(MethodType.genericMethodType(arity)).asSpreader(Object[].class, arity);
+    } catch (IllegalAccessException e) {
+      throw new OPPRuntimeException("Method " + signature + " is not accessible.");
+    }
+    MethodHandle targetConstructor = null;
+    if (!isStatic) {
+      try {
+        targetConstructor = lookup.findConstructor(cls, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        // the target must be given as an argument
+      }
+    }
+    this.constructor = targetConstructor;
+    this.targetConverter = isStatic || !isSupported(cls) ? null : createConverter(cls);
+
+    this.converters = new OPPArgumentConverter[parameterTypes.length];
+    List<String> names = Lists.newArrayList();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      converters[i] = createConverter(parameterTypes[i]);
+      names.add("arg" + i);
+    }
+    this.parameterNames = ImmutableList.copyOf(names);
+  }
+
+  private static Class<?> loadClass(String name) {
+    Class<?> primitive = PRIMITIVES.get(name);
+    if (primitive != null) {
+      return primitive;
+    }
+    if (name.startsWith("[") || name.endsWith("[]")) {
+      throw new OPPRuntimeException("Array parameters are not supported yet.");
+    }
+    try {
+      return Class.forName(name);
+    } catch (ClassNotFoundException e) {
+      throw new OPPRuntimeException("Could not load class " + name + ". Check that the class is in the classpath.");
+    }
+  }
+
+  /**
+   * Call the method.
+   *
+   * @param target
+   *          the object on which an instance method is called, or <code>null</code> to create a new one. Ignored by
+   *          static methods.
+   * @param arguments
+   *          the arguments of the method, in order.
+   * @return the value returned by the method, or <code>null</code> if it returned nothing.
+   */
+  public OPPObjectInstance invoke(OPPObjectInstance target, OPPObjectInstance... arguments) {
+    if (arguments.length != converters.length) {
+      throw new OPPRuntimeException("Method " + signature + " requires " + converters.length + " arguments but got " + arguments.length + ".");
+    }
+    int offset = isStatic ? 0 : 1;
+    Object[] values = new Object[converters.length + offset];
+    if (!isStatic) {
+      values[0] = createTarget(target);
+    }
+    for (int i = 0; i < converters.length; i++) {
+      if (arguments[i] == null) {
+        throw new OPPRuntimeException("Argument " + parameterNames.get(i) + " of " + signature + " has no value.");
+      }
+      values[i + offset] = converters[i].convert(arguments[i]);
+    }
+    Object result;
+    try {
+      result = (Object) handle.invokeExact(values);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new OPPRuntimeException(e);
+    }
+    return toInstance(result);
+  }
+
+  private Object createTarget(OPPObjectInstance target) {
+    if (target != null) {
+      if (targetConverter == null) {
+        throw new OPPRuntimeException("Instances of " + method.getDeclaringClass().getName() + " cannot be given as the " + TARGET + " argument of "
+            + signature + ".");
+      }
+      return targetConverter.convert(target);
+    }
+    if (constructor == null) {
+      throw new OPPRuntimeException("Method " + signature + " is not static, so it requires a " + TARGET + " argument.");
+    }
+    try {
+      return (Object) constructor.invokeExact();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new OPPRuntimeException(e);
+    }
+  }
+
+  public String getSignature() {
+    return signature;
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  public boolean isStatic() {
+    return isStatic;
+  }
+
+  /**
+   * @return <code>true</code> if the method returns a value.
+   */
+  public boolean hasResult() {
+    return method.getReturnType() != void.class;
+  }
+
+  /**
+   * @return the names of the parameters whose values are the arguments of the method.
+   */
+  public List<String> getParameterNames() {
+    return parameterNames;
+  }
+
+  /**
+   * Converts an instance to the Java type of a parameter. Converters are chosen when the method is parsed.
+   */
+  private interface OPPArgumentConverter {
+    Object convert(OPPObjectInstance instance);
+  }
+
+  private static boolean isSupported(Class<?> type) {
+    try {
+      createConverter(type);
+      return true;
+    } catch (OPPRuntimeException e) {
+      return false;
+    }
+  }
+
+  private static OPPArgumentConverter createConverter(Class<?> type) {
+    if (OPPObjectInstance.class.isAssignableFrom(type)) {
+      return instance -> type.cast(instance);
+    } else if (type == String.class || type == CharSequence.class) {
+      return OPPObjectInstance::getStringValue;
+    } else if (type == int.class || type == Integer.class) {
+      return instance -> instance.getNumericalValue().intValueExact();
+    } else if (type == long.class || type == Long.class) {
+      return instance -> instance.getNumericalValue().longValueExact();
+    } else if (type == double.class || type == Double.class) {
+      return instance -> instance.getNumericalValue().doubleValue();
+    } else if (type == float.class || type == Float.class) {
+      return instance -> instance.getNumericalValue().floatValue();
+    } else if (type == short.class || type == Short.class) {
+      return instance -> instance.getNumericalValue().shortValueExact();
+    } else if (type == byte.class || type == Byte.class) {
+      return instance -> instance.getNumericalValue().byteValueExact();
+    } else if (type == BigDecimal.class || type == Number.class) {
+      return OPPObjectInstance::getNumericalValue;
+    } else if (type == BigInteger.class) {
+      return instance -> instance.getNumericalValue().toBigIntegerExact();
+    } else if (type == boolean.class || type == Boolean.class) {
+      return OPPJavaMethod::toBoolean;
+    } else if (type == char.class || type == Character.class) {
+      return OPPJavaMethod::toCharacter;
+    } else if (type.isAssignableFrom(List.class)) {
+      return instance -> toJava(instance, List.class);
+    } else if (type.isAssignableFrom(Map.class)) {
+      return instance -> toJava(instance, Map.class);
+    } else if (type == Object.class) {
+      return instance -> toJava(instance, Object.class);
+    }
+    throw new OPPRuntimeException("Parameters of type " + type.getName() + " are not supported.");
+  }
+
+  private static boolean toBoolean(OPPObjectInstance instance) {
+    String value = instance.getStringValue();
+    if (value.equalsIgnoreCase("yes") || value.equalsIgnoreCase("true")) {
+      return true;
+    } else if (value.equalsIgnoreCase("no") || value.equalsIgnoreCase("false")) {
+      return false;
+    }
+    throw new OPPRuntimeException("Value " + value + " is not a boolean.");
+  }
+
+  private static char toCharacter(OPPObjectInstance instance) {
+    String value = instance.getStringValue();
+    if (value.length() != 1) {
+      throw new OPPRuntimeException("Value " + value + " is not a character.");
+    }
+    return value.charAt(0);
+  }
+
+  /**
+   * Convert an instance to its natural Java value: numbers to {@link BigDecimal}s, strings to {@link String}s, lists
+   * to {@link List}s and complex objects to {@link Map}s.
+   *
+   * @param expected
+   *          the type that the value must have.
+   */
+  private static Object toJava(OPPObjectInstance instance, Class<?> expected) {
+    Object value;
+    if (instance.kind == InstanceKind.LIST) {
+      OPPListObjectInstance list = (OPPListObjectInstance) instance;
+      List<Object> elements = Lists.newArrayListWithCapacity(list.count());
+      for (int i = 1; i <= list.count(); i++) {
+        elements.add(toJava(list.get(i), Object.class));
+      }
+      value = elements;
+    } else if (instance.kind == InstanceKind.COMPOSITE) {
+      OPPComplexObjectInstance composite = (OPPComplexObjectInstance) instance;
+      Map<String, Object> parts = Maps.newLinkedHashMap();
+      for (String partName : composite.getPartNames()) {
+        parts.put(partName, toJava(composite.getPart(partName), Object.class));
+      }
+      value = parts;
+    } else if (instance.kind == InstanceKind.NUMERICAL) {
+      value = instance.getNumericalValue();
+    } else {
+      value = instance.getStringValue();
+    }
+    if (!expected.isInstance(value)) {
+      throw new OPPRuntimeException("Value " + instance + " cannot be converted to " + expected.getName() + ".");
+    }
+    return value;
+  }
+
+  /**
+   * Convert a value returned by a method to an instance.
+   */
+  static OPPObjectInstance toInstance(Object value) {
+    if (value == null) {
+      return null;
+    } else if (value instanceof OPPObjectInstance) {
+      return (OPPObjectInstance) value;
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return OPPObjectInstance.createFromValue(((Number) value).longValue());
+    } else if (value instanceof BigDecimal) {
+      return OPPObjectInstance.createFromValue((BigDecimal) value);
+    } else if (value instanceof BigInteger) {
+      return OPPObjectInstance.createFromValue(new BigDecimal((BigInteger) value));
+    } else if (value instanceof Double || value instanceof Float) {
+      double doubleValue = ((Number) value).doubleValue();
+      if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+        throw new OPPRuntimeException("Value " + value + " is not a valid number.");
+      }
+      return OPPObjectInstance.createFromValue(BigDecimal.valueOf(doubleValue));
+    } else if (value instanceof Number) {
+      return OPPObjectInstance.createFromValue(new BigDecimal(value.toString()));
+    } else if (value instanceof Boolean) {
+      return OPPObjectInstance.createFromValue((Boolean) value ? "yes" : "no");
+    } else if (value instanceof Collection) {
+      OPPListObjectInstance list = OPPObjectInstance.createListInstance();
+      for (Object element : (Collection<?>) value) {
+        OPPObjectInstance elementInstance = toInstance(element);
+        if (elementInstance != null) {
+          list.addLast(elementInstance);
+        }
+      }
+      return list;
+    } else if (value instanceof Map) {
+      OPPComplexObjectInstance composite = OPPObjectInstance.createCompositeInstance();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        OPPObjectInstance part = toInstance(entry.getValue());
+        if (part != null) {
+          composite.setPart(String.valueOf(entry.getKey()), part);
+        }
+      }
+      return composite;
+    }
+    return OPPObjectInstance.createFromValue(value.toString());
+  }
+
+  @Override
+  public String toString() {
+    return signature;
+  }
+}
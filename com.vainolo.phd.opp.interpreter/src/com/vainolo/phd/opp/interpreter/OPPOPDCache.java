@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlanCache;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.utilities.OPPFileUtils;
+
+/**
+ * <p>
+ * Process-wide cache of the {@link OPPObjectProcessDiagram}s loaded by the interpreter, so that compound processes
+ * that are invoked many times (in loops or recursively) are parsed only once.
+ * </p>
+ *
+ * <p>
+ * Diagrams are keyed by the path of their file and stored together with the modification time of the file when they
+ * were loaded. A diagram whose file has changed since it was loaded is discarded and loaded again. When running inside
+ * a workspace, changes to OPP files also evict their diagrams as soon as they happen. Diagrams stored in the workspace
+ * are keyed by their workspace path, and diagrams stored outside of it by the URI of their file. The cache holds at most
+ * {@link #DEFAULT_MAXIMUM_SIZE} diagrams, evicting the least recently used ones.
+ * </p>
+ *
+ * <p>
+ * The diagrams returned by the cache are shared between all the executions, so they must not be modified.
+ * </p>
+ */
+public class OPPOPDCache {
+  public static final int DEFAULT_MAXIMUM_SIZE = 128;
+  private static final String OPP_FILE_EXTENSION = "opp";
+
+  private static OPPOPDCache instance;
+
+  private final Function<String, OPPObjectProcessDiagram> loader;
+  private final Cache<String, OPPOPDCacheEntry> cache;
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong loadFailureCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong totalLoadTime = new AtomicLong();
+
+  OPPOPDCache(int maximumSize, Function<String, OPPObjectProcessDiagram> loader) {
+    this.loader = loader;
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).removalListener(new OPPOPDCacheRemovalListener()).build();
+  }
+
+  /**
+   * Get the process-wide cache.
+   */
+  public static synchronized OPPOPDCache getInstance() {
+    if (instance == null) {
+      instance = new OPPOPDCache(DEFAULT_MAXIMUM_SIZE, OPPFileUtils::loadOPPFile);
+      instance.listenToWorkspaceChanges();
+    }
+    return instance;
+  }
+
+  /**
+   * Get the diagram stored in a file, loading it if it is not in the cache or if the file changed since it was loaded.
+   *
+   * @param file
+   *          the file where the diagram is stored.
+   * @return the diagram stored in the file, or <code>null</code> if the file could not be loaded.
+   */
+  public OPPObjectProcessDiagram get(IFile file) {
+    return get(file.getFullPath().toString(), getModificationTime(file));
+  }
+
+  /**
+   * Get the diagram stored in a file of the local file system, loading it if it is not in the cache or if the file
+   * changed since it was loaded.
+   *
+   * @param file
+   *          the file where the diagram is stored.
+   * @return the diagram stored in the file, or <code>null</code> if the file could not be loaded.
+   */
+  public OPPObjectProcessDiagram get(Path file) {
+    File localFile = file.toAbsolutePath().normalize().toFile();
+    return get(localFile.toURI().toString(), localFile.lastModified());
+  }
+
+  OPPObjectProcessDiagram get(String path, long modificationTime) {
+    requestCount.incrementAndGet();
+    try {
+      OPPOPDCacheEntry entry = cache.get(path, () -> load(path, modificationTime));
+      if (entry.modificationTime != modificationTime) {
+        logFine("OPD file {0} changed since it was loaded, reloading.", path);
+        cache.asMap().remove(path, entry);
+        entry = cache.get(path, () -> load(path, modificationTime));
+      }
+      return entry.opd;
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      loadFailureCount.incrementAndGet();
+      return null;
+    }
+  }
+
+  private OPPOPDCacheEntry load(String path, long modificationTime) throws ExecutionException {
+    missCount.incrementAndGet();
+    long start = System.nanoTime();
+    OPPObjectProcessDiagram opd = loader.apply(path);
+    totalLoadTime.addAndGet(System.nanoTime() - start);
+    if (opd == null) {
+      throw new ExecutionException("OPD file " + path + " could not be loaded.", null);
+    }
+    logFine("Loaded OPD file {0}.", path);
+    return new OPPOPDCacheEntry(opd, modificationTime);
+  }
+
+  /**
+   * Discard the diagram stored in a file, if it is in the cache.
+   */
+  public void invalidate(String path) {
+    cache.invalidate(path);
+  }
+
+  /**
+   * Discard all the diagrams in the cache.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  public long getHitCount() {
+    return requestCount.get() - missCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public double getHitRate() {
+    long requests = requestCount.get();
+    return requests == 0 ? 1.0 : (double) getHitCount() / requests;
+  }
+
+  public long getLoadFailureCount() {
+    return loadFailureCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * @return total time spent loading diagrams, in nanoseconds.
+   */
+  public long getTotalLoadTime() {
+    return totalLoadTime.get();
+  }
+
+  /**
+   * @return average time spent loading a diagram, in nanoseconds.
+   */
+  public double getAverageLoadTime() {
+    long misses = missCount.get();
+    return misses == 0 ? 0.0 : (double) totalLoadTime.get() / misses;
+  }
+
+  @Override
+  public String toString() {
+    return "OPD cache: size=" + size() + ", requests=" + getRequestCount() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+        + getEvictionCount() + ", failures=" + getLoadFailureCount() + ", average load time=" + (long) getAverageLoadTime() / 1000 + "us";
+  }
+
+  private static long getModificationTime(IFile file) {
+    IPath location = file.getLocation();
+    if (location != null) {
+      File localFile = location.toFile();
+      if (localFile.exists()) {
+        return localFile.lastModified();
+      }
+    }
+    return file.getModificationStamp();
+  }
+
+  private void listenToWorkspaceChanges() {
+    try {
+      ResourcesPlugin.getWorkspace().addResourceChangeListener(new OPPOPDResourceChangeListener(), IResourceChangeEvent.POST_CHANGE);
+    } catch (IllegalStateException | NullPointerException | LinkageError e) {
+      logFine("Workspace not available, OPD cache will only check file modification times.");
+    }
+  }
+
+  private static class OPPOPDCacheEntry {
+    final OPPObjectProcessDiagram opd;
+    final long modificationTime;
+
+    OPPOPDCacheEntry(OPPObjectProcessDiagram opd, long modificationTime) {
+      this.opd = opd;
+      this.modificationTime = modificationTime;
+    }
+  }
+
+  /**
+   * Counts evictions, and discards the execution plan of every removed diagram, since the diagram loaded in its place
+   * is a different object and the plans and results derived from the removed one must not be reused.
+   */
+  private class OPPOPDCacheRemovalListener implements RemovalListener<String, OPPOPDCacheEntry> {
+    @Override
+    public void onRemoval(RemovalNotification<String, OPPOPDCacheEntry> notification) {
+      if (notification.wasEvicted()) {
+        evictionCount.incrementAndGet();
+      }
+      if (notification.getValue() != null) {
+        OPPInZoomedProcessExecutionPlanCache.invalidate(notification.getValue().opd);
+      }
+    }
+  }
+
+  /**
+   * Evicts the diagrams of OPP files that are changed, replaced or removed in the workspace.
+   */
+  private class OPPOPDResourceChangeListener implements IResourceChangeListener {
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+      if (event.getDelta() == null || cache.size() == 0) {
+        return;
+      }
+      try {
+        event.getDelta().accept(delta -> {
+          IResource resource = delta.getResource();
+          if (resource.getType() != IResource.FILE) {
+            return true;
+          }
+          if (OPP_FILE_EXTENSION.equals(resource.getFileExtension()) && delta.getKind() != IResourceDelta.ADDED) {
+            invalidate(resource.getFullPath().toString());
+          }
+          return false;
+        });
+      } catch (CoreException e) {
+        logWarning("Could not process workspace changes, discarding all cached OPDs.");
+        invalidateAll();
+      }
+    }
+  }
+}
@@ -115,11 +115,11 @@ public class OPPObjectInstanceValueAnalyzer {
       int end = Integer.parseInt(indices[1]);
       if (start <= end) {
         for (int i = start; i <= end; i++) {
-          collection.add(OPPObjectInstance.createFromValue(new BigDecimal(i)));
+          collection.add(OPPObjectInstance.createFromValue(i));
         }
       } else {
         for (int i = start; i >= end; i--) {
-          collection.add(OPPObjectInstance.createFromValue(new BigDecimal(i)));
+          collection.add(OPPObjectInstance.createFromValue(i));
         }
       }
     } else {
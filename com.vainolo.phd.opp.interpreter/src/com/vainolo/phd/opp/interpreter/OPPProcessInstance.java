@@ -65,4 +65,14 @@ public interface OPPProcessInstance extends Callable<OPPProcessExecutionResult>
    * Set the name of the Process.
    */
   void setName(String name);
+
+  /**
+   * Set the profile where the execution of this instance is recorded. Only called when profiling is enabled.
+   */
+  void setProfile(OPPProcessProfile profile);
+
+  /**
+   * Set the context of the execution this instance belongs to.
+   */
+  void setContext(OPPExecutionContext context);
 }
@@ -28,8 +28,9 @@ public class OPPProcessInstanceHeap {
   }
 
   public OPPObjectInstance getArgument(String name) {
-    logFiner("Getting argument {0} which is {1}.", name, arguments.get(name.toLowerCase()));
-    return arguments.get(name.toLowerCase());
+    OPPObjectInstance value = arguments.get(name.toLowerCase());
+    logFiner("Getting argument {0} which is {1}.", name, value);
+    return value;
   }
 
 }
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+/**
+ * <p>
+ * Timings of the execution of a single process instance, recorded by the {@link OPPProfiler}. All times are
+ * {@link System#nanoTime()} values. Any value, including <code>0</code>, can be returned by the clock, so stages that
+ * did not happen are marked separately (for example, the root instance has no arguments loaded by a parent, and an
+ * instance that was stopped may never finish).
+ * </p>
+ *
+ * <p>
+ * The stages of an instance are recorded by different threads: arguments are loaded and the instance is submitted by
+ * the step of its parent, it is started and finished by the scheduler thread that executes it, and its results are
+ * extracted by the step of the parent that handles its completion. Every stage happens after the previous one was
+ * published through the scheduler or a completed stage, so the fields need no synchronization.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public final class OPPProcessProfile {
+  /** Time of a stage that was not recorded. */
+  private static final long NOT_RECORDED = Long.MIN_VALUE;
+
+  private final long id;
+  private final String name;
+  private final OPPProcessProfile parent;
+  private long argumentLoadingStart;
+  private long argumentLoadingEnd;
+  private String argumentLoadingThread;
+  private long submitted = NOT_RECORDED;
+  private long started = NOT_RECORDED;
+  private long finished = NOT_RECORDED;
+  private String thread;
+  private boolean async;
+  private long resultExtractionStart;
+  private long resultExtractionEnd;
+  private String resultExtractionThread;
+
+  OPPProcessProfile(long id, String name, OPPProcessProfile parent) {
+    this.id = id;
+    this.name = name;
+    this.parent = parent;
+  }
+
+  /**
+   * Record the time it took to load the arguments of the instance, which ended now.
+   */
+  public void argumentsLoaded(long start) {
+    argumentLoadingStart = start;
+    argumentLoadingEnd = System.nanoTime();
+    argumentLoadingThread = Thread.currentThread().getName();
+  }
+
+  /**
+   * Record that the instance was submitted to the scheduler.
+   */
+  public void submitted() {
+    submitted = System.nanoTime();
+  }
+
+  /**
+   * Record that the instance started executing in the current thread.
+   *
+   * @param async
+   *          <code>true</code> if the instance does not hold the thread until it finishes.
+   */
+  void started(boolean async) {
+    started = System.nanoTime();
+    thread = Thread.currentThread().getName();
+    this.async = async;
+  }
+
+  void finished() {
+    finished = System.nanoTime();
+  }
+
+  /**
+   * Record the time it took to extract the results of the instance, which ended now.
+   */
+  public void resultsExtracted(long start) {
+    resultExtractionStart = start;
+    resultExtractionEnd = System.nanoTime();
+    resultExtractionThread = Thread.currentThread().getName();
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the profile of the in-zoomed instance that executed this instance, or <code>null</code> for the root
+   *         instance.
+   */
+  public OPPProcessProfile getParent() {
+    return parent;
+  }
+
+  /**
+   * @return the name of the thread that started executing the instance.
+   */
+  public String getThread() {
+    return thread;
+  }
+
+  /**
+   * @return <code>true</code> if the instance released its thread while waiting, so it may have finished in a
+   *         different thread than the one that started it.
+   */
+  public boolean isAsync() {
+    return async;
+  }
+
+  /**
+   * @return <code>true</code> if the instance started executing.
+   */
+  public boolean isStarted() {
+    return started != NOT_RECORDED;
+  }
+
+  /**
+   * @return <code>true</code> if the instance finished executing.
+   */
+  public boolean isFinished() {
+    return finished != NOT_RECORDED;
+  }
+
+  /**
+   * @return when the instance started executing. Only valid if {@link #isStarted()}.
+   */
+  public long getStarted() {
+    return started;
+  }
+
+  /**
+   * @return when the instance finished executing. Only valid if {@link #isFinished()}.
+   */
+  public long getFinished() {
+    return finished;
+  }
+
+  /**
+   * @return nanoseconds between the submission of the instance and the start of its execution.
+   */
+  public long getQueueWaitTime() {
+    return submitted == NOT_RECORDED || !isStarted() ? 0 : started - submitted;
+  }
+
+  /**
+   * @return nanoseconds between the start and the end of the execution of the instance, or <code>0</code> if it did not
+   *         finish.
+   */
+  public long getExecutionTime() {
+    return !isStarted() || !isFinished() ? 0 : finished - started;
+  }
+
+  public long getArgumentLoadingStart() {
+    return argumentLoadingStart;
+  }
+
+  public long getArgumentLoadingTime() {
+    return argumentLoadingEnd - argumentLoadingStart;
+  }
+
+  public String getArgumentLoadingThread() {
+    return argumentLoadingThread;
+  }
+
+  public long getResultExtractionStart() {
+    return resultExtractionStart;
+  }
+
+  public long getResultExtractionTime() {
+    return resultExtractionEnd - resultExtractionStart;
+  }
+
+  public String getResultExtractionThread() {
+    return resultExtractionThread;
+  }
+
+  @Override
+  public String toString() {
+    return name + "#" + id;
+  }
+}
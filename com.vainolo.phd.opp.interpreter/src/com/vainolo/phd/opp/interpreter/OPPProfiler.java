@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.vainolo.phd.opp.utilities.OPPStatisticsUtils;
+
+/**
+ * <p>
+ * Records an {@link OPPProcessProfile} for every process instance executed while profiling is enabled in the
+ * {@link OPPInterpreter}, and summarizes them when the execution ends.
+ * </p>
+ *
+ * <p>
+ * Profiles are created by the in-zoomed instance that executes a process, and recorded when their results are
+ * extracted. Recording only appends the profile to a lock-free queue, so profiling adds a few clock reads and one
+ * allocation per instance. The profiles can be aggregated by process name using {@link #getStatistics()}, or exported
+ * in the Chrome trace event format using {@link #writeChromeTrace(Writer)}, which can be opened in
+ * <code>chrome://tracing</code> and other trace viewers.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPProfiler {
+  private final AtomicLong nextId = new AtomicLong();
+  private final Queue<OPPProcessProfile> profiles = new ConcurrentLinkedQueue<>();
+  private final long origin = System.nanoTime();
+
+  /**
+   * Create the profile of a new instance.
+   *
+   * @param name
+   *          of the executed process.
+   * @param parent
+   *          the profile of the instance that executes the new instance, or <code>null</code> for the root instance.
+   */
+  public OPPProcessProfile createProfile(String name, OPPProcessProfile parent) {
+    return new OPPProcessProfile(nextId.incrementAndGet(), name, parent);
+  }
+
+  /**
+   * Record the profile of an instance whose execution ended.
+   */
+  public void record(OPPProcessProfile profile) {
+    profiles.add(profile);
+  }
+
+  /**
+   * @return all the recorded profiles, in the order they were recorded.
+   */
+  public List<OPPProcessProfile> getProfiles() {
+    return ImmutableList.copyOf(profiles);
+  }
+
+  /**
+   * Aggregate the recorded profiles by process name.
+   *
+   * @return the statistics of every process, starting from the process with the highest total execution time.
+   */
+  public List<OPPProcessStatistics> getStatistics() {
+    Map<String, List<OPPProcessProfile>> profilesByName = Maps.newHashMap();
+    for (OPPProcessProfile profile : profiles) {
+      profilesByName.computeIfAbsent(profile.getName(), name -> Lists.newArrayList()).add(profile);
+    }
+    List<OPPProcessStatistics> statistics = Lists.newArrayList();
+    for (Map.Entry<String, List<OPPProcessProfile>> entry : profilesByName.entrySet()) {
+      statistics.add(new OPPProcessStatistics(entry.getKey(), entry.getValue()));
+    }
+    statistics.sort(Comparator.comparingLong(OPPProcessStatistics::getTotalExecutionTime).reversed());
+    return statistics;
+  }
+
+  /**
+   * Write the recorded profiles as a Chrome trace. Every instance is written as an event in the thread where it started,
+   * with its queue wait time, parent and id as arguments. Instances that don't hold their thread while they execute are
+   * written as async events, since other instances execute in the same thread meanwhile. Argument loading and result
+   * extraction are written as events in the threads where they happened.
+   */
+  public void writeChromeTrace(Writer writer) throws IOException {
+    Map<String, Integer> threadIds = Maps.newLinkedHashMap();
+    JsonArray events = new JsonArray();
+    for (OPPProcessProfile profile : profiles) {
+      JsonObject args = new JsonObject().add("id", profile.getId()).add("queueWaitUs", micros(profile.getQueueWaitTime()));
+      if (profile.getParent() != null) {
+        args.add("parent", profile.getParent().toString());
+      }
+      if (profile.isAsync()) {
+        int threadId = threadId(threadIds, profile.getThread());
+        events.add(createEvent(profile.getName(), "b", profile.getStarted(), threadId).add("id", profile.getId()).add("args", args));
+        if (profile.isFinished()) {
+          events.add(createEvent(profile.getName(), "e", profile.getFinished(), threadId).add("id", profile.getId()));
+        }
+      } else if (profile.isStarted()) {
+        events.add(createEvent(profile.getName(), "X", profile.getStarted(), threadId(threadIds, profile.getThread()))
+            .add("dur", micros(profile.getExecutionTime())).add("args", args));
+      }
+      if (profile.getArgumentLoadingThread() != null) {
+        events.add(createEvent("load arguments of " + profile.getName(), "X", profile.getArgumentLoadingStart(),
+            threadId(threadIds, profile.getArgumentLoadingThread())).add("dur", micros(profile.getArgumentLoadingTime())));
+      }
+      if (profile.getResultExtractionThread() != null) {
+        events.add(createEvent("extract results of " + profile.getName(), "X", profile.getResultExtractionStart(),
+            threadId(threadIds, profile.getResultExtractionThread())).add("dur", micros(profile.getResultExtractionTime())));
+      }
+    }
+    for (Map.Entry<String, Integer> thread : threadIds.entrySet()) {
+      events.add(new JsonObject().add("name", "thread_name").add("ph", "M").add("pid", 1).add("tid", thread.getValue())
+          .add("args", new JsonObject().add("name", thread.getKey())));
+    }
+    new JsonObject().add("traceEvents", events).add("displayTimeUnit", "ms").writeTo(writer);
+    writer.flush();
+  }
+
+  private JsonObject createEvent(String name, String phase, long time, int threadId) {
+    return new JsonObject().add("name", name).add("cat", "process").add("ph", phase).add("ts", micros(time - origin)).add("pid", 1)
+        .add("tid", threadId);
+  }
+
+  private static int threadId(Map<String, Integer> threadIds, String thread) {
+    return threadIds.computeIfAbsent(thread, t -> threadIds.size() + 1);
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+
+  /**
+   * Statistics of all the executions of a process. Times are in nanoseconds.
+   */
+  public static class OPPProcessStatistics {
+    private final String name;
+    private final int count;
+    private final long totalExecutionTime;
+    private final long p50ExecutionTime;
+    private final long p99ExecutionTime;
+    private final long maxExecutionTime;
+    private final long totalQueueWaitTime;
+    private final long totalArgumentLoadingTime;
+    private final long totalResultExtractionTime;
+
+    OPPProcessStatistics(String name, Collection<OPPProcessProfile> profiles) {
+      this.name = name;
+      this.count = profiles.size();
+      long[] executionTimes = new long[count];
+      long queueWait = 0, argumentLoading = 0, resultExtraction = 0, total = 0;
+      int i = 0;
+      for (OPPProcessProfile profile : profiles) {
+        executionTimes[i++] = profile.getExecutionTime();
+        total += profile.getExecutionTime();
+        queueWait += profile.getQueueWaitTime();
+        argumentLoading += profile.getArgumentLoadingTime();
+        resultExtraction += profile.getResultExtractionTime();
+      }
+      Arrays.sort(executionTimes);
+      this.totalExecutionTime = total;
+      this.p50ExecutionTime = OPPStatisticsUtils.percentile(executionTimes, 50);
+      this.p99ExecutionTime = OPPStatisticsUtils.percentile(executionTimes, 99);
+      this.maxExecutionTime = executionTimes[count - 1];
+      this.totalQueueWaitTime = queueWait;
+      this.totalArgumentLoadingTime = argumentLoading;
+      this.totalResultExtractionTime = resultExtraction;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    public long getTotalExecutionTime() {
+      return totalExecutionTime;
+    }
+
+    public long getP50ExecutionTime() {
+      return p50ExecutionTime;
+    }
+
+    public long getP99ExecutionTime() {
+      return p99ExecutionTime;
+    }
+
+    public long getMaxExecutionTime() {
+      return maxExecutionTime;
+    }
+
+    public long getTotalQueueWaitTime() {
+      return totalQueueWaitTime;
+    }
+
+    public long getTotalArgumentLoadingTime() {
+      return totalArgumentLoadingTime;
+    }
+
+    public long getTotalResultExtractionTime() {
+      return totalResultExtractionTime;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: count=%d, total=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms, queue wait=%.3fms, arguments=%.3fms, results=%.3fms", name,
+          count, millis(totalExecutionTime), millis(p50ExecutionTime), millis(p99ExecutionTime), millis(maxExecutionTime), millis(totalQueueWaitTime),
+          millis(totalArgumentLoadingTime), millis(totalResultExtractionTime));
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1000000.0;
+    }
+  }
+}
@@ -0,0 +1,528 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * The executor where all the process instances of an interpretation are executed. Nested in-zoomed instances submit
+ * their subprocesses to the same scheduler, so the number of threads used by the interpreter does not depend on the
+ * depth of the executed diagrams.
+ * </p>
+ *
+ * <p>
+ * Two kinds of schedulers are supported:
+ * <ul>
+ * <li>{@link OPPSchedulerKind#FORK_JOIN}: a work-stealing pool with a fixed parallelism. Instances that must wait
+ * for other instances should do so using {@link #await(CompletionStage)}, so that the pool can compensate for the
+ * blocked thread. The pool only starts up to {@link #MAX_COMPENSATED_WORKERS} threads this way: when more workers are
+ * blocked, or the pool refuses to start another thread, new tasks are executed in a cached thread pool until some of
+ * the blocked workers are released, so deeply nested blocking calls neither fail nor starve.</li>
+ * <li>{@link OPPSchedulerKind#VIRTUAL_THREADS}: a new virtual thread for every task. Virtual threads are only available
+ * starting from Java 21, so in older JVMs a fork-join scheduler is used instead.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Instances that spend most of their time waiting ({@link OPPBlockingProcessInstance}s) are submitted to the executor
+ * returned by {@link #getBlockingExecutor()}, which depends on the {@link OPPBlockingExecution} of the scheduler. By
+ * default they run on virtual threads, so thousands of them can wait at the same time without holding a platform
+ * thread each. In JVMs without virtual threads they run on a cached thread pool.
+ * </p>
+ *
+ * <p>
+ * Instances should be started using {@link #executeAsync(OPPProcessInstance)}, which executes
+ * {@link OPPAsyncProcessInstance}s without holding a thread while they wait, and the other instances in the executor
+ * that matches them.
+ * </p>
+ */
+public class OPPScheduler extends AbstractExecutorService {
+
+  public enum OPPSchedulerKind {
+    FORK_JOIN, VIRTUAL_THREADS
+  }
+
+  public enum OPPBlockingExecution {
+    /** Blocking instances are executed like all other instances. */
+    SHARED,
+    /** Blocking instances are executed in a cached thread pool. */
+    CACHED_THREADS,
+    /** Blocking instances are executed in virtual threads, or in a cached thread pool if they are not supported. */
+    VIRTUAL_THREADS
+  }
+
+  /** Maximum number of workers of a fork-join scheduler for which the pool starts a new thread while they wait. */
+  static final int MAX_COMPENSATED_WORKERS = 128;
+
+  private static final ThreadLocal<OPPScheduler> currentScheduler = new ThreadLocal<>();
+
+  private final OPPSchedulerKind kind;
+  private final OPPBlockingExecution blockingExecution;
+  private final int parallelism;
+  private final ExecutorService executor;
+  private final ExecutorService blockingExecutor;
+  private final ExecutorService overflowExecutor;
+  private final AtomicInteger blockedWorkers = new AtomicInteger();
+  private volatile int compensationLimit = MAX_COMPENSATED_WORKERS;
+  private final Executor countingBlockingExecutor = command -> execute(getBlockingExecutorService(), command);
+  private final AtomicLong submittedBlockingTasks = new AtomicLong();
+  private final AtomicLong submittedTasks = new AtomicLong();
+  private final AtomicLong startedTasks = new AtomicLong();
+  private final AtomicLong completedTasks = new AtomicLong();
+  private ScheduledExecutorService timer;
+
+  /**
+   * Create a new scheduler.
+   *
+   * @param kind
+   *          the kind of scheduler to create.
+   * @param parallelism
+   *          the number of threads that execute tasks at the same time. Ignored by virtual-thread schedulers.
+   * @param blockingExecution
+   *          how to execute {@link OPPBlockingProcessInstance}s. Ignored by virtual-thread schedulers.
+   */
+  public OPPScheduler(OPPSchedulerKind kind, int parallelism, OPPBlockingExecution blockingExecution) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Scheduler parallelism must be positive, got " + parallelism + ".");
+    }
+    this.parallelism = parallelism;
+    ExecutorService virtualThreadExecutor = null;
+    if (kind == OPPSchedulerKind.VIRTUAL_THREADS) {
+      virtualThreadExecutor = createVirtualThreadExecutor();
+      if (virtualThreadExecutor == null) {
+        logWarning("Virtual threads are not supported by this JVM. Using a fork-join scheduler instead.");
+      }
+    }
+    if (virtualThreadExecutor != null) {
+      this.kind = OPPSchedulerKind.VIRTUAL_THREADS;
+      this.executor = virtualThreadExecutor;
+    } else {
+      this.kind = OPPSchedulerKind.FORK_JOIN;
+      this.executor = new ForkJoinPool(parallelism, new OPPWorkerThreadFactory(), null, true);
+    }
+
+    if (this.kind == OPPSchedulerKind.VIRTUAL_THREADS) {
+      blockingExecution = OPPBlockingExecution.VIRTUAL_THREADS;
+    }
+    ExecutorService blockingVirtualThreadExecutor = null;
+    if (blockingExecution == OPPBlockingExecution.VIRTUAL_THREADS && this.kind != OPPSchedulerKind.VIRTUAL_THREADS) {
+      blockingVirtualThreadExecutor = createVirtualThreadExecutor();
+      if (blockingVirtualThreadExecutor == null) {
+        logFine("Virtual threads are not supported by this JVM. Using a cached thread pool for blocking processes.");
+        blockingExecution = OPPBlockingExecution.CACHED_THREADS;
+      }
+    }
+    switch (blockingExecution) {
+    case VIRTUAL_THREADS:
+      this.blockingExecutor = blockingVirtualThreadExecutor;
+      break;
+    case CACHED_THREADS:
+      this.blockingExecutor = Executors.newCachedThreadPool(new OPPBlockingThreadFactory("OPP Blocking Worker "));
+      break;
+    default:
+      this.blockingExecutor = null;
+    }
+    this.blockingExecution = blockingExecution;
+    if (this.kind == OPPSchedulerKind.FORK_JOIN) {
+      this.overflowExecutor = blockingExecutor != null ? blockingExecutor : Executors.newCachedThreadPool(new OPPBlockingThreadFactory("OPP Overflow Worker "));
+    } else {
+      this.overflowExecutor = null;
+    }
+    logFine("Created {0} scheduler with parallelism {1} and {2} blocking execution.", this.kind, parallelism, this.blockingExecution);
+  }
+
+  /**
+   * Create a new scheduler that executes blocking instances in virtual threads.
+   *
+   * @param kind
+   *          the kind of scheduler to create.
+   * @param parallelism
+   *          the number of threads that execute tasks at the same time. Ignored by virtual-thread schedulers.
+   */
+  public OPPScheduler(OPPSchedulerKind kind, int parallelism) {
+    this(kind, parallelism, OPPBlockingExecution.VIRTUAL_THREADS);
+  }
+
+  /**
+   * Create a fork-join scheduler that uses all the available processors.
+   */
+  public OPPScheduler() {
+    this(OPPSchedulerKind.FORK_JOIN, Runtime.getRuntime().availableProcessors());
+  }
+
+  private static ExecutorService createVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the current thread is executing a task of any scheduler.
+   */
+  public static boolean isSchedulerThread() {
+    return currentScheduler.get() != null;
+  }
+
+  /**
+   * Wait until a stage completes. If the current thread belongs to a fork-join scheduler, the pool is notified that the
+   * thread is blocked, so it can start another thread to keep the parallelism and avoid starving the waited tasks. When
+   * too many workers of the scheduler are blocked, new tasks are executed in a cached thread pool instead.
+   *
+   * @return the value of the stage.
+   * @throws Exception
+   *           the exception that completed the stage, if it completed exceptionally.
+   */
+  public static <T> T await(CompletionStage<T> stage) throws Exception {
+    CompletableFuture<T> future = stage.toCompletableFuture();
+    if (!future.isDone()) {
+      OPPScheduler scheduler = currentScheduler.get();
+      if (scheduler != null && scheduler.isWorkerThread()) {
+        scheduler.awaitInWorker(future);
+      } else {
+        ForkJoinPool.managedBlock(new OPPCompletionBlocker(future));
+      }
+    }
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private boolean isWorkerThread() {
+    Thread thread = Thread.currentThread();
+    return thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == executor;
+  }
+
+  private void awaitInWorker(CompletableFuture<?> future) throws InterruptedException {
+    OPPCompletionBlocker blocker = new OPPCompletionBlocker(future);
+    try {
+      if (blockedWorkers.incrementAndGet() <= compensationLimit) {
+        try {
+          ForkJoinPool.managedBlock(blocker);
+          return;
+        } catch (RejectedExecutionException e) {
+          logWarning("Scheduler could not start a thread to replace a blocked worker, executing new tasks in a cached thread pool.");
+          compensationLimit = Math.max(0, blockedWorkers.get() - 1);
+        }
+      }
+      // New tasks are executed in the overflow executor, so this thread can wait without compensation
+      blocker.block();
+    } finally {
+      blockedWorkers.decrementAndGet();
+    }
+  }
+
+  /**
+   * Start executing a process instance.
+   * <ul>
+   * <li>{@link OPPAsyncProcessInstance}s are started in the scheduler and don't hold a thread while they wait.</li>
+   * <li>{@link OPPBlockingProcessInstance}s are executed in the {@link #getBlockingExecutor()}.</li>
+   * <li>All other instances are executed in the scheduler.</li>
+   * </ul>
+   *
+   * @return a stage that is completed with the execution result when the instance finishes.
+   */
+  public CompletionStage<OPPProcessExecutionResult> executeAsync(OPPProcessInstance instance) {
+    CompletableFuture<OPPProcessExecutionResult> execution = new CompletableFuture<>();
+    try {
+      if (instance instanceof OPPAsyncProcessInstance) {
+        OPPAsyncProcessInstance asyncInstance = (OPPAsyncProcessInstance) instance;
+        execute(() -> asyncInstance.executeAsync().whenComplete((result, failure) -> {
+          if (failure != null) {
+            execution.completeExceptionally(failure);
+          } else {
+            execution.complete(result);
+          }
+        }));
+      } else {
+        Executor target = instance instanceof OPPBlockingProcessInstance ? getBlockingExecutor() : this;
+        target.execute(() -> {
+          try {
+            execution.complete(instance.call());
+          } catch (Throwable e) {
+            execution.completeExceptionally(e);
+          }
+        });
+      }
+    } catch (RejectedExecutionException e) {
+      execution.completeExceptionally(e);
+    }
+    return execution;
+  }
+
+  /**
+   * Execute a command after a delay. The command is executed in the timer thread of the scheduler, so it should only
+   * complete stages or submit other tasks.
+   */
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    return getTimer().schedule(command, delay, unit);
+  }
+
+  private synchronized ScheduledExecutorService getTimer() {
+    if (timer == null) {
+      ScheduledThreadPoolExecutor newTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "OPP Timer");
+        thread.setDaemon(true);
+        return thread;
+      });
+      newTimer.setRemoveOnCancelPolicy(true);
+      timer = newTimer;
+      if (executor.isShutdown()) {
+        timer.shutdownNow();
+      }
+    }
+    return timer;
+  }
+
+  /**
+   * Get the executor where {@link OPPBlockingProcessInstance}s are executed. Tasks submitted to this executor are
+   * included in the metrics of the scheduler and are stopped together with the scheduler.
+   */
+  public Executor getBlockingExecutor() {
+    return countingBlockingExecutor;
+  }
+
+  private ExecutorService getBlockingExecutorService() {
+    submittedBlockingTasks.incrementAndGet();
+    return blockingExecutor != null ? blockingExecutor : executor;
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (overflowExecutor != null && blockedWorkers.get() >= compensationLimit) {
+      execute(overflowExecutor, command);
+    } else {
+      execute(executor, command);
+    }
+  }
+
+  private void execute(ExecutorService target, Runnable command) {
+    submittedTasks.incrementAndGet();
+    target.execute(() -> {
+      startedTasks.incrementAndGet();
+      OPPScheduler previous = currentScheduler.get();
+      currentScheduler.set(this);
+      try {
+        command.run();
+      } finally {
+        currentScheduler.set(previous);
+        completedTasks.incrementAndGet();
+      }
+    });
+  }
+
+  @Override
+  public void shutdown() {
+    executor.shutdown();
+    if (blockingExecutor != null) {
+      blockingExecutor.shutdown();
+    }
+    if (overflowExecutor != null) {
+      overflowExecutor.shutdown();
+    }
+    synchronized (this) {
+      if (timer != null) {
+        timer.shutdown();
+      }
+    }
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    List<Runnable> pending = executor.shutdownNow();
+    if (blockingExecutor != null) {
+      pending.addAll(blockingExecutor.shutdownNow());
+    }
+    if (overflowExecutor != null && overflowExecutor != blockingExecutor) {
+      pending.addAll(overflowExecutor.shutdownNow());
+    }
+    synchronized (this) {
+      if (timer != null) {
+        timer.shutdownNow();
+      }
+    }
+    return pending;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return executor.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return executor.isTerminated() && (blockingExecutor == null || blockingExecutor.isTerminated())
+        && (overflowExecutor == null || overflowExecutor.isTerminated());
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    if (!executor.awaitTermination(timeout, unit)) {
+      return false;
+    }
+    if (blockingExecutor != null && !blockingExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+      return false;
+    }
+    return overflowExecutor == null || overflowExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+  }
+
+  public OPPSchedulerKind getKind() {
+    return kind;
+  }
+
+  public OPPBlockingExecution getBlockingExecution() {
+    return blockingExecution;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @return number of tasks that were submitted but have not started executing yet.
+   */
+  public long getQueueDepth() {
+    return submittedTasks.get() - startedTasks.get();
+  }
+
+  /**
+   * @return number of tasks that are executing now, including those blocked waiting for other tasks.
+   */
+  public long getActiveTaskCount() {
+    return startedTasks.get() - completedTasks.get();
+  }
+
+  /**
+   * @return number of threads that are executing tasks now. For virtual-thread schedulers this is the number of active
+   *         tasks.
+   */
+  public int getActiveThreadCount() {
+    if (executor instanceof ForkJoinPool) {
+      return ((ForkJoinPool) executor).getActiveThreadCount();
+    }
+    return (int) getActiveTaskCount();
+  }
+
+  /**
+   * @return number of threads currently owned by the scheduler. For virtual-thread schedulers this is the number of
+   *         active tasks.
+   */
+  public int getPoolSize() {
+    if (executor instanceof ForkJoinPool) {
+      return ((ForkJoinPool) executor).getPoolSize();
+    }
+    return (int) getActiveTaskCount();
+  }
+
+  public long getSubmittedTaskCount() {
+    return submittedTasks.get();
+  }
+
+  /**
+   * @return number of tasks submitted to the blocking executor. These are also included in
+   *         {@link #getSubmittedTaskCount()}.
+   */
+  public long getSubmittedBlockingTaskCount() {
+    return submittedBlockingTasks.get();
+  }
+
+  public long getCompletedTaskCount() {
+    return completedTasks.get();
+  }
+
+  /**
+   * @return number of workers of a fork-join scheduler that are blocked in {@link #await(CompletionStage)}.
+   */
+  public int getBlockedWorkerCount() {
+    return blockedWorkers.get();
+  }
+
+  @Override
+  public String toString() {
+    return "Scheduler " + kind + ": parallelism=" + parallelism + ", blocking execution=" + blockingExecution + ", queued=" + getQueueDepth() + ", active tasks=" + getActiveTaskCount()
+        + ", active threads=" + getActiveThreadCount() + ", pool size=" + getPoolSize() + ", submitted=" + getSubmittedTaskCount() + ", blocking submitted="
+        + getSubmittedBlockingTaskCount() + ", completed=" + getCompletedTaskCount();
+  }
+
+  private static class OPPWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("OPP Worker " + thread.getPoolIndex());
+      return thread;
+    }
+  }
+
+  private static class OPPBlockingThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    OPPBlockingThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  /**
+   * Waits on a latch instead of the future itself, because waiting on a {@link CompletableFuture} from a fork-join
+   * worker asks the pool for another thread.
+   */
+  private static class OPPCompletionBlocker implements ForkJoinPool.ManagedBlocker {
+    private final CompletableFuture<?> future;
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    OPPCompletionBlocker(CompletableFuture<?> future) {
+      this.future = future;
+      future.whenComplete((result, failure) -> completed.countDown());
+    }
+
+    @Override
+    public boolean block() throws InterruptedException {
+      completed.await();
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return future.isDone();
+    }
+  }
+}
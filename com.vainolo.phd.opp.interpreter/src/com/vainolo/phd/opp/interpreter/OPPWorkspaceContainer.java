@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.eclipse.core.resources.IContainer;
+
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+
+/**
+ * A {@link OPPFileContainer} backed by a project or folder of the workspace.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPWorkspaceContainer implements OPPFileContainer {
+  private final IContainer container;
+
+  public OPPWorkspaceContainer(IContainer container) {
+    this.container = container;
+  }
+
+  @Override
+  public OPPObjectProcessDiagram getOPD(String opdName) {
+    return OPPOPDCache.getInstance().get(container.getFile(new org.eclipse.core.runtime.Path(opdName + ".opp")));
+  }
+
+  @Override
+  public Path getLocation(String path) {
+    return Paths.get(container.getFile(new org.eclipse.core.runtime.Path(path)).getRawLocation().toOSString());
+  }
+
+  @Override
+  public String toString() {
+    return container.getFullPath().toString();
+  }
+}
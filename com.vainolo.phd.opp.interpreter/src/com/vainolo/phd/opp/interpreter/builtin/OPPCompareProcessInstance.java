@@ -6,13 +6,13 @@
  *******************************************************************************/
 package com.vainolo.phd.opp.interpreter.builtin;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 import com.google.common.collect.Lists;
 import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
 import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPNumberObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 
 /**
@@ -27,6 +27,9 @@ public class OPPCompareProcessInstance extends OPPAbstractProcessInstance implem
     EQUAL, DIFFERENT, GREATER_THAN, GREATER_THAN_OR_EQUAL, LESS_THAN, LESS_THAN_OR_EQUAL
   }
 
+  private static final OPPObjectInstance YES = OPPObjectInstance.createFromValue("yes");
+  private static final OPPObjectInstance NO = OPPObjectInstance.createFromValue("no");
+
   private ComparisonType comparisonType;
 
   public OPPCompareProcessInstance(ComparisonType compareType) {
@@ -35,37 +38,31 @@ public class OPPCompareProcessInstance extends OPPAbstractProcessInstance implem
 
   @Override
   public void executing() {
-    BigDecimal a = getArgument("a").getNumericalValue();
-    BigDecimal b = getArgument("b").getNumericalValue();
-    OPPObjectInstance c;
+    int comparison = OPPNumberObjectInstance.toNumber(getArgument("a")).compareTo(OPPNumberObjectInstance.toNumber(getArgument("b")));
 
     boolean result = false;
     switch (comparisonType) {
     case EQUAL:
-      result = (a.compareTo(b) == 0);
+      result = (comparison == 0);
       break;
     case DIFFERENT:
-      result = (a.compareTo(b) != 0);
+      result = (comparison != 0);
+      break;
     case GREATER_THAN:
-      result = (a.compareTo(b) > 0);
+      result = (comparison > 0);
       break;
     case GREATER_THAN_OR_EQUAL:
-      result = (a.compareTo(b) > 0) || (a.compareTo(b) == 0);
+      result = (comparison >= 0);
       break;
     case LESS_THAN:
-      result = (a.compareTo(b) < 0);
+      result = (comparison < 0);
       break;
     case LESS_THAN_OR_EQUAL:
-      result = (a.compareTo(b) < 0) || (a.compareTo(b) == 0);
+      result = (comparison <= 0);
       break;
     }
 
-    if (result) {
-      c = OPPObjectInstance.createFromValue("yes");
-    } else {
-      c = OPPObjectInstance.createFromValue("no");
-    }
-    setArgument("c", c);
+    setArgument("c", result ? YES : NO);
   }
 
   @Override
@@ -9,11 +9,15 @@ package com.vainolo.phd.opp.interpreter.builtin;
 import static com.vainolo.phd.opp.utilities.OPPLogger.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Lists;
-import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPAbstractAsyncProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPBlockingProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
-import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPScheduler;
 
 /**
  * Sleep a given amount of time.
@@ -22,20 +26,34 @@ import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
  * @created 9 Jul 2012
  * 
  */
-public class OPPSleepProcessInstance extends OPPAbstractProcessInstance implements OPPProcessInstance {
+public class OPPSleepProcessInstance extends OPPAbstractAsyncProcessInstance implements OPPBlockingProcessInstance {
 
   @Override
   protected void executing() {
     double time = getArgument("time").getNumericalValue().doubleValue();
     logInfo("Sleeping for " + time + " seconds.");
     try {
-      Thread.sleep((int) time * 1000);
+      Thread.sleep((long) (time * 1000));
     } catch (InterruptedException e) {
       logFinest("Sleep process interrupted. Returning.");
       return;
     }
   }
 
+  /**
+   * Sleep without holding a thread. The scheduler's timer only signals that the time has passed, and the execution
+   * continues in the scheduler, so the stages that depend on this instance are not run in the timer thread.
+   */
+  @Override
+  protected CompletionStage<Void> executingAsync() {
+    double time = getArgument("time").getNumericalValue().doubleValue();
+    logInfo("Sleeping for " + time + " seconds.");
+    OPPScheduler scheduler = getContext().getScheduler();
+    CompletableFuture<Void> timerFired = new CompletableFuture<>();
+    scheduler.schedule(() -> timerFired.complete(null), (long) (time * 1000), TimeUnit.MILLISECONDS);
+    return timerFired.thenComposeAsync(CompletableFuture::completedFuture, scheduler);
+  }
+
   @Override
   public String getName() {
     return "Sleep";
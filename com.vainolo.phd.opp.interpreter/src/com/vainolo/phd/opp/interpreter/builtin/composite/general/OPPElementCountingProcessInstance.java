@@ -6,7 +6,6 @@
  *******************************************************************************/
 package com.vainolo.phd.opp.interpreter.builtin.composite.general;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 import com.google.common.collect.Lists;
@@ -21,8 +20,7 @@ public class OPPElementCountingProcessInstance extends OPPAbstractProcessInstanc
   protected void executing() throws Exception {
     OPPCollectionObjectInstance collection = (OPPCollectionObjectInstance) getArgument("collection");
 
-    BigDecimal count = new BigDecimal(collection.count());
-    setArgument("count", OPPObjectInstance.createFromValue(count));
+    setArgument("count", OPPObjectInstance.createFromValue(collection.count()));
   }
 
   @Override
@@ -20,16 +20,8 @@ public class OPPLocationElementAddingProcessInstance extends OPPAbstractProcessI
       setArgument("added?", OPPObjectInstance.createFromValue("no"));
     } else {
       setArgument("added?", OPPObjectInstance.createFromValue("yes"));
-      OPPListObjectInstance newList = OPPObjectInstance.createListInstance();
-      boolean added = false;
-      for (int i = 1; i <= list.count(); i++) {
-        if (i == location) {
-          added = true;
-          newList.addLast(element);
-        } else {
-          newList.addLast(list.get(added ? i : i + 1));
-        }
-      }
+      OPPListObjectInstance newList = (OPPListObjectInstance) OPPObjectInstance.createFromExistingInstance(list);
+      newList.insert(location, element);
       setArgument("new list", newList);
     }
 
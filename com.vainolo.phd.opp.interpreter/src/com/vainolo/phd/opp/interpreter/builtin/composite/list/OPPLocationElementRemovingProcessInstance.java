@@ -22,8 +22,7 @@ public class OPPLocationElementRemovingProcessInstance extends OPPAbstractProces
       setArgument("new list", newList);
     } else {
       setArgument("removed?", OPPObjectInstance.createFromValue("yes"));
-      setArgument("element", list.get(location));
-      newList.remove(location);
+      setArgument("element", newList.remove(location));
       setArgument("new list", newList);
     }
   }
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.builtin.global;
+
+import java.util.List;
+
+import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPParameter;
+import com.vainolo.phd.opp.interpreter.types.OPPNumberObjectInstance;
+
+/**
+ * Atomically add a number to a numerical global variable, which is treated as zero if it has no value. Processes
+ * running in parallel can use this process to update the same counter without losing updates.
+ */
+public class OPPGlobalAddingProcessInstance extends OPPAbstractProcessInstance {
+
+  @Override
+  protected void executing() throws Exception {
+    String name = getArgument("name").getStringValue();
+    OPPNumberObjectInstance amount = OPPNumberObjectInstance.toNumber(getArgument("amount"));
+
+    setArgument("value", getContext().getGlobalHeap().updateVariable(name,
+        current -> current == null ? amount : OPPNumberObjectInstance.toNumber(current).add(amount)));
+  }
+
+  @Override
+  public String getName() {
+    return "Global Adding";
+  }
+
+  @Override
+  public List<OPPParameter> getIncomingParameters() {
+    return createParameterList("name", "amount");
+  }
+
+  @Override
+  public List<OPPParameter> getOutgoingParameters() {
+    return createParameterList("value");
+  }
+}
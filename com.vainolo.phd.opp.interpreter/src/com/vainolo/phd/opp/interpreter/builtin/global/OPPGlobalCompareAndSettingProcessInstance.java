@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.builtin.global;
+
+import java.util.List;
+
+import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPGlobalHeap;
+import com.vainolo.phd.opp.interpreter.OPPParameter;
+import com.vainolo.phd.opp.interpreter.types.OPPNumberObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+
+/**
+ * Set the value of a global variable only if it was not changed since its version was fetched using
+ * {@link OPPGlobalFetchingProcessInstance}. The current version of the variable is returned, so the process can be
+ * retried with a freshly fetched value when the variable was changed by someone else.
+ */
+public class OPPGlobalCompareAndSettingProcessInstance extends OPPAbstractProcessInstance {
+
+  @Override
+  protected void executing() throws Exception {
+    String name = getArgument("name").getStringValue();
+    long version = OPPNumberObjectInstance.toNumber(getArgument("version")).getNumericalValue().longValueExact();
+    OPPGlobalHeap globalHeap = getContext().getGlobalHeap();
+
+    if (globalHeap.compareAndSetVariable(name, version, OPPObjectInstance.createFromExistingInstance(getArgument("value")))) {
+      setArgument("set?", OPPObjectInstance.createFromValue("yes"));
+    } else {
+      setArgument("set?", OPPObjectInstance.createFromValue("no"));
+    }
+    setArgument("version", OPPObjectInstance.createFromValue(globalHeap.getVersionedVariable(name).getVersion()));
+  }
+
+  @Override
+  public String getName() {
+    return "Global Compare And Setting";
+  }
+
+  @Override
+  public List<OPPParameter> getIncomingParameters() {
+    return createParameterList("name", "version", "value");
+  }
+
+  @Override
+  public List<OPPParameter> getOutgoingParameters() {
+    return createParameterList("set?", "version");
+  }
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.builtin.global;
+
+import java.util.List;
+
+import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPGlobalHeap.OPPVersionedValue;
+import com.vainolo.phd.opp.interpreter.OPPParameter;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+
+/**
+ * Fetch the value of a global variable together with its version, which can later be used to update the variable using
+ * {@link OPPGlobalCompareAndSettingProcessInstance}.
+ */
+public class OPPGlobalFetchingProcessInstance extends OPPAbstractProcessInstance {
+
+  @Override
+  protected void executing() throws Exception {
+    String name = getArgument("name").getStringValue();
+    OPPVersionedValue variable = getContext().getGlobalHeap().getVersionedVariable(name);
+
+    setArgument("version", OPPObjectInstance.createFromValue(variable.getVersion()));
+    if (variable.getValue() != null) {
+      setArgument("fetched?", OPPObjectInstance.createFromValue("yes"));
+      setArgument("value", variable.getValue());
+    } else {
+      setArgument("fetched?", OPPObjectInstance.createFromValue("no"));
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "Global Fetching";
+  }
+
+  @Override
+  public List<OPPParameter> getIncomingParameters() {
+    return createParameterList("name");
+  }
+
+  @Override
+  public List<OPPParameter> getOutgoingParameters() {
+    return createParameterList("value", "version", "fetched?");
+  }
+}
@@ -14,12 +14,12 @@ import java.util.List;
 
 import com.google.common.collect.Lists;
 import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPBlockingProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPObjectInstanceValueAnalyzer;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
-import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 
-public class OPPConsoleReadingProcessInstance extends OPPAbstractProcessInstance implements OPPProcessInstance {
+public class OPPConsoleReadingProcessInstance extends OPPAbstractProcessInstance implements OPPBlockingProcessInstance {
 
   private OPPObjectInstanceValueAnalyzer valueAnalyzer;
 
@@ -13,12 +13,12 @@ import javax.swing.JOptionPane;
 
 import com.google.common.collect.Lists;
 import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPBlockingProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPObjectInstanceValueAnalyzer;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
-import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 
-public class OPPDialogTextReadingProcessInstance extends OPPAbstractProcessInstance implements OPPProcessInstance {
+public class OPPDialogTextReadingProcessInstance extends OPPAbstractProcessInstance implements OPPBlockingProcessInstance {
 
   private OPPObjectInstanceValueAnalyzer valueAnalyzer;
 
@@ -12,25 +12,22 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
 
-import org.eclipse.core.runtime.Path;
-
 import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonValue;
 import com.google.common.collect.Lists;
 import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
-import com.vainolo.phd.opp.interpreter.OPPInterpreter;
+import com.vainolo.phd.opp.interpreter.OPPBlockingProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPObjectInstanceValueAnalyzer;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
-import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
 import com.vainolo.phd.opp.interpreter.json.OPPJsonReader;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 
-public class OPPTextFileReadingProcessInstance extends OPPAbstractProcessInstance implements OPPProcessInstance {
+public class OPPTextFileReadingProcessInstance extends OPPAbstractProcessInstance implements OPPBlockingProcessInstance {
 
   @Override
   protected void executing() {
     OPPObjectInstanceValueAnalyzer analyzer = new OPPObjectInstanceValueAnalyzer();
-    String filename = OPPInterpreter.container.getFile(new Path(getArgument("file name").getStringValue())).getRawLocation().toString();
+    String filename = getContext().getContainer().getLocation(getArgument("file name").getStringValue()).toString();
     try {
       String contents = new String(Files.readAllBytes(Paths.get(filename)));
       JsonValue value = Json.parse(contents);
@@ -10,19 +10,16 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.List;
 
-import org.eclipse.core.runtime.Path;
-
 import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
-import com.vainolo.phd.opp.interpreter.OPPInterpreter;
+import com.vainolo.phd.opp.interpreter.OPPBlockingProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
-import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 
-public class OPPTextFileWritingProcessInstance extends OPPAbstractProcessInstance implements OPPProcessInstance {
+public class OPPTextFileWritingProcessInstance extends OPPAbstractProcessInstance implements OPPBlockingProcessInstance {
 
   @Override
   protected void executing() {
-    String filename = OPPInterpreter.container.getFile(new Path(getArgument("file name").getStringValue())).getRawLocation().toString();
+    String filename = getContext().getContainer().getLocation(getArgument("file name").getStringValue()).toString();
     OPPObjectInstance object = getArgument("object");
     try {
       PrintWriter writer = new PrintWriter(filename, "UTF-8");
@@ -8,7 +8,7 @@ package com.vainolo.phd.opp.interpreter.builtin.io;
 
 import java.util.List;
 
-import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
 import com.google.common.collect.Lists;
 import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
@@ -22,8 +22,8 @@ public class OPPWriteOPMObjectInstanceToJSON extends OPPAbstractProcessInstance
   protected void executing() {
     OPPJsonWriter writer = new OPPJsonWriter();
     OPPObjectInstance opmObjectInstance = getArgument("object");
-    JsonObject jsonObject = writer.write(opmObjectInstance);
-    setArgument("json", OPPObjectInstance.createFromValue(jsonObject.toString()));
+    JsonValue json = writer.write(opmObjectInstance);
+    setArgument("json", OPPObjectInstance.createFromValue(json.toString()));
   }
 
   @Override
@@ -6,13 +6,12 @@
  *******************************************************************************/
 package com.vainolo.phd.opp.interpreter.builtin.math;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 import com.google.common.collect.Lists;
 import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
-import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPNumberObjectInstance;
 
 /**
  * Process instance that handles basic binary math operations
@@ -27,9 +26,9 @@ public class OPPBinaryMathOpProcessInstance extends OPPAbstractProcessInstance {
 
   @Override
   public void executing() {
-    BigDecimal a = getArgument("a").getNumericalValue();
-    BigDecimal b = getArgument("b").getNumericalValue();
-    BigDecimal c = new BigDecimal(0);
+    OPPNumberObjectInstance a = OPPNumberObjectInstance.toNumber(getArgument("a"));
+    OPPNumberObjectInstance b = OPPNumberObjectInstance.toNumber(getArgument("b"));
+    OPPNumberObjectInstance c = null;
     switch (opType) {
     case ADD:
       c = a.add(b);
@@ -47,8 +46,7 @@ public class OPPBinaryMathOpProcessInstance extends OPPAbstractProcessInstance {
       c = a.pow(b.intValueExact());
       break;
     }
-    OPPObjectInstance instance = OPPObjectInstance.createFromValue(c);
-    setArgument("c", instance);
+    setArgument("c", c);
   }
 
   @Override
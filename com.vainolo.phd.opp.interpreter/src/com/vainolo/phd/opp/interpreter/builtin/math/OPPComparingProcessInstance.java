@@ -6,12 +6,12 @@
  *******************************************************************************/
 package com.vainolo.phd.opp.interpreter.builtin.math;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 import com.google.common.collect.Lists;
 import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
+import com.vainolo.phd.opp.interpreter.types.OPPNumberObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 
 public class OPPComparingProcessInstance extends OPPAbstractProcessInstance {
@@ -21,10 +21,9 @@ public class OPPComparingProcessInstance extends OPPAbstractProcessInstance {
 
   @Override
   public void executing() {
-    BigDecimal a = getArgument("a").getNumericalValue();
-    BigDecimal b = getArgument("b").getNumericalValue();
-    BigDecimal c = new BigDecimal(a.compareTo(b));
-    setArgument("c", OPPObjectInstance.createFromValue(c));
+    OPPNumberObjectInstance a = OPPNumberObjectInstance.toNumber(getArgument("a"));
+    OPPNumberObjectInstance b = OPPNumberObjectInstance.toNumber(getArgument("b"));
+    setArgument("c", OPPObjectInstance.createFromValue(Integer.signum(a.compareTo(b))));
   }
 
   @Override
@@ -12,6 +12,7 @@ import java.util.List;
 import com.google.common.collect.Lists;
 import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
+import com.vainolo.phd.opp.interpreter.types.OPPNumberObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 
 /**
@@ -27,23 +28,22 @@ public class OPPUnaryMathOpProcessInstance extends OPPAbstractProcessInstance {
 
   @Override
   public void executing() {
-    BigDecimal a = getArgument("a").getNumericalValue();
-    BigDecimal b = BigDecimal.ZERO;
+    OPPNumberObjectInstance a = OPPNumberObjectInstance.toNumber(getArgument("a"));
+    OPPObjectInstance b = null;
     switch (opType) {
     case LOG:
-      double a_double = a.doubleValue();
-      b = new BigDecimal(Math.log(a_double));
+      double a_double = a.getNumericalValue().doubleValue();
+      b = OPPObjectInstance.createFromValue(new BigDecimal(Math.log(a_double)));
       break;
     case NEG:
       b = a.negate();
       break;
     case SQRT:
-      a_double = a.doubleValue();
-      b = new BigDecimal(Math.sqrt(a_double));
+      a_double = a.getNumericalValue().doubleValue();
+      b = OPPObjectInstance.createFromValue(new BigDecimal(Math.sqrt(a_double)));
       break;
     }
-    OPPObjectInstance instance = OPPObjectInstance.createFromValue(b);
-    setArgument("b", instance);
+    setArgument("b", b);
   }
 
   @Override
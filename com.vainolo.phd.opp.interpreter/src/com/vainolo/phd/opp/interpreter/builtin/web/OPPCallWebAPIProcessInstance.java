@@ -7,23 +7,65 @@
 package com.vainolo.phd.opp.interpreter.builtin.web;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 import com.google.common.collect.Lists;
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.Unirest;
-import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
+import com.mashape.unirest.http.async.Callback;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.vainolo.phd.opp.interpreter.OPPAbstractAsyncProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPBlockingProcessInstance;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
 import com.vainolo.phd.opp.interpreter.json.OPPJsonReader;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 
-public class OPPCallWebAPIProcessInstance extends OPPAbstractProcessInstance {
+public class OPPCallWebAPIProcessInstance extends OPPAbstractAsyncProcessInstance implements OPPBlockingProcessInstance {
 
   @Override
   protected void executing() throws Exception {
     OPPObjectInstance url = getArgument("url");
     String response = Unirest.get(url.getStringValue()).asJson().getBody().toString();
+    setResult(response);
+  }
+
+  /**
+   * Call the API using the asynchronous HTTP client, so no thread waits for the response.
+   */
+  @Override
+  protected CompletionStage<Void> executingAsync() {
+    OPPObjectInstance url = getArgument("url");
+    CompletableFuture<Void> calling = new CompletableFuture<>();
+    Unirest.get(url.getStringValue()).asJsonAsync(new Callback<JsonNode>() {
+      @Override
+      public void completed(HttpResponse<JsonNode> response) {
+        try {
+          setResult(response.getBody().toString());
+          calling.complete(null);
+        } catch (Exception e) {
+          calling.completeExceptionally(e);
+        }
+      }
+
+      @Override
+      public void failed(UnirestException e) {
+        calling.completeExceptionally(e);
+      }
+
+      @Override
+      public void cancelled() {
+        calling.cancel(false);
+      }
+    });
+    return calling;
+  }
+
+  private void setResult(String response) {
     JsonValue value = Json.parse(response);
     OPPJsonReader reader = new OPPJsonReader();
     OPPObjectInstance result = reader.read(value);
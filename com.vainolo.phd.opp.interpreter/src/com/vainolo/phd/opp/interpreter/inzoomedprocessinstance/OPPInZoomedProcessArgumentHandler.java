@@ -14,6 +14,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
@@ -24,20 +26,25 @@ import com.vainolo.phd.opp.model.OPPProceduralLink;
 import com.vainolo.phd.opp.model.OPPProceduralLinkKind;
 import com.vainolo.phd.opp.model.OPPProcess;
 import com.vainolo.phd.opp.utilities.analysis.OPPLinkExtensions;
-import com.vainolo.phd.opp.utilities.analysis.OPPProcessExtensions;
 
 public class OPPInZoomedProcessArgumentHandler {
   private OPPInZoomedProcessInstanceHeap heap;
+  private OPPInZoomedProcessExecutionPlan plan;
 
   public OPPInZoomedProcessArgumentHandler(OPPInZoomedProcessInstanceHeap heap) {
+    this(heap, OPPInZoomedProcessExecutionPlan.EMPTY);
+  }
+
+  public OPPInZoomedProcessArgumentHandler(OPPInZoomedProcessInstanceHeap heap, OPPInZoomedProcessExecutionPlan plan) {
     this.heap = heap;
+    this.plan = plan;
   }
 
   public void loadInstanceArguments(OPPProcess process, OPPProcessInstance instance) {
-    Map<String, OPPArgument> namedArguments = Maps.newHashMap();
-    List<OPPArgument> anonymousArguments = Lists.newArrayList();
-
-    catalogueArguments(OPPProcessExtensions.findIncomingDataLinks(process), namedArguments, anonymousArguments);
+    OPPArgumentCatalogue catalogue = plan.getProcessPlan(process).getIncomingArguments();
+    catalogue.checkSupported();
+    Map<String, OPPArgument> namedArguments = catalogue.getNamedArguments();
+    List<OPPArgument> anonymousArguments = Lists.newArrayList(catalogue.getAnonymousArguments());
     logFiner("Found {0} anonymous arguments and {1} named arguments.", anonymousArguments.size(), namedArguments.size());
 
     List<String> availableParametersNames = instance.getIncomingParameters().stream().map(param -> param.getName()).collect(Collectors.toList());
@@ -89,10 +96,10 @@ public class OPPInZoomedProcessArgumentHandler {
   }
 
   public void extractResultsToVariables(OPPProcess process, OPPProcessInstance instance) {
-    Map<String, OPPArgument> namedResults = Maps.newHashMap();
-    List<OPPArgument> anonymousResults = Lists.newArrayList();
-
-    catalogueArguments(OPPProcessExtensions.findOutgoingDataLinks(process), namedResults, anonymousResults);
+    OPPArgumentCatalogue catalogue = plan.getProcessPlan(process).getOutgoingResults();
+    catalogue.checkSupported();
+    Map<String, OPPArgument> namedResults = catalogue.getNamedArguments();
+    List<OPPArgument> anonymousResults = Lists.newArrayList(catalogue.getAnonymousArguments());
 
     logFiner("Found {0} anonymous results and {1} named results.", anonymousResults.size(), namedResults.size());
 
@@ -124,19 +131,6 @@ public class OPPInZoomedProcessArgumentHandler {
     }
   }
 
-  private void catalogueArguments(Collection<OPPProceduralLink> links, Map<String, OPPArgument> namedArguments, List<OPPArgument> anonymousArguments) {
-    for (OPPProceduralLink link : links) {
-      OPPArgument argument = new OPPArgument(OPPLinkExtensions.getObject(link), link.getKind() == OPPProceduralLinkKind.CONS_RES);
-      if (link.getCenterDecoration() == null || "".equals(link.getCenterDecoration())) {
-        anonymousArguments.add(argument);
-      } else if (link.getCenterDecoration().contains(",")) {
-        throw new OPPRuntimeException("Argument modifiers are not supported.");
-      } else {
-        namedArguments.put(link.getCenterDecoration(), argument);
-      }
-    }
-  }
-
   private void copyArgumentValueToHeap(OPPArgument argument, OPPObjectInstance objectInstance) {
     if (objectInstance == null) {
       logFinest("Clearing value of {0} because given argument value is null.", argument.getObject().getName());
@@ -162,7 +156,54 @@ public class OPPInZoomedProcessArgumentHandler {
     }
   }
 
-  class OPPArgument {
+  /**
+   * The arguments (or results) of a process, catalogued from its data links into named and anonymous arguments.
+   * Catalogues are immutable and are computed once per process by the {@link OPPInZoomedProcessExecutionPlan}.
+   */
+  static class OPPArgumentCatalogue {
+    private final ImmutableMap<String, OPPArgument> namedArguments;
+    private final ImmutableList<OPPArgument> anonymousArguments;
+    private final boolean unsupportedModifiers;
+
+    private OPPArgumentCatalogue(Map<String, OPPArgument> namedArguments, List<OPPArgument> anonymousArguments, boolean unsupportedModifiers) {
+      this.namedArguments = ImmutableMap.copyOf(namedArguments);
+      this.anonymousArguments = ImmutableList.copyOf(anonymousArguments);
+      this.unsupportedModifiers = unsupportedModifiers;
+    }
+
+    static OPPArgumentCatalogue create(Collection<OPPProceduralLink> links) {
+      Map<String, OPPArgument> namedArguments = Maps.newLinkedHashMap();
+      List<OPPArgument> anonymousArguments = Lists.newArrayList();
+      boolean unsupportedModifiers = false;
+      for (OPPProceduralLink link : links) {
+        OPPArgument argument = new OPPArgument(OPPLinkExtensions.getObject(link), link.getKind() == OPPProceduralLinkKind.CONS_RES);
+        if (link.getCenterDecoration() == null || "".equals(link.getCenterDecoration())) {
+          anonymousArguments.add(argument);
+        } else if (link.getCenterDecoration().contains(",")) {
+          unsupportedModifiers = true;
+        } else {
+          namedArguments.put(link.getCenterDecoration(), argument);
+        }
+      }
+      return new OPPArgumentCatalogue(namedArguments, anonymousArguments, unsupportedModifiers);
+    }
+
+    void checkSupported() {
+      if (unsupportedModifiers) {
+        throw new OPPRuntimeException("Argument modifiers are not supported.");
+      }
+    }
+
+    Map<String, OPPArgument> getNamedArguments() {
+      return namedArguments;
+    }
+
+    List<OPPArgument> getAnonymousArguments() {
+      return anonymousArguments;
+    }
+  }
+
+  static class OPPArgument {
     private OPPObject object;
     private boolean consumption;
     public boolean hasModifier = false;
@@ -13,54 +13,66 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import com.google.common.base.Predicates;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
-import com.vainolo.phd.opp.utilities.OPPConstants;
 import com.vainolo.phd.opp.utilities.analysis.OPPLinkExtensions;
-import com.vainolo.phd.opp.utilities.analysis.OPPOPDExtensions;
-import com.vainolo.phd.opp.utilities.analysis.OPPObjectExtensions;
-import com.vainolo.phd.opp.utilities.analysis.OPPProcessExtensions;
-import com.vainolo.phd.opp.interpreter.OPPAbstractProcessInstance;
-import com.vainolo.phd.opp.interpreter.OPPInterpreter;
+import com.vainolo.phd.opp.interpreter.OPPAbstractAsyncProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPAsyncProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPExecutionContext;
 import com.vainolo.phd.opp.interpreter.OPPObjectInstanceValueAnalyzer;
 import com.vainolo.phd.opp.interpreter.OPPParameter;
 import com.vainolo.phd.opp.interpreter.OPPProcessExecutionResult;
 import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
-import com.vainolo.phd.opp.interpreter.OPPProcessInstanceFactory;
+import com.vainolo.phd.opp.interpreter.OPPProcessProfile;
+import com.vainolo.phd.opp.interpreter.OPPProfiler;
 import com.vainolo.phd.opp.interpreter.OPPRuntimeException;
-import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessInstanceHeap.OPMHeapObserver;
+import com.vainolo.phd.opp.interpreter.OPPScheduler;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessInstanceHeap.OPMHeapChangeType;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
 import com.vainolo.phd.opp.model.OPPObject;
 import com.vainolo.phd.opp.model.OPPProceduralLink;
 import com.vainolo.phd.opp.model.OPPProcess;
 import com.vainolo.phd.opp.model.OPPState;
 
-public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInstance implements OPPProcessInstance {
+public class OPPInZoomedProcessExecutableInstance extends OPPAbstractAsyncProcessInstance implements OPPProcessInstance {
 
   private final OPPObjectProcessDiagram opd;
+  private final OPPInZoomedProcessExecutionPlan plan;
   private OPPInZoomedProcessInstanceHeap heap;
   private OPPObjectInstanceValueAnalyzer valueAnalyzer;
   private OPPInZoomedProcessArgumentHandler argumentHandler;
-  private OPMHeapObserver heapObserver;
+  private OPPInZoomedProcessHeapJournal heapJournal;
+  private OPPInZoomedProcessReadinessIndex readinessIndex;
+  private Consumer<OPPObject> changedObjectConsumer;
   private IsProcessReady isReadyPred;
   private mustSkipProcess mustSkipPred;
   private com.google.common.base.Predicate<OPPProcess> isReadyAndNotSkipPred;
-  private ExecutorCompletionService<OPPProcessExecutionResult> completionService;
-  private List<OPPProcess> P_waiting;
+  private OPPExecutionContext context;
+  private OPPScheduler scheduler;
+  private OPPProfiler profiler;
+  private int maxInlineFrames;
+  private int inlineDepth = 0;
+  private final Queue<Runnable> pendingSteps = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingStepCount = new AtomicInteger();
+  private CompletableFuture<Void> execution;
+  private ExecutionMode executionMode;
+  private OPPProcess p_inv;
+  private Set<OPPProcess> P_waiting;
   private Set<OPPProcess> P_ready;
   private Map<OPPProcessInstance, OPPProcess> P_executing;
   private OPPInZoomedProcessIntanceProgramCounter pc;
 
-  private IsReadyPredicate IS_READY = new IsReadyPredicate();
   private MustSkipPredicate MUST_SKIP = new MustSkipPredicate();
 
   /**
@@ -70,20 +82,34 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
    *          the {@link OPPObjectProcessDiagram} for this instance.
    */
   public OPPInZoomedProcessExecutableInstance(OPPObjectProcessDiagram opd) {
+    this(opd, OPPInZoomedProcessExecutionPlanCache.get(opd));
+  }
+
+  /**
+   * Create a new instance that executes an already compiled plan.
+   * 
+   * @param opd
+   *          the {@link OPPObjectProcessDiagram} for this instance.
+   * @param plan
+   *          the current plan of the diagram, from the {@link OPPInZoomedProcessExecutionPlanCache}.
+   */
+  public OPPInZoomedProcessExecutableInstance(OPPObjectProcessDiagram opd, OPPInZoomedProcessExecutionPlan plan) {
     this.opd = opd;
+    this.plan = plan;
     this.valueAnalyzer = new OPPObjectInstanceValueAnalyzer();
-    this.heap = new OPPInZoomedProcessInstanceHeap();
-    this.argumentHandler = new OPPInZoomedProcessArgumentHandler(heap);
-    this.heapObserver = new OPMHeapObserver();
-    this.heap.addObserver(heapObserver);
+    this.heap = new OPPInZoomedProcessInstanceHeap(plan);
+    this.argumentHandler = new OPPInZoomedProcessArgumentHandler(heap, plan);
+    this.heapJournal = heap.getJournal();
+    this.readinessIndex = new OPPInZoomedProcessReadinessIndex(plan, new ExecutablePredicateCommons()::isLinkSourceReady);
+    this.changedObjectConsumer = readinessIndex::objectChanged;
     this.isReadyPred = new IsProcessReady();
     this.mustSkipPred = new mustSkipProcess();
     this.isReadyAndNotSkipPred = Predicates.and(isReadyPred, Predicates.not(mustSkipPred));
-    this.completionService = new ExecutorCompletionService<>(Executors.newCachedThreadPool());
   }
 
   @Override
   protected void preExecution() {
+    getHeap().setSharedGlobalHeap(getContext().getGlobalHeap());
     super.preExecution();
     getHeap().initializeVariablesWithArgumentValues(getOpd());
   }
@@ -94,19 +120,82 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
     super.postExecution();
   }
 
-  private OPPProcessInstance createAndExecuteInstance(OPPProcess process) {
-    OPPProcessInstance instance = OPPProcessInstanceFactory.createExecutableInstance(process);
+  private void createAndExecuteInstance(OPPProcess process) {
+    OPPProcessInstance instance = plan.getProcessPlan(process).getInstanceCreator().create(context);
+    OPPProcessProfile profile = null;
+    long argumentLoadingStart = 0;
+    if (profiler != null) {
+      profile = profiler.createProfile(process.getName(), getProfile());
+      instance.setProfile(profile);
+      argumentLoadingStart = System.nanoTime();
+    }
     argumentHandler.loadInstanceArguments(process, instance);
-    completionService.submit(instance);
-    return instance;
+    P_executing.put(instance, process);
+    pc.addActiveProcess(process);
+    if (profile != null) {
+      profile.argumentsLoaded(argumentLoadingStart);
+      profile.submitted();
+    }
+    OPPProcessProfile instanceProfile = profile;
+    if (maxInlineFrames == 0) {
+      // The step is a new task, so a subprocess that finishes its caller does not run the caller's caller in its stack
+      scheduler.executeAsync(instance).whenCompleteAsync((result, failure) -> runStep(() -> instanceFinished(instance, instanceProfile, failure)),
+          scheduler);
+      return;
+    }
+    CompletionStage<OPPProcessExecutionResult> instanceExecution;
+    if (inlineDepth < maxInlineFrames && setInlineDepth(instance, inlineDepth + 1)) {
+      instanceExecution = OPPInZoomedProcessTrampoline.execute((OPPAsyncProcessInstance) instance);
+    } else {
+      instanceExecution = scheduler.executeAsync(instance);
+    }
+    instanceExecution.whenComplete(
+        (result, failure) -> OPPInZoomedProcessTrampoline.run(() -> runStep(() -> instanceFinished(instance, instanceProfile, failure))));
+  }
+
+  /**
+   * Mark an in-zoomed instance as executed inline.
+   *
+   * @return <code>false</code> if the instance cannot be executed inline.
+   */
+  private static boolean setInlineDepth(OPPProcessInstance instance, int depth) {
+    if (instance instanceof OPPInZoomedProcessExecutableInstance) {
+      ((OPPInZoomedProcessExecutableInstance) instance).setInlineDepth(depth);
+      return true;
+    } else if (instance instanceof OPPInZoomedProcessMemoizedInstance) {
+      ((OPPInZoomedProcessMemoizedInstance) instance).setInlineDepth(depth);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Set the number of inline executions this instance is nested in, counting itself.
+   */
+  void setInlineDepth(int inlineDepth) {
+    this.inlineDepth = inlineDepth;
+  }
+
+  /**
+   * Pass the objects changed since the last drain to the readiness index and empty the journal of the heap. Called at
+   * the start of every step, and before looking for ready processes.
+   */
+  private void drainHeapJournal() {
+    heapJournal.drain(changedObjectConsumer);
   }
 
   private void calculateNextProcesses() {
-    List<OPPProcess> nextProcesses = pc.getNextProcesses(P_waiting, P_executing.values());
+    drainHeapJournal();
+    List<OPPProcess> nextProcesses = pc.getNextProcesses();
     if (nextProcesses.size() > 0) {
       List<OPPProcess> P_skipped = nextProcesses.stream().filter(MUST_SKIP).collect(Collectors.toList());
       if (P_skipped.size() != nextProcesses.size()) {
-        P_waiting.addAll(nextProcesses.stream().filter(MUST_SKIP.negate()).collect(Collectors.toSet()));
+        for (OPPProcess process : nextProcesses.stream().filter(MUST_SKIP.negate()).collect(Collectors.toSet())) {
+          if (P_waiting.add(process)) {
+            pc.addActiveProcess(process);
+            readinessIndex.track(process);
+          }
+        }
         pc.setPC(pc.getNextPC());
       } else {
         pc.setPC(pc.getNextPC());
@@ -114,8 +203,13 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
       }
     }
 
-    P_ready.addAll(P_waiting.stream().filter(IS_READY).collect(Collectors.toSet()));
-    P_waiting.removeAll(P_ready);
+    Set<OPPProcess> P_newReady = readinessIndex.collectReady();
+    P_ready.addAll(P_newReady);
+    for (OPPProcess process : P_newReady) {
+      if (P_waiting.remove(process)) {
+        pc.removeActiveProcess(process);
+      }
+    }
   }
 
   private boolean executeReadyProcesses() {
@@ -126,110 +220,160 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
     }
 
     for (OPPProcess process : P_ready) {
-      OPPProcessInstance readyInstance = createAndExecuteInstance(process);
-      P_executing.put(readyInstance, process);
+      createAndExecuteInstance(process);
     }
     P_ready.clear();
     return false;
   }
 
+  /**
+   * Start the execution of the diagram. Instead of waiting for the subprocesses to finish, the instance reacts to
+   * their completion: every finished subprocess adds a step that extracts its results and starts the subprocesses that
+   * became ready. Steps are executed one at a time, by the thread that finished the subprocess, so the instance holds
+   * no thread while its subprocesses execute. When the context allows it, nested in-zoomed instances and these steps
+   * run on the {@link OPPInZoomedProcessTrampoline} of the current thread instead of being submitted to the scheduler.
+   */
   @Override
-  protected void executing() throws Exception {
-    P_waiting = Lists.newArrayList();
+  protected CompletionStage<Void> executingAsync() {
+    execution = new CompletableFuture<>();
+    runStep(this::startExecution);
+    return execution;
+  }
+
+  private void runStep(Runnable step) {
+    pendingSteps.add(step);
+    if (pendingStepCount.getAndIncrement() != 0) {
+      return;
+    }
+    do {
+      Runnable nextStep = pendingSteps.poll();
+      try {
+        if (!execution.isDone()) {
+          nextStep.run();
+        }
+      } catch (Throwable e) {
+        execution.completeExceptionally(e);
+      }
+    } while (pendingStepCount.decrementAndGet() != 0);
+  }
+
+  private void startExecution() {
+    P_waiting = Sets.newLinkedHashSet();
     P_ready = Sets.newHashSet();
     P_executing = Maps.newHashMap();
-    OPPProcess p_inv = null;
-
-    ExecutionMode executionMode = ExecutionMode.NATURAL_ORDER;
+    context = getContext();
+    scheduler = context.getScheduler();
+    profiler = context.getProfiler();
+    maxInlineFrames = context.getMaxInlineFrames();
+    p_inv = null;
+    executionMode = ExecutionMode.NATURAL_ORDER;
+    readinessIndex.clear();
 
-    getHeap().initializeVariablesWithLiterals(OPPOPDExtensions.getInZoomedProcess(getOpd()));
-    pc = new OPPInZoomedProcessIntanceProgramCounter(getOpd());
+    getHeap().initializeVariablesWithLiterals(plan.getMainProcess());
+    pc = new OPPInZoomedProcessIntanceProgramCounter(plan);
 
     pc.setPC(pc.getNextPC());
 
     calculateNextProcesses();
     executeReadyProcesses();
+    finishIfNothingExecuting();
+  }
 
-    while (!P_executing.isEmpty()) {
-      if (OPPInterpreter.INSTANCE.isStopped()) {
-        logInfo("Process execution has been stopped. Returning.");
-        return;
+  private void instanceFinished(OPPProcessInstance executedInstance, OPPProcessProfile profile, Throwable failure) {
+    if (failure != null) {
+      if (profile != null) {
+        profiler.record(profile);
       }
-      try {
-        heapObserver.clear();
-        Future<OPPProcessExecutionResult> executionResult = completionService.take();
-        OPPProcessInstance executedInstance = executionResult.get().getInstance();
-        OPPProcess executedProcess = P_executing.get(executedInstance);
-        P_executing.remove(executedInstance);
-        argumentHandler.extractResultsToVariables(executedProcess, executedInstance);
-
-        if (shouldReturn()) {
-          logInfo("Process execution finished by explicit user return.");
-          return;
-        }
+      execution.completeExceptionally(failure);
+      return;
+    }
+    if (context.isStopped()) {
+      logInfo("Process execution has been stopped. Returning.");
+      execution.complete(null);
+      return;
+    }
 
-        Set<OPPProcess> invoked = findInvokedAndNotSkippedProcesses(executedProcess);
-        if (invoked.size() == 1) {
-          executionMode = ExecutionMode.EVENT;
-          p_inv = invoked.iterator().next();
-        } else if (invoked.size() > 1) {
-          logWarning("Cannot activate more than one event at a time");
-          throw new OPPRuntimeException("Cannot activate more than one event at a time.");
-        }
+    drainHeapJournal();
+    OPPProcess executedProcess = P_executing.remove(executedInstance);
+    pc.removeActiveProcess(executedProcess);
+    long resultExtractionStart = profile == null ? 0 : System.nanoTime();
+    argumentHandler.extractResultsToVariables(executedProcess, executedInstance);
+    if (profile != null) {
+      profile.resultsExtracted(resultExtractionStart);
+      profiler.record(profile);
+    }
 
-        boolean stop = false;
-        switch (executionMode) {
-        case NATURAL_ORDER:
+    if (shouldReturn()) {
+      logInfo("Process execution finished by explicit user return.");
+      execution.complete(null);
+      return;
+    }
+
+    Set<OPPProcess> invoked = findInvokedAndNotSkippedProcesses(executedProcess);
+    if (invoked.size() == 1) {
+      executionMode = ExecutionMode.EVENT;
+      p_inv = invoked.iterator().next();
+    } else if (invoked.size() > 1) {
+      logWarning("Cannot activate more than one event at a time");
+      throw new OPPRuntimeException("Cannot activate more than one event at a time.");
+    }
+
+    boolean stop = false;
+    switch (executionMode) {
+    case NATURAL_ORDER:
+      calculateNextProcesses();
+      stop = executeReadyProcesses();
+      break;
+    case EVENT:
+      if (invoked.size() > 0) {
+        P_ready.addAll(invoked);
+        stop = executeReadyProcesses();
+      } else {
+        if (P_executing.size() == 0) {
+          executionMode = ExecutionMode.NATURAL_ORDER;
+          pc.setPC(p_inv.getY() + p_inv.getHeight());
+          pc.setPC(pc.getNextPC());
           calculateNextProcesses();
           stop = executeReadyProcesses();
-          break;
-        case EVENT:
-          if (invoked.size() > 0) {
-            P_ready.addAll(invoked);
-            stop = executeReadyProcesses();
-          } else {
-            if (P_executing.size() == 0) {
-              executionMode = ExecutionMode.NATURAL_ORDER;
-              pc.setPC(p_inv.getY() + p_inv.getHeight());
-              pc.setPC(pc.getNextPC());
-              calculateNextProcesses();
-              stop = executeReadyProcesses();
-            }
-          }
-          break;
-        }
-
-        if (stop) {
-          logInfo("Invoked stop process instance. Returning.");
-          return;
         }
-
-      } catch (InterruptedException e) {
-        logInfo("Process execution has been stopped. Returning.");
-        return;
       }
+      break;
+    }
+
+    if (stop) {
+      logInfo("Invoked stop process instance. Returning.");
+      execution.complete(null);
+      return;
     }
 
+    finishIfNothingExecuting();
+  }
+
+  private void finishIfNothingExecuting() {
+    if (!P_executing.isEmpty()) {
+      return;
+    }
     if (P_waiting.size() > 0) {
       logInfo("Finished execution of {0} with {1} waiting processes.", getName(), P_waiting.size());
-      OPPInterpreter.INSTANCE.stopExecution();
+      context.stop();
     }
+    execution.complete(null);
   }
 
   private boolean shouldReturn() {
-    OPPProcess mainProcess = OPPOPDExtensions.getInZoomedProcess(getOpd());
-    for (OPPObject changedObject : heapObserver.getObjectsWithNewValue()) {
+    for (int i = 0; i < heapJournal.size(); i++) {
+      if (heapJournal.getType(i) != OPMHeapChangeType.VARIABLE_SET) {
+        continue;
+      }
+      OPPObject changedObject = heapJournal.getObject(i);
       if (heap.getVariable(changedObject) != null) {
-        Collection<OPPProceduralLink> outgoingAgentLinks = OPPObjectExtensions.findOutgoingAgentLinks(changedObject);
-        for (OPPProceduralLink link : outgoingAgentLinks) {
-          if (link.getTarget().equals(mainProcess)) {
-            if (link.getSource() instanceof OPPObject) {
+        for (OPPProceduralLink link : plan.getObjectPlan(changedObject).getOutgoingReturnLinks()) {
+          if (link.getSource() instanceof OPPObject) {
+            return true;
+          } else if (link.getSource() instanceof OPPState) {
+            OPPState state = OPPState.class.cast(link.getSource());
+            if (valueAnalyzer.isObjectInstanceInState(heap.getVariable(changedObject), state)) {
               return true;
-            } else if (link.getSource() instanceof OPPState) {
-              OPPState state = OPPState.class.cast(link.getSource());
-              if (valueAnalyzer.isObjectInstanceInState(heap.getVariable(changedObject), state)) {
-                return true;
-              }
             }
           }
         }
@@ -240,16 +384,11 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
 
   private Set<OPPProcess> findInvokedAndNotSkippedProcesses(OPPProcess executedProcess) {
     Set<OPPProcess> invokedProcesses = Sets.newHashSet();
-    for (OPPObject changedObject : heapObserver.getObjectsWithNewValue()) {
-      if (heap.getVariable(changedObject) != null)
-        invokedProcesses.addAll(findProcessesToInvokeAfterObjectHasChanged(changedObject));
-    }
-    for (OPPProceduralLink outgoingAgentLink : OPPProcessExtensions.findOutgoingAgentLinks(executedProcess)) {
-      if (outgoingAgentLink.getSubKinds().contains("e")) {
-        // if (outgoingAgentLink.getCenterDecoration().contains("e")) {
-        invokedProcesses.add((OPPProcess) outgoingAgentLink.getTarget());
-      }
+    for (int i = 0; i < heapJournal.size(); i++) {
+      if (heapJournal.getType(i) == OPMHeapChangeType.VARIABLE_SET && heap.getVariable(heapJournal.getObject(i)) != null)
+        invokedProcesses.addAll(findProcessesToInvokeAfterObjectHasChanged(heapJournal.getObject(i)));
     }
+    invokedProcesses.addAll(plan.getProcessPlan(executedProcess).getEventInvokedProcesses());
 
     invokedProcesses = Sets.filter(invokedProcesses, isReadyAndNotSkipPred);
     logFine("Found {0} invoked processes.", invokedProcesses.size());
@@ -261,7 +400,7 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
     OPPObjectInstance value = getHeap().getVariable(object);
     if (value == null)
       return ret;
-    Collection<OPPProceduralLink> outgoingEventLinks = OPPObjectExtensions.findOutgoingEventLinks(object);
+    Collection<OPPProceduralLink> outgoingEventLinks = plan.getObjectPlan(object).getOutgoingEventLinks();
     for (OPPProceduralLink eventLink : outgoingEventLinks) {
       if (objectValueTriggersEvent(eventLink, value)) {
         ret.add(OPPLinkExtensions.getProcess(eventLink));
@@ -293,17 +432,12 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
 
   @Override
   public List<OPPParameter> getIncomingParameters() {
-    return OPPOPDExtensions.findIncomingParameters(getOpd()).stream().map(o -> new OPPParameter(o.getName())).collect(Collectors.toList());
+    return plan.getIncomingParameters();
   }
 
   @Override
   public List<OPPParameter> getOutgoingParameters() {
-    List<OPPParameter> outgoingParameters = Lists.newArrayList();
-    Collection<OPPObject> parameters = OPPOPDExtensions.findOutgoingParameters(getOpd());
-    for (OPPObject object : parameters) {
-      outgoingParameters.add(new OPPParameter(object.getName()));
-    }
-    return outgoingParameters;
+    return plan.getOutgoingParameters();
   }
 
   @Override
@@ -324,35 +458,11 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
     return heap;
   }
 
-  class IsReadyPredicate extends ExecutablePredicateCommons implements Predicate<OPPProcess> {
-    @Override
-    public boolean test(OPPProcess process) {
-      for (OPPProceduralLink link : OPPProcessExtensions.findIncomingDataLinks(process)) {
-        if (!isLinkSourceReady(link)) {
-          logFine(PROCESS_NOT_READY, process.getName(), OPPLinkExtensions.getSourceObject(link).getName());
-          return false;
-        }
-      }
-
-      for (OPPProceduralLink link : OPPProcessExtensions.findIncomingAgentLinks(process)) {
-        if (link.getSubKinds().contains("e"))
-          // if (link.getTargetDecoration() != null && link.getTargetDecoration().contains("e"))
-          continue;
-        if (!isLinkSourceReady(link)) {
-          logFine(PROCESS_NOT_READY, process.getName(), OPPLinkExtensions.getSourceObject(link).getName());
-          return false;
-        }
-      }
-
-      return true;
-    }
-  }
-
   class MustSkipPredicate extends ExecutablePredicateCommons implements Predicate<OPPProcess> {
     @Override
     public boolean test(OPPProcess process) {
-      for (OPPProceduralLink link : OPPProcessExtensions.findIncomingProceduralLinks(process)) {
-        if (link.getSubKinds().contains(OPPConstants.OPP_CONDITIONAL_LINK_SUBKIND) && !isLinkSourceReady(link)) {
+      for (OPPProceduralLink link : plan.getProcessPlan(process).getConditionalLinks()) {
+        if (!isLinkSourceReady(link)) {
           return true;
         }
       }
@@ -366,7 +476,7 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
   class IsProcessReady extends ExecutablePredicateCommons implements com.google.common.base.Predicate<OPPProcess> {
     @Override
     public boolean apply(OPPProcess process) {
-      for (OPPProceduralLink link : OPPProcessExtensions.findIncomingDataLinks(process)) {
+      for (OPPProceduralLink link : plan.getProcessPlan(process).getIncomingDataLinks()) {
         if (!isLinkSourceReady(link)) {
           logFine(PROCESS_NOT_READY, process.getName(), OPPLinkExtensions.getSourceObject(link).getName());
           return false;
@@ -379,8 +489,8 @@ public class OPPInZoomedProcessExecutableInstance extends OPPAbstractProcessInst
   class mustSkipProcess extends ExecutablePredicateCommons implements com.google.common.base.Predicate<OPPProcess> {
     @Override
     public boolean apply(OPPProcess process) {
-      for (OPPProceduralLink link : OPPProcessExtensions.findIncomingProceduralLinks(process)) {
-        if (link.getSubKinds().contains(OPPConstants.OPP_CONDITIONAL_LINK_SUBKIND) && !isLinkSourceReady(link)) {
+      for (OPPProceduralLink link : plan.getProcessPlan(process).getConditionalLinks()) {
+        if (!isLinkSourceReady(link)) {
           return true;
         }
       }
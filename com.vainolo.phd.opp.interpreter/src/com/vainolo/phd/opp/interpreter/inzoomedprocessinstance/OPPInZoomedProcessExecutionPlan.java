@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.vainolo.phd.opp.interpreter.OPPParameter;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstanceFactory;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstanceFactory.OPPProcessInstanceCreator;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessArgumentHandler.OPPArgumentCatalogue;
+import com.vainolo.phd.opp.model.OPPContainer;
+import com.vainolo.phd.opp.model.OPPNode;
+import com.vainolo.phd.opp.model.OPPObject;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPProceduralLink;
+import com.vainolo.phd.opp.model.OPPProcess;
+import com.vainolo.phd.opp.utilities.OPPConstants;
+import com.vainolo.phd.opp.utilities.analysis.OPPContainerExtensions;
+import com.vainolo.phd.opp.utilities.analysis.OPPOPDExtensions;
+import com.vainolo.phd.opp.utilities.analysis.OPPObjectExtensions;
+import com.vainolo.phd.opp.utilities.analysis.OPPProcessExtensions;
+
+/**
+ * <p>
+ * Immutable, precomputed view of an in-zoomed {@link OPPObjectProcessDiagram} containing all the graph facts that the
+ * interpreter needs while executing it: the order of the sub-processes, their argument bindings, the links that make
+ * them ready, skipped or invoked, and the parent/part chains of the objects.
+ * </p>
+ *
+ * <p>
+ * Plans are created by {@link OPPInZoomedProcessExecutionPlanCache} and shared by all the instances that execute the
+ * same diagram. Elements that are not part of the compiled diagram are analyzed the first time they are queried, so the
+ * plan can always be queried. Their analysis is kept in the plan, except in the {@link #EMPTY} plan which is shared by
+ * all the instances that are not executed with a plan.
+ * </p>
+ */
+public class OPPInZoomedProcessExecutionPlan {
+
+  /** A plan that contains no precomputed information and analyzes every element on demand. */
+  public static final OPPInZoomedProcessExecutionPlan EMPTY = new OPPInZoomedProcessExecutionPlan();
+
+  private final OPPObjectProcessDiagram opd;
+  private final OPPProcess mainProcess;
+  private final ImmutableList<OPPProcess> sortedProcesses;
+  private final OPPInZoomedProcessIntervalIndex intervalIndex;
+  private final ImmutableList<OPPObject> mainProcessObjects;
+  private final ImmutableList<OPPObject> parameters;
+  private final ImmutableList<OPPParameter> incomingParameters;
+  private final ImmutableList<OPPParameter> outgoingParameters;
+  private final ImmutableMap<OPPProcess, OPPProcessPlan> processPlans;
+  private final ImmutableMap<OPPObject, OPPObjectPlan> objectPlans;
+  private final ConcurrentMap<OPPProcess, OPPProcessPlan> analyzedProcessPlans = new ConcurrentHashMap<>();
+  private final ConcurrentMap<OPPObject, OPPObjectPlan> analyzedObjectPlans = new ConcurrentHashMap<>();
+  private volatile boolean discarded = false;
+
+  private OPPInZoomedProcessExecutionPlan() {
+    this.opd = null;
+    this.mainProcess = null;
+    this.sortedProcesses = ImmutableList.of();
+    this.intervalIndex = new OPPInZoomedProcessIntervalIndex(sortedProcesses);
+    this.mainProcessObjects = ImmutableList.of();
+    this.parameters = ImmutableList.of();
+    this.incomingParameters = ImmutableList.of();
+    this.outgoingParameters = ImmutableList.of();
+    this.processPlans = ImmutableMap.of();
+    this.objectPlans = ImmutableMap.of();
+  }
+
+  private OPPInZoomedProcessExecutionPlan(OPPObjectProcessDiagram opd) {
+    this.opd = opd;
+    this.mainProcess = OPPOPDExtensions.getInZoomedProcess(opd);
+
+    List<OPPProcess> processes = Lists.newArrayList();
+    List<OPPObject> objects = Lists.newArrayList();
+    collectNodes(opd, processes, objects);
+
+    if (mainProcess != null) {
+      this.sortedProcesses = ImmutableList.copyOf(new OPPProcessOrdering().sortedCopy(OPPContainerExtensions.getFirstLevelContainedProcesses(mainProcess)));
+      this.mainProcessObjects = ImmutableList.copyOf(OPPContainerExtensions.getObjects(mainProcess));
+    } else {
+      this.sortedProcesses = ImmutableList.of();
+      this.mainProcessObjects = ImmutableList.of();
+    }
+    this.intervalIndex = new OPPInZoomedProcessIntervalIndex(sortedProcesses);
+    this.parameters = ImmutableList.copyOf(OPPOPDExtensions.getParameters(opd));
+    this.incomingParameters = toParameters(OPPOPDExtensions.findIncomingParameters(opd));
+    this.outgoingParameters = toParameters(OPPOPDExtensions.findOutgoingParameters(opd));
+
+    Map<OPPProcess, OPPProcessPlan> processPlansBuilder = Maps.newLinkedHashMap();
+    for (OPPProcess process : processes) {
+      processPlansBuilder.put(process, new OPPProcessPlan(process));
+    }
+    this.processPlans = ImmutableMap.copyOf(processPlansBuilder);
+
+    Map<OPPObject, OPPObjectPlan> objectPlansBuilder = Maps.newLinkedHashMap();
+    for (OPPObject object : objects) {
+      if (!objectPlansBuilder.containsKey(object)) {
+        objectPlansBuilder.put(object, new OPPObjectPlan(object, mainProcess, objectPlansBuilder.size()));
+      }
+    }
+    this.objectPlans = ImmutableMap.copyOf(objectPlansBuilder);
+
+    logFine("Compiled execution plan for {0} with {1} processes and {2} objects.", opd.getName(), processPlans.size(), objectPlans.size());
+  }
+
+  /**
+   * Compile an {@link OPPObjectProcessDiagram} into a new plan. Use {@link OPPInZoomedProcessExecutionPlanCache#get}
+   * to reuse existing plans.
+   */
+  static OPPInZoomedProcessExecutionPlan compile(OPPObjectProcessDiagram opd) {
+    return new OPPInZoomedProcessExecutionPlan(opd);
+  }
+
+  private static void collectNodes(OPPContainer container, List<OPPProcess> processes, List<OPPObject> objects) {
+    for (OPPNode node : container.getNodes()) {
+      if (node instanceof OPPProcess) {
+        processes.add((OPPProcess) node);
+      } else if (node instanceof OPPObject) {
+        objects.add((OPPObject) node);
+      }
+      if (node instanceof OPPContainer) {
+        collectNodes((OPPContainer) node, processes, objects);
+      }
+    }
+  }
+
+  private static ImmutableList<OPPParameter> toParameters(Collection<OPPObject> objects) {
+    return ImmutableList.copyOf(objects.stream().map(o -> new OPPParameter(o.getName())).collect(Collectors.toList()));
+  }
+
+  public OPPObjectProcessDiagram getOpd() {
+    return opd;
+  }
+
+  public OPPProcess getMainProcess() {
+    return mainProcess;
+  }
+
+  /**
+   * @return the sub-processes of the in-zoomed process, sorted by their vertical position.
+   */
+  public List<OPPProcess> getSortedProcesses() {
+    return sortedProcesses;
+  }
+
+  /**
+   * @return the vertical spans of the sub-processes of the in-zoomed process.
+   */
+  public OPPInZoomedProcessIntervalIndex getIntervalIndex() {
+    return intervalIndex;
+  }
+
+  /**
+   * @return the {@link OPPObject}s directly contained in the in-zoomed process.
+   */
+  public List<OPPObject> getMainProcessObjects() {
+    return mainProcessObjects;
+  }
+
+  /**
+   * @return the {@link OPPObject}s that serve as parameters of the diagram.
+   */
+  public List<OPPObject> getParameters() {
+    return parameters;
+  }
+
+  public List<OPPParameter> getIncomingParameters() {
+    return incomingParameters;
+  }
+
+  public List<OPPParameter> getOutgoingParameters() {
+    return outgoingParameters;
+  }
+
+  /**
+   * @return all the {@link OPPProcess}es in the diagram, including the in-zoomed process.
+   */
+  public Set<OPPProcess> getProcesses() {
+    return processPlans.keySet();
+  }
+
+  /**
+   * @return all the {@link OPPObject}s in the diagram.
+   */
+  public Set<OPPObject> getObjects() {
+    return objectPlans.keySet();
+  }
+
+  public OPPProcessPlan getProcessPlan(OPPProcess process) {
+    OPPProcessPlan plan = processPlans.get(process);
+    if (plan == null) {
+      plan = this == EMPTY ? new OPPProcessPlan(process) : analyzedProcessPlans.computeIfAbsent(process, OPPProcessPlan::new);
+    }
+    return plan;
+  }
+
+  public OPPObjectPlan getObjectPlan(OPPObject object) {
+    OPPObjectPlan plan = objectPlans.get(object);
+    if (plan == null) {
+      plan = this == EMPTY ? new OPPObjectPlan(object, mainProcess, -1)
+          : analyzedObjectPlans.computeIfAbsent(object, o -> new OPPObjectPlan(o, mainProcess, -1));
+    }
+    return plan;
+  }
+
+  /**
+   * Mark the plan as no longer describing its diagram, because the diagram changed or was replaced.
+   */
+  void discard() {
+    discarded = true;
+  }
+
+  /**
+   * @return <code>true</code> if the diagram changed or was replaced since the plan was compiled. Executions that
+   *         already use the plan can continue, but what was derived from it must not be reused.
+   */
+  public boolean isDiscarded() {
+    return discarded;
+  }
+
+  /**
+   * @return the number of {@link OPPObject}s in the diagram. Every one of them has a different
+   *         {@link OPPObjectPlan#getIndex() index} between zero and this number.
+   */
+  public int getObjectCount() {
+    return objectPlans.size();
+  }
+
+  /**
+   * Precomputed links of an {@link OPPProcess} inside the in-zoomed process.
+   */
+  public static class OPPProcessPlan {
+    private final ImmutableList<OPPProceduralLink> incomingDataLinks;
+    private final ImmutableList<OPPProceduralLink> incomingNonEventAgentLinks;
+    private final ImmutableList<OPPProceduralLink> conditionalLinks;
+    private final ImmutableList<OPPProcess> eventInvokedProcesses;
+    private final OPPArgumentCatalogue incomingArguments;
+    private final OPPArgumentCatalogue outgoingResults;
+    private final OPPProcessInstanceCreator instanceCreator;
+
+    OPPProcessPlan(OPPProcess process) {
+      this.incomingDataLinks = ImmutableList.copyOf(OPPProcessExtensions.findIncomingDataLinks(process));
+      this.incomingNonEventAgentLinks = ImmutableList.copyOf(OPPProcessExtensions.findIncomingAgentLinks(process).stream()
+          .filter(l -> !l.getSubKinds().contains(OPPConstants.OPP_EVENT_LINK_SUBKIND)).collect(Collectors.toList()));
+      this.conditionalLinks = ImmutableList.copyOf(OPPProcessExtensions.findIncomingProceduralLinks(process).stream()
+          .filter(l -> l.getSubKinds().contains(OPPConstants.OPP_CONDITIONAL_LINK_SUBKIND)).collect(Collectors.toList()));
+      this.eventInvokedProcesses = ImmutableList.copyOf(OPPProcessExtensions.findOutgoingAgentLinks(process).stream()
+          .filter(l -> l.getSubKinds().contains(OPPConstants.OPP_EVENT_LINK_SUBKIND)).map(l -> (OPPProcess) l.getTarget())
+          .collect(Collectors.toList()));
+      this.incomingArguments = OPPArgumentCatalogue.create(OPPProcessExtensions.findIncomingDataLinks(process));
+      this.outgoingResults = OPPArgumentCatalogue.create(OPPProcessExtensions.findOutgoingDataLinks(process));
+      this.instanceCreator = OPPProcessInstanceFactory.resolve(process);
+    }
+
+    /** Links that must have a ready source for the process to be able to start in natural order. */
+    public List<OPPProceduralLink> getIncomingDataLinks() {
+      return incomingDataLinks;
+    }
+
+    /** Incoming agent links which are not event links, and therefore must also be ready in natural order. */
+    public List<OPPProceduralLink> getIncomingNonEventAgentLinks() {
+      return incomingNonEventAgentLinks;
+    }
+
+    /** Incoming procedural links which cause the process to be skipped when their source is not ready. */
+    public List<OPPProceduralLink> getConditionalLinks() {
+      return conditionalLinks;
+    }
+
+    /** Processes invoked through outgoing event agent links when this process finishes. */
+    public List<OPPProcess> getEventInvokedProcesses() {
+      return eventInvokedProcesses;
+    }
+
+    public OPPArgumentCatalogue getIncomingArguments() {
+      return incomingArguments;
+    }
+
+    public OPPArgumentCatalogue getOutgoingResults() {
+      return outgoingResults;
+    }
+
+    /** Creates the instances that execute the process, resolved when the plan was compiled. */
+    public OPPProcessInstanceCreator getInstanceCreator() {
+      return instanceCreator;
+    }
+  }
+
+  /**
+   * Precomputed structure and links of an {@link OPPObject} in the diagram.
+   */
+  public static class OPPObjectPlan {
+    private final int index;
+    private final OPPObject parent;
+    private final ImmutableList<OPPProceduralLink> outgoingDataLinks;
+    private final ImmutableList<OPPProceduralLink> outgoingEventLinks;
+    private final ImmutableList<OPPProceduralLink> outgoingReturnLinks;
+
+    OPPObjectPlan(OPPObject object, OPPProcess mainProcess, int index) {
+      this.index = index;
+      this.parent = OPPObjectExtensions.findParent(object);
+      this.outgoingDataLinks = ImmutableList.copyOf(OPPObjectExtensions.findOutgoingDataLinks(object));
+      this.outgoingEventLinks = ImmutableList.copyOf(OPPObjectExtensions.findOutgoingEventLinks(object));
+      if (mainProcess != null) {
+        this.outgoingReturnLinks = ImmutableList.copyOf(OPPObjectExtensions.findOutgoingAgentLinks(object).stream()
+            .filter(l -> l.getTarget().equals(mainProcess)).collect(Collectors.toList()));
+      } else {
+        this.outgoingReturnLinks = ImmutableList.of();
+      }
+    }
+
+    /**
+     * @return the position of the object in the diagram, or <code>-1</code> if the object is not part of the plan.
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * @return the {@link OPPObject} that this object is a part of, or <code>null</code> if it is not a part.
+     */
+    public OPPObject getParent() {
+      return parent;
+    }
+
+    public List<OPPProceduralLink> getOutgoingDataLinks() {
+      return outgoingDataLinks;
+    }
+
+    public List<OPPProceduralLink> getOutgoingEventLinks() {
+      return outgoingEventLinks;
+    }
+
+    /** Agent links from the object (or its states) to the in-zoomed process, used to return from the execution. */
+    public List<OPPProceduralLink> getOutgoingReturnLinks() {
+      return outgoingReturnLinks;
+    }
+  }
+
+  static class OPPProcessOrdering extends Ordering<OPPProcess> {
+    @Override
+    public int compare(OPPProcess arg1, OPPProcess arg2) {
+      return arg1.getY() - arg2.getY();
+    }
+  }
+}
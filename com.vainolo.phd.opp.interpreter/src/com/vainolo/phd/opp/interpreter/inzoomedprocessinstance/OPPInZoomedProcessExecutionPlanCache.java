@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+
+/**
+ * <p>
+ * Process-wide cache of {@link OPPInZoomedProcessExecutionPlan}s.
+ * </p>
+ *
+ * <p>
+ * The plan of a diagram is stored in an adapter attached to the {@link OPPObjectProcessDiagram} itself, so plans are
+ * keyed by the identity of the diagram and are garbage collected together with it. The adapter listens to all the
+ * contents of the diagram and discards the plan as soon as anything changes, so the next execution recompiles the
+ * plan from the current version of the diagram. Discarded plans are {@link OPPInZoomedProcessExecutionPlan#discard()
+ * marked}, so caches that depend on them can notice it.
+ * </p>
+ *
+ * <p>
+ * The adapters are also indexed in a concurrent map with weak keys and values, so finding the plan of a diagram takes
+ * no lock. The list of adapters of the diagram is only changed, under a lock, when its plan adapter is installed.
+ * </p>
+ */
+public class OPPInZoomedProcessExecutionPlanCache {
+
+  private static final Cache<OPPObjectProcessDiagram, OPPPlanAdapter> adapters = CacheBuilder.newBuilder().weakKeys().weakValues().build();
+
+  private OPPInZoomedProcessExecutionPlanCache() {
+  }
+
+  /**
+   * Get the execution plan of an {@link OPPObjectProcessDiagram}, compiling it if there is no valid plan for the
+   * current version of the diagram.
+   */
+  public static OPPInZoomedProcessExecutionPlan get(OPPObjectProcessDiagram opd) {
+    OPPPlanAdapter adapter = adapters.getIfPresent(opd);
+    if (adapter == null) {
+      adapter = installAdapter(opd);
+    }
+    return adapter.getPlan();
+  }
+
+  /**
+   * Discard the execution plan of an {@link OPPObjectProcessDiagram}.
+   */
+  public static void invalidate(OPPObjectProcessDiagram opd) {
+    OPPPlanAdapter adapter = adapters.getIfPresent(opd);
+    if (adapter != null) {
+      adapter.invalidate();
+    }
+  }
+
+  /**
+   * Install the plan adapter of a diagram. The lock makes sure a diagram gets only one adapter.
+   */
+  private static synchronized OPPPlanAdapter installAdapter(OPPObjectProcessDiagram opd) {
+    OPPPlanAdapter adapter = adapters.getIfPresent(opd);
+    if (adapter == null) {
+      adapter = new OPPPlanAdapter(opd);
+      opd.eAdapters().add(adapter);
+      adapters.put(opd, adapter);
+    }
+    return adapter;
+  }
+
+  /**
+   * Holds the compiled plan of a diagram and discards it whenever the diagram or one of its contents changes.
+   */
+  static class OPPPlanAdapter extends EContentAdapter {
+    private final OPPObjectProcessDiagram opd;
+    private final AtomicReference<OPPPlanVersion> current = new AtomicReference<>(new OPPPlanVersion(0, null));
+
+    OPPPlanAdapter(OPPObjectProcessDiagram opd) {
+      this.opd = opd;
+    }
+
+    /**
+     * Get the plan of the current version of the diagram. A compiled plan is only kept if the diagram did not change
+     * while it was compiled.
+     */
+    OPPInZoomedProcessExecutionPlan getPlan() {
+      OPPPlanVersion version = current.get();
+      if (version.plan != null) {
+        return version.plan;
+      }
+      OPPInZoomedProcessExecutionPlan plan = OPPInZoomedProcessExecutionPlan.compile(opd);
+      if (!current.compareAndSet(version, new OPPPlanVersion(version.number, plan))) {
+        plan.discard();
+      }
+      return plan;
+    }
+
+    void invalidate() {
+      OPPPlanVersion previous = current.getAndUpdate(version -> new OPPPlanVersion(version.number + 1, null));
+      if (previous.plan != null) {
+        previous.plan.discard();
+      }
+    }
+
+    @Override
+    public void notifyChanged(Notification notification) {
+      super.notifyChanged(notification);
+      if (!notification.isTouch() && notification.getEventType() != Notification.REMOVING_ADAPTER) {
+        logFinest("Diagram {0} changed, discarding its execution plan.", opd.getName());
+        invalidate();
+      }
+    }
+  }
+
+  /**
+   * A version of a diagram, and its plan if it was already compiled.
+   */
+  private static class OPPPlanVersion {
+    final int number;
+    final OPPInZoomedProcessExecutionPlan plan;
+
+    OPPPlanVersion(int number, OPPInZoomedProcessExecutionPlan plan) {
+      this.number = number;
+      this.plan = plan;
+    }
+  }
+}
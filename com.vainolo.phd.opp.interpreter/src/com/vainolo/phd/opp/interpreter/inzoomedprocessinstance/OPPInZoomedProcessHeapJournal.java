@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import java.util.function.Consumer;
+
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessInstanceHeap.OPMHeapChangeType;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPObject;
+
+/**
+ * <p>
+ * Journal of the changes made to an {@link OPPInZoomedProcessInstanceHeap} during a step of the in-zoomed process.
+ * The heap appends a record for every change, and the owner of the heap reads the records of the step and then drains
+ * the journal, once per step.
+ * </p>
+ *
+ * <p>
+ * Records are stored in a ring buffer of parallel arrays, and the objects that were changed are marked in a bitset
+ * indexed by the position of the object in the {@link OPPInZoomedProcessExecutionPlan}, so recording and draining
+ * allocate nothing once the buffer is large enough for the biggest step. The buffer grows when a step makes more changes
+ * than it can hold, so records are never lost. Objects that are not part of the plan are not marked in the bitset, and
+ * are reported once for every change.
+ * </p>
+ *
+ * <p>
+ * The journal is not thread safe. It is only used from the steps of the instance that owns the heap, which never run
+ * concurrently.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+final class OPPInZoomedProcessHeapJournal {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final OPPInZoomedProcessExecutionPlan plan;
+  private final long[] dirtyObjects;
+  private OPMHeapChangeType[] types;
+  private OPPObject[] objects;
+  private OPPObjectInstance[] instances;
+  private OPPObject[] children;
+  private int mask;
+  private int head = 0;
+  private int tail = 0;
+
+  OPPInZoomedProcessHeapJournal(OPPInZoomedProcessExecutionPlan plan) {
+    this.plan = plan;
+    this.dirtyObjects = new long[(plan.getObjectCount() + 63) >>> 6];
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    types = new OPMHeapChangeType[capacity];
+    objects = new OPPObject[capacity];
+    instances = new OPPObjectInstance[capacity];
+    children = new OPPObject[capacity];
+    mask = capacity - 1;
+  }
+
+  /**
+   * Append a change to the journal.
+   *
+   * @param type
+   *          the kind of change.
+   * @param object
+   *          the object that was changed.
+   * @param instance
+   *          the new value of the object, or <code>null</code> if it was cleared.
+   * @param child
+   *          the part that was added to the object, or <code>null</code> if the change is not of a part.
+   */
+  void record(OPMHeapChangeType type, OPPObject object, OPPObjectInstance instance, OPPObject child) {
+    if (tail - head == types.length) {
+      grow();
+    }
+    int position = tail & mask;
+    types[position] = type;
+    objects[position] = object;
+    instances[position] = instance;
+    children[position] = child;
+    tail++;
+    mark(object);
+    if (child != null) {
+      mark(child);
+    }
+  }
+
+  private void grow() {
+    OPMHeapChangeType[] oldTypes = types;
+    OPPObject[] oldObjects = objects;
+    OPPObjectInstance[] oldInstances = instances;
+    OPPObject[] oldChildren = children;
+    int oldMask = mask;
+    int size = size();
+    allocate(oldTypes.length * 2);
+    for (int i = 0; i < size; i++) {
+      int oldPosition = (head + i) & oldMask;
+      types[i] = oldTypes[oldPosition];
+      objects[i] = oldObjects[oldPosition];
+      instances[i] = oldInstances[oldPosition];
+      children[i] = oldChildren[oldPosition];
+    }
+    head = 0;
+    tail = size;
+  }
+
+  private void mark(OPPObject object) {
+    int index = plan.getObjectPlan(object).getIndex();
+    if (index >= 0) {
+      dirtyObjects[index >>> 6] |= 1L << index;
+    }
+  }
+
+  /**
+   * Clear the mark of an object.
+   *
+   * @return <code>true</code> if the object was marked, or if it is not part of the plan and cannot be marked.
+   */
+  private boolean unmark(OPPObject object) {
+    int index = plan.getObjectPlan(object).getIndex();
+    if (index < 0) {
+      return true;
+    }
+    long bit = 1L << index;
+    if ((dirtyObjects[index >>> 6] & bit) == 0) {
+      return false;
+    }
+    dirtyObjects[index >>> 6] &= ~bit;
+    return true;
+  }
+
+  /**
+   * @return the number of changes recorded since the last drain.
+   */
+  int size() {
+    return tail - head;
+  }
+
+  /**
+   * @param i
+   *          the position of the change since the last drain, starting from the oldest change.
+   */
+  OPMHeapChangeType getType(int i) {
+    return types[(head + i) & mask];
+  }
+
+  OPPObject getObject(int i) {
+    return objects[(head + i) & mask];
+  }
+
+  OPPObjectInstance getInstance(int i) {
+    return instances[(head + i) & mask];
+  }
+
+  OPPObject getChild(int i) {
+    return children[(head + i) & mask];
+  }
+
+  /**
+   * Remove all the changes from the journal, passing every object that was changed once to the consumer, in the order
+   * of their first change.
+   *
+   * @param changedObjectConsumer
+   *          receives the objects that were changed since the last drain.
+   */
+  void drain(Consumer<OPPObject> changedObjectConsumer) {
+    while (head != tail) {
+      int position = head & mask;
+      if (unmark(objects[position])) {
+        changedObjectConsumer.accept(objects[position]);
+      }
+      if (children[position] != null && unmark(children[position])) {
+        changedObjectConsumer.accept(children[position]);
+      }
+      types[position] = null;
+      objects[position] = null;
+      instances[position] = null;
+      children[position] = null;
+      head++;
+    }
+  }
+}
@@ -7,20 +7,13 @@
 package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
-import java.util.Observable;
-import java.util.Observer;
-import java.util.Set;
 
 import static com.google.common.base.Preconditions.*;
 import static com.vainolo.phd.opp.utilities.OPPLogger.*;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
-import com.vainolo.phd.opp.interpreter.OPPInterpreter;
+import com.vainolo.phd.opp.interpreter.OPPGlobalHeap;
 import com.vainolo.phd.opp.interpreter.OPPObjectInstanceValueAnalyzer;
 import com.vainolo.phd.opp.interpreter.OPPProcessInstanceHeap;
 import com.vainolo.phd.opp.interpreter.OPPRuntimeException;
@@ -34,19 +27,25 @@ import com.vainolo.phd.opp.model.OPPProcess;
 import com.vainolo.phd.opp.utilities.analysis.OPPContainerExtensions;
 import com.vainolo.phd.opp.utilities.analysis.OPPLinkExtensions;
 import com.vainolo.phd.opp.utilities.analysis.OPPOPDExtensions;
-import com.vainolo.phd.opp.utilities.analysis.OPPObjectExtensions;
 
 public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
 
   private Map<OPPObject, OPPObjectInstance> variables;
   private OPPObjectInstanceValueAnalyzer valueAnalyzer;
-  private Observable observable;
+  private OPPInZoomedProcessHeapJournal journal;
   private boolean globalHeap = false;
+  private OPPGlobalHeap sharedGlobalHeap;
+  private OPPInZoomedProcessExecutionPlan plan;
 
   public OPPInZoomedProcessInstanceHeap() {
+    this(OPPInZoomedProcessExecutionPlan.EMPTY);
+  }
+
+  public OPPInZoomedProcessInstanceHeap(OPPInZoomedProcessExecutionPlan plan) {
+    this.plan = plan;
     this.valueAnalyzer = new OPPObjectInstanceValueAnalyzer();
     this.variables = Maps.newHashMap();
-    this.observable = new OPMHeapObservable();
+    this.journal = new OPPInZoomedProcessHeapJournal(plan);
   }
 
   public void setGlobalHeap(boolean global) {
@@ -57,6 +56,20 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
     return globalHeap;
   }
 
+  /**
+   * Set the heap where the values of global objects are stored, which is shared by all the instances of an execution.
+   */
+  public void setSharedGlobalHeap(OPPGlobalHeap sharedGlobalHeap) {
+    this.sharedGlobalHeap = sharedGlobalHeap;
+  }
+
+  private OPPGlobalHeap sharedGlobals() {
+    if (sharedGlobalHeap == null) {
+      throw new OPPRuntimeException("Global objects can only be used in the context of an execution.");
+    }
+    return sharedGlobalHeap;
+  }
+
   /**
    * <p>
    * Set the value in an {@link OPPObject}.
@@ -79,7 +92,7 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
    */
   public void setVariable(OPPObject object, OPPObjectInstance value) {
     checkArgument(value != null, "Value cannot be null");
-    if (OPPObjectExtensions.findParent(object) != null) {
+    if (findParent(object) != null) {
       setPartVariable(object, value);
     } else {
       setMainVariable(object, value);
@@ -88,27 +101,36 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
   }
 
   private void setPartVariable(OPPObject object, OPPObjectInstance value) {
-    OPPObject parentObject = OPPObjectExtensions.findParent(object);
+    OPPObject parentObject = findParent(object);
     OPPComplexObjectInstance parentValue = (OPPComplexObjectInstance) getVariable(parentObject);
     if (parentValue == null) {
       parentValue = OPPObjectInstance.createCompositeInstance();
     }
     setVariable(parentObject, parentValue);
-    parentValue = (OPPComplexObjectInstance) getVariable(parentObject);
-    parentValue.setPart(object.getName(), OPPObjectInstance.createFromExistingInstance(value));
-    logFinest("Setting part variable {0} with value {1}.", object.getName(), value.toString());
-    observable.notifyObservers(new OPMHeapChange(parentObject, parentValue, object, getVariable(object)));
+    OPPObjectInstance partValue = OPPObjectInstance.createFromExistingInstance(value);
+    if (isSharedGlobalVariable(parentObject)) {
+      parentValue = (OPPComplexObjectInstance) sharedGlobals().updateVariable(parentObject.getName(), current -> {
+        OPPComplexObjectInstance newValue = copyOrCreateComposite(current);
+        newValue.setPart(object.getName(), partValue);
+        return newValue;
+      });
+    } else {
+      parentValue = (OPPComplexObjectInstance) getVariable(parentObject);
+      parentValue.setPart(object.getName(), partValue);
+    }
+    logFinest("Setting part variable {0} with value {1}.", object.getName(), value);
+    journal.record(OPMHeapChangeType.PART_ADDED, parentObject, parentValue, object);
   }
 
   private void setMainVariable(OPPObject object, OPPObjectInstance value) {
-    logFinest("Setting main variable {0} with value {1}.", object.getName(), value.toString());
+    logFinest("Setting main variable {0} with value {1}.", object.getName(), value);
     OPPObjectInstance objectValue = OPPObjectInstance.createFromExistingInstance(value);
     if (object.isGlobal() && !isGlobalHeap()) {
-      OPPInterpreter.INSTANCE.getGlobalHeap().setVariable(object.getName(), objectValue);
+      sharedGlobals().setVariable(object.getName(), objectValue);
     } else {
       variables.put(object, objectValue);
     }
-    observable.notifyObservers(new OPMHeapChange(object, objectValue));
+    journal.record(OPMHeapChangeType.VARIABLE_SET, object, objectValue, null);
   }
 
   /**
@@ -120,7 +142,7 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
    * @return the value of the {@link OPPObject}, or <code>null</code> if no value has been assigned.
    */
   public OPPObjectInstance getVariable(OPPObject object) {
-    if (OPPObjectExtensions.findParent(object) != null) {
+    if (findParent(object) != null) {
       return getPartVariable(object);
     } else {
       return getMainVariable(object);
@@ -128,14 +150,14 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
   }
 
   private OPPObjectInstance getPartVariable(OPPObject object) {
-    OPPComplexObjectInstance parent = (OPPComplexObjectInstance) getVariable(OPPObjectExtensions.findParent(object));
+    OPPComplexObjectInstance parent = (OPPComplexObjectInstance) getVariable(findParent(object));
     OPPObjectInstance value;
     if (parent == null) {
       logFinest("Parent of {0} doesn't exist, so part doesn't exist either.", object.getName());
       value = null;
     } else {
       value = parent.getPart(object.getName());
-      logFinest("Getting part variable {0} which is {1}.", object.getName(), parent.getPart(object.getName()));
+      logFinest("Getting part variable {0} which is {1}.", object.getName(), value);
     }
     return value;
   }
@@ -143,7 +165,7 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
   private OPPObjectInstance getMainVariable(OPPObject object) {
     OPPObjectInstance value;
     if (object.isGlobal() && !isGlobalHeap()) {
-      value = OPPInterpreter.INSTANCE.getGlobalHeap().getVariable(object.getName());
+      value = sharedGlobals().getVariable(object.getName());
       logFinest("Getting global variable {0} which is {1}.", object.getName(), value);
     } else {
       value = variables.get(object);
@@ -154,7 +176,7 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
 
   /** Clear the value of a variable when used with a consumption link. */
   public void clearVariable(OPPObject object) {
-    if (OPPObjectExtensions.findParent(object) != null) {
+    if (findParent(object) != null) {
       clearPartVariable(object);
     } else {
       clearMainVariable(object);
@@ -162,23 +184,51 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
   }
 
   private void clearPartVariable(OPPObject object) {
-    OPPComplexObjectInstance parent = (OPPComplexObjectInstance) getVariable(OPPObjectExtensions.findParent(object));
+    OPPComplexObjectInstance parent = (OPPComplexObjectInstance) getVariable(findParent(object));
     if (parent == null) {
       logSevere("Tried clearing a variable which is part of another object, but parent object doesn't exist.", object.getName());
       throw new OPPRuntimeException("Tried clearing a variable (" + object.getName() + ") which is part of another object, but parent object doesn't exist.");
+    } else if (isSharedGlobalVariable(findParent(object))) {
+      logFinest("Clearing part variable {0} of a global variable.", object.getName());
+      sharedGlobals().updateVariable(findParent(object).getName(), current -> {
+        OPPComplexObjectInstance newValue = copyOrCreateComposite(current);
+        newValue.removePart(object.getName());
+        return newValue;
+      });
     } else {
       logFinest("Clearing part variable {0}.", object.getName());
       parent.removePart(object.getName());
     }
+    journal.record(OPMHeapChangeType.VARIABLE_CLEARED, object, null, null);
   }
 
   private void clearMainVariable(OPPObject object) {
     if (object.isGlobal() && !isGlobalHeap()) {
-      OPPInterpreter.INSTANCE.getGlobalHeap().clearVariable(object.getName());
+      sharedGlobals().clearVariable(object.getName());
     } else {
       variables.remove(object);
       logFinest("Clearing main variable {0}.", object.getName());
     }
+    journal.record(OPMHeapChangeType.VARIABLE_CLEARED, object, null, null);
+  }
+
+  /**
+   * Values of global variables are shared between threads, so they cannot be changed in place. Parts of these variables
+   * are changed in a copy that atomically replaces the value in the global heap.
+   */
+  private boolean isSharedGlobalVariable(OPPObject object) {
+    return object.isGlobal() && !isGlobalHeap() && findParent(object) == null;
+  }
+
+  private static OPPComplexObjectInstance copyOrCreateComposite(OPPObjectInstance value) {
+    if (value == null) {
+      return OPPObjectInstance.createCompositeInstance();
+    }
+    return (OPPComplexObjectInstance) OPPObjectInstance.createFromExistingInstance(value);
+  }
+
+  private OPPObject findParent(OPPObject object) {
+    return plan.getObjectPlan(object).getParent();
   }
 
   /**
@@ -188,7 +238,7 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
    * @param source
    */
   private void transferDataFromObject(OPPObject source) {
-    Collection<OPPProceduralLink> dataTransferLinks = OPPObjectExtensions.findOutgoingDataLinks(source);
+    Collection<OPPProceduralLink> dataTransferLinks = plan.getObjectPlan(source).getOutgoingDataLinks();
     for (OPPProceduralLink link : dataTransferLinks) {
       if (link.getTarget() instanceof OPPProcess)
         continue;
@@ -233,7 +283,12 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
    * Initialize local variables from literals
    */
   public void initializeVariablesWithLiterals(OPPProcess mainProcess) {
-    Collection<OPPObject> objectVariables = OPPContainerExtensions.getObjects(mainProcess);
+    Collection<OPPObject> objectVariables;
+    if (plan.getMainProcess() == mainProcess) {
+      objectVariables = plan.getMainProcessObjects();
+    } else {
+      objectVariables = OPPContainerExtensions.getObjects(mainProcess);
+    }
     for (OPPObject object : objectVariables) {
       calculateOPMObjectValueAndSetVariableIfValueIfExists(object);
     }
@@ -244,7 +299,7 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
    * values.
    */
   public void initializeVariablesWithArgumentValues(OPPObjectProcessDiagram opd) {
-    Collection<OPPObject> objectArguments = OPPOPDExtensions.getParameters(opd);
+    Collection<OPPObject> objectArguments = getParameters(opd);
     for (OPPObject object : objectArguments) {
       if (getArgument(object.getName()) != null) {
         setVariable(object, getArgument(object.getName()));
@@ -254,6 +309,14 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
     }
   }
 
+  private Collection<OPPObject> getParameters(OPPObjectProcessDiagram opd) {
+    if (plan.getOpd() == opd) {
+      return plan.getParameters();
+    } else {
+      return OPPOPDExtensions.getParameters(opd);
+    }
+  }
+
   /**
    * Initialize variables of the process instance. Variables are initialized from two sources: arguments and literals.
    * 
@@ -272,7 +335,7 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
    *          The Object Process Diagram that contains the variables and the arguments.
    */
   public void exportVariableValuesToArguments(OPPObjectProcessDiagram opd) {
-    Collection<OPPObject> objectArguments = OPPOPDExtensions.getParameters(opd);
+    Collection<OPPObject> objectArguments = getParameters(opd);
     for (OPPObject object : objectArguments) {
       OPPObjectInstance variable = getVariable(object);
       if (variable != null) {
@@ -282,74 +345,17 @@ public class OPPInZoomedProcessInstanceHeap extends OPPProcessInstanceHeap {
   }
 
   /**
-   * Add an observer to changes in the {@link OPPInZoomedProcessInstanceHeap}
+   * Get the journal where all changes to this {@link OPPInZoomedProcessInstanceHeap} are recorded. The owner of the
+   * heap must drain the journal regularly.
    * 
-   * @param observer
-   *          a new observer for this {@link OPPInZoomedProcessInstanceHeap}
+   * @return the journal of this heap.
    */
-  public void addObserver(Observer observer) {
-    observable.addObserver(observer);
-  }
-
-  class OPMHeapObservable extends Observable {
-    @Override
-    public void notifyObservers(Object arg) {
-      setChanged();
-      super.notifyObservers(arg);
-    }
-  }
-
-  static class OPMHeapObserver implements Observer {
-    private List<OPMHeapChange> changes = Lists.newArrayList();
-
-    @Override
-    public void update(Observable o, Object arg) {
-      changes.add(0, OPMHeapChange.class.cast(arg));
-    }
-
-    public void clear() {
-      changes.clear();
-    }
-
-    public List<OPMHeapChange> getChanges() {
-      return Collections.unmodifiableList(changes);
-    }
-
-    public Set<OPPObject> getObjectsWithNewValue() {
-      Set<OPPObject> objects = Sets.newHashSet();
-      for (OPMHeapChange change : changes) {
-        if (change.changeType.equals(OPMHeapChangeType.VARIABLE_SET)) {
-          objects.add(change.object);
-        }
-      }
-      return objects;
-    }
+  OPPInZoomedProcessHeapJournal getJournal() {
+    return journal;
   }
 
   enum OPMHeapChangeType {
-    VARIABLE_SET, PART_ADDED
-  }
-
-  class OPMHeapChange {
-    public OPMHeapChangeType changeType;
-    public OPPObject object;
-    public OPPObjectInstance objectInstance;
-    public OPPObject child;
-    public OPPObjectInstance childInstance;
-
-    public OPMHeapChange(OPPObject object, OPPObjectInstance instance) {
-      this.changeType = OPMHeapChangeType.VARIABLE_SET;
-      this.object = object;
-      this.objectInstance = instance;
-    }
-
-    public OPMHeapChange(OPPObject parent, OPPObjectInstance parentInstance, OPPObject child, OPPObjectInstance childInstance) {
-      this.changeType = OPMHeapChangeType.PART_ADDED;
-      this.object = parent;
-      this.objectInstance = parentInstance;
-      this.child = child;
-      this.childInstance = childInstance;
-    }
+    VARIABLE_SET, PART_ADDED, VARIABLE_CLEARED
   }
 
 }
@@ -8,87 +8,68 @@ package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
 
 import static com.google.common.base.Preconditions.*;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Ordering;
-import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.google.common.collect.TreeMultiset;
 import com.vainolo.phd.opp.model.OPPProcess;
-import com.vainolo.phd.opp.utilities.analysis.OPPContainerExtensions;
-import com.vainolo.phd.opp.utilities.analysis.OPPOPDExtensions;
 
+/**
+ * Program counter of an in-zoomed process instance. The next processes are found using the
+ * {@link OPPInZoomedProcessIntervalIndex} of the plan, and the ends of the spans of the processes that are still
+ * active (waiting or executing) are kept sorted, so checking whether an active process ends before the next processes
+ * start doesn't require going over all of them.
+ */
 public class OPPInZoomedProcessIntanceProgramCounter {
   private int pc = 0;
-  private OPPObjectProcessDiagram opd;
-  List<OPPProcess> sortedProcesses;
+  private final OPPInZoomedProcessIntervalIndex intervals;
+  private final TreeMultiset<Integer> activeIntervalEnds = TreeMultiset.create();
 
-  public OPPInZoomedProcessIntanceProgramCounter(OPPObjectProcessDiagram opd) {
+  public OPPInZoomedProcessIntanceProgramCounter(OPPInZoomedProcessExecutionPlan plan) {
     pc = 0;
-    this.opd = opd;
-    initialize();
-  }
-
-  private void initialize() {
-    OPPContainerExtensions contExt = new OPPContainerExtensions();
-
-    OPPProcess inZoomedProcess = OPPOPDExtensions.getInZoomedProcess(opd);
-    OPPProcessOrdering ordering = new OPPProcessOrdering();
-    sortedProcesses = ordering.sortedCopy(contExt.getProcesses(inZoomedProcess));
+    intervals = plan.getIntervalIndex();
   }
 
   public int getNextPC() {
-    for (OPPProcess process : sortedProcesses) {
-      if (process.getY() > pc) {
-        return process.getY();
-      }
-    }
-    return Integer.MAX_VALUE;
+    return intervals.getNextStart(pc);
   }
 
   private List<OPPProcess> getProcessesAtPC() {
-    List<OPPProcess> processesAtPC = Lists.newArrayList();
-    for (OPPProcess process : sortedProcesses) {
-      if (process.getY() == pc)
-        processesAtPC.add(process);
-      if (process.getY() > pc)
-        break;
-    }
-    return processesAtPC;
+    return intervals.getProcessesStartingAt(pc);
   }
 
-  public List<OPPProcess> getNextProcesses(Collection<OPPProcess> P_waiting, Collection<OPPProcess> P_executing) {
+  /**
+   * Get the processes that start at the current PC, unless there is an active process that ends before them.
+   */
+  public List<OPPProcess> getNextProcesses() {
     List<OPPProcess> nextPossibleProcess = getProcessesAtPC();
     if (nextPossibleProcess.size() == 0)
       return Collections.emptyList();
 
     OPPProcess firstPossibleProcess = nextPossibleProcess.get(0);
-    for (OPPProcess waitingProcess : P_waiting) {
-      if (firstPossibleProcess.getY() > (waitingProcess.getY() + waitingProcess.getHeight()))
-        return Collections.emptyList();
-    }
-
-    for (OPPProcess executingProcess : P_executing) {
-      if (firstPossibleProcess.getY() > (executingProcess.getY() + executingProcess.getHeight()))
-        return Collections.emptyList();
-    }
+    if (!activeIntervalEnds.isEmpty() && firstPossibleProcess.getY() > activeIntervalEnds.firstEntry().getElement())
+      return Collections.emptyList();
 
     return nextPossibleProcess;
   }
 
-  public void setPC(int pc) {
-    checkArgument(pc >= 0, "Tried to set a negative PC.");
-    this.pc = pc;
+  /**
+   * Register a process that started waiting or executing. A process that is active more than once must be added once
+   * for each time.
+   */
+  public void addActiveProcess(OPPProcess process) {
+    activeIntervalEnds.add(OPPInZoomedProcessIntervalIndex.getEnd(process));
   }
 
-  class OPPProcessOrdering extends Ordering<OPPProcess> {
-
-    @Override
-    public int compare(OPPProcess arg1, OPPProcess arg2) {
-      return arg1.getY() - arg2.getY();
-    }
-
+  /**
+   * Unregister a process that stopped waiting or finished executing.
+   */
+  public void removeActiveProcess(OPPProcess process) {
+    activeIntervalEnds.remove(OPPInZoomedProcessIntervalIndex.getEnd(process));
   }
 
+  public void setPC(int pc) {
+    checkArgument(pc >= 0, "Tried to set a negative PC.");
+    this.pc = pc;
+  }
 }
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.vainolo.phd.opp.model.OPPProcess;
+
+/**
+ * Immutable index of the vertical spans <code>[y, y + height]</code> of the sub-processes of an in-zoomed process,
+ * ordered by their start. Finding the next start after a position and the processes that start at a position are
+ * binary searches over the distinct starts.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPInZoomedProcessIntervalIndex {
+  private final int[] starts;
+  private final ImmutableList<ImmutableList<OPPProcess>> processesAtStart;
+
+  /**
+   * Create a new index.
+   *
+   * @param sortedProcesses
+   *          the processes to index, sorted by their vertical position.
+   */
+  public OPPInZoomedProcessIntervalIndex(List<OPPProcess> sortedProcesses) {
+    List<Integer> startsBuilder = Lists.newArrayList();
+    ImmutableList.Builder<ImmutableList<OPPProcess>> processesBuilder = ImmutableList.builder();
+    int i = 0;
+    while (i < sortedProcesses.size()) {
+      int start = sortedProcesses.get(i).getY();
+      ImmutableList.Builder<OPPProcess> atStart = ImmutableList.builder();
+      while (i < sortedProcesses.size() && sortedProcesses.get(i).getY() == start) {
+        atStart.add(sortedProcesses.get(i));
+        i++;
+      }
+      startsBuilder.add(start);
+      processesBuilder.add(atStart.build());
+    }
+    this.starts = Ints.toArray(startsBuilder);
+    this.processesAtStart = processesBuilder.build();
+  }
+
+  /**
+   * @return the first start of a process that is after the given position, or {@link Integer#MAX_VALUE} if there is
+   *         none.
+   */
+  public int getNextStart(int position) {
+    int index = Arrays.binarySearch(starts, position);
+    index = index >= 0 ? index + 1 : -index - 1;
+    return index < starts.length ? starts[index] : Integer.MAX_VALUE;
+  }
+
+  /**
+   * @return the processes that start exactly at the given position, in diagram order.
+   */
+  public List<OPPProcess> getProcessesStartingAt(int position) {
+    int index = Arrays.binarySearch(starts, position);
+    return index >= 0 ? processesAtStart.get(index) : ImmutableList.of();
+  }
+
+  /**
+   * @return the position where the span of a process ends.
+   */
+  public static int getEnd(OPPProcess process) {
+    return process.getY() + process.getHeight();
+  }
+}
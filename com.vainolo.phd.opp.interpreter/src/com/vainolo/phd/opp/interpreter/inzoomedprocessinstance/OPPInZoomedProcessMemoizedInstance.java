@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.IntFunction;
+
+import com.vainolo.phd.opp.interpreter.OPPAbstractAsyncProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPParameter;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessResultCache.OPPResult;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+
+/**
+ * Executes a pure in-zoomed diagram using the {@link OPPInZoomedProcessResultCache}: if the diagram was already
+ * executed with equal arguments its results are copied from the cache, otherwise the diagram is executed by an
+ * {@link OPPInZoomedProcessExecutableInstance} and its results are stored in the cache.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPInZoomedProcessMemoizedInstance extends OPPAbstractAsyncProcessInstance implements OPPProcessInstance {
+
+  private final OPPObjectProcessDiagram opd;
+  private final OPPInZoomedProcessExecutionPlan plan;
+  private final OPPInZoomedProcessResultCache results;
+  private int inlineDepth = 0;
+
+  public OPPInZoomedProcessMemoizedInstance(OPPObjectProcessDiagram opd, OPPInZoomedProcessResultCache results) {
+    this(opd, OPPInZoomedProcessExecutionPlanCache.get(opd), results);
+  }
+
+  /**
+   * Create an instance that executes an already compiled plan, the current plan of the diagram.
+   */
+  public OPPInZoomedProcessMemoizedInstance(OPPObjectProcessDiagram opd, OPPInZoomedProcessExecutionPlan plan, OPPInZoomedProcessResultCache results) {
+    this.opd = opd;
+    this.plan = plan;
+    this.results = results;
+  }
+
+  @Override
+  protected CompletionStage<Void> executingAsync() {
+    List<OPPParameter> incomingParameters = getIncomingParameters();
+    OPPObjectInstance[] arguments = new OPPObjectInstance[incomingParameters.size()];
+    for (int i = 0; i < arguments.length; i++) {
+      arguments[i] = getArgument(incomingParameters.get(i).getName());
+    }
+    OPPResult cached = results.get(plan, arguments);
+    if (cached != null) {
+      logFine("Found memoized results of {0}.", getName());
+      setResults(cached::getValue);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    OPPInZoomedProcessExecutableInstance delegate = new OPPInZoomedProcessExecutableInstance(opd, plan);
+    delegate.setContext(getContext());
+    delegate.setProfile(getProfile());
+    delegate.setInlineDepth(inlineDepth);
+    for (int i = 0; i < arguments.length; i++) {
+      delegate.setArgument(incomingParameters.get(i).getName(), arguments[i]);
+    }
+    return delegate.executeAsync().thenAccept(result -> {
+      OPPObjectInstance[] values = new OPPObjectInstance[getOutgoingParameters().size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = delegate.getArgument(getOutgoingParameters().get(i).getName());
+      }
+      // A stopped execution may not have finished, so its results are not stored
+      if (!getContext().isStopped()) {
+        results.put(plan, arguments, values);
+      }
+      setResults(i -> values[i]);
+    });
+  }
+
+  /**
+   * Set the number of inline executions this instance is nested in, counting itself.
+   */
+  void setInlineDepth(int inlineDepth) {
+    this.inlineDepth = inlineDepth;
+  }
+
+  private void setResults(IntFunction<OPPObjectInstance> values) {
+    List<OPPParameter> outgoingParameters = getOutgoingParameters();
+    for (int i = 0; i < outgoingParameters.size(); i++) {
+      OPPObjectInstance value = values.apply(i);
+      if (value != null) {
+        setArgument(outgoingParameters.get(i).getName(), value);
+      }
+    }
+  }
+
+  @Override
+  public List<OPPParameter> getIncomingParameters() {
+    return plan.getIncomingParameters();
+  }
+
+  @Override
+  public List<OPPParameter> getOutgoingParameters() {
+    return plan.getOutgoingParameters();
+  }
+
+  @Override
+  public String getName() {
+    return opd.getName();
+  }
+
+  /**
+   * @deprecated This function should not be called for this kind of instance. Calling it will throw an exception
+   */
+  @Deprecated
+  @Override
+  public void setName(String name) {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlan.OPPProcessPlan;
+import com.vainolo.phd.opp.model.OPPObject;
+import com.vainolo.phd.opp.model.OPPProceduralLink;
+import com.vainolo.phd.opp.model.OPPProcess;
+import com.vainolo.phd.opp.utilities.analysis.OPPLinkExtensions;
+
+/**
+ * <p>
+ * Keeps track of the waiting processes of an in-zoomed process, and of how many of their incoming data and
+ * (non-event) agent links are still not satisfied, so that finding the processes that became ready doesn't require
+ * checking all the links of all the waiting processes after every step.
+ * </p>
+ *
+ * <p>
+ * The index is told about the objects changed in the {@link OPPInZoomedProcessInstanceHeap} when its
+ * {@link OPPInZoomedProcessHeapJournal} is drained: every change marks the top-most object that contains the changed
+ * object as dirty, and only the links whose source is inside a dirty object are checked again. Processes
+ * whose counter reaches zero are kept in a set of ready candidates, so they are found without scanning the rest.
+ * Links from global objects can change without the heap noticing, so they are not counted and are checked every time
+ * their process is a candidate.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+class OPPInZoomedProcessReadinessIndex {
+
+  private final OPPInZoomedProcessExecutionPlan plan;
+  private final Predicate<OPPProceduralLink> isLinkSourceReady;
+  private final Map<OPPProcess, OPPProcessReadiness> tracked = Maps.newHashMap();
+  private final SetMultimap<OPPObject, OPPProceduralLink> linksByRootObject = HashMultimap.create();
+  private final Map<OPPProceduralLink, OPPProcessReadiness> linkOwners = Maps.newHashMap();
+  private final Set<OPPObject> dirtyRootObjects = Sets.newHashSet();
+  private final Set<OPPProcess> candidates = Sets.newLinkedHashSet();
+
+  /**
+   * Create a new index.
+   *
+   * @param plan
+   *          the plan of the in-zoomed diagram.
+   * @param isLinkSourceReady
+   *          checks whether the source of a link is ready in the current heap.
+   */
+  OPPInZoomedProcessReadinessIndex(OPPInZoomedProcessExecutionPlan plan, Predicate<OPPProceduralLink> isLinkSourceReady) {
+    this.plan = plan;
+    this.isLinkSourceReady = isLinkSourceReady;
+  }
+
+  /**
+   * Mark an object as changed. The links that depend on it are checked in the next call to {@link #collectReady()}.
+   */
+  void objectChanged(OPPObject object) {
+    if (!tracked.isEmpty()) {
+      dirtyRootObjects.add(findRootObject(object));
+    }
+  }
+
+  /**
+   * Start tracking a waiting process, counting its unsatisfied links. Tracking a process twice has no effect.
+   */
+  void track(OPPProcess process) {
+    if (tracked.containsKey(process)) {
+      return;
+    }
+    OPPProcessReadiness readiness = new OPPProcessReadiness(process);
+    OPPProcessPlan processPlan = plan.getProcessPlan(process);
+    addLinks(readiness, processPlan.getIncomingDataLinks());
+    addLinks(readiness, processPlan.getIncomingNonEventAgentLinks());
+    tracked.put(process, readiness);
+    if (readiness.unsatisfied == 0) {
+      candidates.add(process);
+    }
+  }
+
+  private void addLinks(OPPProcessReadiness readiness, List<OPPProceduralLink> links) {
+    for (OPPProceduralLink link : links) {
+      OPPObject root = findRootObject(OPPLinkExtensions.getSourceObject(link));
+      if (root.isGlobal()) {
+        readiness.uncountedLinks.add(link);
+        continue;
+      }
+      boolean satisfied = isLinkSourceReady.test(link);
+      readiness.satisfied.put(link, satisfied);
+      if (!satisfied) {
+        readiness.unsatisfied++;
+      }
+      linksByRootObject.put(root, link);
+      linkOwners.put(link, readiness);
+    }
+  }
+
+  /**
+   * Stop tracking a process.
+   */
+  void untrack(OPPProcess process) {
+    OPPProcessReadiness readiness = tracked.remove(process);
+    if (readiness == null) {
+      return;
+    }
+    for (OPPProceduralLink link : readiness.satisfied.keySet()) {
+      linksByRootObject.remove(findRootObject(OPPLinkExtensions.getSourceObject(link)), link);
+      linkOwners.remove(link);
+    }
+    candidates.remove(process);
+  }
+
+  /**
+   * Apply the changes made to the heap since the last call, and remove from the index the tracked processes that are
+   * ready to execute.
+   *
+   * @return the processes that are ready, in the order they became candidates.
+   */
+  Set<OPPProcess> collectReady() {
+    for (OPPObject root : dirtyRootObjects) {
+      for (OPPProceduralLink link : linksByRootObject.get(root)) {
+        updateLink(linkOwners.get(link), link);
+      }
+    }
+    dirtyRootObjects.clear();
+
+    Set<OPPProcess> ready = Sets.newLinkedHashSet();
+    for (OPPProcess process : candidates) {
+      if (tracked.get(process).uncountedLinks.stream().allMatch(isLinkSourceReady)) {
+        ready.add(process);
+      }
+    }
+    for (OPPProcess process : ready) {
+      untrack(process);
+    }
+    logFinest("Readiness index found {0} ready processes out of {1} tracked.", ready.size(), tracked.size() + ready.size());
+    return ready;
+  }
+
+  private void updateLink(OPPProcessReadiness readiness, OPPProceduralLink link) {
+    boolean satisfied = isLinkSourceReady.test(link);
+    if (readiness.satisfied.put(link, satisfied) == satisfied) {
+      return;
+    }
+    if (satisfied) {
+      if (--readiness.unsatisfied == 0) {
+        candidates.add(readiness.process);
+      }
+    } else {
+      if (readiness.unsatisfied++ == 0) {
+        candidates.remove(readiness.process);
+      }
+    }
+  }
+
+  /**
+   * Stop tracking all processes.
+   */
+  void clear() {
+    tracked.clear();
+    linksByRootObject.clear();
+    linkOwners.clear();
+    dirtyRootObjects.clear();
+    candidates.clear();
+  }
+
+  boolean isTracked(OPPProcess process) {
+    return tracked.containsKey(process);
+  }
+
+  private OPPObject findRootObject(OPPObject object) {
+    OPPObject parent = plan.getObjectPlan(object).getParent();
+    while (parent != null) {
+      object = parent;
+      parent = plan.getObjectPlan(object).getParent();
+    }
+    return object;
+  }
+
+  private static class OPPProcessReadiness {
+    final OPPProcess process;
+    final Map<OPPProceduralLink, Boolean> satisfied = Maps.newHashMap();
+    final List<OPPProceduralLink> uncountedLinks = Lists.newArrayList();
+    int unsatisfied = 0;
+
+    OPPProcessReadiness(OPPProcess process) {
+      this.process = process;
+    }
+  }
+}
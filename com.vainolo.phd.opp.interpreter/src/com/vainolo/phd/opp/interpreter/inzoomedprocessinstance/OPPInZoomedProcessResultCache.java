@@ -0,0 +1,477 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.vainolo.phd.opp.interpreter.OPPBuiltInProcessRegistry;
+import com.vainolo.phd.opp.interpreter.OPPExecutionContext;
+import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPListObjectInstance;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPObject;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagramKind;
+import com.vainolo.phd.opp.model.OPPProcess;
+import com.vainolo.phd.opp.model.OPPThing;
+import com.vainolo.phd.opp.utilities.OPPConstants;
+
+/**
+ * <p>
+ * Process-wide cache of the results of pure compound processes, so that a pure process that is called many times with
+ * the same arguments (like a recursive Fibonacci) is executed only once for every distinct set of arguments.
+ * </p>
+ *
+ * <p>
+ * A compound process is pure when its in-zoomed process, or the process that calls it, has
+ * {@value OPPConstants#OPP_PURE_PROCESS_MARKER} in its description. Marked processes are memoized only if they
+ * really are pure: they must not have global objects, and must only call built-in processes registered as pure in
+ * the {@link OPPBuiltInProcessRegistry} and compound processes that are pure by the same rules. Marked processes that
+ * use globals, I/O or other state are executed normally.
+ * </p>
+ *
+ * <p>
+ * Results are keyed by the execution plan of the diagram and by the structure of the incoming arguments. Callees are
+ * found by name when the diagram executes, so a diagram and its results are only pure while the plans of the compound
+ * processes it calls, directly or not, are current: every purity verdict and every result records the plans it was
+ * derived from, and is dropped when one of them is {@link OPPInZoomedProcessExecutionPlan#isDiscarded() discarded}.
+ * Incoming arguments are compared by their structure: numbers and strings are compared by value, and lists and complex objects by
+ * their elements. The cache holds at most {@link #DEFAULT_MAXIMUM_WEIGHT} weight, where the weight of an entry is the
+ * number of values in its arguments and results, evicting the least recently used entries.
+ * </p>
+ */
+public class OPPInZoomedProcessResultCache {
+  public static final long DEFAULT_MAXIMUM_WEIGHT = 100000;
+
+  private static OPPInZoomedProcessResultCache instance;
+
+  private final Cache<OPPResultKey, OPPResult> results;
+  private final Cache<OPPInZoomedProcessExecutionPlan, OPPPurity> purity = CacheBuilder.newBuilder().weakKeys().build();
+  private final AtomicLong bypassCount = new AtomicLong();
+
+  OPPInZoomedProcessResultCache(long maximumWeight) {
+    this.results = CacheBuilder.newBuilder().maximumWeight(maximumWeight).weigher((OPPResultKey key, OPPResult result) -> key.weight + result.weight)
+        .recordStats().build();
+  }
+
+  /**
+   * Get the process-wide cache.
+   */
+  public static synchronized OPPInZoomedProcessResultCache getInstance() {
+    if (instance == null) {
+      instance = new OPPInZoomedProcessResultCache(DEFAULT_MAXIMUM_WEIGHT);
+    }
+    return instance;
+  }
+
+  /**
+   * @return <code>true</code> if the description of the thing marks it as pure.
+   */
+  public static boolean isMarkedPure(OPPThing thing) {
+    return thing != null && thing.getDescription() != null && thing.getDescription().contains(OPPConstants.OPP_PURE_PROCESS_MARKER);
+  }
+
+  /**
+   * Decide if the executions of a diagram should be memoized.
+   *
+   * @param markedPure
+   *          <code>true</code> if the process that calls the diagram is marked as pure.
+   * @param context
+   *          where the compound processes called by the diagram are found.
+   * @return <code>true</code> if the diagram is marked as pure, by itself or by its caller, and really is pure.
+   */
+  public boolean isMemoizable(OPPInZoomedProcessExecutionPlan plan, boolean markedPure, OPPExecutionContext context) {
+    if (!markedPure && !isMarkedPure(plan.getMainProcess())) {
+      return false;
+    }
+    if (isPure(plan, context)) {
+      return true;
+    }
+    bypassCount.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Check if a diagram is pure. The result is kept until the diagram or one of the diagrams it calls changes.
+   */
+  boolean isPure(OPPInZoomedProcessExecutionPlan plan, OPPExecutionContext context) {
+    OPPPurity cached = getCurrentPurity(plan);
+    if (cached != null) {
+      return cached.pure;
+    }
+    Map<OPPInZoomedProcessExecutionPlan, Boolean> analyzed = Maps.newHashMap();
+    Set<OPPInZoomedProcessExecutionPlan> dependencies = Sets.newHashSet();
+    boolean pure = analyze(plan, context, analyzed, dependencies);
+    // The verdicts found together depend on all the plans that were analyzed, since it is not known which of them
+    // each verdict depends on.
+    OPPInZoomedProcessExecutionPlan[] dependencyArray = dependencies.toArray(new OPPInZoomedProcessExecutionPlan[dependencies.size()]);
+    // Diagrams that call a diagram still being analyzed assume it is pure, so they are only known to be pure if the
+    // first diagram is. Impure diagrams are always impure.
+    for (Map.Entry<OPPInZoomedProcessExecutionPlan, Boolean> result : analyzed.entrySet()) {
+      if (pure || !result.getValue()) {
+        purity.put(result.getKey(), new OPPPurity(result.getValue(), dependencyArray));
+      }
+    }
+    return pure;
+  }
+
+  private OPPPurity getCurrentPurity(OPPInZoomedProcessExecutionPlan plan) {
+    OPPPurity cached = purity.getIfPresent(plan);
+    if (cached != null && !isCurrent(cached.dependencies)) {
+      purity.invalidate(plan);
+      return null;
+    }
+    return cached;
+  }
+
+  private boolean analyze(OPPInZoomedProcessExecutionPlan plan, OPPExecutionContext context, Map<OPPInZoomedProcessExecutionPlan, Boolean> analyzed,
+      Set<OPPInZoomedProcessExecutionPlan> dependencies) {
+    OPPPurity cached = getCurrentPurity(plan);
+    if (cached != null) {
+      Collections.addAll(dependencies, cached.dependencies);
+      return cached.pure;
+    }
+    Boolean pure = analyzed.get(plan);
+    if (pure != null) {
+      return pure;
+    }
+    dependencies.add(plan);
+    analyzed.put(plan, true);
+    pure = usesNoGlobals(plan) && callsOnlyPureProcesses(plan, context, analyzed, dependencies);
+    analyzed.put(plan, pure);
+    return pure;
+  }
+
+  private static boolean isCurrent(OPPInZoomedProcessExecutionPlan[] dependencies) {
+    for (OPPInZoomedProcessExecutionPlan dependency : dependencies) {
+      if (dependency.isDiscarded()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean usesNoGlobals(OPPInZoomedProcessExecutionPlan plan) {
+    for (OPPObject object : plan.getObjects()) {
+      if (object.isGlobal()) {
+        logFine("{0} is not pure, it uses global object {1}.", plan.getOpd().getName(), object.getName());
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean callsOnlyPureProcesses(OPPInZoomedProcessExecutionPlan plan, OPPExecutionContext context,
+      Map<OPPInZoomedProcessExecutionPlan, Boolean> analyzed, Set<OPPInZoomedProcessExecutionPlan> dependencies) {
+    OPPBuiltInProcessRegistry registry = OPPBuiltInProcessRegistry.getInstance();
+    for (OPPProcess process : plan.getProcesses()) {
+      if (process == plan.getMainProcess()) {
+        continue;
+      }
+      switch (process.getKind()) {
+      case CONCEPTUAL:
+        continue;
+      case BUILT_IN:
+      case COMPOUND:
+        if (registry.get(process.getName()) != null) {
+          if (registry.isPure(process.getName())) {
+            continue;
+          }
+          break;
+        }
+        OPPObjectProcessDiagram opd = context == null || context.getContainer() == null ? null : context.getContainer().getOPD(process.getName());
+        if (opd != null && opd.getKind() == OPPObjectProcessDiagramKind.COMPOUND
+            && analyze(OPPInZoomedProcessExecutionPlanCache.get(opd), context, analyzed, dependencies)) {
+          continue;
+        }
+        break;
+      default:
+        break;
+      }
+      logFine("{0} is not pure, it calls {1}.", plan.getOpd().getName(), process.getName());
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param arguments
+   *          values of the incoming parameters of the plan, in order.
+   * @return the results of an execution with equal arguments, or <code>null</code> if there is none or one of the
+   *         diagrams it depends on changed since it was stored.
+   */
+  public OPPResult get(OPPInZoomedProcessExecutionPlan plan, OPPObjectInstance[] arguments) {
+    OPPResultKey key = new OPPResultKey(plan, arguments);
+    OPPResult result = results.getIfPresent(key);
+    if (result != null && !isCurrent(result.dependencies)) {
+      results.invalidate(key);
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * Store the results of an execution. The arguments and results must not be changed afterwards. The results depend on
+   * the same plans as the purity of the diagram.
+   *
+   * @param results
+   *          values of the outgoing parameters of the plan, in order.
+   */
+  public void put(OPPInZoomedProcessExecutionPlan plan, OPPObjectInstance[] arguments, OPPObjectInstance[] results) {
+    OPPPurity verdict = purity.getIfPresent(plan);
+    OPPInZoomedProcessExecutionPlan[] dependencies = verdict == null ? new OPPInZoomedProcessExecutionPlan[] { plan } : verdict.dependencies;
+    this.results.put(new OPPResultKey(plan, arguments), new OPPResult(results, dependencies));
+  }
+
+  /**
+   * Discard all the results, and whether each diagram is pure.
+   */
+  public void invalidateAll() {
+    results.invalidateAll();
+    purity.invalidateAll();
+  }
+
+  public long size() {
+    return results.size();
+  }
+
+  public CacheStats getStats() {
+    return results.stats();
+  }
+
+  public double getHitRate() {
+    return results.stats().hitRate();
+  }
+
+  /**
+   * @return number of executions of processes marked as pure which were not memoized, because they are not pure.
+   */
+  public long getBypassCount() {
+    return bypassCount.get();
+  }
+
+  @Override
+  public String toString() {
+    CacheStats stats = results.stats();
+    return "Result cache: size=" + size() + ", hits=" + stats.hitCount() + ", misses=" + stats.missCount() + ", hit rate="
+        + String.format("%.3f", stats.hitRate()) + ", evictions=" + stats.evictionCount() + ", bypassed=" + getBypassCount();
+  }
+
+  /**
+   * Weight of a value: one for every number or string (and for every 16 characters of a string), list and complex
+   * object it contains.
+   */
+  static int weight(OPPObjectInstance value) {
+    if (value == null) {
+      return 0;
+    }
+    switch (value.kind) {
+    case STRING:
+      return 1 + value.getStringValue().length() / 16;
+    case LIST:
+      OPPListObjectInstance list = (OPPListObjectInstance) value;
+      int listWeight = 1;
+      for (int i = 1; i <= list.count(); i++) {
+        listWeight += weight(list.get(i));
+      }
+      return listWeight;
+    case COMPOSITE:
+      int compositeWeight = 1;
+      for (OPPObjectInstance part : ((OPPComplexObjectInstance) value).getAllParts()) {
+        compositeWeight += weight(part);
+      }
+      return compositeWeight;
+    default:
+      return 1;
+    }
+  }
+
+  private static int weight(OPPObjectInstance[] values) {
+    int weight = 0;
+    for (OPPObjectInstance value : values) {
+      weight += weight(value);
+    }
+    return weight;
+  }
+
+  /**
+   * Hash code of the structure of a value, consistent with {@link #structurallyEqual(OPPObjectInstance, OPPObjectInstance)}.
+   */
+  static int structuralHashCode(OPPObjectInstance value) {
+    if (value == null) {
+      return 0;
+    }
+    switch (value.kind) {
+    case LIST:
+      OPPListObjectInstance list = (OPPListObjectInstance) value;
+      int listHash = 1;
+      for (int i = 1; i <= list.count(); i++) {
+        listHash = 31 * listHash + structuralHashCode(list.get(i));
+      }
+      return listHash;
+    case COMPOSITE:
+      OPPComplexObjectInstance composite = (OPPComplexObjectInstance) value;
+      int compositeHash = 0;
+      for (String partName : composite.getPartNames()) {
+        compositeHash += partName.hashCode() ^ structuralHashCode(composite.getPart(partName));
+      }
+      return compositeHash;
+    case NUMERICAL:
+      return value.getNumericalValue().hashCode();
+    case JAVA_OBJECT:
+      return Objects.hashCode(value.getValue());
+    default:
+      return value.hashCode();
+    }
+  }
+
+  /**
+   * Compare two values by their structure: numbers by their value and scale, strings by their value, lists by their
+   * elements in order, and complex objects by their parts. Numbers with different scales, like 2 and 2.0, are different
+   * arguments because a diagram can produce different results for them, for example when it converts them to strings.
+   */
+  static boolean structurallyEqual(OPPObjectInstance first, OPPObjectInstance second) {
+    if (first == second) {
+      return true;
+    }
+    if (first == null || second == null || first.kind != second.kind) {
+      return false;
+    }
+    switch (first.kind) {
+    case LIST:
+      OPPListObjectInstance firstList = (OPPListObjectInstance) first;
+      OPPListObjectInstance secondList = (OPPListObjectInstance) second;
+      if (firstList.count() != secondList.count()) {
+        return false;
+      }
+      for (int i = 1; i <= firstList.count(); i++) {
+        if (!structurallyEqual(firstList.get(i), secondList.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    case COMPOSITE:
+      OPPComplexObjectInstance firstComposite = (OPPComplexObjectInstance) first;
+      OPPComplexObjectInstance secondComposite = (OPPComplexObjectInstance) second;
+      Set<String> partNames = firstComposite.getPartNames();
+      if (partNames.size() != secondComposite.count()) {
+        return false;
+      }
+      for (String partName : partNames) {
+        if (!secondComposite.containsPart(partName) || !structurallyEqual(firstComposite.getPart(partName), secondComposite.getPart(partName))) {
+          return false;
+        }
+      }
+      return true;
+    case NUMERICAL:
+      return first.getNumericalValue().equals(second.getNumericalValue());
+    case JAVA_OBJECT:
+      return Objects.equals(first.getValue(), second.getValue());
+    default:
+      return first.equals(second);
+    }
+  }
+
+  /**
+   * Arguments of an execution of a diagram.
+   */
+  static class OPPResultKey {
+    private final OPPInZoomedProcessExecutionPlan plan;
+    private final OPPObjectInstance[] arguments;
+    private final int hashCode;
+    private final int weight;
+
+    OPPResultKey(OPPInZoomedProcessExecutionPlan plan, OPPObjectInstance[] arguments) {
+      this.plan = plan;
+      this.arguments = arguments;
+      int hash = System.identityHashCode(plan);
+      for (OPPObjectInstance argument : arguments) {
+        hash = 31 * hash + structuralHashCode(argument);
+      }
+      this.hashCode = hash;
+      this.weight = 1 + weight(arguments);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof OPPResultKey)) {
+        return false;
+      }
+      OPPResultKey other = (OPPResultKey) obj;
+      if (plan != other.plan || hashCode != other.hashCode || arguments.length != other.arguments.length) {
+        return false;
+      }
+      for (int i = 0; i < arguments.length; i++) {
+        if (!structurallyEqual(arguments[i], other.arguments[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return plan.getOpd().getName() + Arrays.toString(arguments);
+    }
+  }
+
+  /**
+   * Whether a diagram is pure, and the plans of the diagrams this was decided from.
+   */
+  private static class OPPPurity {
+    final boolean pure;
+    final OPPInZoomedProcessExecutionPlan[] dependencies;
+
+    OPPPurity(boolean pure, OPPInZoomedProcessExecutionPlan[] dependencies) {
+      this.pure = pure;
+      this.dependencies = dependencies;
+    }
+  }
+
+  /**
+   * Results of an execution of a diagram.
+   */
+  public static class OPPResult {
+    private final OPPObjectInstance[] values;
+    private final OPPInZoomedProcessExecutionPlan[] dependencies;
+    private final int weight;
+
+    OPPResult(OPPObjectInstance[] values, OPPInZoomedProcessExecutionPlan[] dependencies) {
+      this.values = values;
+      this.dependencies = dependencies;
+      this.weight = weight(values);
+    }
+
+    /**
+     * @return the value of the outgoing parameter in the given position, or <code>null</code> if the execution did not
+     *         set it.
+     */
+    public OPPObjectInstance getValue(int index) {
+      return values[index];
+    }
+  }
+}
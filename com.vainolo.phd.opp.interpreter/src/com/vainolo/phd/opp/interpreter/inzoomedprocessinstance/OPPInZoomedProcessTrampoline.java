@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.inzoomedprocessinstance;
+
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import com.vainolo.phd.opp.interpreter.OPPAsyncProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPProcessExecutionResult;
+
+/**
+ * <p>
+ * Executes nested in-zoomed instances inline, in the thread of their caller, without growing its stack.
+ * </p>
+ *
+ * <p>
+ * Every thread that executes inline instances has an explicit stack of frames, where a frame is the start of an
+ * instance or a step of an instance that reacts to the completion of one of its subprocesses. The first frame pushed
+ * in a thread makes the thread run all the frames, last pushed first, until the stack is empty. Frames pushed while
+ * the stack is being run are only added to it, so an instance that starts a nested instance, or finishes and resumes
+ * its caller, returns to the loop instead of calling it directly, and recursive diagrams are executed in a constant
+ * amount of the thread's stack and without passing every call to another thread.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+final class OPPInZoomedProcessTrampoline {
+  private static final ThreadLocal<Deque<Runnable>> frames = new ThreadLocal<>();
+
+  private OPPInZoomedProcessTrampoline() {
+  }
+
+  /**
+   * Run a frame in the current thread. If the thread is already running frames, the frame is pushed to its stack and
+   * run after the current frame returns. Frames that complete a future must catch their own exceptions, since an
+   * exception thrown by a frame is only logged.
+   */
+  static void run(Runnable frame) {
+    Deque<Runnable> stack = frames.get();
+    if (stack != null) {
+      stack.push(frame);
+      return;
+    }
+    stack = new ArrayDeque<>();
+    frames.set(stack);
+    try {
+      for (Runnable next = frame; next != null; next = stack.poll()) {
+        try {
+          next.run();
+        } catch (RuntimeException e) {
+          logSevere("Exception while running inline frame: {0}", e);
+        }
+      }
+    } finally {
+      frames.remove();
+    }
+  }
+
+  /**
+   * Start executing an instance inline.
+   *
+   * @return a stage that is completed with the execution result when the instance finishes, or exceptionally if
+   *         starting it throws.
+   */
+  static CompletionStage<OPPProcessExecutionResult> execute(OPPAsyncProcessInstance instance) {
+    CompletableFuture<OPPProcessExecutionResult> execution = new CompletableFuture<>();
+    run(() -> {
+      try {
+        instance.executeAsync().whenComplete((result, failure) -> {
+          if (failure != null) {
+            execution.completeExceptionally(failure);
+          } else {
+            execution.complete(result);
+          }
+        });
+      } catch (Throwable e) {
+        execution.completeExceptionally(e);
+      }
+    });
+    return execution;
+  }
+}
@@ -10,11 +10,13 @@ import static com.vainolo.phd.opp.utilities.OPPLogger.*;
 
 import java.math.BigDecimal;
 import java.util.Iterator;
+import java.util.Map;
 
 import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 import com.eclipsesource.json.JsonObject.Member;
+import com.google.common.collect.Maps;
 import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPListObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
@@ -41,7 +43,7 @@ public class OPPJsonReader {
   }
 
   public OPPObjectInstance read(JsonValue value) {
-    logFinest("Reading " + value.toString());
+    logFinest("Reading {0}", value);
     if (value.isArray()) {
       return read(value.asArray());
     } else if (value.isString()) {
@@ -57,6 +59,19 @@ public class OPPJsonReader {
     }
   }
 
+  /**
+   * Read the arguments of a process execution from a JSON object, where every member is an argument.
+   *
+   * @return the arguments by parameter name, in the order of the members.
+   */
+  public Map<String, OPPObjectInstance> readArguments(JsonObject jsonObject) {
+    Map<String, OPPObjectInstance> arguments = Maps.newLinkedHashMap();
+    for (Member member : jsonObject) {
+      arguments.put(member.getName(), read(member.getValue()));
+    }
+    return arguments;
+  }
+
   private OPPComplexObjectInstance read(JsonObject jsonObject) {
     OPPComplexObjectInstance object = OPPObjectInstance.createCompositeInstance();
     Iterator<Member> it = jsonObject.iterator();
@@ -10,7 +10,8 @@ import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
-import com.google.common.base.Preconditions;
+import com.vainolo.phd.opp.interpreter.OPPParameter;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPComplexObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPListObjectInstance;
 import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
@@ -18,25 +19,42 @@ import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance.InstanceKind;
 
 public class OPPJsonWriter {
 
-  public JsonObject write(OPPObjectInstance oppObjectInstace) {
+  /**
+   * Write an object instance as a JSON value: strings are written as JSON strings, numbers as JSON numbers, lists as
+   * JSON arrays and complex objects as JSON objects.
+   */
+  public JsonValue write(OPPObjectInstance oppObjectInstace) {
     if (oppObjectInstace.kind == InstanceKind.LIST) {
-      return writeArray((OPPListObjectInstance) oppObjectInstace);
+      return write((OPPListObjectInstance) oppObjectInstace);
     } else if (oppObjectInstace.kind == InstanceKind.COMPOSITE) {
-      return writeObject((OPPComplexObjectInstance) oppObjectInstace);
+      return write((OPPComplexObjectInstance) oppObjectInstace);
     } else {
-      throw new IllegalStateException("Function supports lists and complex objects");
+      return getJSONValue(oppObjectInstace);
     }
   }
 
-  private JsonObject writeArray(OPPListObjectInstance opmListObjectInstance) {
+  /**
+   * Write the values of the outgoing parameters of an executed instance as a JSON object. Parameters without a value
+   * are written as <code>null</code>.
+   */
+  public JsonObject writeResults(OPPProcessInstance instance) {
+    JsonObject results = new JsonObject();
+    for (OPPParameter parameter : instance.getOutgoingParameters()) {
+      OPPObjectInstance value = instance.getArgument(parameter.getName());
+      results.add(parameter.getName(), value == null ? Json.NULL : write(value));
+    }
+    return results;
+  }
+
+  public JsonArray write(OPPListObjectInstance opmListObjectInstance) {
     JsonArray array = new JsonArray();
     for (int i = 1; i <= opmListObjectInstance.count(); i++) {
       array.add(getJSONValue(opmListObjectInstance.get(i)));
     }
-    return null;
+    return array;
   }
 
-  private JsonObject writeObject(OPPComplexObjectInstance obmComplexObjectInstance) {
+  public JsonObject write(OPPComplexObjectInstance obmComplexObjectInstance) {
     JsonObject jsonObject = new JsonObject();
     for (String partName : obmComplexObjectInstance.getPartNames()) {
       OPPObjectInstance partValue = obmComplexObjectInstance.getPart(partName);
@@ -56,7 +74,7 @@ public class OPPJsonWriter {
     } else if (opmObject.kind == InstanceKind.LIST) {
       return write((OPPListObjectInstance) opmObject);
     } else {
-      throw new IllegalStateException();
+      throw new IllegalStateException("Instances of kind " + opmObject.kind + " cannot be written as JSON.");
     }
   }
 
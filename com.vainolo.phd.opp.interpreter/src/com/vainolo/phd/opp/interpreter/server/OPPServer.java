@@ -6,41 +6,293 @@
  *******************************************************************************/
 package com.vainolo.phd.opp.interpreter.server;
 
-import java.util.function.Consumer;
+import static com.vainolo.phd.opp.utilities.OPPLogger.*;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.google.common.base.Strings;
+import com.vainolo.phd.opp.interpreter.OPPDirectoryContainer;
+import com.vainolo.phd.opp.interpreter.OPPExecutionContext;
+import com.vainolo.phd.opp.interpreter.OPPProcessInstance;
+import com.vainolo.phd.opp.interpreter.OPPRuntimeException;
+import com.vainolo.phd.opp.interpreter.OPPScheduler;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPBlockingExecution;
+import com.vainolo.phd.opp.interpreter.OPPScheduler.OPPSchedulerKind;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessExecutionPlanCache;
+import com.vainolo.phd.opp.interpreter.json.OPPJsonReader;
+import com.vainolo.phd.opp.interpreter.json.OPPJsonWriter;
+import com.vainolo.phd.opp.interpreter.server.OPPServerStatistics.OPPRequestOutcome;
+import com.vainolo.phd.opp.interpreter.types.OPPObjectInstance;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagram;
+import com.vainolo.phd.opp.model.OPPObjectProcessDiagramKind;
+import com.vainolo.phd.opp.model.OPPPackage;
+import com.vainolo.phd.opp.utilities.OPPLogger;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
 
-/*
- * @author <a href="http://tfox.org">Tim Fox</a>
+/**
+ * <p>
+ * HTTP service that executes the OPDs stored in a directory.
+ * </p>
+ *
+ * <ul>
+ * <li><code>POST /execute/&lt;opd name&gt;</code>: execute an OPD. The body is a JSON object whose members are the
+ * arguments of the OPD, and may be empty if the OPD has no arguments. The response is a JSON object with the values of
+ * the outgoing parameters of the OPD.</li>
+ * <li><code>GET /stats</code>: request counters, latency percentiles, throughput and the state of the scheduler, as
+ * described in {@link OPPServerStatistics#toJson(OPPScheduler)}.</li>
+ * </ul>
+ *
+ * <p>
+ * Every request is executed in its own {@link OPPExecutionContext}, so requests never see each other's global
+ * variables, but all the contexts share one {@link OPPScheduler}. The OPD is loaded and executed in the scheduler, and
+ * the response is written back in the event loop when the execution finishes, so the event loop is never blocked by an
+ * execution. Diagrams and their execution plans are cached between requests, and can be loaded before the server starts
+ * listening using the <code>preload</code> configuration.
+ * </p>
+ *
+ * <p>
+ * When <code>maxExecutions</code> executions are in flight, new requests are rejected with status 503 and a
+ * <code>Retry-After</code> header, instead of waiting in the queue of the saturated scheduler. Executions that do not
+ * finish in <code>timeout</code> milliseconds, or whose client disconnects, are stopped.
+ * </p>
+ *
+ * <p>
+ * Configuration (all optional):
+ * <ul>
+ * <li><code>directory</code>: where the OPDs are found. Default is the working directory.</li>
+ * <li><code>port</code>: default is {@value #DEFAULT_PORT}.</li>
+ * <li><code>parallelism</code>: parallelism of the scheduler. Default is the number of processors.</li>
+ * <li><code>maxExecutions</code>: maximum executions in flight. Default is {@value #DEFAULT_EXECUTIONS_PER_THREAD}
+ * times the parallelism.</li>
+ * <li><code>timeout</code>: milliseconds an execution may take, or <code>0</code> for no limit. Default is
+ * {@value #DEFAULT_TIMEOUT}.</li>
+ * <li><code>maxBodySize</code>: maximum size of a request body in bytes. Default is {@value #DEFAULT_MAX_BODY_SIZE}.
+ * </li>
+ * <li><code>preload</code>: array of names of OPDs to load when the server starts.</li>
+ * <li><code>inlineFrames</code>: depth of nested compound processes executed inline, as described in
+ * {@link OPPExecutionContext#setMaxInlineFrames(int)}. Default is <code>0</code>.</li>
+ * <li><code>logLevel</code>: level of the log, as a {@link Level} name. Default is <code>WARNING</code>. The class and
+ * method that logged a message are not added to the messages of the server.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
  */
 public class OPPServer extends AbstractVerticle {
+  static final int DEFAULT_PORT = 8080;
+  static final int DEFAULT_EXECUTIONS_PER_THREAD = 4;
+  static final long DEFAULT_TIMEOUT = 60000;
+  static final long DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+  static final String DEFAULT_LOG_LEVEL = "WARNING";
 
-  // Convenience method so you can run it in your IDE
+  private OPPDirectoryContainer container;
+  private OPPScheduler scheduler;
+  private OPPServerStatistics statistics;
+  private long timeout;
+  private int maxInlineFrames;
+
+  /**
+   * Start a server.
+   *
+   * <pre>
+   * OPPServer [directory] [port]
+   * </pre>
+   */
   public static void main(String[] args) {
-    System.setProperty("vertx.cwd", "hello");
-    Consumer<Vertx> runner = vertx -> {
-      try {
-        vertx.deployVerticle(OPPServer.class.getName());
-      } catch (Throwable t) {
-        t.printStackTrace();
-      }
-    };
+    io.vertx.core.json.JsonObject config = new io.vertx.core.json.JsonObject();
+    if (args.length > 0) {
+      config.put("directory", args[0]);
+    }
+    if (args.length > 1) {
+      config.put("port", Integer.parseInt(args[1]));
+    }
     Vertx vertx = Vertx.vertx(new VertxOptions());
-    runner.accept(vertx);
+    vertx.deployVerticle(OPPServer.class.getName(), new DeploymentOptions().setConfig(config), deployed -> {
+      if (deployed.failed()) {
+        logSevere("Server could not be started: {0}", deployed.cause());
+        vertx.close();
+      }
+    });
   }
 
   @Override
-  public void start() throws Exception {
+  public void start(Future<Void> startFuture) throws Exception {
+    OPPLogger.setLevel(Level.parse(config().getString("logLevel", DEFAULT_LOG_LEVEL).toUpperCase()));
+    OPPLogger.setIncludeCallerInfo(false);
+    OPPPackage.eINSTANCE.eClass();
+    container = new OPPDirectoryContainer(Paths.get(config().getString("directory", ".")));
+    int parallelism = config().getInteger("parallelism", Runtime.getRuntime().availableProcessors());
+    scheduler = new OPPScheduler(OPPSchedulerKind.FORK_JOIN, parallelism, OPPBlockingExecution.VIRTUAL_THREADS);
+    statistics = new OPPServerStatistics(config().getInteger("maxExecutions", DEFAULT_EXECUTIONS_PER_THREAD * parallelism));
+    timeout = config().getLong("timeout", DEFAULT_TIMEOUT);
+    maxInlineFrames = config().getInteger("inlineFrames", 0);
+    int port = config().getInteger("port", DEFAULT_PORT);
+    List<?> preload = config().containsKey("preload") ? config().getJsonArray("preload").getList() : Collections.emptyList();
 
     Router router = Router.router(vertx);
+    router.route().handler(BodyHandler.create().setBodyLimit(config().getLong("maxBodySize", DEFAULT_MAX_BODY_SIZE)));
+    router.post("/execute/:opd").handler(this::execute);
+    router.get("/stats").handler(routingContext -> respond(routingContext.response(), 200, statistics.toJson(scheduler)));
+
+    vertx.<Void> executeBlocking(future -> {
+      for (Object opdName : preload) {
+        preload(String.valueOf(opdName));
+      }
+      future.complete();
+    }, preloaded -> {
+      if (preloaded.failed()) {
+        startFuture.fail(preloaded.cause());
+        return;
+      }
+      vertx.createHttpServer().requestHandler(router::accept).listen(port, listening -> {
+        if (listening.succeeded()) {
+          logInfo("Executing OPDs from {0} on port {1}.", container, String.valueOf(port));
+          startFuture.complete();
+        } else {
+          startFuture.fail(listening.cause());
+        }
+      });
+    });
+  }
+
+  @Override
+  public void stop() throws Exception {
+    scheduler.shutdown();
+  }
+
+  /**
+   * Load an OPD and compile its execution plan, so the first request that executes it does not pay for them.
+   */
+  private void preload(String opdName) {
+    OPPObjectProcessDiagram opd = container.getOPD(opdName);
+    if (opd == null) {
+      throw new OPPRuntimeException("OPD " + opdName + " could not be loaded from " + container + ".");
+    }
+    if (opd.getKind() == OPPObjectProcessDiagramKind.COMPOUND) {
+      OPPInZoomedProcessExecutionPlanCache.get(opd);
+    }
+    logInfo("Preloaded OPD {0}.", opdName);
+  }
+
+  private void execute(RoutingContext routingContext) {
+    long start = System.nanoTime();
+    HttpServerResponse response = routingContext.response();
+    String opdName = routingContext.request().getParam("opd");
+    Map<String, OPPObjectInstance> arguments;
+    try {
+      checkName(opdName);
+      arguments = readArguments(routingContext.getBodyAsString());
+    } catch (IllegalArgumentException e) {
+      respond(response, 400, error(e.getMessage()));
+      return;
+    }
+    if (!statistics.admit()) {
+      response.putHeader("Retry-After", "1");
+      respond(response, 503, error("Too many executions in flight, try again later."));
+      return;
+    }
 
-    router.route().handler(routingContext -> {
-      routingContext.response().putHeader("content-type", "text/html").end("Stop Me!!!");
+    OPPExecutionContext context = new OPPExecutionContext(container, scheduler, false, null, null);
+    context.setMaxInlineFrames(maxInlineFrames);
+    Context vertxContext = vertx.getOrCreateContext();
+    AtomicBoolean finished = new AtomicBoolean();
+    long timer = timeout <= 0 ? -1 : vertx.setTimer(timeout, id -> {
+      if (finished.compareAndSet(false, true)) {
+        context.stop();
+        statistics.finished(start, OPPRequestOutcome.TIMED_OUT);
+        respond(response, 504, error("Execution of " + opdName + " did not finish in " + timeout + "ms."));
+      }
+    });
+    response.closeHandler(closed -> {
+      if (finished.compareAndSet(false, true)) {
+        logWarning("Client disconnected, stopping execution of {0}.", opdName);
+        vertx.cancelTimer(timer);
+        context.stop();
+        statistics.finished(start, OPPRequestOutcome.FAILED);
+      }
+    });
+    context.executeAsync(opdName, arguments).whenComplete((instance, failure) -> {
+      // A stopped execution keeps its place until it really ends, so abandoned executions cannot pile up
+      statistics.released();
+      vertxContext.runOnContext(v -> executionFinished(response, start, opdName, finished, timer, instance, failure));
     });
+  }
+
+  /**
+   * Answer a request whose execution ended, unless it was already answered because it timed out or its client
+   * disconnected.
+   */
+  private void executionFinished(HttpServerResponse response, long start, String opdName, AtomicBoolean finished, long timer,
+      OPPProcessInstance instance, Throwable failure) {
+    if (!finished.compareAndSet(false, true)) {
+      return;
+    }
+    vertx.cancelTimer(timer);
+    if (failure == null) {
+      statistics.finished(start, OPPRequestOutcome.COMPLETED);
+      respond(response, 200, instance == null ? new JsonObject() : new OPPJsonWriter().writeResults(instance));
+    } else {
+      Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+      logWarning("Execution of {0} failed: {1}", opdName, cause);
+      statistics.finished(start, OPPRequestOutcome.FAILED);
+      respond(response, 500, error(cause.getMessage() != null ? cause.getMessage() : cause.toString()));
+    }
+  }
+
+  /**
+   * Only OPDs stored directly in the directory of the server can be executed.
+   */
+  private static void checkName(String opdName) {
+    if (Strings.isNullOrEmpty(opdName) || opdName.contains("/") || opdName.contains("\\") || opdName.startsWith(".")) {
+      throw new IllegalArgumentException("Invalid OPD name " + opdName + ".");
+    }
+  }
+
+  static Map<String, OPPObjectInstance> readArguments(String body) {
+    if (Strings.isNullOrEmpty(body) || body.trim().isEmpty()) {
+      return Collections.emptyMap();
+    }
+    JsonValue json;
+    try {
+      json = Json.parse(body);
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Arguments are not valid JSON: " + e.getMessage());
+    }
+    if (!json.isObject()) {
+      throw new IllegalArgumentException("Arguments must be a JSON object.");
+    }
+    try {
+      return new OPPJsonReader().readArguments(json.asObject());
+    } catch (IllegalStateException e) {
+      throw new IllegalArgumentException(e.getMessage());
+    }
+  }
+
+  private static JsonObject error(String message) {
+    return new JsonObject().add("error", message);
+  }
 
-    vertx.createHttpServer().requestHandler(router::accept).listen(8080);
+  private static void respond(HttpServerResponse response, int status, JsonObject body) {
+    response.setStatusCode(status).putHeader("content-type", "application/json").end(body.toString());
   }
-}
\ No newline at end of file
+}
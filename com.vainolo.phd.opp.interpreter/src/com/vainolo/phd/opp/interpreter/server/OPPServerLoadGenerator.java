@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.vainolo.phd.opp.utilities.OPPStatisticsUtils;
+
+/**
+ * <p>
+ * Sends concurrent execution requests to an {@link OPPServer}, usually running in the same machine, and prints the
+ * latency percentiles and throughput seen by the clients and the number of responses of every status.
+ * </p>
+ *
+ * <pre>
+ * OPPServerLoadGenerator &lt;url&gt; &lt;concurrency&gt; &lt;requests&gt; [arguments file]
+ * </pre>
+ *
+ * <p>
+ * For example, <code>OPPServerLoadGenerator http://localhost:8080/execute/Fibonacci 16 10000 args.json</code>. The
+ * statistics of the server can be compared with the ones seen by the clients using <code>GET /stats</code>.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPServerLoadGenerator {
+  private final URL url;
+  private final byte[] body;
+  private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+  private final AtomicLong errors = new AtomicLong();
+
+  public OPPServerLoadGenerator(URL url, byte[] body) {
+    this.url = url;
+    this.body = body;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.println("Usage: OPPServerLoadGenerator <url> <concurrency> <requests> [arguments file]");
+      System.exit(2);
+    }
+    int concurrency = Integer.parseInt(args[1]);
+    int requests = Integer.parseInt(args[2]);
+    if (concurrency <= 0 || requests <= 0) {
+      System.err.println("The concurrency and the number of requests must be positive.");
+      System.exit(2);
+    }
+    byte[] body = args.length > 3 ? Files.readAllBytes(Paths.get(args[3])) : new byte[0];
+    new OPPServerLoadGenerator(new URL(args[0]), body).run(concurrency, requests);
+  }
+
+  /**
+   * Send the requests and print the results to the standard output.
+   *
+   * @param concurrency
+   *          number of clients, each sending a request after the previous one was answered.
+   * @param requests
+   *          total number of requests sent by all the clients.
+   */
+  public void run(int concurrency, int requests) throws InterruptedException {
+    Preconditions.checkArgument(concurrency > 0, "concurrency must be positive");
+    Preconditions.checkArgument(requests > 0, "requests must be positive");
+    long[] latencies = new long[requests];
+    AtomicInteger next = new AtomicInteger();
+    ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+    long start = System.nanoTime();
+    for (int i = 0; i < concurrency; i++) {
+      clients.execute(() -> {
+        for (int request = next.getAndIncrement(); request < requests; request = next.getAndIncrement()) {
+          long requestStart = System.nanoTime();
+          send();
+          latencies[request] = System.nanoTime() - requestStart;
+        }
+      });
+    }
+    clients.shutdown();
+    clients.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    long elapsed = System.nanoTime() - start;
+
+    Arrays.sort(latencies);
+    System.out.printf("%d requests in %.3fs: %.1f requests/s%n", requests, elapsed / 1e9, requests / (elapsed / 1e9));
+    System.out.printf("latency: p50=%.3fms, p90=%.3fms, p99=%.3fms, max=%.3fms%n", millis(OPPStatisticsUtils.percentile(latencies, 50)),
+        millis(OPPStatisticsUtils.percentile(latencies, 90)), millis(OPPStatisticsUtils.percentile(latencies, 99)),
+        millis(latencies[requests - 1]));
+    for (Map.Entry<Integer, AtomicLong> status : statuses.entrySet()) {
+      System.out.printf("status %d: %d%n", status.getKey(), status.getValue().get());
+    }
+    if (errors.get() > 0) {
+      System.out.printf("connection errors: %d%n", errors.get());
+    }
+  }
+
+  private void send() {
+    try {
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setRequestMethod("POST");
+      connection.setRequestProperty("content-type", "application/json");
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+      int status = connection.getResponseCode();
+      try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+        if (in != null) {
+          ByteStreams.toByteArray(in);
+        }
+      }
+      statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+    } catch (IOException e) {
+      errors.incrementAndGet();
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1000000.0;
+  }
+}
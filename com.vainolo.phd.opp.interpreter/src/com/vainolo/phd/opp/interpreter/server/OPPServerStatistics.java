@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.server;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eclipsesource.json.JsonObject;
+import com.google.common.cache.CacheStats;
+import com.vainolo.phd.opp.interpreter.OPPScheduler;
+import com.vainolo.phd.opp.interpreter.inzoomedprocessinstance.OPPInZoomedProcessResultCache;
+import com.vainolo.phd.opp.utilities.OPPStatisticsUtils;
+
+/**
+ * <p>
+ * Request counters and latencies of the {@link OPPServer}.
+ * </p>
+ *
+ * <p>
+ * The statistics also do the admission control of the server: a request is admitted only if there are less executions
+ * in flight than the maximum, so when the scheduler is saturated new requests are rejected immediately instead of
+ * piling up in its queue.
+ * </p>
+ *
+ * <p>
+ * Latencies are kept in a ring of the last {@link #SAMPLES} finished requests, so percentiles and throughput describe
+ * the recent load of the server and recording a request never allocates.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPServerStatistics {
+  /** Number of recent requests used to calculate the latency percentiles and the throughput. */
+  static final int SAMPLES = 4096;
+  /** Only requests that finished in this window are used to calculate the recent throughput. */
+  private static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+  public enum OPPRequestOutcome {
+    COMPLETED, FAILED, TIMED_OUT
+  }
+
+  private final long created = System.nanoTime();
+  private final int maxExecutions;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong received = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong timedOut = new AtomicLong();
+  private final long[] latencies = new long[SAMPLES];
+  private final long[] finishTimes = new long[SAMPLES];
+  private long samples = 0;
+
+  /**
+   * @param maxExecutions
+   *          maximum number of executions in flight.
+   */
+  public OPPServerStatistics(int maxExecutions) {
+    this.maxExecutions = maxExecutions;
+  }
+
+  /**
+   * Try to admit a new request.
+   *
+   * @return <code>true</code> if the request was admitted, and {@link #finished(long, OPPRequestOutcome)} must be
+   *         called when it is answered and {@link #released()} when its execution ends, <code>false</code> if the
+   *         server is saturated and the request must be rejected.
+   */
+  public boolean admit() {
+    received.incrementAndGet();
+    int current;
+    do {
+      current = inFlight.get();
+      if (current >= maxExecutions) {
+        rejected.incrementAndGet();
+        return false;
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  /**
+   * Record the answer to an admitted request. A request that timed out or whose client disconnected is answered
+   * before its execution ends, so this does not release its place in the server.
+   *
+   * @param start
+   *          {@link System#nanoTime()} when the request was received.
+   */
+  public void finished(long start, OPPRequestOutcome outcome) {
+    long now = System.nanoTime();
+    switch (outcome) {
+    case COMPLETED:
+      completed.incrementAndGet();
+      break;
+    case FAILED:
+      failed.incrementAndGet();
+      break;
+    case TIMED_OUT:
+      timedOut.incrementAndGet();
+      break;
+    }
+    synchronized (this) {
+      int position = (int) (samples++ % SAMPLES);
+      latencies[position] = now - start;
+      finishTimes[position] = now;
+    }
+  }
+
+  /**
+   * Record the end of the execution of an admitted request, so a new request can be admitted in its place.
+   */
+  public void released() {
+    inFlight.decrementAndGet();
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public int getMaxExecutions() {
+    return maxExecutions;
+  }
+
+  public long getReceived() {
+    return received.get();
+  }
+
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  public long getCompleted() {
+    return completed.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public long getTimedOut() {
+    return timedOut.get();
+  }
+
+  /**
+   * Write the statistics, the state of the scheduler that executes the requests and the memoization statistics, as a
+   * JSON object. Times are in milliseconds and throughputs in requests per second.
+   */
+  public JsonObject toJson(OPPScheduler scheduler) {
+    long now = System.nanoTime();
+    long[] recentLatencies;
+    long oldestRecent = now;
+    int recent = 0;
+    synchronized (this) {
+      int size = (int) Math.min(samples, SAMPLES);
+      recentLatencies = Arrays.copyOf(latencies, size);
+      for (int i = 0; i < size; i++) {
+        if (now - finishTimes[i] <= WINDOW) {
+          recent++;
+          oldestRecent = Math.min(oldestRecent, finishTimes[i]);
+        }
+      }
+    }
+    Arrays.sort(recentLatencies);
+    long finished = completed.get() + failed.get() + timedOut.get();
+    JsonObject latency = new JsonObject();
+    if (recentLatencies.length > 0) {
+      latency.add("p50", millis(OPPStatisticsUtils.percentile(recentLatencies, 50)))
+          .add("p90", millis(OPPStatisticsUtils.percentile(recentLatencies, 90)))
+          .add("p99", millis(OPPStatisticsUtils.percentile(recentLatencies, 99))).add("max", millis(recentLatencies[recentLatencies.length - 1]));
+    }
+    JsonObject throughput = new JsonObject().add("average", finished / seconds(now - created))
+        .add("recent", recent == 0 ? 0 : recent / seconds(Math.max(now - oldestRecent, TimeUnit.SECONDS.toNanos(1))));
+    JsonObject requests = new JsonObject().add("received", received.get()).add("rejected", rejected.get()).add("completed", completed.get())
+        .add("failed", failed.get()).add("timedOut", timedOut.get()).add("inFlight", inFlight.get()).add("maxExecutions", maxExecutions);
+    JsonObject schedulerStatistics = new JsonObject().add("kind", scheduler.getKind().toString()).add("parallelism", scheduler.getParallelism())
+        .add("poolSize", scheduler.getPoolSize()).add("activeThreads", scheduler.getActiveThreadCount()).add("activeTasks", scheduler.getActiveTaskCount())
+        .add("queueDepth", scheduler.getQueueDepth()).add("completedTasks", scheduler.getCompletedTaskCount());
+    OPPInZoomedProcessResultCache results = OPPInZoomedProcessResultCache.getInstance();
+    CacheStats resultStatistics = results.getStats();
+    JsonObject memoization = new JsonObject().add("size", results.size()).add("hits", resultStatistics.hitCount())
+        .add("misses", resultStatistics.missCount()).add("hitRate", resultStatistics.hitRate()).add("evictions", resultStatistics.evictionCount())
+        .add("bypassed", results.getBypassCount());
+    return new JsonObject().add("uptime", millis(now - created)).add("requests", requests).add("latency", latency).add("throughput", throughput)
+        .add("scheduler", schedulerStatistics).add("memoization", memoization);
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1000000.0;
+  }
+
+  private static double seconds(long nanos) {
+    return nanos / 1000000000.0;
+  }
+}
@@ -1,25 +1,41 @@
 package com.vainolo.phd.opp.interpreter.types;
 
 import java.math.BigDecimal;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
+import java.util.Iterator;
 import java.util.Set;
 
 import com.eclipsesource.json.JsonObject;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Iterators;
 import com.vainolo.phd.opp.interpreter.json.OPPJsonWriter;
 
+/**
+ * An instance with named parts. The parts are stored in an {@link OPPPersistentMap}, so copies of the instance share
+ * them and copying an instance takes constant time, while changes to a copy don't affect the original instance.
+ */
 public class OPPComplexObjectInstance extends OPPObjectInstance implements OPPCollectionObjectInstance {
 
-  Map<String, OPPObjectInstance> map = Maps.newHashMap();
+  private OPPPersistentMap<String, OPPObjectInstance> map = OPPPersistentMap.empty();
 
   protected OPPComplexObjectInstance() {
     super(InstanceKind.COMPOSITE);
   }
 
+  /**
+   * @return a new instance with the same parts as this one.
+   */
+  OPPComplexObjectInstance copy() {
+    OPPComplexObjectInstance copy = new OPPComplexObjectInstance();
+    copy.map = map;
+    return copy;
+  }
+
   public OPPObjectInstance setPart(String key, OPPObjectInstance element) {
-    return map.put(key, element);
+    OPPObjectInstance previous = map.get(key);
+    map = map.put(key, element);
+    return previous;
   }
 
   public boolean containsPart(String key) {
@@ -31,7 +47,9 @@ public class OPPComplexObjectInstance extends OPPObjectInstance implements OPPCo
   }
 
   public OPPObjectInstance removePart(String key) {
-    return map.remove(key);
+    OPPObjectInstance previous = map.get(key);
+    map = map.remove(key);
+    return previous;
   }
 
   @Override
@@ -39,12 +57,47 @@ public class OPPComplexObjectInstance extends OPPObjectInstance implements OPPCo
     return map.size();
   }
 
+  /**
+   * @return the names of the parts of the instance when the method was called. Later changes to the instance are not
+   *         reflected in the returned set.
+   */
   public Set<String> getPartNames() {
-    return map.keySet();
+    OPPPersistentMap<String, OPPObjectInstance> parts = map;
+    return new AbstractSet<String>() {
+      @Override
+      public Iterator<String> iterator() {
+        return Iterators.transform(parts.iterator(), e -> e.getKey());
+      }
+
+      @Override
+      public int size() {
+        return parts.size();
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof String && parts.containsKey((String) o);
+      }
+    };
   }
 
+  /**
+   * @return the parts of the instance when the method was called. Later changes to the instance are not reflected in
+   *         the returned collection.
+   */
   public Collection<OPPObjectInstance> getAllParts() {
-    return Collections.unmodifiableCollection(map.values());
+    OPPPersistentMap<String, OPPObjectInstance> parts = map;
+    return new AbstractCollection<OPPObjectInstance>() {
+      @Override
+      public Iterator<OPPObjectInstance> iterator() {
+        return Iterators.transform(parts.iterator(), e -> e.getValue());
+      }
+
+      @Override
+      public int size() {
+        return parts.size();
+      }
+    };
   }
 
   @Override
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.types;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generates the identities of {@link OPPObjectInstance}s. The ids are taken from a set of counters (stripes), each one
+ * in its own cache line, and the stripe is selected by the current thread, so threads that create instances at the
+ * same time rarely update the same counter. Stripe <code>s</code> of <code>n</code> hands out the ids
+ * <code>s + 1, s + 1 + n, s + 1 + 2n, ...</code>, so ids are unique but not ordered by creation.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+final class OPPInstanceIdGenerator {
+  /** Distance between counters in the array, so that every counter is in a different cache line. */
+  private static final int PADDING = 16;
+  private static final int STRIPES;
+  private static final AtomicLongArray counters;
+
+  static {
+    int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+    STRIPES = Math.min(stripes, 64);
+    counters = new AtomicLongArray(STRIPES * PADDING);
+  }
+
+  private OPPInstanceIdGenerator() {
+  }
+
+  /**
+   * @return a new id, which is always positive.
+   */
+  static long nextId() {
+    int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+    return counters.getAndIncrement(stripe * PADDING) * STRIPES + stripe + 1;
+  }
+}
@@ -1,21 +1,32 @@
 package com.vainolo.phd.opp.interpreter.types;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
-
-import com.google.common.collect.Lists;
 
+/**
+ * A list of instances. The elements are stored in an {@link OPPPersistentList}, so copies of the list share them and
+ * copying a list takes constant time, while changes to a copy don't affect the original list. Adding and removing
+ * elements at both ends takes amortized constant time, and at any other location <code>O(log n)</code>. Locations
+ * start at 1.
+ */
 public class OPPListObjectInstance extends OPPObjectInstance implements OPPCollectionObjectInstance {
 
-  ArrayList<OPPObjectInstance> list = Lists.newArrayList();
+  private OPPPersistentList<OPPObjectInstance> list = OPPPersistentList.empty();
 
   protected OPPListObjectInstance() {
     super(InstanceKind.LIST);
   }
 
+  /**
+   * @return a new list with the same elements as this one.
+   */
+  OPPListObjectInstance copy() {
+    OPPListObjectInstance copy = new OPPListObjectInstance();
+    copy.list = list;
+    return copy;
+  }
+
   public void addFirst(OPPObjectInstance element) {
-    list.add(0, element);
+    list = list.addFirst(element);
   }
 
   public OPPObjectInstance getFirst() {
@@ -28,12 +39,13 @@ public class OPPListObjectInstance extends OPPObjectInstance implements OPPColle
   public OPPObjectInstance removeFirst() {
     if (list.size() == 0)
       return null;
-    else
-      return list.remove(0);
+    OPPObjectInstance element = list.get(0);
+    list = list.removeFirst();
+    return element;
   }
 
   public void addLast(OPPObjectInstance element) {
-    list.add(element);
+    list = list.addLast(element);
   }
 
   public OPPObjectInstance getLast() {
@@ -46,17 +58,32 @@ public class OPPListObjectInstance extends OPPObjectInstance implements OPPColle
   public OPPObjectInstance removeLast() {
     if (list.size() == 0)
       return null;
-    else
-      return list.remove(list.size() - 1);
+    OPPObjectInstance element = list.get(list.size() - 1);
+    list = list.removeLast();
+    return element;
   }
 
-  public boolean add(int index, OPPObjectInstance element) {
-    if (index < 1 || index > list.size()) {
+  /**
+   * Insert an element so that it is found in the given location, moving the element in the location and the ones after
+   * it one place forward.
+   *
+   * @param location
+   *          where the element is inserted, between 1 and the {@link #count()} + 1.
+   * @return <code>true</code> if the element was inserted, <code>false</code> if the location is not valid.
+   */
+  public boolean insert(int location, OPPObjectInstance element) {
+    if (location < 1 || location > list.size() + 1) {
       return false;
-    } else {
-      list.add(index + 1, element);
-      return true;
     }
+    list = list.insert(location - 1, element);
+    return true;
+  }
+
+  /**
+   * Same as {@link #insert(int, OPPObjectInstance)}: after the call the element is found in the given location.
+   */
+  public boolean add(int location, OPPObjectInstance element) {
+    return insert(location, element);
   }
 
   public OPPObjectInstance get(int index) {
@@ -70,7 +97,9 @@ public class OPPListObjectInstance extends OPPObjectInstance implements OPPColle
     if (index < 1 || index > list.size()) {
       return null;
     } else {
-      return list.remove(index - 1);
+      OPPObjectInstance element = list.get(index - 1);
+      list = list.remove(index - 1);
+      return element;
     }
   }
 
@@ -99,8 +128,8 @@ public class OPPListObjectInstance extends OPPObjectInstance implements OPPColle
   public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("[");
-    for (int i = 1; i <= count(); i++) {
-      builder.append(get(i)).append(",");
+    for (OPPObjectInstance element : list) {
+      builder.append(element).append(",");
     }
     if (count() > 0)
       builder.replace(builder.length() - 1, builder.length(), "]");
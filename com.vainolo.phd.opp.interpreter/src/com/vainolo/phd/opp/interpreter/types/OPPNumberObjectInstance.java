@@ -1,24 +1,201 @@
 package com.vainolo.phd.opp.interpreter.types;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 
+/**
+ * A number. Integers that fit in a <code>long</code> are stored and operated as a <code>long</code>, and other numbers
+ * as a {@link BigDecimal}. Operations that overflow or are not exact in <code>long</code> arithmetic are transparently
+ * done using {@link BigDecimal}s, so results are the same as always using {@link BigDecimal}s.
+ *
+ * Instances are immutable, and instances of small integers are shared.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
 public class OPPNumberObjectInstance extends OPPObjectInstance {
+  private static final int CACHE_LOW = -128;
+  private static final int CACHE_HIGH = 1024;
+  private static final OPPNumberObjectInstance[] CACHE = new OPPNumberObjectInstance[CACHE_HIGH - CACHE_LOW + 1];
 
+  static {
+    for (int i = 0; i < CACHE.length; i++) {
+      CACHE[i] = new OPPNumberObjectInstance(CACHE_LOW + i, null);
+    }
+  }
+
+  private final long longValue;
+  /** The value when it is not stored as a long, or the cached {@link BigDecimal} of the long value. */
   private BigDecimal value;
+  private final boolean isLong;
 
-  protected OPPNumberObjectInstance(BigDecimal value) {
+  private OPPNumberObjectInstance(long longValue, BigDecimal value) {
     super(InstanceKind.NUMERICAL);
+    this.longValue = longValue;
     this.value = value;
+    this.isLong = value == null;
+  }
+
+  protected OPPNumberObjectInstance(BigDecimal value) {
+    this(0, value);
+  }
+
+  static OPPNumberObjectInstance valueOf(long value) {
+    if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+      return CACHE[(int) value - CACHE_LOW];
+    }
+    return new OPPNumberObjectInstance(value, null);
+  }
+
+  static OPPNumberObjectInstance valueOf(BigDecimal value) {
+    if (value.scale() == 0 && value.unscaledValue().bitLength() < 64) {
+      return valueOf(value.longValue());
+    }
+    return new OPPNumberObjectInstance(value);
+  }
+
+  /**
+   * Get an instance as a number. Non-numerical instances are converted using {@link #getNumericalValue()}.
+   */
+  public static OPPNumberObjectInstance toNumber(OPPObjectInstance instance) {
+    if (instance instanceof OPPNumberObjectInstance) {
+      return (OPPNumberObjectInstance) instance;
+    }
+    return valueOf(instance.getNumericalValue());
+  }
+
+  /**
+   * @return <code>true</code> if the number is an integer stored as a <code>long</code>.
+   */
+  public boolean isLong() {
+    return isLong;
+  }
+
+  /**
+   * @return the value of the number as a <code>long</code>. Only valid if {@link #isLong()} is <code>true</code>.
+   */
+  public long getLongValue() {
+    return longValue;
+  }
+
+  public OPPNumberObjectInstance add(OPPNumberObjectInstance other) {
+    if (isLong && other.isLong) {
+      long result = longValue + other.longValue;
+      if (((longValue ^ result) & (other.longValue ^ result)) >= 0) {
+        return valueOf(result);
+      }
+    }
+    return valueOf(getNumericalValue().add(other.getNumericalValue()));
+  }
+
+  public OPPNumberObjectInstance subtract(OPPNumberObjectInstance other) {
+    if (isLong && other.isLong) {
+      long result = longValue - other.longValue;
+      if (((longValue ^ other.longValue) & (longValue ^ result)) >= 0) {
+        return valueOf(result);
+      }
+    }
+    return valueOf(getNumericalValue().subtract(other.getNumericalValue()));
+  }
+
+  public OPPNumberObjectInstance multiply(OPPNumberObjectInstance other) {
+    if (isLong && other.isLong) {
+      long a = longValue;
+      long b = other.longValue;
+      long result = a * b;
+      long absA = Math.abs(a);
+      long absB = Math.abs(b);
+      if (((absA | absB) >>> 31 == 0) || ((b == 0 || result / b == a) && !(a == Long.MIN_VALUE && b == -1))) {
+        return valueOf(result);
+      }
+    }
+    return valueOf(getNumericalValue().multiply(other.getNumericalValue()));
+  }
+
+  /**
+   * Divide this number by another one. As with {@link BigDecimal#divide(BigDecimal)}, an {@link ArithmeticException}
+   * is thrown when the result cannot be represented exactly.
+   */
+  public OPPNumberObjectInstance divide(OPPNumberObjectInstance other) {
+    if (isLong && other.isLong && other.longValue != 0 && longValue % other.longValue == 0
+        && !(longValue == Long.MIN_VALUE && other.longValue == -1)) {
+      return valueOf(longValue / other.longValue);
+    }
+    return valueOf(getNumericalValue().divide(other.getNumericalValue()));
+  }
+
+  /**
+   * Raise this number to a power. Integer powers are calculated by squaring, in a number of multiplications that is
+   * logarithmic in the exponent.
+   */
+  public OPPNumberObjectInstance pow(int exponent) {
+    if (isLong && exponent >= 0) {
+      if (longValue == 0) {
+        return valueOf(exponent == 0 ? 1 : 0);
+      }
+      if (longValue == 1) {
+        return this;
+      }
+      if (longValue == -1) {
+        return valueOf((exponent & 1) == 0 ? 1 : -1);
+      }
+      try {
+        long result = 1;
+        long base = longValue;
+        for (int remaining = exponent; remaining > 0; remaining >>= 1) {
+          if ((remaining & 1) != 0) {
+            result = Math.multiplyExact(result, base);
+          }
+          if (remaining > 1) {
+            base = Math.multiplyExact(base, base);
+          }
+        }
+        return valueOf(result);
+      } catch (ArithmeticException e) {
+        // Overflow, use BigDecimal.
+      }
+    }
+    return valueOf(getNumericalValue().pow(exponent));
+  }
+
+  public OPPNumberObjectInstance negate() {
+    if (isLong && longValue != Long.MIN_VALUE) {
+      return valueOf(-longValue);
+    }
+    return valueOf(getNumericalValue().negate());
+  }
+
+  public int compareTo(OPPNumberObjectInstance other) {
+    if (isLong && other.isLong) {
+      return Long.compare(longValue, other.longValue);
+    }
+    return getNumericalValue().compareTo(other.getNumericalValue());
+  }
+
+  /**
+   * @return the value of the number as an <code>int</code>, throwing an {@link ArithmeticException} if it is not an
+   *         integer or doesn't fit.
+   */
+  public int intValueExact() {
+    if (isLong) {
+      return Math.toIntExact(longValue);
+    }
+    return value.intValueExact();
   }
 
   @Override
   public BigDecimal getNumericalValue() {
-    return value;
+    BigDecimal result = value;
+    if (result == null) {
+      result = BigDecimal.valueOf(longValue);
+      value = result;
+    }
+    return result;
   }
 
   @Override
   public String getStringValue() {
-    return value.toString();
+    return isLong ? Long.toString(longValue) : value.toString();
   }
 
   @Override
@@ -26,8 +203,23 @@ public class OPPNumberObjectInstance extends OPPObjectInstance {
     return getNumericalValue();
   }
 
+  @Override
+  public int hashCode() {
+    if (isLong) {
+      return Long.hashCode(longValue);
+    }
+    BigDecimal stripped = value.signum() == 0 ? BigDecimal.ZERO : value.stripTrailingZeros();
+    if (stripped.scale() <= 0) {
+      BigInteger integer = stripped.toBigIntegerExact();
+      if (integer.bitLength() < 64) {
+        return Long.hashCode(integer.longValue());
+      }
+    }
+    return stripped.hashCode();
+  }
+
   @Override
   public String toString() {
-    return value.toString();
+    return getStringValue();
   }
 }
@@ -13,7 +13,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.MoreObjects.ToStringHelper;
@@ -35,15 +35,30 @@ public abstract class OPPObjectInstance {
   // private SortedMap<Integer, OPPObjectInstance> compositeValues = Maps.newTreeMap();
   // private BiMap<String, Integer> compositeKeyToIndexMapping = HashBiMap.create();
   public final InstanceKind kind;
-  private UUID internalId;
+  private volatile long internalId;
+
+  private static final AtomicLongFieldUpdater<OPPObjectInstance> INTERNAL_ID_UPDATER = AtomicLongFieldUpdater.newUpdater(OPPObjectInstance.class,
+      "internalId");
 
   protected OPPObjectInstance(InstanceKind kind) {
     this.kind = kind;
-    this.internalId = UUID.randomUUID();
+  }
+
+  /**
+   * Only lists and composites have an identity, which is created the first time it is requested.
+   */
+  private long getInternalLongId() {
+    checkState(kind == InstanceKind.COMPOSITE || kind == InstanceKind.LIST, "Only lists and composites have an identity.");
+    long id = internalId;
+    if (id == 0) {
+      INTERNAL_ID_UPDATER.compareAndSet(this, 0, OPPInstanceIdGenerator.nextId());
+      id = internalId;
+    }
+    return id;
   }
 
   private String getInternalId() {
-    return internalId.toString();
+    return Long.toString(getInternalLongId());
   }
 
   public String getId() {
@@ -70,7 +85,11 @@ public abstract class OPPObjectInstance {
 
   public static OPPNumberObjectInstance createFromValue(BigDecimal decimalValue) {
     Preconditions.checkNotNull(decimalValue, "Value cannot be null.");
-    return new OPPNumberObjectInstance(decimalValue);
+    return OPPNumberObjectInstance.valueOf(decimalValue);
+  }
+
+  public static OPPNumberObjectInstance createFromValue(long longValue) {
+    return OPPNumberObjectInstance.valueOf(longValue);
   }
 
   public static OPPObjectInstance createFromValue(String stringValue) {
@@ -83,26 +102,15 @@ public abstract class OPPObjectInstance {
     OPPObjectInstance newInstance = null;
     switch (existingInstance.kind) {
     case NUMERICAL:
-      newInstance = createFromValue(existingInstance.getNumericalValue());
-      break;
     case STRING:
-      newInstance = createFromValue(existingInstance.getStringValue());
+      // Value instances are immutable, so they can be shared.
+      newInstance = existingInstance;
       break;
     case COMPOSITE:
-      OPPComplexObjectInstance existingCompositeInstance = (OPPComplexObjectInstance) existingInstance;
-      OPPComplexObjectInstance newComplexInstance = createCompositeInstance();
-      for (String partName : existingCompositeInstance.getPartNames()) {
-        newComplexInstance.setPart(partName, existingCompositeInstance.getPart(partName));
-      }
-      newInstance = newComplexInstance;
+      newInstance = ((OPPComplexObjectInstance) existingInstance).copy();
       break;
     case LIST:
-      OPPListObjectInstance existingListInstance = (OPPListObjectInstance) existingInstance;
-      OPPListObjectInstance newListInstance = createListInstance();
-      for (int i = 1; i <= existingListInstance.count(); i++) {
-        newListInstance.addLast(existingListInstance.get(i));
-      }
-      newInstance = newListInstance;
+      newInstance = ((OPPListObjectInstance) existingInstance).copy();
       break;
     case JAVA_OBJECT:
       // newInstance = createFromValue(existingInstance.getValue());
@@ -359,11 +367,11 @@ public abstract class OPPObjectInstance {
       return false;
     } else {
       if (this.kind == InstanceKind.NUMERICAL) {
-        return (this.getNumericalValue().compareTo(other.getNumericalValue()) == 0);
+        return OPPNumberObjectInstance.toNumber(this).compareTo(OPPNumberObjectInstance.toNumber(other)) == 0;
       } else if (this.kind == InstanceKind.STRING) {
         return this.getStringValue().equals(other.getStringValue());
       } else if (this.kind == InstanceKind.COMPOSITE || this.kind == InstanceKind.LIST) {
-        return this.internalId == other.internalId;
+        return this == other;
       }
     }
     return false;
@@ -374,8 +382,9 @@ public abstract class OPPObjectInstance {
     switch (kind) {
     case COMPOSITE:
     case LIST:
-      return internalId.hashCode();
+      return Long.hashCode(getInternalLongId());
     case STRING:
+      return getStringValue().hashCode();
     case NUMERICAL:
     case JAVA_OBJECT:
       return value.hashCode();
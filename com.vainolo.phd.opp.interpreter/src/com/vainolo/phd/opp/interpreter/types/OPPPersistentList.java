@@ -0,0 +1,410 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.types;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Immutable list, stored as a rope of chunks of up to {@link #CHUNK_SIZE} elements. The chunks in the middle of the
+ * list are kept in a balanced (AVL) tree where every node knows how many elements are in its sub-tree, and the first
+ * and last chunks are kept outside of the tree. Updates return a new list that shares all the chunks and nodes that
+ * were not changed with the old one, so copying a list is free. Indexes start at 0.
+ * </p>
+ *
+ * <p>
+ * Adding or removing elements at both ends only copies the first or last chunk, and only once every
+ * {@link #CHUNK_SIZE} operations a chunk is moved to or from the tree, so these operations take amortized constant
+ * time for all practical sizes. Indexed access, insertion and removal take <code>O(log n)</code>.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+final class OPPPersistentList<E> implements Iterable<E> {
+  static final int CHUNK_SIZE = 32;
+  private static final Object[] EMPTY_CHUNK = new Object[0];
+
+  @SuppressWarnings("rawtypes")
+  private static final OPPPersistentList EMPTY = new OPPPersistentList<>(EMPTY_CHUNK, null, EMPTY_CHUNK);
+
+  private final Object[] head;
+  private final Node root;
+  private final Object[] tail;
+
+  private OPPPersistentList(Object[] head, Node root, Object[] tail) {
+    this.head = head;
+    this.root = root;
+    this.tail = tail;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <E> OPPPersistentList<E> empty() {
+    return EMPTY;
+  }
+
+  int size() {
+    return head.length + size(root) + tail.length;
+  }
+
+  boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Height of the tree of chunks, used to check that it stays balanced.
+   */
+  int height() {
+    return height(root);
+  }
+
+  @SuppressWarnings("unchecked")
+  E get(int index) {
+    checkIndex(index, size());
+    if (index < head.length) {
+      return (E) head[index];
+    }
+    index -= head.length;
+    if (index < size(root)) {
+      Node node = root;
+      while (true) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+          node = node.left;
+        } else if (index < leftSize + node.chunk.length) {
+          return (E) node.chunk[index - leftSize];
+        } else {
+          index -= leftSize + node.chunk.length;
+          node = node.right;
+        }
+      }
+    }
+    return (E) tail[index - size(root)];
+  }
+
+  OPPPersistentList<E> set(int index, E value) {
+    checkIndex(index, size());
+    if (index < head.length) {
+      return new OPPPersistentList<>(set(head, index, value), root, tail);
+    }
+    index -= head.length;
+    if (index < size(root)) {
+      return new OPPPersistentList<>(head, set(root, index, value), tail);
+    }
+    return new OPPPersistentList<>(head, root, set(tail, index - size(root), value));
+  }
+
+  /**
+   * Insert an element so that it is found in the given index. The index can be between 0 and {@link #size()}.
+   */
+  OPPPersistentList<E> insert(int index, E value) {
+    int size = size();
+    checkIndex(index, size + 1);
+    if (index <= head.length && head.length < CHUNK_SIZE) {
+      return new OPPPersistentList<>(insert(head, index, value), root, tail);
+    }
+    if (index >= size - tail.length && tail.length < CHUNK_SIZE) {
+      return new OPPPersistentList<>(head, root, insert(tail, index - (size - tail.length), value));
+    }
+    Node tree = root;
+    if (head.length > 0) {
+      tree = insertChunk(tree, 0, head);
+    }
+    if (tail.length > 0) {
+      tree = insertChunk(tree, size(tree), tail);
+    }
+    return new OPPPersistentList<>(EMPTY_CHUNK, insert(tree, index, value), EMPTY_CHUNK);
+  }
+
+  OPPPersistentList<E> remove(int index) {
+    checkIndex(index, size());
+    if (index < head.length) {
+      return new OPPPersistentList<>(remove(head, index), root, tail);
+    }
+    index -= head.length;
+    if (index < size(root)) {
+      return new OPPPersistentList<>(head, remove(root, index), tail);
+    }
+    return new OPPPersistentList<>(head, root, remove(tail, index - size(root)));
+  }
+
+  OPPPersistentList<E> addFirst(E value) {
+    if (head.length < CHUNK_SIZE) {
+      return new OPPPersistentList<>(insert(head, 0, value), root, tail);
+    }
+    return new OPPPersistentList<>(new Object[] { value }, insertChunk(root, 0, head), tail);
+  }
+
+  OPPPersistentList<E> addLast(E value) {
+    if (tail.length < CHUNK_SIZE) {
+      return new OPPPersistentList<>(head, root, insert(tail, tail.length, value));
+    }
+    return new OPPPersistentList<>(head, insertChunk(root, size(root), tail), new Object[] { value });
+  }
+
+  /**
+   * Remove the first element. The list must not be empty.
+   */
+  OPPPersistentList<E> removeFirst() {
+    checkIndex(0, size());
+    if (head.length > 0) {
+      return new OPPPersistentList<>(remove(head, 0), root, tail);
+    }
+    if (root != null) {
+      Object[] first = firstChunk(root);
+      return new OPPPersistentList<>(remove(first, 0), removeChunk(root, 0), tail);
+    }
+    return new OPPPersistentList<>(head, root, remove(tail, 0));
+  }
+
+  /**
+   * Remove the last element. The list must not be empty.
+   */
+  OPPPersistentList<E> removeLast() {
+    checkIndex(0, size());
+    if (tail.length > 0) {
+      return new OPPPersistentList<>(head, root, remove(tail, tail.length - 1));
+    }
+    if (root != null) {
+      Object[] last = lastChunk(root);
+      return new OPPPersistentList<>(head, removeChunk(root, size(root) - last.length), remove(last, last.length - 1));
+    }
+    return new OPPPersistentList<>(remove(head, head.length - 1), root, tail);
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private final Deque<Node> stack = new ArrayDeque<>();
+      private Object[] chunk = head;
+      private int position = 0;
+      private boolean tailReached = false;
+
+      {
+        pushLeft(root);
+        advance();
+      }
+
+      private void pushLeft(Node node) {
+        while (node != null) {
+          stack.push(node);
+          node = node.left;
+        }
+      }
+
+      private void advance() {
+        while (position >= chunk.length) {
+          if (!stack.isEmpty()) {
+            Node node = stack.pop();
+            pushLeft(node.right);
+            chunk = node.chunk;
+          } else if (!tailReached) {
+            tailReached = true;
+            chunk = tail;
+          } else {
+            return;
+          }
+          position = 0;
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        return position < chunk.length;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        E value = (E) chunk[position++];
+        advance();
+        return value;
+      }
+    };
+  }
+
+  private static void checkIndex(int index, int size) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  // Chunk operations, which always copy the chunk.
+
+  private static Object[] set(Object[] chunk, int index, Object value) {
+    Object[] newChunk = chunk.clone();
+    newChunk[index] = value;
+    return newChunk;
+  }
+
+  private static Object[] insert(Object[] chunk, int index, Object value) {
+    Object[] newChunk = new Object[chunk.length + 1];
+    System.arraycopy(chunk, 0, newChunk, 0, index);
+    newChunk[index] = value;
+    System.arraycopy(chunk, index, newChunk, index + 1, chunk.length - index);
+    return newChunk;
+  }
+
+  private static Object[] remove(Object[] chunk, int index) {
+    if (chunk.length == 1) {
+      return EMPTY_CHUNK;
+    }
+    Object[] newChunk = new Object[chunk.length - 1];
+    System.arraycopy(chunk, 0, newChunk, 0, index);
+    System.arraycopy(chunk, index + 1, newChunk, index, chunk.length - index - 1);
+    return newChunk;
+  }
+
+  // Tree operations. Indexes are element indexes inside the tree.
+
+  private static Node set(Node node, int index, Object value) {
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      return new Node(node.chunk, set(node.left, index, value), node.right);
+    } else if (index < leftSize + node.chunk.length) {
+      return new Node(set(node.chunk, index - leftSize, value), node.left, node.right);
+    } else {
+      return new Node(node.chunk, node.left, set(node.right, index - leftSize - node.chunk.length, value));
+    }
+  }
+
+  private static Node insert(Node node, int index, Object value) {
+    if (node == null) {
+      return new Node(new Object[] { value }, null, null);
+    }
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      return balance(node.chunk, insert(node.left, index, value), node.right);
+    } else if (index <= leftSize + node.chunk.length) {
+      Object[] chunk = insert(node.chunk, index - leftSize, value);
+      if (chunk.length <= CHUNK_SIZE) {
+        return new Node(chunk, node.left, node.right);
+      }
+      int half = chunk.length / 2;
+      Object[] second = Arrays.copyOfRange(chunk, half, chunk.length);
+      return balance(Arrays.copyOf(chunk, half), node.left, insertChunk(node.right, 0, second));
+    } else {
+      return balance(node.chunk, node.left, insert(node.right, index - leftSize - node.chunk.length, value));
+    }
+  }
+
+  private static Node remove(Node node, int index) {
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      return balance(node.chunk, remove(node.left, index), node.right);
+    } else if (index < leftSize + node.chunk.length) {
+      if (node.chunk.length > 1) {
+        return new Node(remove(node.chunk, index - leftSize), node.left, node.right);
+      }
+      return removeNode(node);
+    } else {
+      return balance(node.chunk, node.left, remove(node.right, index - leftSize - node.chunk.length));
+    }
+  }
+
+  /**
+   * Insert a chunk at a given element index, which must be at the boundary between two chunks.
+   */
+  private static Node insertChunk(Node node, int index, Object[] chunk) {
+    if (node == null) {
+      return new Node(chunk, null, null);
+    }
+    int leftSize = size(node.left);
+    if (index <= leftSize) {
+      return balance(node.chunk, insertChunk(node.left, index, chunk), node.right);
+    } else {
+      return balance(node.chunk, node.left, insertChunk(node.right, index - leftSize - node.chunk.length, chunk));
+    }
+  }
+
+  /**
+   * Remove the chunk that starts at a given element index.
+   */
+  private static Node removeChunk(Node node, int index) {
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      return balance(node.chunk, removeChunk(node.left, index), node.right);
+    } else if (index == leftSize) {
+      return removeNode(node);
+    } else {
+      return balance(node.chunk, node.left, removeChunk(node.right, index - leftSize - node.chunk.length));
+    }
+  }
+
+  private static Node removeNode(Node node) {
+    if (node.left == null) {
+      return node.right;
+    } else if (node.right == null) {
+      return node.left;
+    }
+    return balance(firstChunk(node.right), node.left, removeChunk(node.right, 0));
+  }
+
+  private static Object[] firstChunk(Node node) {
+    while (node.left != null) {
+      node = node.left;
+    }
+    return node.chunk;
+  }
+
+  private static Object[] lastChunk(Node node) {
+    while (node.right != null) {
+      node = node.right;
+    }
+    return node.chunk;
+  }
+
+  private static Node balance(Object[] chunk, Node left, Node right) {
+    int difference = height(left) - height(right);
+    if (difference > 1) {
+      if (height(left.left) >= height(left.right)) {
+        return new Node(left.chunk, left.left, new Node(chunk, left.right, right));
+      } else {
+        return new Node(left.right.chunk, new Node(left.chunk, left.left, left.right.left), new Node(chunk, left.right.right, right));
+      }
+    } else if (difference < -1) {
+      if (height(right.right) >= height(right.left)) {
+        return new Node(right.chunk, new Node(chunk, left, right.left), right.right);
+      } else {
+        return new Node(right.left.chunk, new Node(chunk, left, right.left.left), new Node(right.chunk, right.left.right, right.right));
+      }
+    }
+    return new Node(chunk, left, right);
+  }
+
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static int height(Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static final class Node {
+    final Object[] chunk;
+    final Node left;
+    final Node right;
+    /** Number of elements in the sub-tree. */
+    final int size;
+    final int height;
+
+    Node(Object[] chunk, Node left, Node right) {
+      this.chunk = chunk;
+      this.left = left;
+      this.right = right;
+      this.size = size(left) + size(right) + chunk.length;
+      this.height = Math.max(height(left), height(right)) + 1;
+    }
+  }
+}
@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.interpreter.types;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable hash map, stored as a hash array mapped trie. Every level of the trie uses 5 bits of the hash of the keys,
+ * and keys whose hashes are equal are stored together in a collision node. Updates return a new map that shares all
+ * the nodes that were not changed with the old one, so copying a map is free and every update takes
+ * <code>O(log n)</code>. Keys and values cannot be <code>null</code>.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+final class OPPPersistentMap<K, V> implements Iterable<Map.Entry<K, V>> {
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  @SuppressWarnings("rawtypes")
+  private static final OPPPersistentMap EMPTY = new OPPPersistentMap<>(BitmapNode.EMPTY, 0);
+
+  private final Node root;
+  private final int size;
+
+  private OPPPersistentMap(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <K, V> OPPPersistentMap<K, V> empty() {
+    return EMPTY;
+  }
+
+  int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  V get(K key) {
+    return (V) root.get(0, key.hashCode(), key);
+  }
+
+  boolean containsKey(K key) {
+    return get(key) != null;
+  }
+
+  OPPPersistentMap<K, V> put(K key, V value) {
+    if (value == null) {
+      throw new NullPointerException("Value cannot be null.");
+    }
+    int[] sizeChange = new int[1];
+    Node newRoot = root.put(0, key.hashCode(), key, value, sizeChange);
+    return newRoot == root ? this : new OPPPersistentMap<>(newRoot, size + sizeChange[0]);
+  }
+
+  OPPPersistentMap<K, V> remove(K key) {
+    Node newRoot = root.remove(0, key.hashCode(), key);
+    if (newRoot == root) {
+      return this;
+    }
+    return new OPPPersistentMap<>(newRoot == null ? BitmapNode.EMPTY : newRoot, size - 1);
+  }
+
+  @Override
+  public Iterator<Map.Entry<K, V>> iterator() {
+    return new Iterator<Map.Entry<K, V>>() {
+      private final Deque<Object[]> arrays = new ArrayDeque<>();
+      private final Deque<Integer> positions = new ArrayDeque<>();
+      private Map.Entry<K, V> next;
+
+      {
+        push(root);
+        advance();
+      }
+
+      private void push(Node node) {
+        arrays.push(node.array());
+        positions.push(0);
+      }
+
+      @SuppressWarnings("unchecked")
+      private void advance() {
+        next = null;
+        while (next == null && !arrays.isEmpty()) {
+          Object[] array = arrays.peek();
+          int position = positions.pop();
+          if (position >= array.length) {
+            arrays.pop();
+            continue;
+          }
+          positions.push(position + 2);
+          if (array[position] == null) {
+            push((Node) array[position + 1]);
+          } else {
+            next = new SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+          }
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Map.Entry<K, V> next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        Map.Entry<K, V> result = next;
+        advance();
+        return result;
+      }
+    };
+  }
+
+  private static abstract class Node {
+    abstract Object get(int shift, int hash, Object key);
+
+    /**
+     * @param sizeChange
+     *          set to 1 if a new key was added.
+     * @return the updated node, or the same node if nothing changed.
+     */
+    abstract Node put(int shift, int hash, Object key, Object value, int[] sizeChange);
+
+    /**
+     * @return the updated node, <code>null</code> if the node became empty, or the same node if the key was not found.
+     */
+    abstract Node remove(int shift, int hash, Object key);
+
+    /**
+     * @return an array of key/value pairs, where a <code>null</code> key means that the value is a child {@link Node}.
+     */
+    abstract Object[] array();
+  }
+
+  private static final class BitmapNode extends Node {
+    static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    final int bitmap;
+    final Object[] array;
+
+    BitmapNode(int bitmap, Object[] array) {
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    private int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    Object get(int shift, int hash, Object key) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      int index = 2 * index(bit);
+      Object keyOrNull = array[index];
+      Object valueOrNode = array[index + 1];
+      if (keyOrNull == null) {
+        return ((Node) valueOrNode).get(shift + BITS, hash, key);
+      }
+      return key.equals(keyOrNull) ? valueOrNode : null;
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, int[] sizeChange) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      int index = 2 * index(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] newArray = new Object[array.length + 2];
+        System.arraycopy(array, 0, newArray, 0, index);
+        newArray[index] = key;
+        newArray[index + 1] = value;
+        System.arraycopy(array, index, newArray, index + 2, array.length - index);
+        sizeChange[0] = 1;
+        return new BitmapNode(bitmap | bit, newArray);
+      }
+      Object keyOrNull = array[index];
+      Object valueOrNode = array[index + 1];
+      if (keyOrNull == null) {
+        Node child = ((Node) valueOrNode).put(shift + BITS, hash, key, value, sizeChange);
+        return child == valueOrNode ? this : with(index + 1, child);
+      }
+      if (key.equals(keyOrNull)) {
+        return value == valueOrNode ? this : with(index + 1, value);
+      }
+      sizeChange[0] = 1;
+      Node child = createNode(shift + BITS, keyOrNull, valueOrNode, hash, key, value);
+      Object[] newArray = array.clone();
+      newArray[index] = null;
+      newArray[index + 1] = child;
+      return new BitmapNode(bitmap, newArray);
+    }
+
+    private BitmapNode with(int index, Object value) {
+      Object[] newArray = array.clone();
+      newArray[index] = value;
+      return new BitmapNode(bitmap, newArray);
+    }
+
+    @Override
+    Node remove(int shift, int hash, Object key) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = 2 * index(bit);
+      Object keyOrNull = array[index];
+      Object valueOrNode = array[index + 1];
+      if (keyOrNull == null) {
+        Node child = ((Node) valueOrNode).remove(shift + BITS, hash, key);
+        if (child == valueOrNode) {
+          return this;
+        } else if (child != null) {
+          return with(index + 1, child);
+        }
+      } else if (!key.equals(keyOrNull)) {
+        return this;
+      }
+      if (bitmap == bit) {
+        return null;
+      }
+      Object[] newArray = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, index);
+      System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+      return new BitmapNode(bitmap ^ bit, newArray);
+    }
+
+    @Override
+    Object[] array() {
+      return array;
+    }
+  }
+
+  private static final class CollisionNode extends Node {
+    final int hash;
+    final Object[] array;
+
+    CollisionNode(int hash, Object[] array) {
+      this.hash = hash;
+      this.array = array;
+    }
+
+    private int find(Object key) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Object get(int shift, int hash, Object key) {
+      int index = find(key);
+      return index < 0 ? null : array[index + 1];
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, int[] sizeChange) {
+      if (hash != this.hash) {
+        return new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[] { null, this }).put(shift, hash, key, value, sizeChange);
+      }
+      int index = find(key);
+      if (index >= 0) {
+        if (array[index + 1] == value) {
+          return this;
+        }
+        Object[] newArray = array.clone();
+        newArray[index + 1] = value;
+        return new CollisionNode(hash, newArray);
+      }
+      Object[] newArray = new Object[array.length + 2];
+      System.arraycopy(array, 0, newArray, 0, array.length);
+      newArray[array.length] = key;
+      newArray[array.length + 1] = value;
+      sizeChange[0] = 1;
+      return new CollisionNode(hash, newArray);
+    }
+
+    @Override
+    Node remove(int shift, int hash, Object key) {
+      int index = find(key);
+      if (index < 0) {
+        return this;
+      }
+      if (array.length == 2) {
+        return null;
+      }
+      if (array.length == 4) {
+        // A single pair is left, keep it in a bitmap node so it can be moved up if needed.
+        int other = index == 0 ? 2 : 0;
+        return new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[] { array[other], array[other + 1] });
+      }
+      Object[] newArray = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, index);
+      System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+      return new CollisionNode(hash, newArray);
+    }
+
+    @Override
+    Object[] array() {
+      return array;
+    }
+  }
+
+  private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+    int hash1 = key1.hashCode();
+    if (hash1 == hash2) {
+      return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+    }
+    int[] ignored = new int[1];
+    return BitmapNode.EMPTY.put(shift, hash1, key1, value1, ignored).put(shift, hash2, key2, value2, ignored);
+  }
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.utilities;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.vainolo.phd.opp.utilities.OPPAsyncLogHandler.OverflowPolicy;
+
+public class OPPAsyncLogHandlerTest {
+
+  private OPPAsyncLogHandler handler;
+
+  @After
+  public void tearDown() {
+    if (handler != null) {
+      handler.close();
+    }
+  }
+
+  private OPPAsyncLogHandler createHandler(int capacity, OverflowPolicy policy) {
+    OPPAsyncLogHandler newHandler = new OPPAsyncLogHandler(capacity, policy);
+    newHandler.setFormatter(new Formatter() {
+      @Override
+      public String format(LogRecord record) {
+        return record.getMessage() + "\n";
+      }
+    });
+    return newHandler;
+  }
+
+  private static LogRecord record(String message, Object... parameters) {
+    LogRecord record = new LogRecord(Level.INFO, message);
+    record.setParameters(parameters);
+    return record;
+  }
+
+  @Test
+  public void publish_LinesAreWrittenInOrder() {
+    handler = createHandler(1000, OverflowPolicy.BLOCK);
+    List<String> lines = Lists.newArrayList();
+    handler.addSink(lines::addAll);
+
+    for (int i = 0; i < 5000; i++) {
+      handler.publish(record("line {0}", String.valueOf(i)));
+    }
+    handler.flush();
+
+    assertEquals(5000, lines.size());
+    assertEquals("line 0\n", lines.get(0));
+    assertEquals("line 4999\n", lines.get(4999));
+    assertEquals(0, handler.getDroppedCount());
+    assertEquals(5000, handler.getWrittenCount());
+  }
+
+  @Test
+  public void publish_RecordsAreDroppedWhenFull() throws Exception {
+    handler = createHandler(10, OverflowPolicy.DROP);
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> lines = Lists.newArrayList();
+    handler.addSink(batch -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      lines.addAll(batch);
+    });
+
+    for (int i = 0; i < 100; i++) {
+      handler.publish(record("line"));
+    }
+    release.countDown();
+    handler.flush();
+
+    assertTrue(handler.getDroppedCount() > 0);
+    assertEquals(100, lines.size() + handler.getDroppedCount());
+    assertEquals(0, handler.getQueueDepth());
+  }
+
+  @Test
+  public void flush_WaitsForRecordsPublishedByOtherThreads() throws Exception {
+    handler = createHandler(1000, OverflowPolicy.BLOCK);
+    Set<String> lines = ConcurrentHashMap.newKeySet();
+    handler.addSink(lines::addAll);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> publishers = Lists.newArrayList();
+      for (int t = 0; t < 4; t++) {
+        String thread = String.valueOf(t);
+        publishers.add(executor.submit(() -> {
+          for (int i = 0; i < 2000; i++) {
+            String message = thread + "-" + i;
+            handler.publish(record(message));
+            handler.flush();
+            assertTrue(lines.contains(message + "\n"));
+          }
+        }));
+      }
+      for (Future<?> publisher : publishers) {
+        publisher.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(8000, lines.size());
+  }
+
+  @Test
+  public void lineFormatter_StackTraceIsWrittenAfterTheLine() {
+    LogRecord record = record("failed");
+    record.setLoggerName("OPM");
+    record.setThrown(new IllegalStateException("broken"));
+
+    String line = new OPPLogger.OPPLineFormatter().format(record);
+
+    assertTrue(line.contains("] [INFO] [OPM] failed\n"));
+    assertTrue(line.contains("java.lang.IllegalStateException: broken"));
+    assertTrue(line.contains("at " + getClass().getName() + ".lineFormatter_StackTraceIsWrittenAfterTheLine"));
+  }
+
+  @Test
+  public void rollingFileSink_FileIsRolled() throws Exception {
+    Path directory = Files.createTempDirectory("opp-log");
+    Path file = directory.resolve("opp.log");
+    OPPRollingFileLogSink sink = new OPPRollingFileLogSink(file, 100, 2);
+    for (int i = 0; i < 100; i++) {
+      sink.write(Lists.newArrayList("0123456789\n"));
+    }
+    sink.close();
+
+    assertTrue(Files.exists(file));
+    assertTrue(Files.exists(directory.resolve("opp.log.1")));
+    assertTrue(Files.exists(directory.resolve("opp.log.2")));
+    assertFalse(Files.exists(directory.resolve("opp.log.3")));
+    assertTrue(Files.size(directory.resolve("opp.log.1")) <= 110);
+  }
+
+  @Test
+  public void rollingFileSink_FileIsTruncatedWhenItCannotBeRolled() throws Exception {
+    Path directory = Files.createTempDirectory("opp-log");
+    Path file = directory.resolve("opp.log");
+    // A directory that is not empty cannot be replaced by the rolled file
+    Files.createFile(Files.createDirectory(directory.resolve("opp.log.1")).resolve("blocker"));
+    OPPRollingFileLogSink sink = new OPPRollingFileLogSink(file, 100, 1);
+    try {
+      sink.write(Lists.newArrayList(Strings.repeat("0123456789", 10) + "\n"));
+      fail("Rolling into a directory should fail.");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(0, Files.size(file));
+    sink.write(Lists.newArrayList("0123456789\n"));
+    sink.close();
+
+    assertEquals(11, Files.size(file));
+  }
+}
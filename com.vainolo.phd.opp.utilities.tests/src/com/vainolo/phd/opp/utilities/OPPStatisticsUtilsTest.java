@@ -0,0 +1,22 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.utilities;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class OPPStatisticsUtilsTest {
+
+  @Test
+  public void percentile_NearestRank() {
+    long[] values = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+    assertEquals(1, OPPStatisticsUtils.percentile(values, 0));
+    assertEquals(5, OPPStatisticsUtils.percentile(values, 50));
+    assertEquals(10, OPPStatisticsUtils.percentile(values, 99));
+  }
+}
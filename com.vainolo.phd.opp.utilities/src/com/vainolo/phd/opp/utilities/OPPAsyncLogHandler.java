@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.utilities;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * {@link Handler} that moves the formatting and writing of log records out of the threads that log them. Records are
+ * added to a lock-free queue and a single background thread takes them in batches, formats them and writes the batch
+ * to all the {@link OPPLogSink}s of the handler. Sinks are flushed when the queue becomes empty.
+ * </p>
+ *
+ * <p>
+ * The parameters of a message are applied on the logging thread, so that the message shows the values they had when
+ * the message was logged. The queue is bounded, and the {@link OverflowPolicy} decides what happens when a record is
+ * published into a full queue. The number of records waiting in the queue and the number of dropped records can be
+ * read at any time.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPAsyncLogHandler extends Handler {
+  /** How long the background thread sleeps when there are no records, before flushing again. */
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final int MAX_BATCH_SIZE = 1024;
+
+  /** What to do when a record is published into a full queue. */
+  public enum OverflowPolicy {
+    /** Discard the record and count it as dropped. */
+    DROP,
+    /** Wait until the background thread makes room for the record. */
+    BLOCK
+  }
+
+  private final Queue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  /** Guards the sinks, which are used by the background thread while a batch is written. */
+  private final Object sinkLock = new Object();
+  private final List<OPPLogSink> sinks = Lists.newArrayList();
+  private final int capacity;
+  private volatile OverflowPolicy overflowPolicy;
+  private final Thread writer;
+  private volatile long written = 0;
+  private volatile long flushed = 0;
+  private volatile boolean writerIdle = false;
+  private volatile boolean closed = false;
+
+  /**
+   * Create a new handler and start its background thread.
+   *
+   * @param capacity
+   *          maximum number of records waiting to be written.
+   * @param overflowPolicy
+   *          what to do with records published when the queue is full.
+   */
+  public OPPAsyncLogHandler(int capacity, OverflowPolicy overflowPolicy) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    }
+    this.capacity = capacity;
+    this.overflowPolicy = overflowPolicy;
+    this.writer = new Thread(this::writeRecords, "OPP log writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  public void addSink(OPPLogSink sink) {
+    synchronized (sinkLock) {
+      sinks.add(sink);
+    }
+  }
+
+  /**
+   * Remove a sink. Once this method returns the sink is not used anymore by the handler, and can be closed.
+   */
+  public void removeSink(OPPLogSink sink) {
+    synchronized (sinkLock) {
+      sinks.remove(sink);
+    }
+  }
+
+  public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  @Override
+  public void publish(LogRecord record) {
+    if (closed || !isLoggable(record)) {
+      return;
+    }
+    applyParameters(record);
+    if (!reserve()) {
+      dropped.incrementAndGet();
+      return;
+    }
+    // Counted before it is queued, so a flush that starts after this record was published waits until it is written
+    published.incrementAndGet();
+    queue.add(record);
+    if (writerIdle) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  /**
+   * Replace the message of the record with the message with its parameters applied. This is the same thing that
+   * {@link java.util.logging.Formatter#formatMessage(LogRecord)} does, without its lock.
+   */
+  private static void applyParameters(LogRecord record) {
+    Object[] parameters = record.getParameters();
+    if (parameters == null || parameters.length == 0 || record.getMessage() == null) {
+      return;
+    }
+    if (record.getMessage().indexOf('{') >= 0) {
+      try {
+        record.setMessage(MessageFormat.format(record.getMessage(), parameters));
+      } catch (IllegalArgumentException e) {
+        // Not a valid pattern, keep the message as is.
+      }
+    }
+    record.setParameters(null);
+  }
+
+  /**
+   * Reserve a place in the queue, waiting for one if the policy is {@link OverflowPolicy#BLOCK}.
+   *
+   * @return <code>true</code> if there is a place for the record, <code>false</code> if it must be dropped.
+   */
+  private boolean reserve() {
+    while (true) {
+      int depth = queueDepth.get();
+      if (depth < capacity) {
+        if (queueDepth.compareAndSet(depth, depth + 1)) {
+          return true;
+        }
+      } else if (overflowPolicy == OverflowPolicy.DROP || closed || Thread.currentThread() == writer) {
+        return false;
+      } else {
+        LockSupport.unpark(writer);
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+      }
+    }
+  }
+
+  private void writeRecords() {
+    List<LogRecord> batch = Lists.newArrayListWithCapacity(MAX_BATCH_SIZE);
+    List<String> lines = Lists.newArrayListWithCapacity(MAX_BATCH_SIZE);
+    while (true) {
+      LogRecord record;
+      while (batch.size() < MAX_BATCH_SIZE && (record = queue.poll()) != null) {
+        batch.add(record);
+      }
+      if (!batch.isEmpty()) {
+        queueDepth.addAndGet(-batch.size());
+        for (LogRecord r : batch) {
+          lines.add(format(r));
+        }
+        synchronized (sinkLock) {
+          for (OPPLogSink sink : sinks) {
+            try {
+              sink.write(lines);
+            } catch (IOException | RuntimeException e) {
+              reportError("Could not write log records.", e, ErrorManager.WRITE_FAILURE);
+            }
+          }
+        }
+        written += batch.size();
+        batch.clear();
+        lines.clear();
+        continue;
+      }
+      flushSinks();
+      flushed = written;
+      if (closed && queue.isEmpty()) {
+        return;
+      }
+      writerIdle = true;
+      if (queue.isEmpty() && !closed) {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+      }
+      writerIdle = false;
+    }
+  }
+
+  private String format(LogRecord record) {
+    try {
+      return getFormatter().format(record);
+    } catch (RuntimeException e) {
+      reportError("Could not format log record.", e, ErrorManager.FORMAT_FAILURE);
+      return record.getMessage() + System.lineSeparator();
+    }
+  }
+
+  private void flushSinks() {
+    synchronized (sinkLock) {
+      for (OPPLogSink sink : sinks) {
+        try {
+          sink.flush();
+        } catch (IOException | RuntimeException e) {
+          reportError("Could not flush log sink.", e, ErrorManager.FLUSH_FAILURE);
+        }
+      }
+    }
+  }
+
+  /**
+   * Wait until all the records published before this call were written and the sinks were flushed.
+   */
+  @Override
+  public void flush() {
+    if (Thread.currentThread() == writer) {
+      return;
+    }
+    long target = published.get();
+    while (flushed < target && writer.isAlive()) {
+      LockSupport.unpark(writer);
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+  }
+
+  /**
+   * Write all the waiting records, stop the background thread and close the sinks.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (sinkLock) {
+      for (OPPLogSink sink : sinks) {
+        try {
+          sink.close();
+        } catch (IOException | RuntimeException e) {
+          reportError("Could not close log sink.", e, ErrorManager.CLOSE_FAILURE);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the number of records waiting to be written.
+   */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * @return the number of records that were dropped because the queue was full.
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * @return the number of records written to the sinks.
+   */
+  public long getWrittenCount() {
+    return written;
+  }
+}
@@ -14,4 +14,9 @@ public class OPPConstants {
   public static final String OPP_CONDITIONAL_LINK_SUBKIND = "c";
   public static final String OPP_EVENT_LINK_SUBKIND = "e";
   public static final String OPP_OPTIONAL_LINK_SUBKIND = "o";
+
+  /**
+   * Marks a process as pure when it appears in its description: its results depend only on its arguments.
+   */
+  public static final String OPP_PURE_PROCESS_MARKER = "@pure";
 }
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.utilities;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the formatted lines written by an {@link OPPAsyncLogHandler}. Sinks are only called from the thread
+ * of the handler, so they don't need to be thread safe.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public interface OPPLogSink {
+  /**
+   * Write a batch of lines. Every line already ends with a line separator.
+   */
+  void write(List<String> lines) throws IOException;
+
+  /**
+   * Called when there are no more lines waiting to be written.
+   */
+  default void flush() throws IOException {
+  }
+
+  default void close() throws IOException {
+  }
+}
@@ -6,8 +6,20 @@
  *******************************************************************************/
 package com.vainolo.phd.opp.utilities;
 
+import java.util.List;
+
 public interface OPPLogTarget {
   void clear();
 
   void appendLine(String line);
+
+  /**
+   * Append a batch of lines. Targets that can handle many lines at once more efficiently than one by one should
+   * override this method.
+   */
+  default void appendLines(List<String> lines) {
+    for (String line : lines) {
+      appendLine(line);
+    }
+  }
 }
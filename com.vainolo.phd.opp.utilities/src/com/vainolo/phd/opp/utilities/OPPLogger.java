@@ -6,83 +6,172 @@
  *******************************************************************************/
 package com.vainolo.phd.opp.utilities;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Path;
 import java.util.Date;
-import java.util.logging.ConsoleHandler;
+import java.util.List;
+import java.util.function.Supplier;
 import java.util.logging.Formatter;
-import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
+import com.vainolo.phd.opp.utilities.OPPAsyncLogHandler.OverflowPolicy;
+
+/**
+ * <p>
+ * Static logging facade used by all the OPP plug-ins.
+ * </p>
+ *
+ * <p>
+ * Disabled levels cost a single comparison: the level is checked before the caller is searched in the stack or any
+ * message is formatted, and messages are formatted only by the handlers. Messages that are expensive to build can be
+ * passed as a {@link Supplier}, which is only called when the level is enabled. Finding the calling class and method
+ * requires walking the stack, so it can be turned off using {@link #setIncludeCallerInfo(boolean)} when the output
+ * doesn't need it.
+ * </p>
+ *
+ * <p>
+ * Records are written by an {@link OPPAsyncLogHandler}, so logging threads don't wait for the console, the
+ * {@link OPPLogTarget} or the log file. Records that are waiting when the JVM exits are written by a shutdown hook.
+ * </p>
+ */
 public class OPPLogger {
+  private static final int QUEUE_CAPACITY = 64 * 1024;
   private static final Logger logger;
-  private static OPPLogTargetHandler logHandler;
+  private static final OPPAsyncLogHandler asyncHandler;
+  private static final OPPLogTargetSink logTargetSink;
+  private static OPPRollingFileLogSink fileSink;
+  private static volatile int levelValue = Level.FINEST.intValue();
+  private static volatile boolean includeCallerInfo = true;
 
   static {
     logger = Logger.getLogger("OPM");
     logger.setUseParentHandlers(false);
-    ConsoleHandler handler = new ConsoleHandler();
-    Formatter formatter = new Formatter() {
-      String format = "[%1$tF %1$tT] [%2$s] [%3$s] %5$s\n";
-      private final Date dat = new Date();
-
-      @Override
-      public synchronized String format(LogRecord record) {
-        dat.setTime(record.getMillis());
-        String source;
-        if (record.getSourceClassName() != null) {
-          source = record.getSourceClassName();
-          if (record.getSourceMethodName() != null) {
-            source += "." + record.getSourceMethodName();
-          }
-        } else {
-          source = record.getLoggerName();
-        }
-        String message = formatMessage(record);
-        String throwable = "";
-        if (record.getThrown() != null) {
-          StringWriter sw = new StringWriter();
-          PrintWriter pw = new PrintWriter(sw);
-          pw.println();
-          record.getThrown().printStackTrace(pw);
-          pw.close();
-          throwable = sw.toString();
-        }
-        return String.format(format, dat, record.getLevel(), source, record.getLoggerName(), message, throwable);
-      }
-    };
-    handler.setFormatter(formatter);
-    handler.setLevel(Level.FINEST);
-
-    logHandler = new OPPLogTargetHandler();
-    logHandler.setFormatter(formatter);
-    logHandler.setLevel(Level.FINEST);
+    Formatter formatter = new OPPLineFormatter();
+    asyncHandler = new OPPAsyncLogHandler(QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+    asyncHandler.setFormatter(formatter);
+    asyncHandler.setLevel(Level.FINEST);
+    asyncHandler.addSink(new OPPConsoleSink());
+    logTargetSink = new OPPLogTargetSink();
+    asyncHandler.addSink(logTargetSink);
 
     logger.setLevel(Level.FINEST);
-    logger.addHandler(handler);
-    logger.addHandler(logHandler);
+    logger.addHandler(asyncHandler);
+    Runtime.getRuntime().addShutdownHook(new Thread(asyncHandler::close, "OPP log shutdown"));
   }
 
   public static void setOPPLogTarget(OPPLogTarget target) {
-    logHandler.setTarget(target);
+    logTargetSink.setTarget(target);
+  }
+
+  /**
+   * Also write the log to a file, which is rolled when it reaches the given size. Replaces the previous log file, if
+   * one was set.
+   *
+   * @param file
+   *          where the log is written.
+   * @param maxFileSize
+   *          size in bytes after which the file is rolled.
+   * @param maxBackups
+   *          number of rolled files to keep.
+   */
+  public static synchronized void setLogFile(Path file, long maxFileSize, int maxBackups) throws IOException {
+    OPPRollingFileLogSink newSink = new OPPRollingFileLogSink(file, maxFileSize, maxBackups);
+    closeLogFile();
+    fileSink = newSink;
+    asyncHandler.addSink(fileSink);
+  }
+
+  /**
+   * Stop writing the log to a file.
+   */
+  public static synchronized void closeLogFile() throws IOException {
+    if (fileSink != null) {
+      asyncHandler.flush();
+      asyncHandler.removeSink(fileSink);
+      fileSink.close();
+      fileSink = null;
+    }
+  }
+
+  /**
+   * Set what happens when messages are logged faster than they can be written. By default, logging threads wait.
+   */
+  public static void setOverflowPolicy(OverflowPolicy policy) {
+    asyncHandler.setOverflowPolicy(policy);
+  }
+
+  /**
+   * Wait until all the messages logged until now are written.
+   */
+  public static void flush() {
+    asyncHandler.flush();
   }
 
-  private static String[] getClassNameAndMethodName(StackTraceElement[] stack) {
-    String[] fullClassName = stack[3].getClassName().split("\\.");
-    String className = fullClassName[fullClassName.length - 1];
+  /**
+   * @return the handler that writes the log, to read its queue depth and dropped messages count.
+   */
+  public static OPPAsyncLogHandler getAsyncHandler() {
+    return asyncHandler;
+  }
 
-    return new String[] { className, stack[3].getMethodName() };
+  /**
+   * Find the first frame in the stack that doesn't belong to the logger.
+   */
+  private static StackTraceElement findCaller() {
+    StackTraceElement[] stack = new Throwable().getStackTrace();
+    for (StackTraceElement element : stack) {
+      if (!element.getClassName().equals(OPPLogger.class.getName())) {
+        return element;
+      }
+    }
+    return null;
   }
 
   private static void log(Level level, String msg, Object[] params) {
-    String[] classAndMethod = getClassNameAndMethodName(Thread.currentThread().getStackTrace());
-    logger.logp(level, classAndMethod[0], classAndMethod[1], msg, params);
+    if (!isLoggable(level)) {
+      return;
+    }
+    String className = null;
+    String methodName = null;
+    if (includeCallerInfo) {
+      StackTraceElement caller = findCaller();
+      if (caller != null) {
+        className = caller.getClassName().substring(caller.getClassName().lastIndexOf('.') + 1);
+        methodName = caller.getMethodName();
+      }
+    }
+    logger.logp(level, className, methodName, msg, params);
+  }
+
+  private static void log(Level level, Supplier<String> msg) {
+    if (isLoggable(level)) {
+      log(level, msg.get(), null);
+    }
   }
 
   public static void setLevel(Level level) {
     logger.setLevel(level);
+    levelValue = level.intValue();
+  }
+
+  /**
+   * Check if messages of a level are logged. Use this method to avoid preparing the arguments of a log message when the
+   * level is disabled.
+   */
+  public static boolean isLoggable(Level level) {
+    return level.intValue() >= levelValue;
+  }
+
+  /**
+   * Set whether the class and method that logged a message are added to the message. This information is found by
+   * walking the stack, which is expensive. Enabled by default.
+   */
+  public static void setIncludeCallerInfo(boolean include) {
+    includeCallerInfo = include;
   }
 
   public static void logInfo(String msg) {
@@ -93,6 +182,10 @@ public class OPPLogger {
     log(Level.INFO, msg, params);
   }
 
+  public static void logInfo(Supplier<String> msg) {
+    log(Level.INFO, msg);
+  }
+
   public static void logWarning(String msg) {
     log(Level.WARNING, msg, null);
   }
@@ -101,6 +194,10 @@ public class OPPLogger {
     log(Level.WARNING, msg, params);
   }
 
+  public static void logWarning(Supplier<String> msg) {
+    log(Level.WARNING, msg);
+  }
+
   public static void logSevere(String msg) {
     log(Level.SEVERE, msg, null);
   }
@@ -109,6 +206,10 @@ public class OPPLogger {
     log(Level.SEVERE, msg, params);
   }
 
+  public static void logSevere(Supplier<String> msg) {
+    log(Level.SEVERE, msg);
+  }
+
   public static void logFine(String msg) {
     log(Level.FINE, msg, null);
   }
@@ -117,6 +218,10 @@ public class OPPLogger {
     log(Level.FINE, msg, params);
   }
 
+  public static void logFine(Supplier<String> msg) {
+    log(Level.FINE, msg);
+  }
+
   public static void logFiner(String msg) {
     log(Level.FINER, msg, null);
   }
@@ -125,6 +230,10 @@ public class OPPLogger {
     log(Level.FINER, msg, params);
   }
 
+  public static void logFiner(Supplier<String> msg) {
+    log(Level.FINER, msg);
+  }
+
   public static void logFinest(String msg) {
     log(Level.FINEST, msg, null);
   }
@@ -133,6 +242,10 @@ public class OPPLogger {
     log(Level.FINEST, msg, params);
   }
 
+  public static void logFinest(Supplier<String> msg) {
+    log(Level.FINEST, msg);
+  }
+
   public static void main(String args[]) {
     OPPLogger.logInfo("Hello");
     logger.setLevel(Level.FINEST);
@@ -141,30 +254,83 @@ public class OPPLogger {
     OPPLogger.logInfo("Hello {0}", "hello");
   }
 
-  static class OPPLogTargetHandler extends Handler {
-
-    private OPPLogTarget target;
-
+  /**
+   * Formats a record as a single line with its timestamp, level and source, followed by the stack trace of its
+   * exception, if it has one.
+   */
+  static class OPPLineFormatter extends Formatter {
+    String timestampFormat = "%1$tF %1$tT";
+    private final Date dat = new Date();
+    private long timestampSecond = Long.MIN_VALUE;
+    private String timestamp;
+
+    /**
+     * Records are formatted by a single thread at a high rate, so the timestamp is only formatted once per second,
+     * and lines are built without {@link String#format}.
+     */
     @Override
-    public void publish(LogRecord record) {
-      if (!isLoggable(record))
-        return;
-      String msg = getFormatter().format(record);
-      if (target != null)
-        target.appendLine(msg);
+    public synchronized String format(LogRecord record) {
+      long second = record.getMillis() / 1000;
+      if (second != timestampSecond) {
+        dat.setTime(record.getMillis());
+        timestamp = String.format(timestampFormat, dat);
+        timestampSecond = second;
+      }
+      String source;
+      if (record.getSourceClassName() != null) {
+        source = record.getSourceClassName();
+        if (record.getSourceMethodName() != null) {
+          source += "." + record.getSourceMethodName();
+        }
+      } else {
+        source = record.getLoggerName();
+      }
+      String message = formatMessage(record);
+      StringBuilder line = new StringBuilder(timestamp.length() + source.length() + message.length() + 16);
+      line.append('[').append(timestamp).append("] [").append(record.getLevel()).append("] [").append(source).append("] ").append(message).append('\n');
+      if (record.getThrown() != null) {
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        record.getThrown().printStackTrace(pw);
+        pw.close();
+        line.append(sw);
+      }
+      return line.toString();
     }
+  }
 
-    public void setTarget(OPPLogTarget target) {
-      this.target = target;
+  static class OPPConsoleSink implements OPPLogSink {
+    private final StringBuilder builder = new StringBuilder();
+
+    @Override
+    public void write(List<String> lines) {
+      for (String line : lines) {
+        builder.append(line);
+      }
+      System.err.print(builder);
+      builder.setLength(0);
     }
 
     @Override
     public void flush() {
+      System.err.flush();
     }
+  }
+
+  static class OPPLogTargetSink implements OPPLogSink {
+
+    private volatile OPPLogTarget target;
 
     @Override
-    public void close() throws SecurityException {
+    public void write(List<String> lines) {
+      OPPLogTarget currentTarget = target;
+      if (currentTarget != null) {
+        currentTarget.appendLines(lines);
+      }
     }
 
+    public void setTarget(OPPLogTarget target) {
+      this.target = target;
+    }
   }
 }
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * <p>
+ * {@link OPPLogSink} that appends the lines to a file. Lines are encoded into a buffer, which is written to the file
+ * channel when it is full and when the sink is flushed, so a batch of lines usually takes a single write.
+ * </p>
+ *
+ * <p>
+ * When the file grows beyond a maximum size it is rolled: <code>log</code> is renamed to <code>log.1</code>,
+ * <code>log.1</code> to <code>log.2</code> and so on, the oldest file is deleted and a new file is started. If the
+ * files cannot be renamed, the file is truncated instead so the sink can continue writing, and the failure is thrown.
+ * </p>
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPRollingFileLogSink implements OPPLogSink {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path file;
+  private final long maxFileSize;
+  private final int maxBackups;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+  private FileChannel channel;
+  private long fileSize;
+
+  /**
+   * Create a new sink, appending to the file if it exists.
+   *
+   * @param file
+   *          the file where lines are written.
+   * @param maxFileSize
+   *          size in bytes after which the file is rolled.
+   * @param maxBackups
+   *          number of rolled files to keep. If zero, the file is truncated when it is rolled.
+   */
+  public OPPRollingFileLogSink(Path file, long maxFileSize, int maxBackups) throws IOException {
+    if (maxFileSize <= 0 || maxBackups < 0) {
+      throw new IllegalArgumentException("File size must be positive and backups cannot be negative.");
+    }
+    this.file = file;
+    this.maxFileSize = maxFileSize;
+    this.maxBackups = maxBackups;
+    open();
+  }
+
+  private void open() throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    fileSize = channel.size();
+  }
+
+  @Override
+  public void write(List<String> lines) throws IOException {
+    for (String line : lines) {
+      CharBuffer chars = CharBuffer.wrap(line);
+      while (true) {
+        CoderResult result = encoder.encode(chars, buffer, true);
+        if (result.isOverflow()) {
+          writeBuffer();
+        } else {
+          if (result.isError()) {
+            result.throwException();
+          }
+          break;
+        }
+      }
+      encoder.reset();
+      if (fileSize + buffer.position() >= maxFileSize) {
+        writeBuffer();
+        roll();
+      }
+    }
+  }
+
+  private void writeBuffer() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      fileSize += channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private void roll() throws IOException {
+    channel.close();
+    try {
+      if (maxBackups == 0) {
+        Files.delete(file);
+      } else {
+        Files.deleteIfExists(backup(maxBackups));
+        for (int i = maxBackups - 1; i >= 1; i--) {
+          if (Files.exists(backup(i))) {
+            Files.move(backup(i), backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+          }
+        }
+        Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      open();
+      if (fileSize >= maxFileSize) {
+        // The file was not rolled
+        channel.truncate(0);
+        fileSize = 0;
+      }
+    }
+  }
+
+  private Path backup(int index) {
+    return file.resolveSibling(file.getFileName() + "." + index);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writeBuffer();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writeBuffer();
+    channel.close();
+  }
+}
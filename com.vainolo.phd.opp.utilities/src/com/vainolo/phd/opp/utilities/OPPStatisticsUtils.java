@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Arieh "Vainolo" Bibliowicz and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package com.vainolo.phd.opp.utilities;
+
+/**
+ * Statistics shared by the profiler and the server.
+ *
+ * @author Arieh 'Vainolo' Bibliowicz
+ *
+ */
+public class OPPStatisticsUtils {
+
+  /**
+   * Nearest-rank percentile of sorted values.
+   *
+   * @param sortedValues
+   *          values in ascending order. Cannot be empty.
+   * @param percentile
+   *          between 0 and 100.
+   */
+  public static long percentile(long[] sortedValues, int percentile) {
+    int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.length);
+    return sortedValues[Math.max(0, rank - 1)];
+  }
+}